@@ -0,0 +1,129 @@
+package com.henan.graphqlserver;
+
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.henan.graphqlserver.repository.SyntheticCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends GraphQL requests over HTTP from many concurrent clients, to compare Tomcat and datafetchers on the
+ * platform thread pool with the {@code virtual-threads} profile. Run with {@code -t} to change the number
+ * of clients.
+ *
+ * Persistence is on, so {@link #mutation()} waits for the mutation log like a production write. Run with
+ * {@code -PtracePinned} to print the stack of every virtual thread that pins its carrier.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(256)
+public class ConcurrentRequestBenchmark {
+    private static final String QUERY = """
+            {"query": "query Movie($id: ID!) { movie(id: $id) { title rating actors { name } } topRated: searchMovies(filter: { genre: \\"Drama\\" }, orderBy: { field: RATING }, limit: 10) { title } }",
+             "variables": {"id": "%s"}}""";
+    private static final String MUTATION = """
+            {"query": "mutation Rate($id: ID!, $rating: Float) { updateMovie(id: $id, input: { title: \\"Rated\\", rating: $rating }) { success } }",
+             "variables": {"id": "%s", "rating": %.1f}}""";
+
+    @Param({"platform", "virtual"})
+    private String threads;
+
+    @Param({"100000"})
+    private int catalogSize;
+
+    private ServletWebServerApplicationContext context;
+    private ExecutorService clientExecutor;
+    private HttpClient client;
+    private URI endpoint;
+    private Path dataDirectory;
+
+    @Setup
+    public void setUp() {
+        try {
+            dataDirectory = Files.createTempDirectory("benchmark-catalog");
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        SpringApplicationBuilder application = new SpringApplicationBuilder(GraphqlServerApplication.class)
+                .logStartupInfo(false);
+        if (threads.equals("virtual")) {
+            application.profiles("virtual-threads");
+        }
+        context = (ServletWebServerApplicationContext) application
+                .run("--server.port=0", "--spring.main.banner-mode=off", "--logging.level.root=WARN",
+                        "--graphql-server.persistence.enabled=true",
+                        "--graphql-server.persistence.directory=" + dataDirectory,
+                        "--graphql-server.persistence.fsync=false");
+        SyntheticCatalog.populate(context.getBean(MovieRepository.class), context.getBean(ActorRepository.class),
+                catalogSize);
+        endpoint = URI.create("http://localhost:" + context.getWebServer().getPort() + "/graphql");
+        // Virtual client threads, so the clients are never the bottleneck
+        clientExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        client = HttpClient.newBuilder().executor(clientExecutor).version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.close();
+        clientExecutor.shutdown();
+        context.close();
+        FileSystemUtils.deleteRecursively(dataDirectory);
+    }
+
+    @Benchmark
+    public int request() throws IOException, InterruptedException {
+        String id = SyntheticCatalog.movieId(ThreadLocalRandom.current().nextInt(catalogSize));
+        return post(QUERY.formatted(id));
+    }
+
+    @Benchmark
+    public int mutation() throws IOException, InterruptedException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String id = SyntheticCatalog.movieId(random.nextInt(catalogSize));
+        return post(String.format(Locale.ROOT, MUTATION, id, random.nextInt(100) / 10.0));
+    }
+
+    private int post(String body) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Request failed with status " + response.statusCode());
+        }
+        return response.statusCode();
+    }
+}
@@ -0,0 +1,120 @@
+package com.henan.graphqlserver;
+
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.henan.graphqlserver.repository.SyntheticCatalog;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import graphql.ExecutionResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs representative client operations through {@link DgsQueryExecutor}, covering parsing, validation,
+ * execution, DataLoader batching and result building, but not HTTP or JSON serialization.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryExecutionBenchmark {
+    private static final String MOVIE_WITH_ACTORS =
+            "query Movie($id: ID!) { movie(id: $id) { id title releaseYear rating actors { id name } } }";
+    private static final String TOP_RATED =
+            "query TopRated($genre: String) { searchMovies(filter: { genre: $genre }, orderBy: { field: RATING }, limit: 20) { id title rating director } }";
+    private static final String MOVIES_PAGE =
+            "query Page { moviesConnection(first: 20) { totalCount edges { cursor node { id title genre actors { name } } } pageInfo { hasNextPage endCursor } } }";
+    private static final String STATS =
+            "query Stats { movieStats(filter: { minRating: 8.0 }) { count averageRating genres { value count } decades { value count } } }";
+    private static final String FILMOGRAPHY =
+            "query Filmography($id: ID!) { actor(id: $id) { name movies { title releaseYear } } }";
+    private static final String UPDATE_RATING =
+            "mutation Rate($id: ID!) { updateMovie(id: $id, input: { title: \"Benchmark Movie\", rating: 7.5 }) { success movie { id rating } } }";
+
+    @Param({"1000", "100000", "1000000", "5000000"})
+    private int catalogSize;
+
+    private ConfigurableApplicationContext context;
+    private DgsQueryExecutor queryExecutor;
+    private String[] movieIds;
+    private String[] actorIds;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        context = new SpringApplicationBuilder(GraphqlServerApplication.class)
+                .web(WebApplicationType.NONE)
+                .logStartupInfo(false)
+                .run("--spring.main.banner-mode=off", "--logging.level.root=WARN");
+        SyntheticCatalog.populate(context.getBean(MovieRepository.class), context.getBean(ActorRepository.class),
+                catalogSize);
+        queryExecutor = context.getBean(DgsQueryExecutor.class);
+        movieIds = SyntheticCatalog.randomMovieIds(catalogSize, 1024);
+        actorIds = SyntheticCatalog.randomActorIds(catalogSize, 1024);
+
+        // Fail fast instead of measuring error responses
+        for (ExecutionResult result : new ExecutionResult[]{
+                movieWithActors(), topRated(), moviesPage(), stats(), filmography(), updateRating()}) {
+            if (!result.getErrors().isEmpty()) {
+                throw new IllegalStateException("Benchmark query failed: " + result.getErrors());
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public ExecutionResult movieWithActors() {
+        return queryExecutor.execute(MOVIE_WITH_ACTORS, Map.of("id", movieIds[nextIndex()]));
+    }
+
+    @Benchmark
+    public ExecutionResult topRated() {
+        return queryExecutor.execute(TOP_RATED, Map.of("genre", "Drama"));
+    }
+
+    @Benchmark
+    public ExecutionResult moviesPage() {
+        return queryExecutor.execute(MOVIES_PAGE);
+    }
+
+    @Benchmark
+    public ExecutionResult stats() {
+        return queryExecutor.execute(STATS);
+    }
+
+    @Benchmark
+    public ExecutionResult filmography() {
+        return queryExecutor.execute(FILMOGRAPHY, Map.of("id", actorIds[nextIndex()]));
+    }
+
+    @Benchmark
+    public ExecutionResult updateRating() {
+        return queryExecutor.execute(UPDATE_RATING, Map.of("id", movieIds[nextIndex()]));
+    }
+
+    private int nextIndex() {
+        next = (next + 1) & 1023;
+        return next;
+    }
+}
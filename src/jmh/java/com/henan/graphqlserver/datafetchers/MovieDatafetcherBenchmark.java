@@ -0,0 +1,170 @@
+package com.henan.graphqlserver.datafetchers;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.model.MovieInput;
+import com.henan.graphqlserver.model.MovieOrder;
+import com.henan.graphqlserver.model.MovieOrderField;
+import com.henan.graphqlserver.model.MovieResponse;
+import com.henan.graphqlserver.model.SortDirection;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.henan.graphqlserver.repository.SyntheticCatalog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calls {@link MovieDatafetcher} directly, without GraphQL parsing or execution, so the numbers isolate the
+ * repository and its indexes. There is one search benchmark per filter combination.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MovieDatafetcherBenchmark {
+    private static final int BATCH_SIZE = 100;
+
+    @Param({"1000", "100000", "1000000", "5000000"})
+    private int catalogSize;
+
+    private MovieDatafetcher movieDatafetcher;
+    private String[] movieIds;
+    private int next;
+
+    private MovieFilter byTitle;
+    private MovieFilter byGenre;
+    private MovieFilter byRating;
+    private MovieFilter byReleaseYear;
+    private MovieFilter byGenreAndRating;
+    private MovieFilter byAllFields;
+    private MovieOrder topRated;
+    private MovieInput newMovie;
+    private MovieInput newRating;
+    private List<MovieInput> newMovies;
+
+    @Setup
+    public void setUp() {
+        MovieRepository movieRepository = new MovieRepository();
+        ActorRepository actorRepository = new ActorRepository();
+        SyntheticCatalog.populate(movieRepository, actorRepository, catalogSize);
+        movieDatafetcher = new MovieDatafetcher(movieRepository, actorRepository);
+        movieIds = SyntheticCatalog.randomMovieIds(catalogSize, 1024);
+
+        byTitle = new MovieFilter();
+        byTitle.setTitle("silent river");
+        byGenre = new MovieFilter();
+        byGenre.setGenre("Western");
+        byRating = new MovieFilter();
+        byRating.setMinRating(9.5f);
+        byReleaseYear = new MovieFilter();
+        byReleaseYear.setReleaseYearFrom(1990);
+        byReleaseYear.setReleaseYearTo(1994);
+        byGenreAndRating = new MovieFilter();
+        byGenreAndRating.setGenre("Drama");
+        byGenreAndRating.setMinRating(8.0f);
+        byAllFields = new MovieFilter();
+        byAllFields.setTitle("the");
+        byAllFields.setGenre("Drama");
+        byAllFields.setMinRating(5.0f);
+        byAllFields.setMaxRating(9.0f);
+        byAllFields.setReleaseYearFrom(1970);
+        byAllFields.setReleaseYearTo(2000);
+        topRated = new MovieOrder(MovieOrderField.RATING, SortDirection.DESC);
+
+        newMovie = new MovieInput();
+        newMovie.setTitle("Benchmark Movie");
+        newMovie.setReleaseYear(2024);
+        newMovie.setDirector("Director");
+        newMovie.setGenre("Drama");
+        newMovie.setRating(7.5f);
+        newMovie.setActorIds(List.of(SyntheticCatalog.actorId(1), SyntheticCatalog.actorId(2)));
+        newMovies = Collections.nCopies(BATCH_SIZE, newMovie);
+        newRating = new MovieInput();
+        newRating.setRating(6.5f);
+    }
+
+    @Benchmark
+    public Movie movie() {
+        return movieDatafetcher.movie(nextMovieId(), null);
+    }
+
+    @Benchmark
+    public List<Movie> searchByTitle() {
+        return movieDatafetcher.searchMovies(byTitle, null, null, null);
+    }
+
+    @Benchmark
+    public List<Movie> searchByGenre() {
+        return movieDatafetcher.searchMovies(byGenre, null, null, null);
+    }
+
+    @Benchmark
+    public List<Movie> searchByRating() {
+        return movieDatafetcher.searchMovies(byRating, null, null, null);
+    }
+
+    @Benchmark
+    public List<Movie> searchByReleaseYear() {
+        return movieDatafetcher.searchMovies(byReleaseYear, null, null, null);
+    }
+
+    @Benchmark
+    public List<Movie> searchByGenreAndRating() {
+        return movieDatafetcher.searchMovies(byGenreAndRating, null, null, null);
+    }
+
+    @Benchmark
+    public List<Movie> searchByAllFields() {
+        return movieDatafetcher.searchMovies(byAllFields, null, null, null);
+    }
+
+    @Benchmark
+    public List<Movie> searchTopRatedDramas() {
+        return movieDatafetcher.searchMovies(byGenre, topRated, 20, null);
+    }
+
+    @Benchmark
+    public MovieResponse updateMovie() {
+        return movieDatafetcher.updateMovie(nextMovieId(), newRating);
+    }
+
+    /**
+     * Creates and deletes a movie, so the catalog keeps its size across iterations.
+     */
+    @Benchmark
+    public MovieResponse createAndDeleteMovie() {
+        MovieResponse created = movieDatafetcher.createMovie(newMovie);
+        return movieDatafetcher.deleteMovie(created.getMovie().getId());
+    }
+
+    /**
+     * The batch counterpart of {@link #createAndDeleteMovie()}, reported per movie.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<MovieResponse> createAndDeleteMovies() {
+        List<MovieResponse> created = movieDatafetcher.createMovies(newMovies);
+        return movieDatafetcher.deleteMovies(created.stream().map(response -> response.getMovie().getId()).toList(), false);
+    }
+
+    private String nextMovieId() {
+        next = (next + 1) & (movieIds.length - 1);
+        return movieIds[next];
+    }
+}
@@ -0,0 +1,87 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic synthetic catalog for benchmarks. Values are spread so every field of the movie filter has a
+ * realistic selectivity: 20 genres, 100 release years, ratings in steps of 0.1 and titles built from a small
+ * vocabulary, so that a two-word title search matches roughly one movie in a thousand.
+ */
+public final class SyntheticCatalog {
+    public static final String[] GENRES = {
+            "Action", "Adventure", "Animation", "Biography", "Comedy", "Crime", "Documentary", "Drama", "Family",
+            "Fantasy", "History", "Horror", "Music", "Musical", "Mystery", "Romance", "Sci-Fi", "Sport",
+            "Thriller", "Western"
+    };
+    private static final String[] ADJECTIVES = {
+            "Silent", "Broken", "Golden", "Hidden", "Last", "Lost", "Dark", "Burning", "Frozen", "Wild",
+            "Crimson", "Distant", "Endless", "Fallen", "Hollow", "Iron", "Little", "Midnight", "Northern", "Quiet",
+            "Restless", "Sacred", "Secret", "Shattered", "Stolen", "Sudden", "Twisted", "Velvet", "Wandering", "White",
+            "Bitter", "Brave"
+    };
+    private static final String[] NOUNS = {
+            "River", "Empire", "Garden", "Harbor", "Kingdom", "Letter", "Machine", "Mountain", "Night", "Ocean",
+            "Promise", "Road", "Shadow", "Signal", "Storm", "Summer", "Tower", "Train", "Valley", "Voyage",
+            "Winter", "Witness", "Year", "Bridge", "City", "Crown", "Dream", "Echo", "Fire", "Forest",
+            "Heart", "Island"
+    };
+    public static final int FIRST_YEAR = 1925;
+    public static final int YEARS = 100;
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Adds {@code size} movies with three actors each, and one actor for every ten movies, to the repositories.
+     */
+    public static void populate(MovieRepository movieRepository, ActorRepository actorRepository, int size) {
+        int actors = Math.max(100, size / 10);
+        for (int i = 0; i < actors; i++) {
+            actorRepository.save(new Actor(actorId(i), "Actor " + i, 1920 + i % 85));
+        }
+        SplittableRandom random = new SplittableRandom(42);
+        for (int i = 0; i < size; i++) {
+            String title = "The " + ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " "
+                    + NOUNS[random.nextInt(NOUNS.length)] + " " + i;
+            List<String> actorIds = List.of(
+                    actorId(random.nextInt(actors)), actorId(random.nextInt(actors)), actorId(random.nextInt(actors)));
+            movieRepository.save(new Movie(movieId(i), title, FIRST_YEAR + random.nextInt(YEARS),
+                    "Director " + random.nextInt(Math.max(1, size / 20)), GENRES[random.nextInt(GENRES.length)],
+                    random.nextInt(101) / 10.0f, actorIds));
+        }
+    }
+
+    public static String movieId(int index) {
+        return "m" + index;
+    }
+
+    public static String actorId(int index) {
+        return "a" + index;
+    }
+
+    /**
+     * Ids of existing movies in random order, cycled through by benchmarks to avoid measuring a single hot entry.
+     */
+    public static String[] randomMovieIds(int catalogSize, int count) {
+        SplittableRandom random = new SplittableRandom(7);
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = movieId(random.nextInt(catalogSize));
+        }
+        return ids;
+    }
+
+    public static String[] randomActorIds(int catalogSize, int count) {
+        SplittableRandom random = new SplittableRandom(11);
+        int actors = Math.max(100, catalogSize / 10);
+        String[] ids = new String[count];
+        for (int i = 0; i < count; i++) {
+            ids[i] = actorId(random.nextInt(actors));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,116 @@
+package com.henan.graphqlserver.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A limit on concurrent requests that follows their latency, in the manner of TCP Vegas and gradient
+ * concurrency limiters.
+ *
+ * Every completed request updates a short-term and a long-term average of latency. While the short-term one
+ * stays within {@code tolerance} of the long-term one, requests are not waiting for each other, and the limit
+ * grows by about its square root. Once it rises above that, the limit shrinks in proportion, by at most half
+ * per sample. The long-term average adapts slowly, so a lasting change in the cost of requests becomes the
+ * new baseline rather than shrinking the limit for good. Requests that completed while less than half of the
+ * limit was in use do not change it, since their latency says nothing about the limit.
+ */
+final class AdaptiveLimit {
+    // Weights of a new sample in the averages, about the last 10 and 600 requests
+    private static final double SHORT_WEIGHT = 0.1;
+    private static final double LONG_WEIGHT = 1.0 / 600;
+    // How fast the limit moves towards its new value
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile double limit;
+    // Guarded by this
+    private double shortLatency;
+    private double longLatency;
+
+    AdaptiveLimit(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.tolerance = Math.max(1, tolerance);
+        this.limit = Math.clamp(initialLimit, this.minLimit, this.maxLimit);
+    }
+
+    /**
+     * Admits a request if fewer than {@code share} of the limit are in flight.
+     *
+     * @return the requests in flight including this one, or 0 if it is not admitted
+     */
+    int tryAcquire(double share) {
+        return tryAcquire(share, 1);
+    }
+
+    /**
+     * Admits a request that counts as {@code permits} requests, such as a batch of that many operations, if
+     * they fit in {@code share} of the limit. One that needs more than the share is only admitted while
+     * nothing else is in flight.
+     *
+     * @return the requests in flight including these, or 0 if it is not admitted
+     */
+    int tryAcquire(double share, int permits) {
+        int allowed = Math.max(1, (int) (limit * share));
+        int needed = Math.min(permits, allowed);
+        while (true) {
+            int current = inFlight.get();
+            if (current + needed > allowed) {
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + permits)) {
+                return current + permits;
+            }
+        }
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire(double)}.
+     *
+     * @param inFlightAtStart what {@link #tryAcquire(double)} returned for it
+     */
+    void release(long latencyNanos, int inFlightAtStart) {
+        release(latencyNanos, inFlightAtStart, 1);
+    }
+
+    /**
+     * Ends a request admitted by {@link #tryAcquire(double, int)}. The latency of a batch is not that of one
+     * request, so only single requests are sampled.
+     */
+    void release(long latencyNanos, int inFlightAtStart, int permits) {
+        inFlight.addAndGet(-permits);
+        if (permits == 1) {
+            sample(Math.max(1, latencyNanos), inFlightAtStart);
+        }
+    }
+
+    int limit() {
+        return (int) limit;
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    private synchronized void sample(double latency, int inFlightAtStart) {
+        if (longLatency == 0) {
+            shortLatency = latency;
+            longLatency = latency;
+        }
+        shortLatency += (latency - shortLatency) * SHORT_WEIGHT;
+        longLatency += (latency - longLatency) * LONG_WEIGHT;
+        if (longLatency > 2 * shortLatency) {
+            // Latency dropped for good, catch up faster than the long-term average would
+            longLatency = (longLatency + shortLatency) / 2;
+        }
+        double current = limit;
+        if (inFlightAtStart < current / 2) {
+            return;
+        }
+        double gradient = Math.clamp(tolerance * longLatency / shortLatency, 0.5, 1.0);
+        double target = current * gradient + Math.sqrt(current);
+        limit = Math.clamp(current + (target - current) * SMOOTHING, minLimit, maxLimit);
+    }
+}
@@ -0,0 +1,45 @@
+package com.henan.graphqlserver.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.cache.PersistedDocumentCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.admission", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(AdmissionProperties.class)
+public class AdmissionConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<ClientRateFilter> clientRateFilter(
+            AdmissionProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${spring.graphql.path:/graphql}") String graphQlPath) {
+        FilterRegistrationBean<ClientRateFilter> registration = new FilterRegistrationBean<>(
+                new ClientRateFilter(properties, objectMapper, meterRegistry));
+        registration.addUrlPatterns(graphQlPath);
+        // Ahead of the response cache and single-flight filters, so every request counts against its client
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 4);
+        return registration;
+    }
+
+    @Bean
+    public FilterRegistrationBean<AdmissionFilter> admissionFilter(
+            AdmissionProperties properties, ObjectMapper objectMapper,
+            ObjectProvider<PersistedDocumentCache> persistedDocuments, MeterRegistry meterRegistry,
+            @Value("${spring.graphql.path:/graphql}") String graphQlPath) {
+        FilterRegistrationBean<AdmissionFilter> registration = new FilterRegistrationBean<>(
+                new AdmissionFilter(properties, objectMapper, persistedDocuments.getIfAvailable(), meterRegistry));
+        registration.addUrlPatterns(graphQlPath);
+        // Behind the response cache and single-flight filters, so only requests that execute take a slot, and
+        // ahead of the batching filter, which executes batches itself
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        return registration;
+    }
+}
@@ -0,0 +1,148 @@
+package com.henan.graphqlserver.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.cache.CachedBodyRequest;
+import com.henan.graphqlserver.cache.PersistedDocumentCache;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Rejects GraphQL requests with 429 Too Many Requests and a {@code Retry-After} hint, rather than letting them
+ * queue, when the server is at its concurrency limit.
+ *
+ * The concurrency limit is an {@link AdaptiveLimit}, which shrinks as soon as latency rises, so the requests it
+ * admits are answered at the usual speed instead of all of them slowing down together. Requests of a lower
+ * {@link Priority} may only use part of the limit, so scans are shed first and mutations and lookups by id
+ * still get through. A batch takes a slot per operation. The filter runs behind the response cache and
+ * single-flight filters, so only requests that execute take slots; client rates are checked ahead of them by
+ * {@link ClientRateFilter}.
+ */
+public class AdmissionFilter extends OncePerRequestFilter {
+    private static final String SHED = "{\"errors\":[{\"message\":\"The server is at capacity, retry later\"}]}";
+
+    private final AdaptiveLimit limit;
+    private final RequestPriorities priorities;
+    private final ObjectMapper objectMapper;
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> admitted = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> shed = new EnumMap<>(Priority.class);
+
+    /**
+     * @param persistedDocuments documents of persisted queries, or null if they are not supported
+     */
+    public AdmissionFilter(AdmissionProperties properties, ObjectMapper objectMapper,
+                           PersistedDocumentCache persistedDocuments, MeterRegistry meterRegistry) {
+        this.limit = new AdaptiveLimit(properties.getInitialLimit(), properties.getMinLimit(),
+                properties.getMaxLimit(), properties.getLatencyTolerance());
+        this.priorities = new RequestPriorities(properties, objectMapper, persistedDocuments);
+        this.objectMapper = objectMapper;
+        shares.put(Priority.HIGH, 1.0);
+        shares.put(Priority.NORMAL, properties.getNormalShare());
+        shares.put(Priority.LOW, properties.getLowShare());
+
+        meterRegistry.gauge("graphql.admission.limit", limit, AdaptiveLimit::limit);
+        meterRegistry.gauge("graphql.admission.in-flight", limit, AdaptiveLimit::inFlight);
+        for (Priority priority : Priority.values()) {
+            String tag = priority.name().toLowerCase();
+            admitted.put(priority, meterRegistry.counter("graphql.admission.requests",
+                    "outcome", "admitted", "priority", tag));
+            shed.put(priority, meterRegistry.counter("graphql.admission.requests",
+                    "outcome", "shed", "priority", tag));
+        }
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Priority priority = Priority.NORMAL;
+        int operations = 1;
+        if (HttpMethod.POST.matches(request.getMethod())) {
+            byte[] body = request.getInputStream().readAllBytes();
+            request = new CachedBodyRequest(request, body);
+            priority = priorities.of(body);
+            operations = Operations.count(objectMapper, body);
+        }
+        int inFlight = limit.tryAcquire(shares.get(priority), operations);
+        if (inFlight == 0) {
+            shed.get(priority).increment();
+            reject(response, TimeUnit.SECONDS.toNanos(1), SHED);
+            return;
+        }
+        admitted.get(priority).increment();
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (isAsyncStarted(request)) {
+                // The response is written later, the request is in flight until then
+                request.getAsyncContext().addListener(new ReleaseListener(start, inFlight, operations));
+            } else {
+                limit.release(System.nanoTime() - start, inFlight, operations);
+            }
+        }
+    }
+
+    static void reject(HttpServletResponse response, long retryAfterNanos, String body) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        long seconds = Math.max(1, (retryAfterNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+        response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(body);
+    }
+
+    private final class ReleaseListener implements AsyncListener {
+        private final long start;
+        private final int inFlight;
+        private final int operations;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private ReleaseListener(long start, int inFlight, int operations) {
+            this.start = start;
+            this.inFlight = inFlight;
+            this.operations = operations;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                limit.release(System.nanoTime() - start, inFlight, operations);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.henan.graphqlserver.admission;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Set;
+
+@Data
+@ConfigurationProperties("graphql-server.admission")
+public class AdmissionProperties {
+    private boolean enabled = false;
+    // Concurrent requests admitted before any latency was measured
+    private int initialLimit = 50;
+    // Bounds of the adaptive concurrency limit
+    private int minLimit = 8;
+    private int maxLimit = 500;
+    // How much slower than usual requests may get before the limit shrinks
+    private double latencyTolerance = 1.5;
+    // Share of the limit that normal and low priority requests may use, high priority ones may use all of it
+    private double normalShare = 0.9;
+    private double lowShare = 0.75;
+    // Query fields that make a request high priority when it selects nothing else, mutations always are
+    private Set<String> highPriorityFields = Set.of("movie", "actor");
+    // Query fields that make a request low priority
+    private Set<String> lowPriorityFields = Set.of("searchMovies", "searchMoviesConnection", "movieStats");
+    // Header that identifies a client, the remote address is used without it
+    private String clientHeader = "X-Client-Id";
+    // Operations per second and burst allowed per client, 0 to not limit clients
+    private double clientRate = 100;
+    private int clientBurst = 200;
+    // Clients whose request rate is tracked at the same time
+    private long maxClients = 10_000;
+}
@@ -0,0 +1,87 @@
+package com.henan.graphqlserver.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.henan.graphqlserver.cache.CachedBodyRequest;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rejects GraphQL requests with 429 Too Many Requests and a {@code Retry-After} hint when their client sends more
+ * than its rate.
+ *
+ * Each client, identified by the {@code clientHeader} or else its remote address, has a {@link TokenBucket}, and
+ * every operation takes a token, so a batch takes one per operation. The filter runs ahead of the response cache
+ * and single-flight filters: a response served from the cache or shared with an identical request costs the
+ * client as much as one that executes.
+ */
+public class ClientRateFilter extends OncePerRequestFilter {
+    private static final String THROTTLED =
+            "{\"errors\":[{\"message\":\"Too many requests from this client, retry later\"}]}";
+
+    private final ObjectMapper objectMapper;
+    private final String clientHeader;
+    private final double clientRate;
+    private final int clientBurst;
+    private final Cache<String, TokenBucket> clients;
+    private final Counter throttled;
+
+    public ClientRateFilter(AdmissionProperties properties, ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.clientHeader = properties.getClientHeader();
+        this.clientRate = properties.getClientRate();
+        this.clientBurst = properties.getClientBurst();
+        // A bucket left alone for longer than it takes to fill up is the same as a new one
+        long refillNanos = clientRate > 0 ? (long) (Math.max(1, clientBurst) / clientRate * 1_000_000_000) : 0;
+        this.clients = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxClients())
+                .expireAfterAccess(Duration.ofNanos(Math.max(refillNanos, TimeUnit.SECONDS.toNanos(1))))
+                .build();
+        this.throttled = meterRegistry.counter("graphql.admission.requests", "outcome", "throttled");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (clientRate <= 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        int operations = 1;
+        if (HttpMethod.POST.matches(request.getMethod())) {
+            byte[] body = request.getInputStream().readAllBytes();
+            request = new CachedBodyRequest(request, body);
+            operations = Operations.count(objectMapper, body);
+        }
+        long wait = throttle(request, operations);
+        if (wait > 0) {
+            throttled.increment();
+            AdmissionFilter.reject(response, wait, THROTTLED);
+            return;
+        }
+        chain.doFilter(request, response);
+    }
+
+    /**
+     * @return 0 if the client may send the operations, or else the nanoseconds until it may
+     */
+    private long throttle(HttpServletRequest request, int operations) {
+        String client = clientHeader != null ? request.getHeader(clientHeader) : null;
+        if (client == null || client.isBlank()) {
+            client = request.getRemoteAddr();
+        }
+        long now = System.nanoTime();
+        return clients.get(client, key -> new TokenBucket(clientRate, clientBurst, now)).tryTake(now, operations);
+    }
+}
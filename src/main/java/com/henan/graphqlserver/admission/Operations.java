@@ -0,0 +1,37 @@
+package com.henan.graphqlserver.admission;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+
+/**
+ * Counts the GraphQL operations of a request body, so a batch is charged like the requests it stands for.
+ */
+final class Operations {
+
+    private Operations() {
+    }
+
+    /**
+     * @return the number of elements of a JSON array body, or 1 for any other body, including one that cannot
+     *         be read
+     */
+    static int count(ObjectMapper objectMapper, byte[] body) {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                return 1;
+            }
+            int count = 0;
+            for (JsonToken token = parser.nextToken(); token != null && token != JsonToken.END_ARRAY;
+                 token = parser.nextToken()) {
+                parser.skipChildren();
+                count++;
+            }
+            return Math.max(1, count);
+        } catch (IOException e) {
+            return 1;
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.henan.graphqlserver.admission;
+
+/**
+ * The order in which requests are shed under load, {@link #LOW} first.
+ */
+public enum Priority {
+    // Mutations and lookups by id
+    HIGH,
+    NORMAL,
+    // Scans over the catalog
+    LOW
+}
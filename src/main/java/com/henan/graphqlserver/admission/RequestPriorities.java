@@ -0,0 +1,127 @@
+package com.henan.graphqlserver.admission;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.henan.graphqlserver.cache.PersistedDocumentCache;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Reads the {@link Priority} of GraphQL requests posted as JSON from the root fields of their operation.
+ *
+ * Mutations are high priority, and so are queries that only select {@code highPriorityFields}. Queries that
+ * select any of the {@code lowPriorityFields} are low priority, and anything else, including requests that
+ * cannot be read, is normal. A batch has the lowest priority of its operations. Clients send the same few
+ * operations over and over, so the priority of each document is kept rather than parsed again.
+ */
+final class RequestPriorities {
+    private final ObjectMapper objectMapper;
+    private final PersistedDocumentCache persistedDocuments;
+    private final Set<String> highPriorityFields;
+    private final Set<String> lowPriorityFields;
+    private final Cache<OperationKey, Priority> priorities = Caffeine.newBuilder().maximumSize(1_000).build();
+
+    /**
+     * @param persistedDocuments documents of persisted queries, or null if they are not supported
+     */
+    RequestPriorities(AdmissionProperties properties, ObjectMapper objectMapper,
+                      PersistedDocumentCache persistedDocuments) {
+        this.objectMapper = objectMapper;
+        this.persistedDocuments = persistedDocuments;
+        this.highPriorityFields = Set.copyOf(properties.getHighPriorityFields());
+        this.lowPriorityFields = Set.copyOf(properties.getLowPriorityFields());
+    }
+
+    Priority of(byte[] body) {
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(body);
+        } catch (IOException e) {
+            return Priority.NORMAL;
+        }
+        if (request == null || request.isEmpty()) {
+            return Priority.NORMAL;
+        }
+        if (!request.isArray()) {
+            return ofOperation(request);
+        }
+        Priority lowest = Priority.HIGH;
+        for (JsonNode operation : request) {
+            Priority priority = ofOperation(operation);
+            if (priority.compareTo(lowest) > 0) {
+                lowest = priority;
+            }
+        }
+        return lowest;
+    }
+
+    private Priority ofOperation(JsonNode request) {
+        JsonNode operationName = request.path("operationName");
+        String name = operationName.isTextual() ? operationName.asText() : null;
+        JsonNode query = request.path("query");
+        if (query.isTextual()) {
+            return priorities.get(new OperationKey(query.asText(), name),
+                    key -> ofOperation(parse(key.document()), name));
+        }
+        JsonNode hash = request.path("extensions").path("persistedQuery").path("sha256Hash");
+        if (persistedDocuments != null && hash.isTextual()) {
+            // Hashes never start with a comment, so this cannot collide with a document
+            return priorities.get(new OperationKey("#" + hash.asText(), name),
+                    key -> ofOperation(persistedDocuments.find(hash.asText()), name));
+        }
+        return Priority.NORMAL;
+    }
+
+    private Priority ofOperation(Document document, String operationName) {
+        if (document == null) {
+            return Priority.NORMAL;
+        }
+        List<OperationDefinition> operations = document.getDefinitionsOfType(OperationDefinition.class);
+        OperationDefinition operation = operations.stream()
+                .filter(candidate -> operationName == null
+                        ? operations.size() == 1
+                        : operationName.equals(candidate.getName()))
+                .findFirst()
+                .orElse(null);
+        if (operation == null || operation.getOperation() == OperationDefinition.Operation.SUBSCRIPTION) {
+            return Priority.NORMAL;
+        }
+        if (operation.getOperation() == OperationDefinition.Operation.MUTATION) {
+            return Priority.HIGH;
+        }
+        boolean onlyHighPriority = true;
+        for (Selection<?> selection : operation.getSelectionSet().getSelections()) {
+            if (selection instanceof Field field) {
+                if (lowPriorityFields.contains(field.getName())) {
+                    return Priority.LOW;
+                }
+                onlyHighPriority &= highPriorityFields.contains(field.getName());
+            } else {
+                // Fragments on the root type are rare, and not looked into
+                onlyHighPriority = false;
+            }
+        }
+        return onlyHighPriority ? Priority.HIGH : Priority.NORMAL;
+    }
+
+    private static Document parse(String document) {
+        try {
+            return Parser.parse(document);
+        } catch (InvalidSyntaxException e) {
+            return null;
+        }
+    }
+
+    private record OperationKey(String document, String operationName) {
+    }
+}
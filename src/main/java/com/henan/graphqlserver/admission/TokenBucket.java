@@ -0,0 +1,38 @@
+package com.henan.graphqlserver.admission;
+
+/**
+ * The request rate of one client: it holds up to {@code burst} tokens, gains {@code rate} per second, and
+ * every operation takes one.
+ */
+final class TokenBucket {
+    private final double tokensPerNano;
+    private final double burst;
+    private double tokens;
+    private long refilledAt;
+
+    TokenBucket(double ratePerSecond, int burst, long now) {
+        this.tokensPerNano = ratePerSecond / 1_000_000_000.0;
+        this.burst = Math.max(1, burst);
+        this.tokens = this.burst;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes {@code count} tokens at once, or none. A count above the burst takes the whole burst, so a batch
+     * larger than the burst can still be sent by a client that waits.
+     *
+     * @return 0 if the tokens were taken, or else the nanoseconds until enough of them are available
+     */
+    synchronized long tryTake(long now, int count) {
+        if (now > refilledAt) {
+            tokens = Math.min(burst, tokens + (now - refilledAt) * tokensPerNano);
+            refilledAt = now;
+        }
+        double needed = Math.min(Math.max(1, count), burst);
+        if (tokens >= needed) {
+            tokens -= needed;
+            return 0;
+        }
+        return Math.max(1, (long) Math.ceil((needed - tokens) / tokensPerNano));
+    }
+}
@@ -0,0 +1,231 @@
+package com.henan.graphqlserver.batching;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.cache.CachedBodyRequest;
+import com.netflix.graphql.dgs.internal.DgsDataLoaderProvider;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.dataloader.DataLoaderRegistry;
+import org.springframework.graphql.server.WebGraphQlHandler;
+import org.springframework.graphql.server.WebGraphQlRequest;
+import org.springframework.graphql.server.WebGraphQlResponse;
+import org.springframework.http.HttpCookie;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Executes a JSON array of GraphQL requests posted to the GraphQL endpoint, and answers with the array of
+ * their responses in the same order. Any other request is passed on unchanged.
+ *
+ * Up to {@code parallelism} operations of a batch run at the same time, each on its own virtual thread and
+ * through the same interceptors and instrumentations as a single request, so each is validated, costed and
+ * snapshotted on its own. They share the data loaders that do not depend on their snapshot, see
+ * {@link SharedDataLoadersInstrumentation}, so an actor that several operations need is loaded once. Unless
+ * {@code parallelism} is 1, operations do not run in a defined order, so a batch should not mix mutations with
+ * operations that depend on them.
+ *
+ * An element that cannot be executed, such as one without a query, gets a response with an error in its
+ * place, and the others still run.
+ */
+public class BatchRequestFilter extends OncePerRequestFilter {
+    private static final TypeReference<List<Object>> OPERATIONS = new TypeReference<>() {
+    };
+
+    private final int maxOperations;
+    private final int parallelism;
+    private final WebGraphQlHandler webGraphQlHandler;
+    private final DgsDataLoaderProvider dataLoaderProvider;
+    private final ObjectMapper objectMapper;
+    private final DistributionSummary batchSizes;
+    private final ExecutorService workers =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("graphql-batch-", 0).factory());
+
+    public BatchRequestFilter(BatchingProperties properties, WebGraphQlHandler webGraphQlHandler,
+                              DgsDataLoaderProvider dataLoaderProvider, ObjectMapper objectMapper,
+                              MeterRegistry meterRegistry) {
+        this.maxOperations = properties.getMaxOperations();
+        this.parallelism = Math.max(1, properties.getParallelism());
+        this.webGraphQlHandler = webGraphQlHandler;
+        this.dataLoaderProvider = dataLoaderProvider;
+        this.objectMapper = objectMapper;
+        this.batchSizes = DistributionSummary.builder("graphql.batch.operations")
+                .description("Operations per batched request")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!HttpMethod.POST.matches(request.getMethod())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        byte[] body = request.getInputStream().readAllBytes();
+        if (!isArray(body)) {
+            chain.doFilter(new CachedBodyRequest(request, body), response);
+            return;
+        }
+
+        List<Object> operations;
+        try {
+            operations = objectMapper.readValue(body, OPERATIONS);
+        } catch (IOException e) {
+            reject(response, "The batch is not a valid JSON array");
+            return;
+        }
+        if (operations.isEmpty() || operations.size() > maxOperations) {
+            reject(response, "A batch holds 1 to " + maxOperations + " operations");
+            return;
+        }
+        batchSizes.record(operations.size());
+
+        List<Map<String, Object>> results = execute(request, response, operations);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), results);
+    }
+
+    @Override
+    public void destroy() {
+        workers.shutdownNow();
+    }
+
+    private List<Map<String, Object>> execute(HttpServletRequest request, HttpServletResponse response,
+                                              List<Object> operations) throws ServletException {
+        Batch batch = new Batch(request, response, dataLoaderProvider.buildRegistry());
+        Semaphore permits = new Semaphore(parallelism);
+        List<Future<Map<String, Object>>> pending = new ArrayList<>(operations.size());
+        try {
+            for (int i = 0; i < operations.size(); i++) {
+                Object operation = operations.get(i);
+                String id = request.getRequestId() + "-" + i;
+                permits.acquire();
+                pending.add(workers.submit(() -> {
+                    try {
+                        return execute(batch, operation, id);
+                    } finally {
+                        permits.release();
+                    }
+                }));
+            }
+            List<Map<String, Object>> results = new ArrayList<>(operations.size());
+            for (Future<Map<String, Object>> result : pending) {
+                results.add(result.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pending.forEach(result -> result.cancel(true));
+            throw new ServletException("Interrupted while executing a batch", e);
+        } catch (ExecutionException e) {
+            throw new ServletException("Could not execute a batched operation", e.getCause());
+        } finally {
+            if (batch.dataLoaders instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.debug("Could not close the data loaders of a batch", e);
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> execute(Batch batch, Object operation, String id) {
+        if (!(operation instanceof Map<?, ?> body)) {
+            return error("A batched operation must be a JSON object");
+        }
+        // DGS builds the context of each operation from the servlet request of the current thread
+        RequestContextHolder.setRequestAttributes(batch.attributes);
+        try {
+            WebGraphQlRequest request = new WebGraphQlRequest(batch.uri, batch.headers, batch.cookies,
+                    batch.remoteAddress, Map.of(), (Map<String, Object>) body, id, batch.locale);
+            request.configureExecutionInput((input, builder) -> builder
+                    .graphQLContext(context -> context.put(SharedDataLoadersInstrumentation.REGISTRY_KEY,
+                            batch.sharedLoaders))
+                    .build());
+            WebGraphQlResponse response = webGraphQlHandler.handleRequest(request).block();
+            return response.toMap();
+        } catch (RuntimeException e) {
+            return error(e.getMessage() != null ? e.getMessage() : "The operation could not be executed");
+        } finally {
+            RequestContextHolder.resetRequestAttributes();
+        }
+    }
+
+    private void reject(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        objectMapper.writeValue(response.getOutputStream(), error(message));
+    }
+
+    private static Map<String, Object> error(String message) {
+        return Map.of("errors", List.of(Map.of("message", message)));
+    }
+
+    private static boolean isArray(byte[] body) {
+        for (byte b : body) {
+            if (!Character.isWhitespace(b)) {
+                return b == '[';
+            }
+        }
+        return false;
+    }
+
+    /**
+     * What the operations of a batch take from the servlet request, read once on the request thread.
+     */
+    private static final class Batch {
+        private final RequestAttributes attributes;
+        private final URI uri;
+        private final HttpHeaders headers;
+        private final MultiValueMap<String, HttpCookie> cookies = new LinkedMultiValueMap<>();
+        private final InetSocketAddress remoteAddress;
+        private final Locale locale;
+        private final DataLoaderRegistry dataLoaders;
+        private final DataLoaderRegistry sharedLoaders;
+
+        private Batch(HttpServletRequest request, HttpServletResponse response, DataLoaderRegistry dataLoaders) {
+            ServletServerHttpRequest httpRequest = new ServletServerHttpRequest(request);
+            this.attributes = new ServletRequestAttributes(request, response);
+            this.uri = httpRequest.getURI();
+            this.headers = httpRequest.getHeaders();
+            this.remoteAddress = httpRequest.getRemoteAddress();
+            this.locale = request.getLocale();
+            this.dataLoaders = dataLoaders;
+            this.sharedLoaders = SharedDataLoadersInstrumentation.sharedLoaders(dataLoaders);
+            if (request.getCookies() != null) {
+                for (Cookie cookie : request.getCookies()) {
+                    cookies.add(cookie.getName(), new HttpCookie(cookie.getName(), cookie.getValue()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.henan.graphqlserver.batching;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.netflix.graphql.dgs.internal.DgsDataLoaderProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.graphql.server.WebGraphQlHandler;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.batching", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(BatchingProperties.class)
+public class BatchingConfiguration {
+
+    @Bean
+    public SharedDataLoadersInstrumentation sharedDataLoadersInstrumentation() {
+        return new SharedDataLoadersInstrumentation();
+    }
+
+    @Bean
+    public FilterRegistrationBean<BatchRequestFilter> batchRequestFilter(
+            BatchingProperties properties, WebGraphQlHandler webGraphQlHandler,
+            DgsDataLoaderProvider dataLoaderProvider, ObjectMapper objectMapper, MeterRegistry meterRegistry,
+            @Value("${spring.graphql.path:/graphql}") String graphQlPath) {
+        FilterRegistrationBean<BatchRequestFilter> registration = new FilterRegistrationBean<>(
+                new BatchRequestFilter(properties, webGraphQlHandler, dataLoaderProvider, objectMapper,
+                        meterRegistry));
+        registration.addUrlPatterns(graphQlPath);
+        return registration;
+    }
+}
@@ -0,0 +1,14 @@
+package com.henan.graphqlserver.batching;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.batching")
+public class BatchingProperties {
+    private boolean enabled = true;
+    // Operations accepted in one request, larger batches are rejected
+    private int maxOperations = 20;
+    // Operations of one batch executed at the same time
+    private int parallelism = 4;
+}
@@ -0,0 +1,59 @@
+package com.henan.graphqlserver.batching;
+
+import com.henan.graphqlserver.dataloaders.ActorDataLoader;
+import com.henan.graphqlserver.dataloaders.MoviesByActorDataLoader;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.DgsDataLoader;
+import graphql.ExecutionInput;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import org.dataloader.DataLoaderRegistry;
+
+import java.util.List;
+
+/**
+ * Makes the operations of one batch share the data loaders that return the same results to all of them, so
+ * an actor loaded by one operation is not loaded again by the others.
+ *
+ * Loaders that read movies, such as {@link MoviesByActorDataLoader}, stay with their operation. Every
+ * operation reads its own {@link MovieRepository.Snapshot}, and a loader shared by the batch would load and
+ * cache the movies of whichever snapshot asked first. Actors are not versioned, so {@link ActorDataLoader}
+ * is shared.
+ *
+ * DGS sets a new registry on every operation while Spring GraphQL builds its execution input, which would
+ * drop the loaders set by {@link BatchRequestFilter}. The filter therefore puts the shared loaders in the
+ * {@link graphql.GraphQLContext}, and they replace the loaders of the same name in the operation's own
+ * registry once the input is complete.
+ */
+public class SharedDataLoadersInstrumentation extends SimplePerformantInstrumentation {
+    static final Object REGISTRY_KEY = SharedDataLoadersInstrumentation.class;
+
+    // Loaders whose results do not depend on the snapshot of the operation
+    private static final List<Class<?>> SHARED_LOADERS = List.of(ActorDataLoader.class);
+
+    /**
+     * @return a registry with the loaders of {@code registry} that the operations of a batch can share
+     */
+    static DataLoaderRegistry sharedLoaders(DataLoaderRegistry registry) {
+        DataLoaderRegistry shared = new DataLoaderRegistry();
+        for (Class<?> loader : SHARED_LOADERS) {
+            String name = loader.getAnnotation(DgsDataLoader.class).name();
+            shared.register(name, registry.getDataLoader(name));
+        }
+        return shared;
+    }
+
+    @Override
+    public ExecutionInput instrumentExecutionInput(ExecutionInput executionInput,
+                                                   InstrumentationExecutionParameters parameters,
+                                                   InstrumentationState state) {
+        DataLoaderRegistry shared = executionInput.getGraphQLContext().get(REGISTRY_KEY);
+        if (shared == null) {
+            return executionInput;
+        }
+        DataLoaderRegistry own = executionInput.getDataLoaderRegistry();
+        shared.getDataLoadersMap().forEach(own::register);
+        return executionInput;
+    }
+}
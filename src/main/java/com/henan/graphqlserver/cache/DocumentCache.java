@@ -0,0 +1,66 @@
+package com.henan.graphqlserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.netflix.graphql.types.errors.TypedGraphQLError;
+import graphql.ExecutionInput;
+import graphql.GraphQLError;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.PreparsedDocumentProvider;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * Parsed and validated documents, keyed by the exact query text. Clients send the same few operations
+ * over and over, so most requests skip parsing and validation against the schema entirely.
+ *
+ * In allow-list mode, a query that is not in the {@link PersistedQueryManifest} is rejected before it is
+ * parsed. Documents with errors are never cached, so the cache only ever holds operations that ran.
+ */
+public class DocumentCache implements PreparsedDocumentProvider {
+    private final Cache<String, PreparsedDocumentEntry> cache;
+    private final PersistedQueryManifest manifest;
+    private final boolean allowListOnly;
+
+    public DocumentCache(DocumentCacheProperties properties, PersistedQueryManifest manifest,
+                         boolean allowListOnly, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .recordStats()
+                .build();
+        this.manifest = manifest;
+        this.allowListOnly = allowListOnly;
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "graphql.documents");
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getDocumentAsync(
+            ExecutionInput executionInput, Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate) {
+        String query = executionInput.getQuery();
+        PreparsedDocumentEntry entry = cache.getIfPresent(query);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry);
+        }
+        if (allowListOnly && !manifest.contains(query)) {
+            return CompletableFuture.completedFuture(new PreparsedDocumentEntry(notAllowed()));
+        }
+        entry = parseAndValidate.apply(executionInput);
+        if (!entry.hasErrors()) {
+            cache.put(query, entry);
+        }
+        return CompletableFuture.completedFuture(entry);
+    }
+
+    public com.github.benmanes.caffeine.cache.stats.CacheStats stats() {
+        return cache.stats();
+    }
+
+    static GraphQLError notAllowed() {
+        return TypedGraphQLError.newPermissionDeniedBuilder()
+                .message("Operation is not in the persisted query allow-list")
+                .build();
+    }
+}
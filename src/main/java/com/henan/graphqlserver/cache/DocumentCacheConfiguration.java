@@ -0,0 +1,42 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ResourceLoader;
+
+import java.io.IOException;
+
+/**
+ * DGS applies the {@link DocumentCache} to every request. With {@code dgs.graphql.apq.enabled}, it wraps it
+ * in its Automatic Persisted Queries support, which looks hashes up in the {@link PersistedDocumentCache}.
+ */
+@Configuration
+@EnableConfigurationProperties({DocumentCacheProperties.class, PersistedQueryProperties.class})
+public class DocumentCacheConfiguration {
+
+    @Bean
+    public PersistedQueryManifest persistedQueryManifest(PersistedQueryProperties properties,
+                                                         ResourceLoader resourceLoader,
+                                                         ObjectMapper objectMapper) throws IOException {
+        return PersistedQueryManifest.load(resourceLoader.getResource(properties.getManifest()), objectMapper);
+    }
+
+    @Bean
+    public DocumentCache documentCache(DocumentCacheProperties properties,
+                                       PersistedQueryProperties persistedQueryProperties,
+                                       PersistedQueryManifest manifest, MeterRegistry meterRegistry) {
+        return new DocumentCache(properties, manifest, persistedQueryProperties.isAllowListOnly(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "dgs.graphql.apq", name = "enabled", havingValue = "true")
+    public PersistedDocumentCache persistedDocumentCache(PersistedQueryProperties properties,
+                                                         PersistedQueryManifest manifest,
+                                                         MeterRegistry meterRegistry) {
+        return new PersistedDocumentCache(properties, manifest, meterRegistry);
+    }
+}
@@ -0,0 +1,11 @@
+package com.henan.graphqlserver.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.document-cache")
+public class DocumentCacheProperties {
+    // Parsed and validated documents kept, 0 parses every request
+    private long maximumSize = 1000;
+}
@@ -0,0 +1,81 @@
+package com.henan.graphqlserver.cache;
+
+/**
+ * Identifies a GraphQL read by its normalized document, variables and operation name, at one catalog
+ * version. Requests that differ only in whitespace or comments map to the same key.
+ */
+public record GraphQlRequestKey(String document, String variables, String operationName, long version) {
+
+    /**
+     * Rough heap footprint in bytes, used to weigh cache entries against a memory budget.
+     */
+    int weight() {
+        int chars = document.length() + variables.length() + (operationName != null ? operationName.length() : 0);
+        return 64 + 2 * chars;
+    }
+
+    /**
+     * Drops comments and collapses whitespace and commas, which are insignificant in GraphQL, outside of
+     * string literals.
+     */
+    public static String normalize(String document) {
+        StringBuilder normalized = new StringBuilder(document.length());
+        boolean pendingSpace = false;
+        int i = 0;
+        while (i < document.length()) {
+            char c = document.charAt(i);
+            if (c == '"') {
+                int end = endOfString(document, i);
+                pendingSpace = false;
+                normalized.append(document, i, end);
+                i = end;
+                continue;
+            }
+            if (c == '#') {
+                while (i < document.length() && document.charAt(i) != '\n' && document.charAt(i) != '\r') {
+                    i++;
+                }
+                pendingSpace = true;
+                continue;
+            }
+            if (Character.isWhitespace(c) || c == ',' || c == '\uFEFF') {
+                pendingSpace = true;
+                i++;
+                continue;
+            }
+            // A separator is only significant between two names or numbers
+            if (pendingSpace && !normalized.isEmpty() && isNameChar(c)
+                    && isNameChar(normalized.charAt(normalized.length() - 1))) {
+                normalized.append(' ');
+            }
+            pendingSpace = false;
+            normalized.append(c);
+            i++;
+        }
+        return normalized.toString();
+    }
+
+    private static int endOfString(String document, int start) {
+        boolean block = document.startsWith("\"\"\"", start);
+        int i = start + (block ? 3 : 1);
+        while (i < document.length()) {
+            if (block && document.startsWith("\"\"\"", i)) {
+                return i + 3;
+            }
+            char c = document.charAt(i);
+            if (!block && c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (!block && c == '"') {
+                return i + 1;
+            }
+            i++;
+        }
+        return document.length();
+    }
+
+    private static boolean isNameChar(char c) {
+        return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+    }
+}
@@ -0,0 +1,110 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.henan.graphqlserver.repository.CatalogVersion;
+import graphql.language.Document;
+import graphql.language.OperationDefinition;
+import graphql.parser.InvalidSyntaxException;
+import graphql.parser.Parser;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Reads the {@link GraphQlRequestKey} of GraphQL requests posted as JSON, for the filters that answer
+ * equal reads with one response.
+ *
+ * Automatic Persisted Queries that only carry a hash are keyed by that hash, and are only recognized as
+ * queries once the {@link PersistedDocumentCache} knows their document.
+ */
+final class GraphQlRequestKeys {
+    private final CatalogVersion catalogVersion;
+    private final ObjectMapper objectMapper;
+    private final PersistedDocumentCache persistedDocuments;
+
+    /**
+     * @param persistedDocuments documents of persisted queries, or null if they are not supported
+     */
+    GraphQlRequestKeys(CatalogVersion catalogVersion, ObjectMapper objectMapper,
+                       PersistedDocumentCache persistedDocuments) {
+        this.catalogVersion = catalogVersion;
+        this.persistedDocuments = persistedDocuments;
+        // Sorted keys make equal variables serialize identically
+        this.objectMapper = objectMapper.copy().enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+    }
+
+    /**
+     * @return the JSON object in the body, or null if it is not one
+     */
+    JsonNode readTree(byte[] body) {
+        try {
+            JsonNode node = objectMapper.readTree(body);
+            return node != null && node.isObject() ? node : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return the key of the request, or null if it is not a GraphQL request with a query document
+     */
+    GraphQlRequestKey keyOf(JsonNode request) throws IOException {
+        // Read the version first, so a write that lands while this request runs changes the key
+        long version = catalogVersion.current();
+        String document;
+        if (request.path("query").isTextual()) {
+            document = GraphQlRequestKey.normalize(request.path("query").asText());
+        } else if (persistedDocuments != null && persistedQueryIdOf(request) != null) {
+            // Normalized documents never start with a comment, so this cannot collide with one
+            document = "#" + persistedQueryIdOf(request);
+        } else {
+            return null;
+        }
+        JsonNode variables = request.path("variables");
+        return new GraphQlRequestKey(
+                document,
+                variables.isObject() ? canonicalJson(variables) : "",
+                operationNameOf(request),
+                version);
+    }
+
+    /**
+     * @return whether the operation the request selects is a query, false if its document is unknown or
+     *         not valid
+     */
+    boolean isQuery(JsonNode request) {
+        try {
+            Document document = request.path("query").isTextual()
+                    ? Parser.parse(request.path("query").asText())
+                    : persistedDocuments.find(persistedQueryIdOf(request));
+            if (document == null) {
+                return false;
+            }
+            String operationName = operationNameOf(request);
+            List<OperationDefinition> operations = document.getDefinitionsOfType(OperationDefinition.class);
+            return operations.stream()
+                    .filter(operation -> operationName == null
+                            ? operations.size() == 1
+                            : operationName.equals(operation.getName()))
+                    .anyMatch(operation -> operation.getOperation() == OperationDefinition.Operation.QUERY);
+        } catch (InvalidSyntaxException e) {
+            return false;
+        }
+    }
+
+    private String canonicalJson(JsonNode node) throws IOException {
+        return objectMapper.writeValueAsString(objectMapper.treeToValue(node, Object.class));
+    }
+
+    private static String operationNameOf(JsonNode request) {
+        JsonNode operationName = request.path("operationName");
+        return operationName.isTextual() ? operationName.asText() : null;
+    }
+
+    private static String persistedQueryIdOf(JsonNode request) {
+        JsonNode hash = request.path("extensions").path("persistedQuery").path("sha256Hash");
+        return hash.isTextual() ? hash.asText() : null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.henan.graphqlserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.execution.preparsed.persisted.PersistedQueryCache;
+import graphql.execution.preparsed.persisted.PersistedQueryCacheMiss;
+import graphql.execution.preparsed.persisted.PersistedQueryNotFound;
+import graphql.execution.preparsed.persisted.PersistedQuerySupport;
+import graphql.language.Document;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Documents of the Automatic Persisted Queries protocol, keyed by the SHA-256 hash of their text.
+ *
+ * On a miss the operation is taken from the {@link PersistedQueryManifest}, or registered from the query
+ * text the client sent along with the hash. If there is no text, the client is answered with
+ * {@code PersistedQueryNotFound}, which tells it to retry with the text. In allow-list mode, only
+ * operations from the manifest are accepted and nothing is registered.
+ */
+public class PersistedDocumentCache implements PersistedQueryCache {
+    private final Cache<String, PreparsedDocumentEntry> cache;
+    private final PersistedQueryManifest manifest;
+    private final boolean allowListOnly;
+
+    public PersistedDocumentCache(PersistedQueryProperties properties, PersistedQueryManifest manifest,
+                                  MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .recordStats()
+                .build();
+        this.manifest = manifest;
+        this.allowListOnly = properties.isAllowListOnly();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "graphql.persisted-queries");
+    }
+
+    @Override
+    public CompletableFuture<PreparsedDocumentEntry> getPersistedQueryDocumentAsync(
+            Object persistedQueryId, ExecutionInput executionInput, PersistedQueryCacheMiss onCacheMiss) {
+        String id = persistedQueryId.toString();
+        PreparsedDocumentEntry entry = cache.getIfPresent(id);
+        if (entry != null) {
+            return CompletableFuture.completedFuture(entry);
+        }
+        String query = manifest.find(id);
+        if (query == null) {
+            if (allowListOnly) {
+                return CompletableFuture.completedFuture(new PreparsedDocumentEntry(DocumentCache.notAllowed()));
+            }
+            query = executionInput.getQuery();
+            if (query == null || query.isBlank() || query.equals(PersistedQuerySupport.PERSISTED_QUERY_MARKER)) {
+                throw new PersistedQueryNotFound(persistedQueryId);
+            }
+        }
+        // Checks that the text matches the hash before parsing and validating it
+        entry = onCacheMiss.apply(query);
+        if (!entry.hasErrors()) {
+            cache.put(id, entry);
+        }
+        return CompletableFuture.completedFuture(entry);
+    }
+
+    /**
+     * @return the parsed document of a persisted query, or null if it is not cached
+     */
+    public Document find(String id) {
+        PreparsedDocumentEntry entry = cache.getIfPresent(id);
+        return entry != null ? entry.getDocument() : null;
+    }
+
+    public com.github.benmanes.caffeine.cache.stats.CacheStats stats() {
+        return cache.stats();
+    }
+}
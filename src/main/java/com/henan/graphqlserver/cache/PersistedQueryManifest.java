@@ -0,0 +1,74 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Operations registered ahead of time, read from a JSON object that maps the SHA-256 hash of each
+ * operation to its text. The hashes are the ids clients send in the Automatic Persisted Queries protocol.
+ */
+public class PersistedQueryManifest {
+    private final Map<String, String> queriesById;
+    private final Set<String> queries;
+
+    public PersistedQueryManifest(Map<String, String> queriesById) {
+        queriesById.forEach((id, query) -> {
+            if (!sha256(query).equalsIgnoreCase(id)) {
+                throw new IllegalArgumentException(
+                        "Persisted query " + id + " does not match the SHA-256 hash of its text");
+            }
+        });
+        this.queriesById = Map.copyOf(queriesById);
+        this.queries = Set.copyOf(queriesById.values());
+    }
+
+    /**
+     * @return the manifest stored in the resource, or an empty manifest if the resource does not exist
+     */
+    public static PersistedQueryManifest load(Resource resource, ObjectMapper objectMapper) throws IOException {
+        if (!resource.exists()) {
+            return new PersistedQueryManifest(Map.of());
+        }
+        try (InputStream input = resource.getInputStream()) {
+            return new PersistedQueryManifest(objectMapper.readValue(input, new TypeReference<Map<String, String>>() {
+            }));
+        }
+    }
+
+    /**
+     * @return the text of the registered operation, or null if the id is unknown
+     */
+    public String find(String id) {
+        return queriesById.get(id);
+    }
+
+    /**
+     * @return whether the exact query text is registered
+     */
+    public boolean contains(String query) {
+        return queries.contains(query);
+    }
+
+    public int size() {
+        return queriesById.size();
+    }
+
+    static String sha256(String query) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
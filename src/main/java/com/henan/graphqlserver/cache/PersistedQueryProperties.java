@@ -0,0 +1,14 @@
+package com.henan.graphqlserver.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.persisted-queries")
+public class PersistedQueryProperties {
+    // JSON object mapping SHA-256 hashes to operations, optional
+    private String manifest = "classpath:persisted-queries.json";
+    // Reject every operation that is not in the manifest
+    private boolean allowListOnly = false;
+    private long maximumSize = 10_000;
+}
@@ -0,0 +1,39 @@
+package com.henan.graphqlserver.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+
+/**
+ * Serialized GraphQL responses, bounded by a memory budget. Caffeine evicts with W-TinyLFU, which keeps
+ * frequently repeated reads cached even when a burst of one-off queries passes through.
+ */
+public class ResponseCache {
+    private final Cache<GraphQlRequestKey, CachedResponse> cache;
+
+    public ResponseCache(ResponseCacheProperties properties, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(properties.getMaximumWeightBytes())
+                .weigher((GraphQlRequestKey key, CachedResponse response) -> key.weight() + response.body().length)
+                .recordStats()
+                .build();
+        // Exposes hit, miss and eviction counters as cache.gets and cache.evictions
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "graphql.response");
+    }
+
+    public CachedResponse get(GraphQlRequestKey key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(GraphQlRequestKey key, CachedResponse response) {
+        cache.put(key, response);
+    }
+
+    public com.github.benmanes.caffeine.cache.stats.CacheStats stats() {
+        return cache.stats();
+    }
+
+    public record CachedResponse(byte[] body, String contentType) {
+    }
+}
@@ -0,0 +1,38 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.repository.CatalogVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.response-cache", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ResponseCacheProperties.class)
+public class ResponseCacheConfiguration {
+
+    @Bean
+    public ResponseCache responseCache(ResponseCacheProperties properties, MeterRegistry meterRegistry) {
+        return new ResponseCache(properties, meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ResponseCacheFilter> responseCacheFilter(
+            ResponseCache responseCache, CatalogVersion catalogVersion, ObjectMapper objectMapper,
+            ObjectProvider<PersistedDocumentCache> persistedDocuments,
+            @Value("${spring.graphql.path:/graphql}") String graphQlPath) {
+        FilterRegistrationBean<ResponseCacheFilter> registration =
+                new FilterRegistrationBean<>(new ResponseCacheFilter(responseCache, catalogVersion, objectMapper,
+                        persistedDocuments.getIfAvailable()));
+        registration.addUrlPatterns(graphQlPath);
+        // Ahead of the single-flight filter, so cached responses are served without waiting for an execution
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 3);
+        return registration;
+    }
+}
@@ -0,0 +1,114 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.repository.CatalogVersion;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+
+/**
+ * Serves repeated GraphQL reads from {@link ResponseCache} without executing or serializing them.
+ *
+ * The cache key includes the {@link CatalogVersion}, which every mutation bumps, so an entry is never
+ * served once the data it was built from has changed. A response is only stored if the version did not
+ * move while it was produced, it has no errors, and the selected operation is a query.
+ *
+ * Automatic Persisted Queries that only carry a hash are keyed by that hash, and are only stored once the
+ * {@link PersistedDocumentCache} knows their document.
+ *
+ * Spring GraphQL completes requests through an async dispatch, so, as in
+ * {@link org.springframework.web.filter.ShallowEtagHeaderFilter}, the captured body is stored when the
+ * last dispatch finishes. The wrapper that captures it is kept in a request attribute rather than looked
+ * up in the dispatched response, which may be wrapped by other filters as well.
+ */
+public class ResponseCacheFilter extends OncePerRequestFilter {
+    private static final String PENDING_ATTRIBUTE = ResponseCacheFilter.class.getName() + ".PENDING";
+
+    private final ResponseCache responseCache;
+    private final CatalogVersion catalogVersion;
+    private final GraphQlRequestKeys requestKeys;
+
+    /**
+     * @param persistedDocuments documents of persisted queries, or null if they are not supported
+     */
+    public ResponseCacheFilter(ResponseCache responseCache, CatalogVersion catalogVersion,
+                               ObjectMapper objectMapper, PersistedDocumentCache persistedDocuments) {
+        this.responseCache = responseCache;
+        this.catalogVersion = catalogVersion;
+        this.requestKeys = new GraphQlRequestKeys(catalogVersion, objectMapper, persistedDocuments);
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!isAsyncDispatch(request)) {
+            if (!HttpMethod.POST.matches(request.getMethod())) {
+                chain.doFilter(request, response);
+                return;
+            }
+            byte[] body = request.getInputStream().readAllBytes();
+            request = new CachedBodyRequest(request, body);
+            JsonNode graphQlRequest = requestKeys.readTree(body);
+            GraphQlRequestKey key = graphQlRequest != null ? requestKeys.keyOf(graphQlRequest) : null;
+            if (key != null) {
+                ResponseCache.CachedResponse cached = responseCache.get(key);
+                if (cached != null) {
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    response.setContentType(cached.contentType());
+                    response.setContentLength(cached.body().length);
+                    response.getOutputStream().write(cached.body());
+                    return;
+                }
+                if (requestKeys.isQuery(graphQlRequest)) {
+                    ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+                    request.setAttribute(PENDING_ATTRIBUTE, new Pending(key, wrapper));
+                    response = wrapper;
+                }
+            }
+        }
+
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (!isAsyncStarted(request)) {
+                complete(request);
+            }
+        }
+    }
+
+    private void complete(HttpServletRequest request) throws IOException {
+        Pending pending = (Pending) request.getAttribute(PENDING_ATTRIBUTE);
+        if (pending == null) {
+            return;
+        }
+        request.removeAttribute(PENDING_ATTRIBUTE);
+        GraphQlRequestKey key = pending.key();
+        ContentCachingResponseWrapper wrapper = pending.wrapper();
+        byte[] body = wrapper.getContentAsByteArray();
+        if (wrapper.getStatus() == HttpServletResponse.SC_OK
+                && key.version() == catalogVersion.current() && !hasErrors(body)) {
+            responseCache.put(key, new ResponseCache.CachedResponse(body, wrapper.getContentType()));
+        }
+        wrapper.copyBodyToResponse();
+    }
+
+    private boolean hasErrors(byte[] body) {
+        JsonNode response = requestKeys.readTree(body);
+        return response == null || response.has("errors");
+    }
+
+    private record Pending(GraphQlRequestKey key, ContentCachingResponseWrapper wrapper) {
+    }
+}
@@ -0,0 +1,12 @@
+package com.henan.graphqlserver.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.response-cache")
+public class ResponseCacheProperties {
+    private boolean enabled = false;
+    // Memory budget for cached responses, keys included
+    private long maximumWeightBytes = 64L * 1024 * 1024;
+}
@@ -0,0 +1,33 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.repository.CatalogVersion;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.single-flight", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SingleFlightProperties.class)
+public class SingleFlightConfiguration {
+
+    @Bean
+    public FilterRegistrationBean<SingleFlightFilter> singleFlightFilter(
+            CatalogVersion catalogVersion, ObjectMapper objectMapper,
+            ObjectProvider<PersistedDocumentCache> persistedDocuments, MeterRegistry meterRegistry,
+            @Value("${spring.graphql.path:/graphql}") String graphQlPath) {
+        FilterRegistrationBean<SingleFlightFilter> registration =
+                new FilterRegistrationBean<>(new SingleFlightFilter(catalogVersion, objectMapper,
+                        persistedDocuments.getIfAvailable(), meterRegistry));
+        registration.addUrlPatterns(graphQlPath);
+        // Ahead of admission control, so requests that wait for another execution do not take a slot
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 2);
+        return registration;
+    }
+}
@@ -0,0 +1,198 @@
+package com.henan.graphqlserver.cache;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.repository.CatalogVersion;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.ServletResponseWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Executes concurrent identical GraphQL reads once, and sends the serialized response of that execution to
+ * every request that asked for it while it ran.
+ *
+ * Requests are identical if they have the same {@link GraphQlRequestKey}: the same normalized document,
+ * variables and operation name, at the same {@link CatalogVersion}. The first one executes, and the ones
+ * that arrive before it completes wait for its response without holding a thread. Nothing is kept once
+ * the execution completes, so unlike {@link ResponseCacheFilter} this never serves a response that was
+ * produced before the request arrived.
+ *
+ * Only queries are shared. The response is shared whatever its status and errors, since an identical
+ * request at the same version would have produced the same one.
+ */
+public class SingleFlightFilter extends OncePerRequestFilter {
+    private static final String FLIGHT_ATTRIBUTE = SingleFlightFilter.class.getName() + ".FLIGHT";
+    private static final SharedResponse FAILED = new SharedResponse(HttpServletResponse.SC_INTERNAL_SERVER_ERROR,
+            MediaType.APPLICATION_JSON_VALUE,
+            "{\"errors\":[{\"message\":\"The shared execution of this query failed\"}]}"
+                    .getBytes(StandardCharsets.UTF_8));
+
+    private final GraphQlRequestKeys requestKeys;
+    private final ConcurrentHashMap<GraphQlRequestKey, Flight> flights = new ConcurrentHashMap<>();
+    private final Counter executed;
+    private final Counter coalesced;
+
+    /**
+     * @param persistedDocuments documents of persisted queries, or null if they are not supported
+     */
+    public SingleFlightFilter(CatalogVersion catalogVersion, ObjectMapper objectMapper,
+                              PersistedDocumentCache persistedDocuments, MeterRegistry meterRegistry) {
+        this.requestKeys = new GraphQlRequestKeys(catalogVersion, objectMapper, persistedDocuments);
+        meterRegistry.gaugeMapSize("graphql.single-flight.in-flight", Tags.empty(), flights);
+        this.executed = meterRegistry.counter("graphql.single-flight.requests", "outcome", "executed");
+        this.coalesced = meterRegistry.counter("graphql.single-flight.requests", "outcome", "coalesced");
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!isAsyncDispatch(request)) {
+            if (!HttpMethod.POST.matches(request.getMethod())) {
+                chain.doFilter(request, response);
+                return;
+            }
+            byte[] body = request.getInputStream().readAllBytes();
+            request = new CachedBodyRequest(request, body);
+            JsonNode graphQlRequest = requestKeys.readTree(body);
+            GraphQlRequestKey key = graphQlRequest != null ? requestKeys.keyOf(graphQlRequest) : null;
+            if (key != null && requestKeys.isQuery(graphQlRequest)) {
+                ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+                Flight flight = new Flight(key, wrapper);
+                Flight leader = flights.putIfAbsent(key, flight);
+                if (leader != null) {
+                    coalesced.increment();
+                    await(request, response, leader);
+                    return;
+                }
+                executed.increment();
+                request.setAttribute(FLIGHT_ATTRIBUTE, flight);
+                response = wrapper;
+            }
+        }
+
+        Flight flight = (Flight) request.getAttribute(FLIGHT_ATTRIBUTE);
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | IOException | RuntimeException e) {
+            if (flight != null) {
+                land(flight, FAILED);
+            }
+            throw e;
+        }
+        if (flight == null) {
+            return;
+        }
+        if (isAsyncStarted(request)) {
+            // Releases the waiting requests should the request end without an async dispatch through here
+            request.getAsyncContext().addListener(new AbortListener(flight));
+        } else {
+            request.removeAttribute(FLIGHT_ATTRIBUTE);
+            ContentCachingResponseWrapper wrapper = flight.wrapper;
+            land(flight, new SharedResponse(wrapper.getStatus(), wrapper.getContentType(),
+                    wrapper.getContentAsByteArray()));
+            wrapper.copyBodyToResponse();
+        }
+    }
+
+    private void land(Flight flight, SharedResponse response) {
+        flights.remove(flight.key, flight);
+        flight.response.complete(response);
+    }
+
+    private static void await(HttpServletRequest request, HttpServletResponse response, Flight leader) {
+        AsyncContext async = request.startAsync(request, unwrap(response));
+        // Whatever the container's default, the wait ends when the leader's request does
+        async.setTimeout(0);
+        leader.response.thenAccept(shared -> async.start(() -> {
+            try {
+                HttpServletResponse waiting = (HttpServletResponse) async.getResponse();
+                waiting.setStatus(shared.status());
+                if (shared.contentType() != null) {
+                    waiting.setContentType(shared.contentType());
+                }
+                waiting.setContentLength(shared.body().length);
+                waiting.getOutputStream().write(shared.body());
+            } catch (IOException e) {
+                // The client went away, there is nobody left to tell
+            } finally {
+                async.complete();
+            }
+        }));
+    }
+
+    /**
+     * A waiting request completes without a dispatch back through the filters, so a wrapper that buffers the
+     * response until then, such as the one {@link ResponseCacheFilter} puts around a miss, would never send it.
+     */
+    private static HttpServletResponse unwrap(HttpServletResponse response) {
+        ServletResponse unwrapped = response;
+        while (unwrapped instanceof ServletResponseWrapper wrapper) {
+            unwrapped = wrapper.getResponse();
+        }
+        return (HttpServletResponse) unwrapped;
+    }
+
+    private record SharedResponse(int status, String contentType, byte[] body) {
+    }
+
+    private static final class Flight {
+        private final GraphQlRequestKey key;
+        private final ContentCachingResponseWrapper wrapper;
+        private final CompletableFuture<SharedResponse> response = new CompletableFuture<>();
+
+        private Flight(GraphQlRequestKey key, ContentCachingResponseWrapper wrapper) {
+            this.key = key;
+            this.wrapper = wrapper;
+        }
+    }
+
+    private final class AbortListener implements AsyncListener {
+        private final Flight flight;
+
+        private AbortListener(Flight flight) {
+            this.flight = flight;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            land(flight, FAILED);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            land(flight, FAILED);
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            land(flight, FAILED);
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.henan.graphqlserver.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.single-flight")
+public class SingleFlightProperties {
+    private boolean enabled = false;
+}
@@ -1,39 +1,57 @@
 package com.henan.graphqlserver.datafetchers;
 
+import com.henan.graphqlserver.dataloaders.MoviesByActorDataLoader;
+import com.henan.graphqlserver.instrumentation.SnapshotReadsInstrumentation;
 import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Connection;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.Page;
 import com.netflix.graphql.dgs.DgsComponent;
+import com.netflix.graphql.dgs.DgsData;
+import com.netflix.graphql.dgs.DgsDataFetchingEnvironment;
 import com.netflix.graphql.dgs.DgsQuery;
 import com.netflix.graphql.dgs.InputArgument;
+import org.dataloader.DataLoader;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
 
 @DgsComponent
 public class ActorDatafetcher {
-    private final List<Actor> actors = new ArrayList<>();
+    private final ActorRepository actorRepository;
 
-    public ActorDatafetcher() {
-        // Initialize with some sample data
-        Actor actor1 = new Actor("1", "Tim Robbins", 1958);
-        Actor actor2 = new Actor("2", "Morgan Freeman", 1937);
-        Actor actor3 = new Actor("3", "Marlon Brando", 1924);
+    public ActorDatafetcher(ActorRepository actorRepository) {
+        this.actorRepository = actorRepository;
 
-        actors.add(actor1);
-        actors.add(actor2);
-        actors.add(actor3);
+        // Initialize with some sample data
+        actorRepository.save(new Actor("1", "Tim Robbins", 1958));
+        actorRepository.save(new Actor("2", "Morgan Freeman", 1937));
+        actorRepository.save(new Actor("3", "Marlon Brando", 1924));
     }
 
     @DgsQuery
     public Actor actor(@InputArgument String id) {
-        return actors.stream()
-                .filter(actor -> actor.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+        return actorRepository.findById(id);
     }
 
     @DgsQuery
     public List<Actor> actors() {
-        return actors;
+        return actorRepository.findAll();
+    }
+
+    @DgsQuery
+    public Connection<Actor> actorsConnection(@InputArgument Integer first, @InputArgument String after) {
+        int pageSize = Connections.pageSize(first);
+        Page<Actor> page = Connections.read(() -> actorRepository.findPage(pageSize, after));
+        return Connections.toConnection(page, actorRepository::count);
+    }
+
+    @DgsData(parentType = "Actor", field = "movies")
+    public CompletableFuture<List<Movie>> movies(DgsDataFetchingEnvironment dfe) {
+        Actor actor = dfe.getSource();
+        DataLoader<String, List<Movie>> moviesLoader = dfe.getDataLoader(MoviesByActorDataLoader.class);
+        // The snapshot is the key context, so the batch reads the catalog the rest of the query sees
+        return moviesLoader.load(actor.getId(), SnapshotReadsInstrumentation.snapshotOf(dfe));
     }
-} 
\ No newline at end of file
+}
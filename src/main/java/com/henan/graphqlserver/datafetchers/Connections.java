@@ -0,0 +1,64 @@
+package com.henan.graphqlserver.datafetchers;
+
+import com.henan.graphqlserver.model.Connection;
+import com.henan.graphqlserver.model.Edge;
+import com.henan.graphqlserver.model.PageInfo;
+import com.henan.graphqlserver.repository.Page;
+import com.netflix.graphql.dgs.exceptions.DgsBadRequestException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Shared helpers for the Relay-style connection queries.
+ */
+public final class Connections {
+    public static final int DEFAULT_PAGE_SIZE = 20;
+    public static final int MAX_PAGE_SIZE = 100;
+
+    private Connections() {
+    }
+
+    static int pageSize(Integer first) {
+        if (first == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (first < 0 || first > MAX_PAGE_SIZE) {
+            throw new DgsBadRequestException("first must be between 0 and " + MAX_PAGE_SIZE);
+        }
+        return first;
+    }
+
+    /**
+     * Reads a page, reporting a malformed cursor as a bad request.
+     */
+    static <T> Page<T> read(Supplier<Page<T>> reader) {
+        try {
+            return reader.get();
+        } catch (IllegalArgumentException e) {
+            throw new DgsBadRequestException(e.getMessage());
+        }
+    }
+
+    static <T> Connection<T> toConnection(Page<T> page, Supplier<Integer> totalCount) {
+        List<Edge<T>> edges = new ArrayList<>(page.items().size());
+        for (int i = 0; i < page.items().size(); i++) {
+            edges.add(new Edge<>(page.items().get(i), page.cursors().get(i)));
+        }
+        List<String> cursors = page.cursors();
+        PageInfo pageInfo = new PageInfo(
+                page.hasNextPage(),
+                page.hasPreviousPage(),
+                cursors.isEmpty() ? null : cursors.get(0),
+                cursors.isEmpty() ? null : cursors.get(cursors.size() - 1));
+        return new Connection<>(edges, pageInfo, totalCount);
+    }
+
+    /**
+     * A connection for a query that only selects its total count, which is counted without reading a page.
+     */
+    static <T> Connection<T> countOnly(Supplier<Integer> totalCount) {
+        return new Connection<>(List.of(), new PageInfo(false, false, null, null), totalCount);
+    }
+}
@@ -1,62 +1,95 @@
 package com.henan.graphqlserver.datafetchers;
 
+import com.henan.graphqlserver.dataloaders.ActorDataLoader;
+import com.henan.graphqlserver.instrumentation.SnapshotReadsInstrumentation;
 import com.henan.graphqlserver.model.*;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieProjection;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.henan.graphqlserver.repository.Page;
 import com.netflix.graphql.dgs.DgsComponent;
+import com.netflix.graphql.dgs.DgsData;
+import com.netflix.graphql.dgs.DgsDataFetchingEnvironment;
 import com.netflix.graphql.dgs.DgsQuery;
 import com.netflix.graphql.dgs.DgsMutation;
 import com.netflix.graphql.dgs.InputArgument;
+import com.netflix.graphql.dgs.exceptions.DgsBadRequestException;
+import org.dataloader.DataLoader;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
 
 @DgsComponent
 public class MovieDatafetcher {
-    // Sample data for demonstration
-    private final List<Movie> movies = new ArrayList<>();
-    private final List<Actor> actors = new ArrayList<>();
+    static final int MAX_BATCH_SIZE = 1000;
 
-    public MovieDatafetcher() {
-        // Initialize sample actors
-        Actor actor1 = new Actor("1", "Tim Robbins", 1958);
-        Actor actor2 = new Actor("2", "Morgan Freeman", 1937);
-        Actor actor3 = new Actor("3", "Marlon Brando", 1924);
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
 
-        actors.add(actor1);
-        actors.add(actor2);
-        actors.add(actor3);
+    public MovieDatafetcher(MovieRepository movieRepository, ActorRepository actorRepository) {
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
 
         // Initialize sample movies with actors
-        Movie movie1 = new Movie("1", "The Shawshank Redemption", 1994, "Frank Darabont", "Drama", 9.3f, List.of(actor1, actor2));
-        Movie movie2 = new Movie("2", "The Godfather", 1972, "Francis Ford Coppola", "Crime", 9.2f, List.of(actor3));
+        Movie movie1 = new Movie("1", "The Shawshank Redemption", 1994, "Frank Darabont", "Drama", 9.3f, List.of("1", "2"));
+        Movie movie2 = new Movie("2", "The Godfather", 1972, "Francis Ford Coppola", "Crime", 9.2f, List.of("3"));
         Movie movie3 = new Movie("3", "The Dark Knight", 2008, "Christopher Nolan", "Action", 9.0f, new ArrayList<>());
 
-        // Add movies to the list
-        movies.add(movie1);
-        movies.add(movie2);
-        movies.add(movie3);
+        // Add movies to the repository
+        movieRepository.save(movie1);
+        movieRepository.save(movie2);
+        movieRepository.save(movie3);
     }
 
     // Query methods
     @DgsQuery
-    public Movie movie(@InputArgument String id) {
-        return movies.stream()
-                .filter(movie -> movie.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+    public Movie movie(@InputArgument String id, DgsDataFetchingEnvironment dfe) {
+        return movieRepository.findById(id, SnapshotReadsInstrumentation.snapshotOf(dfe));
     }
 
     @DgsQuery
-    public List<Movie> movies() {
-        return movies;
+    public List<Movie> movies(DgsDataFetchingEnvironment dfe) {
+        return movieRepository.findAll(SnapshotReadsInstrumentation.snapshotOf(dfe), Projections.movies(dfe));
     }
 
     @DgsQuery
-    public List<Movie> moviesByGenre(@InputArgument String genre) {
-        return movies.stream()
-                .filter(movie -> movie.getGenre().equalsIgnoreCase(genre))
-                .collect(Collectors.toList());
+    public Connection<Movie> moviesConnection(@InputArgument Integer first, @InputArgument String after,
+                                              DgsDataFetchingEnvironment dfe) {
+        int pageSize = Connections.pageSize(first);
+        MovieRepository.Snapshot snapshot = SnapshotReadsInstrumentation.snapshotOf(dfe);
+        if (!Projections.selectsPage(dfe)) {
+            return Connections.countOnly(() -> movieRepository.count(null, snapshot));
+        }
+        MovieProjection projection = Projections.connectionNodes(dfe);
+        Page<Movie> page = Connections.read(() -> movieRepository.findPage(pageSize, after, snapshot, projection));
+        return Connections.toConnection(page, () -> movieRepository.count(null, snapshot));
+    }
+
+    @DgsQuery
+    public List<Movie> moviesByGenre(@InputArgument String genre, DgsDataFetchingEnvironment dfe) {
+        return movieRepository.findByGenre(genre, SnapshotReadsInstrumentation.snapshotOf(dfe),
+                Projections.movies(dfe));
+    }
+
+    @DgsData(parentType = "Movie", field = "actors")
+    public CompletableFuture<List<Actor>> actors(DgsDataFetchingEnvironment dfe) {
+        Movie movie = dfe.getSource();
+        if (movie.getActorIds() == null || movie.getActorIds().isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+        DataLoader<String, Actor> actorLoader = dfe.getDataLoader(ActorDataLoader.class);
+        return actorLoader.loadMany(movie.getActorIds())
+                .thenApply(actors -> actors.stream().filter(Objects::nonNull).toList());
     }
 
     // Mutation methods
@@ -72,13 +105,10 @@ public class MovieDatafetcher {
             movie.setRating(input.getRating());
 
             if (input.getActorIds() != null) {
-                List<Actor> movieActors = actors.stream()
-                    .filter(actor -> input.getActorIds().contains(actor.getId()))
-                    .collect(Collectors.toList());
-                movie.setActors(movieActors);
+                movie.setActorIds(resolveActorIds(input.getActorIds(), actorRepository::existsById));
             }
 
-            movies.add(movie);
+            movieRepository.save(movie);
             return new MovieResponse(true, "Movie created successfully", movie);
         } catch (Exception e) {
             return new MovieResponse(false, "Failed to create movie: " + e.getMessage(), null);
@@ -88,38 +118,13 @@ public class MovieDatafetcher {
     @DgsMutation
     public MovieResponse updateMovie(@InputArgument String id, @InputArgument MovieInput input) {
         try {
-            Movie movie = movies.stream()
-                .filter(m -> m.getId().equals(id))
-                .findFirst()
-                .orElse(null);
+            Movie movie = movieRepository.update(id,
+                    m -> applyInput(input, m, ids -> resolveActorIds(ids, actorRepository::existsById)));
 
             if (movie == null) {
                 return new MovieResponse(false, "Movie not found", null);
             }
 
-            // Only update fields that are not null
-            if (input.getTitle() != null) {
-                movie.setTitle(input.getTitle());
-            }
-            if (input.getReleaseYear() != null) {
-                movie.setReleaseYear(input.getReleaseYear());
-            }
-            if (input.getDirector() != null) {
-                movie.setDirector(input.getDirector());
-            }
-            if (input.getGenre() != null) {
-                movie.setGenre(input.getGenre());
-            }
-            if (input.getRating() != null) {
-                movie.setRating(input.getRating());
-            }
-            if (input.getActorIds() != null) {
-                List<Actor> movieActors = actors.stream()
-                    .filter(actor -> input.getActorIds().contains(actor.getId()))
-                    .collect(Collectors.toList());
-                movie.setActors(movieActors);
-            }
-
             return new MovieResponse(true, "Movie updated successfully", movie);
         } catch (Exception e) {
             return new MovieResponse(false, "Failed to update movie: " + e.getMessage(), null);
@@ -129,7 +134,7 @@ public class MovieDatafetcher {
     @DgsMutation
     public MovieResponse deleteMovie(@InputArgument String id) {
         try {
-            boolean removed = movies.removeIf(movie -> movie.getId().equals(id));
+            boolean removed = movieRepository.deleteById(id);
             if (removed) {
                 return new MovieResponse(true, "Movie deleted successfully", null);
             } else {
@@ -141,45 +146,225 @@ public class MovieDatafetcher {
     }
 
     @DgsQuery
-    public List<Movie> searchMovies(@InputArgument MovieFilter filter) {
-        if (filter == null) {
-            return movies;
+    public List<Movie> searchMovies(@InputArgument MovieFilter filter, @InputArgument MovieOrder orderBy,
+                                    @InputArgument Integer limit, DgsDataFetchingEnvironment dfe) {
+        MovieRepository.Snapshot snapshot = SnapshotReadsInstrumentation.snapshotOf(dfe);
+        MovieProjection projection = Projections.movies(dfe);
+        if (orderBy == null && limit == null) {
+            return movieRepository.search(filter, snapshot, projection);
+        }
+        if (limit != null && limit < 0) {
+            throw new DgsBadRequestException("limit must not be negative");
+        }
+        if (orderBy != null && orderBy.getField() == null) {
+            throw new DgsBadRequestException("orderBy.field is required");
         }
+        return movieRepository.search(filter, orderBy, limit != null ? limit : Integer.MAX_VALUE, snapshot,
+                projection);
+    }
+
+    @DgsQuery
+    public MovieStats movieStats(@InputArgument MovieFilter filter, DgsDataFetchingEnvironment dfe) {
+        return movieRepository.stats(filter, SnapshotReadsInstrumentation.snapshotOf(dfe));
+    }
+
+    @DgsQuery
+    public Connection<Movie> searchMoviesConnection(@InputArgument MovieFilter filter, @InputArgument Integer first,
+                                                    @InputArgument String after, DgsDataFetchingEnvironment dfe) {
+        int pageSize = Connections.pageSize(first);
+        MovieRepository.Snapshot snapshot = SnapshotReadsInstrumentation.snapshotOf(dfe);
+        if (!Projections.selectsPage(dfe)) {
+            return Connections.countOnly(() -> movieRepository.count(filter, snapshot));
+        }
+        MovieProjection projection = Projections.connectionNodes(dfe);
+        Page<Movie> page = Connections.read(
+                () -> movieRepository.search(filter, pageSize, after, snapshot, projection));
+        return Connections.toConnection(page, () -> movieRepository.count(filter, snapshot));
+    }
 
+    /**
+     * Creates a batch of movies in one repository pass. Returns one response per input, in order. Every
+     * item gets a fresh id, so there is no per-item failure and the batch is always applied whole.
+     */
+    @DgsMutation
+    public List<MovieResponse> createMovies(@InputArgument List<MovieInput> inputs) {
+        checkBatchSize(inputs.size());
+        Predicate<String> actorExists = existingActors(inputs);
+        List<Movie> movies = new ArrayList<>(inputs.size());
+        for (MovieInput input : inputs) {
+            Movie movie = new Movie();
+            movie.setId(UUID.randomUUID().toString());
+            applyInput(input, movie, ids -> resolveActorIds(ids, actorExists));
+            movies.add(movie);
+        }
+        movieRepository.saveAll(movies);
         return movies.stream()
-                .filter(movie -> {
-                    // Title filter (case-insensitive contains)
-                    if (filter.getTitle() != null && !filter.getTitle().isEmpty()) {
-                        if (!movie.getTitle().toLowerCase().contains(filter.getTitle().toLowerCase())) {
-                            return false;
-                        }
-                    }
+                .map(movie -> new MovieResponse(true, "Movie created successfully", movie))
+                .toList();
+    }
 
-                    // Genre filter (case-insensitive exact match)
-                    if (filter.getGenre() != null && !filter.getGenre().isEmpty()) {
-                        if (!movie.getGenre().equalsIgnoreCase(filter.getGenre())) {
-                            return false;
-                        }
+    /**
+     * Creates or updates a batch of movies by id in one repository pass. Existing movies get the non-null
+     * fields of their input, like {@link #updateMovie}; the others are created with the given id. Ids
+     * must be unique within the batch. Otherwise an item that fails is reported and skipped, and the others
+     * are still written. In atomic mode nothing is written unless every item is valid, and the items are
+     * applied under the write locks of all their ids, so no concurrent write lands in between.
+     */
+    @DgsMutation
+    public List<MovieResponse> upsertMovies(@InputArgument List<MovieUpsertInput> inputs,
+                                            @InputArgument Boolean atomic) {
+        checkBatchSize(inputs.size());
+        boolean allOrNone = Boolean.TRUE.equals(atomic);
+        String[] errors = new String[inputs.size()];
+        Map<String, UnaryOperator<Movie>> changes = new LinkedHashMap<>();
+        Predicate<String> actorExists = existingActors(inputs.stream().map(MovieUpsertInput::getMovie).toList());
+        for (int i = 0; i < inputs.size(); i++) {
+            MovieUpsertInput input = inputs.get(i);
+            int item = i;
+            UnaryOperator<Movie> change = stored -> {
+                try {
+                    Movie movie = stored != null ? stored : new Movie(input.getId(), null, null, null, null, null, null);
+                    return applyInput(input.getMovie(), movie, ids -> resolveActorIds(ids, actorExists));
+                } catch (RuntimeException e) {
+                    errors[item] = "Failed to upsert movie: " + e.getMessage();
+                    if (allOrNone) {
+                        throw e;
                     }
+                    // Leave the stored movie as it is and go on with the rest of the batch
+                    return null;
+                }
+            };
+            if (changes.putIfAbsent(input.getId(), change) != null) {
+                errors[i] = "Duplicate id in batch";
+            }
+        }
 
-                    // Rating range filter
-                    if (filter.getMinRating() != null && movie.getRating() < filter.getMinRating()) {
-                        return false;
-                    }
-                    if (filter.getMaxRating() != null && movie.getRating() > filter.getMaxRating()) {
-                        return false;
-                    }
+        Map<String, Movie> movies;
+        if (allOrNone) {
+            if (hasErrors(errors)) {
+                return rejected(errors);
+            }
+            try {
+                movies = movieRepository.upsertAllOrNone(changes);
+            } catch (RuntimeException e) {
+                // Nothing was written; report the item that failed, unless the write itself did
+                if (!hasErrors(errors)) {
+                    throw e;
+                }
+                return rejected(errors);
+            }
+        } else {
+            movies = movieRepository.upsertAll(changes);
+        }
+        List<MovieResponse> responses = new ArrayList<>(inputs.size());
+        for (int i = 0; i < inputs.size(); i++) {
+            responses.add(errors[i] != null
+                    ? new MovieResponse(false, errors[i], null)
+                    : new MovieResponse(true, "Movie upserted successfully", movies.get(inputs.get(i).getId())));
+        }
+        return responses;
+    }
 
-                    // Release year range filter
-                    if (filter.getReleaseYearFrom() != null && movie.getReleaseYear() < filter.getReleaseYearFrom()) {
-                        return false;
-                    }
-                    if (filter.getReleaseYearTo() != null && movie.getReleaseYear() > filter.getReleaseYearTo()) {
-                        return false;
+    /**
+     * Deletes a batch of movies in one repository pass. In atomic mode nothing is deleted unless every
+     * id exists and appears once. The ids are checked under the write locks of the batch, so a concurrent
+     * delete cannot make the batch apply only in part.
+     */
+    @DgsMutation
+    public List<MovieResponse> deleteMovies(@InputArgument List<String> ids, @InputArgument Boolean atomic) {
+        checkBatchSize(ids.size());
+        if (Boolean.TRUE.equals(atomic)) {
+            String[] errors = new String[ids.size()];
+            Set<String> seen = new HashSet<>();
+            for (int i = 0; i < ids.size(); i++) {
+                if (!seen.add(ids.get(i))) {
+                    errors[i] = "Duplicate id in batch";
+                }
+            }
+            if (hasErrors(errors)) {
+                return rejected(errors);
+            }
+            Set<String> missing = movieRepository.deleteAllByIdOrNone(ids);
+            if (!missing.isEmpty()) {
+                for (int i = 0; i < ids.size(); i++) {
+                    if (missing.contains(ids.get(i))) {
+                        errors[i] = "Movie not found";
                     }
+                }
+                return rejected(errors);
+            }
+            return ids.stream()
+                    .map(id -> new MovieResponse(true, "Movie deleted successfully", null))
+                    .toList();
+        }
+
+        Set<String> removed = movieRepository.deleteAllById(ids);
+        Set<String> reported = new HashSet<>();
+        return ids.stream()
+                .map(id -> removed.contains(id) && reported.add(id)
+                        ? new MovieResponse(true, "Movie deleted successfully", null)
+                        : new MovieResponse(false, "Movie not found", null))
+                .toList();
+    }
+
+    private static void checkBatchSize(int size) {
+        if (size > MAX_BATCH_SIZE) {
+            throw new DgsBadRequestException("A batch can hold at most " + MAX_BATCH_SIZE + " items");
+        }
+    }
+
+    /**
+     * Looks up every actor id referenced by the batch once, so each item is resolved with a set lookup.
+     */
+    private Predicate<String> existingActors(List<MovieInput> inputs) {
+        Set<String> actorIds = new HashSet<>();
+        for (MovieInput input : inputs) {
+            if (input.getActorIds() != null) {
+                actorIds.addAll(input.getActorIds());
+            }
+        }
+        return actorRepository.findAllById(actorIds).keySet()::contains;
+    }
+
+    private static boolean hasErrors(String[] errors) {
+        return Arrays.stream(errors).anyMatch(Objects::nonNull);
+    }
+
+    private static List<MovieResponse> rejected(String[] errors) {
+        return Arrays.stream(errors)
+                .map(error -> new MovieResponse(false,
+                        error != null ? error : "Not applied because another item in the batch failed", null))
+                .toList();
+    }
+
+    // Copies the non-null fields of the input onto the movie
+    private static Movie applyInput(MovieInput input, Movie movie, UnaryOperator<List<String>> actorIds) {
+        if (input.getTitle() != null) {
+            movie.setTitle(input.getTitle());
+        }
+        if (input.getReleaseYear() != null) {
+            movie.setReleaseYear(input.getReleaseYear());
+        }
+        if (input.getDirector() != null) {
+            movie.setDirector(input.getDirector());
+        }
+        if (input.getGenre() != null) {
+            movie.setGenre(input.getGenre());
+        }
+        if (input.getRating() != null) {
+            movie.setRating(input.getRating());
+        }
+        if (input.getActorIds() != null) {
+            movie.setActorIds(actorIds.apply(input.getActorIds()));
+        }
+        return movie;
+    }
 
-                    return true;
-                })
-                .collect(Collectors.toList());
+    // Keeps only the ids of actors that exist, without duplicates
+    private static List<String> resolveActorIds(List<String> actorIds, Predicate<String> exists) {
+        return actorIds.stream()
+                .distinct()
+                .filter(exists)
+                .toList();
     }
 }
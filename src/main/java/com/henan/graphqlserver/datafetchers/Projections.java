@@ -0,0 +1,66 @@
+package com.henan.graphqlserver.datafetchers;
+
+import com.henan.graphqlserver.repository.MovieProjection;
+import graphql.schema.DataFetchingEnvironment;
+import graphql.schema.DataFetchingFieldSelectionSet;
+
+import java.util.EnumSet;
+import java.util.Map;
+
+/**
+ * Maps the fields a query selects on movies to the {@link MovieProjection} that the repository reads, so
+ * list views that only show a few fields do not pay for the others.
+ */
+final class Projections {
+    private static final String NODE = "edges/node/";
+    // Movie.actors is resolved from the actor ids, the other fields are read as they are
+    private static final Map<String, MovieProjection.Field> FIELDS = Map.of(
+            "title", MovieProjection.Field.TITLE,
+            "releaseYear", MovieProjection.Field.RELEASE_YEAR,
+            "director", MovieProjection.Field.DIRECTOR,
+            "genre", MovieProjection.Field.GENRE,
+            "rating", MovieProjection.Field.RATING,
+            "actors", MovieProjection.Field.ACTOR_IDS);
+
+    private Projections() {
+    }
+
+    /**
+     * @return the fields selected on the movies of a list, or all of them without a selection set
+     */
+    static MovieProjection movies(DataFetchingEnvironment dfe) {
+        return projection(dfe, "");
+    }
+
+    /**
+     * @return the fields selected on the movies of a connection's edges
+     */
+    static MovieProjection connectionNodes(DataFetchingEnvironment dfe) {
+        return projection(dfe, NODE);
+    }
+
+    /**
+     * @return whether the query selects anything of a connection besides its total count
+     */
+    static boolean selectsPage(DataFetchingEnvironment dfe) {
+        if (dfe == null || dfe.getSelectionSet() == null) {
+            return true;
+        }
+        DataFetchingFieldSelectionSet selectionSet = dfe.getSelectionSet();
+        return selectionSet.contains("edges") || selectionSet.contains("pageInfo");
+    }
+
+    private static MovieProjection projection(DataFetchingEnvironment dfe, String prefix) {
+        if (dfe == null || dfe.getSelectionSet() == null) {
+            return MovieProjection.ALL;
+        }
+        DataFetchingFieldSelectionSet selectionSet = dfe.getSelectionSet();
+        EnumSet<MovieProjection.Field> fields = EnumSet.noneOf(MovieProjection.Field.class);
+        FIELDS.forEach((name, field) -> {
+            if (selectionSet.contains(prefix + name)) {
+                fields.add(field);
+            }
+        });
+        return MovieProjection.of(fields);
+    }
+}
@@ -0,0 +1,28 @@
+package com.henan.graphqlserver.dataloaders;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.netflix.graphql.dgs.DgsDataLoader;
+import org.dataloader.MappedBatchLoader;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Batches every actor id requested while resolving one query into a single repository lookup.
+ */
+@DgsDataLoader(name = "actors")
+public class ActorDataLoader implements MappedBatchLoader<String, Actor> {
+    private final ActorRepository actorRepository;
+
+    public ActorDataLoader(ActorRepository actorRepository) {
+        this.actorRepository = actorRepository;
+    }
+
+    @Override
+    public CompletionStage<Map<String, Actor>> load(Set<String> ids) {
+        return CompletableFuture.completedFuture(actorRepository.findAllById(ids));
+    }
+}
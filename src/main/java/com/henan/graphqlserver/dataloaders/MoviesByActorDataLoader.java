@@ -0,0 +1,40 @@
+package com.henan.graphqlserver.dataloaders;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.DgsDataLoader;
+import org.dataloader.BatchLoaderEnvironment;
+import org.dataloader.MappedBatchLoaderWithContext;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Batches the filmographies of every actor resolved in one query into a single reverse index lookup.
+ *
+ * Keys are loaded with the query's {@link MovieRepository.Snapshot} as their context, if it has one, so
+ * the batch reads the same catalog as the datafetchers of the query. Every operation gets its own instance
+ * of this loader, also within a batched request, so all keys of a batch share the snapshot and the cached
+ * filmographies never reach another operation.
+ */
+@DgsDataLoader(name = "moviesByActor")
+public class MoviesByActorDataLoader implements MappedBatchLoaderWithContext<String, List<Movie>> {
+    private final MovieRepository movieRepository;
+
+    public MoviesByActorDataLoader(MovieRepository movieRepository) {
+        this.movieRepository = movieRepository;
+    }
+
+    @Override
+    public CompletionStage<Map<String, List<Movie>>> load(Set<String> actorIds, BatchLoaderEnvironment environment) {
+        MovieRepository.Snapshot snapshot = environment.getKeyContextsList().stream()
+                .filter(MovieRepository.Snapshot.class::isInstance)
+                .map(MovieRepository.Snapshot.class::cast)
+                .findFirst()
+                .orElse(null);
+        return CompletableFuture.completedFuture(movieRepository.findByActorIds(actorIds, snapshot));
+    }
+}
@@ -0,0 +1,21 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.query-cost", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(QueryCostProperties.class)
+public class QueryCostConfiguration {
+
+    @Bean
+    public QueryCostInstrumentation queryCostInstrumentation(QueryCostProperties properties,
+                                                             MovieRepository movieRepository,
+                                                             ActorRepository actorRepository) {
+        return new QueryCostInstrumentation(properties, movieRepository, actorRepository);
+    }
+}
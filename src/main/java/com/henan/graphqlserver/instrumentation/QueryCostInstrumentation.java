@@ -0,0 +1,245 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.datafetchers.Connections;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.types.errors.TypedGraphQLError;
+import graphql.ExecutionResult;
+import graphql.execution.AbortExecutionException;
+import graphql.execution.ExecutionContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.language.Definition;
+import graphql.language.Document;
+import graphql.language.Field;
+import graphql.language.FragmentDefinition;
+import graphql.language.InlineFragment;
+import graphql.language.OperationDefinition;
+import graphql.language.Selection;
+import graphql.language.SelectionSet;
+import graphql.normalized.ExecutableNormalizedField;
+import graphql.normalized.ExecutableNormalizedOperation;
+import graphql.schema.GraphQLSchema;
+import graphql.schema.GraphQLType;
+import graphql.schema.GraphQLTypeUtil;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Rejects expensive operations after validation and before any datafetcher runs, and reports the cost of
+ * the others in {@code extensions.cost}.
+ *
+ * The cost is computed over the normalized operation, so fragments, variables and {@code @skip} or
+ * {@code @include} are already applied. Every object field costs 1 and every scalar 0, unless configured
+ * otherwise, and the cost of a list is its item cost times its expected size: {@code first} or
+ * {@code limit} when given, the page size for connection edges, the planner's estimate of the matches for
+ * filtered root lists of movies, the catalog size for the other root lists of movies or actors, and a
+ * configurable default for everything else. Aliases are counted on the
+ * document before it is normalized, so heavy aliasing is rejected without expanding it. Introspection
+ * fields are free.
+ */
+public class QueryCostInstrumentation extends SimplePerformantInstrumentation {
+    private final QueryCostProperties properties;
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+
+    public QueryCostInstrumentation(QueryCostProperties properties, MovieRepository movieRepository,
+                                    ActorRepository actorRepository) {
+        this.properties = properties;
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new CostState();
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        ExecutionContext executionContext = parameters.getExecutionContext();
+        int aliases = countAliases(executionContext.getDocument());
+        if (aliases > properties.getMaximumAliases()) {
+            throw rejected("Query uses %d aliases, more than the maximum of %d"
+                    .formatted(aliases, properties.getMaximumAliases()), Map.of("aliases", aliases));
+        }
+        ExecutableNormalizedOperation operation = executionContext.getNormalizedQueryTree().get();
+        GraphQLSchema schema = executionContext.getGraphQLSchema();
+        long cost = 0;
+        int depth = 0;
+        for (ExecutableNormalizedField field : operation.getTopLevelFields()) {
+            cost = saturatedAdd(cost, cost(field, schema));
+            depth = Math.max(depth, depth(field));
+        }
+        if (depth > properties.getMaximumDepth()) {
+            throw rejected("Query has a depth of %d, more than the maximum of %d"
+                    .formatted(depth, properties.getMaximumDepth()), Map.of("depth", depth));
+        }
+        if (cost > properties.getMaximumCost()) {
+            throw rejected("Query has a cost of %d, more than the maximum of %d"
+                    .formatted(cost, properties.getMaximumCost()), Map.of("requested", cost));
+        }
+        if (state instanceof CostState costState) {
+            costState.cost = costExtension(cost, depth, aliases);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<ExecutionResult> instrumentExecutionResult(ExecutionResult executionResult,
+                                                                         InstrumentationExecutionParameters parameters,
+                                                                         InstrumentationState state) {
+        if (state instanceof CostState costState && costState.cost != null) {
+            return CompletableFuture.completedFuture(
+                    executionResult.transform(builder -> builder.addExtension("cost", costState.cost)));
+        }
+        return CompletableFuture.completedFuture(executionResult);
+    }
+
+    private long cost(ExecutableNormalizedField field, GraphQLSchema schema) {
+        if (field.getName().startsWith("__")) {
+            return 0;
+        }
+        GraphQLType type = field.getType(schema);
+        GraphQLType itemType = GraphQLTypeUtil.unwrapAll(type);
+        Integer configured = properties.getFieldCosts().get(field.getSingleObjectTypeName() + "." + field.getName());
+        long cost = configured != null ? configured : GraphQLTypeUtil.isLeaf(itemType) ? 0 : 1;
+        for (ExecutableNormalizedField child : field.getChildren()) {
+            cost = saturatedAdd(cost, cost(child, schema));
+        }
+        return GraphQLTypeUtil.isList(GraphQLTypeUtil.unwrapNonNull(type))
+                ? saturatedMultiply(cost, expectedSize(field, GraphQLTypeUtil.simplePrint(itemType)))
+                : cost;
+    }
+
+    private long expectedSize(ExecutableNormalizedField field, String itemTypeName) {
+        ExecutableNormalizedField parent = field.getParent();
+        // Edges of a connection, sized by the page the connection field asked for
+        if (parent != null && field.getSingleObjectTypeName().endsWith("Connection")) {
+            Object first = parent.getResolvedArguments().get("first");
+            return first instanceof Integer pageSize ? pageSize : Connections.DEFAULT_PAGE_SIZE;
+        }
+        long estimate = parent == null ? rootSize(field, itemTypeName) : properties.getDefaultListSize();
+        for (String argument : List.of("first", "limit")) {
+            if (field.getResolvedArguments().get(argument) instanceof Integer requested) {
+                estimate = Math.min(estimate, Math.max(requested, 0));
+            }
+        }
+        return estimate;
+    }
+
+    /**
+     * Sizes a root list by the movies its filter can match, as the planner estimates them from the indexes,
+     * so a selective filter stays cheap however large the catalog grows.
+     */
+    private long rootSize(ExecutableNormalizedField field, String typeName) {
+        Map<String, Object> arguments = field.getResolvedArguments();
+        return switch (typeName) {
+            case "Movie" -> switch (field.getName()) {
+                case "moviesByGenre" -> movieRepository.estimate(genreFilter(arguments.get("genre")));
+                case "searchMovies" -> movieRepository.estimate(
+                        arguments.get("filter") instanceof Map<?, ?> filter ? movieFilter(filter) : null);
+                default -> movieRepository.count();
+            };
+            case "Actor" -> actorRepository.count();
+            default -> properties.getDefaultListSize();
+        };
+    }
+
+    private static MovieFilter genreFilter(Object genre) {
+        MovieFilter filter = new MovieFilter();
+        filter.setGenre(genre instanceof String value ? value : null);
+        return filter;
+    }
+
+    private static MovieFilter movieFilter(Map<?, ?> arguments) {
+        MovieFilter filter = new MovieFilter();
+        filter.setTitle(arguments.get("title") instanceof String title ? title : null);
+        filter.setGenre(arguments.get("genre") instanceof String genre ? genre : null);
+        filter.setMinRating(arguments.get("minRating") instanceof Number rating ? rating.floatValue() : null);
+        filter.setMaxRating(arguments.get("maxRating") instanceof Number rating ? rating.floatValue() : null);
+        filter.setReleaseYearFrom(arguments.get("releaseYearFrom") instanceof Integer year ? year : null);
+        filter.setReleaseYearTo(arguments.get("releaseYearTo") instanceof Integer year ? year : null);
+        return filter;
+    }
+
+    private static int depth(ExecutableNormalizedField field) {
+        if (field.getName().startsWith("__")) {
+            return 0;
+        }
+        int depth = 0;
+        for (ExecutableNormalizedField child : field.getChildren()) {
+            depth = Math.max(depth, depth(child));
+        }
+        return depth + 1;
+    }
+
+    /**
+     * Counts aliases as written, so a fragment spread many times counts once.
+     */
+    private static int countAliases(Document document) {
+        int aliases = 0;
+        for (Definition<?> definition : document.getDefinitions()) {
+            if (definition instanceof OperationDefinition operation) {
+                aliases += countAliases(operation.getSelectionSet());
+            } else if (definition instanceof FragmentDefinition fragment) {
+                aliases += countAliases(fragment.getSelectionSet());
+            }
+        }
+        return aliases;
+    }
+
+    private static int countAliases(SelectionSet selectionSet) {
+        if (selectionSet == null) {
+            return 0;
+        }
+        int aliases = 0;
+        for (Selection<?> selection : selectionSet.getSelections()) {
+            if (selection instanceof Field field) {
+                aliases += (field.getAlias() != null ? 1 : 0) + countAliases(field.getSelectionSet());
+            } else if (selection instanceof InlineFragment fragment) {
+                aliases += countAliases(fragment.getSelectionSet());
+            }
+        }
+        return aliases;
+    }
+
+    private Map<String, Object> costExtension(long cost, int depth, int aliases) {
+        Map<String, Object> extension = new LinkedHashMap<>();
+        extension.put("requested", cost);
+        extension.put("maximum", properties.getMaximumCost());
+        extension.put("depth", depth);
+        extension.put("aliases", aliases);
+        return extension;
+    }
+
+    private static AbortExecutionException rejected(String message, Map<String, ?> cost) {
+        return new AbortExecutionException(List.of(TypedGraphQLError.newBadRequestBuilder()
+                .message(message)
+                .extensions(Map.<String, Object>of("cost", cost))
+                .build()));
+    }
+
+    private static long saturatedAdd(long a, long b) {
+        long sum = a + b;
+        return sum < 0 ? Long.MAX_VALUE : sum;
+    }
+
+    private static long saturatedMultiply(long a, long b) {
+        long high = Math.multiplyHigh(a, b);
+        return high != 0 || a * b < 0 ? Long.MAX_VALUE : a * b;
+    }
+
+    private static final class CostState implements InstrumentationState {
+        private volatile Map<String, Object> cost;
+    }
+}
@@ -0,0 +1,20 @@
+package com.henan.graphqlserver.instrumentation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties("graphql-server.query-cost")
+public class QueryCostProperties {
+    private boolean enabled = true;
+    private long maximumCost = 5000;
+    private int maximumDepth = 12;
+    private int maximumAliases = 50;
+    // Assumed size of lists that are neither paginated nor a whole catalog, such as Movie.actors
+    private int defaultListSize = 10;
+    // Cost of single fields by coordinates, e.g. Query.searchMovies=5. Objects cost 1 and scalars 0 otherwise.
+    private Map<String, Integer> fieldCosts = new HashMap<>();
+}
@@ -0,0 +1,29 @@
+package com.henan.graphqlserver.instrumentation;
+
+import graphql.execution.instrumentation.tracing.TracingInstrumentation;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * DGS chains every {@link graphql.execution.instrumentation.Instrumentation} bean into the GraphQL engine.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.resolver-metrics", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(ResolverMetricsProperties.class)
+public class ResolverMetricsConfiguration {
+
+    @Bean
+    public ResolverMetricsInstrumentation resolverMetricsInstrumentation(ResolverMetricsProperties properties,
+                                                                         MeterRegistry meterRegistry) {
+        return new ResolverMetricsInstrumentation(properties, meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "graphql-server.resolver-metrics", name = "tracing", havingValue = "true")
+    public TracingInstrumentation tracingInstrumentation() {
+        return new TracingInstrumentation(TracingInstrumentation.Options.newOptions().includeTrivialDataFetchers(false));
+    }
+}
@@ -0,0 +1,197 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.model.Connection;
+import graphql.ExecutionResult;
+import graphql.execution.DataFetcherResult;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationFieldFetchParameters;
+import graphql.language.OperationDefinition;
+import graphql.schema.GraphQLFieldDefinition;
+import graphql.schema.GraphQLObjectType;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Records the latency of every sampled operation and of its non-trivial resolvers, such as {@code Query.movie}
+ * or {@code Movie.actors}, as Micrometer timers with percentile histograms:
+ *
+ * <ul>
+ *   <li>{@code graphql.operation}, tagged with the operation name, type and outcome</li>
+ *   <li>{@code graphql.resolver}, tagged with the field coordinates and outcome</li>
+ *   <li>{@code graphql.resolver.result.size}, the number of items a resolver returned</li>
+ *   <li>{@code graphql.operation.allocated}, bytes allocated by the request thread, if enabled</li>
+ * </ul>
+ *
+ * Property fetchers are not measured. The sampling decision is made once per request; unsampled requests
+ * carry no state, so every other callback returns immediately.
+ */
+public class ResolverMetricsInstrumentation extends SimplePerformantInstrumentation {
+    private static final String OTHER_OPERATION = "other";
+    private static final String ANONYMOUS_OPERATION = "anonymous";
+
+    private final MeterRegistry meterRegistry;
+    private final double sampleRate;
+    private final int maximumOperationNames;
+    private final com.sun.management.ThreadMXBean threadMXBean;
+    private final ConcurrentHashMap<String, String> operationNames = new ConcurrentHashMap<>();
+    private final AtomicInteger reservedOperationNames = new AtomicInteger();
+    private final ConcurrentHashMap<FieldKey, FieldMeters> fieldMeters = new ConcurrentHashMap<>();
+
+    public ResolverMetricsInstrumentation(ResolverMetricsProperties properties, MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+        this.sampleRate = properties.getSampleRate();
+        this.maximumOperationNames = properties.getMaximumOperationNames();
+        this.threadMXBean = properties.isAllocationTracking() ? allocationTrackingThreadMXBean() : null;
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return ThreadLocalRandom.current().nextDouble() < sampleRate ? new RequestState() : null;
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters,
+                                                                  InstrumentationState state) {
+        if (!(state instanceof RequestState request)) {
+            return null;
+        }
+        long start = System.nanoTime();
+        Thread thread = Thread.currentThread();
+        long allocatedBefore = threadMXBean != null ? threadMXBean.getThreadAllocatedBytes(thread.threadId()) : -1;
+        return SimpleInstrumentationContext.whenCompleted((result, exception) -> {
+            String outcome = exception == null && result.getErrors().isEmpty() ? "success" : "error";
+            String operation = operationTag(request.operationName);
+            Timer.builder("graphql.operation")
+                    .tag("operation", operation)
+                    .tag("type", request.operationType)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            // Counters of another thread would be meaningless, so an operation that completes elsewhere is skipped
+            if (allocatedBefore >= 0 && Thread.currentThread() == thread) {
+                DistributionSummary.builder("graphql.operation.allocated")
+                        .baseUnit("bytes")
+                        .tag("operation", operation)
+                        .register(meterRegistry)
+                        .record(threadMXBean.getThreadAllocatedBytes(thread.threadId()) - allocatedBefore);
+            }
+        });
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        if (state instanceof RequestState request) {
+            OperationDefinition operation = parameters.getExecutionContext().getOperationDefinition();
+            request.operationName = operation.getName();
+            request.operationType = operation.getOperation().name().toLowerCase(Locale.ROOT);
+        }
+        return null;
+    }
+
+    @Override
+    public InstrumentationContext<Object> beginFieldFetch(InstrumentationFieldFetchParameters parameters,
+                                                          InstrumentationState state) {
+        if (!(state instanceof RequestState) || parameters.isTrivialDataFetcher()) {
+            return null;
+        }
+        FieldMeters meters = fieldMeters.computeIfAbsent(
+                new FieldKey(parameters.getExecutionStepInfo().getObjectType(),
+                        parameters.getExecutionStepInfo().getFieldDefinition()),
+                this::fieldMeters);
+        long start = System.nanoTime();
+        // Completes when an asynchronous resolver's future does, so DataLoader batching is included
+        return SimpleInstrumentationContext.whenCompleted((result, exception) -> {
+            long elapsed = System.nanoTime() - start;
+            if (exception != null) {
+                meters.failure().record(elapsed, TimeUnit.NANOSECONDS);
+                return;
+            }
+            meters.success().record(elapsed, TimeUnit.NANOSECONDS);
+            meters.resultSize().record(sizeOf(result));
+        });
+    }
+
+    private FieldMeters fieldMeters(FieldKey key) {
+        String coordinates = key.type().getName() + "." + key.field().getName();
+        return new FieldMeters(resolverTimer(coordinates, "success"), resolverTimer(coordinates, "error"),
+                DistributionSummary.builder("graphql.resolver.result.size")
+                        .tag("field", coordinates)
+                        .register(meterRegistry));
+    }
+
+    private Timer resolverTimer(String coordinates, String outcome) {
+        return Timer.builder("graphql.resolver")
+                .tag("field", coordinates)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private String operationTag(String operationName) {
+        if (operationName == null || operationName.isEmpty()) {
+            return ANONYMOUS_OPERATION;
+        }
+        String tag = operationNames.get(operationName);
+        if (tag == null) {
+            // A new name takes a slot only if one is left, atomically, so concurrent new names never exceed
+            // the maximum. A name that gets none is not remembered and tagged as other.
+            tag = operationNames.computeIfAbsent(operationName, name -> reservedOperationNames.getAndUpdate(
+                    reserved -> Math.min(reserved + 1, maximumOperationNames)) < maximumOperationNames ? name : null);
+        }
+        return tag != null ? tag : OTHER_OPERATION;
+    }
+
+    private static int sizeOf(Object result) {
+        if (result instanceof DataFetcherResult<?> dataFetcherResult) {
+            result = dataFetcherResult.getData();
+        }
+        if (result == null) {
+            return 0;
+        }
+        if (result instanceof Collection<?> collection) {
+            return collection.size();
+        }
+        if (result instanceof Connection<?> connection) {
+            return connection.getEdges().size();
+        }
+        return 1;
+    }
+
+    private static com.sun.management.ThreadMXBean allocationTrackingThreadMXBean() {
+        if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threadMXBean
+                && threadMXBean.isThreadAllocatedMemorySupported()) {
+            threadMXBean.setThreadAllocatedMemoryEnabled(true);
+            return threadMXBean;
+        }
+        return null;
+    }
+
+    private static final class RequestState implements InstrumentationState {
+        // Unknown until the document is parsed and an operation selected
+        private volatile String operationName;
+        private volatile String operationType = "unknown";
+    }
+
+    private record FieldKey(GraphQLObjectType type, GraphQLFieldDefinition field) {
+    }
+
+    private record FieldMeters(Timer success, Timer failure, DistributionSummary resultSize) {
+    }
+}
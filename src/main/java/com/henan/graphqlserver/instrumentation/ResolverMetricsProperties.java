@@ -0,0 +1,18 @@
+package com.henan.graphqlserver.instrumentation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.resolver-metrics")
+public class ResolverMetricsProperties {
+    private boolean enabled = true;
+    // Share of requests that are measured, unsampled requests skip the instrumentation entirely
+    private double sampleRate = 0.1;
+    // Record the bytes allocated by the thread that executes each sampled request
+    private boolean allocationTracking = false;
+    // Add Apollo tracing extensions to every response, meant for debugging
+    private boolean tracing = false;
+    // Operation names beyond this many are tagged "other", as clients choose them freely
+    private int maximumOperationNames = 100;
+}
@@ -0,0 +1,18 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.repository.MovieRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.snapshot-reads", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SnapshotReadsProperties.class)
+public class SnapshotReadsConfiguration {
+
+    @Bean
+    public SnapshotReadsInstrumentation snapshotReadsInstrumentation(MovieRepository movieRepository) {
+        return new SnapshotReadsInstrumentation(movieRepository);
+    }
+}
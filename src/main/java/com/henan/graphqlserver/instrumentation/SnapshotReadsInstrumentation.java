@@ -0,0 +1,76 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.repository.MovieRepository;
+import graphql.ExecutionResult;
+import graphql.GraphQLContext;
+import graphql.execution.instrumentation.InstrumentationContext;
+import graphql.execution.instrumentation.InstrumentationState;
+import graphql.execution.instrumentation.SimpleInstrumentationContext;
+import graphql.execution.instrumentation.SimplePerformantInstrumentation;
+import graphql.execution.instrumentation.parameters.InstrumentationCreateStateParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecuteOperationParameters;
+import graphql.execution.instrumentation.parameters.InstrumentationExecutionParameters;
+import graphql.language.OperationDefinition;
+import graphql.schema.DataFetchingEnvironment;
+
+/**
+ * Pins one {@link MovieRepository.Snapshot} per query operation, so every datafetcher and data loader of
+ * the query reads the catalog as it was when the operation started, even while mutations are applied.
+ *
+ * The snapshot is stored in the {@link GraphQLContext}, where {@link #snapshotOf} finds it, and closed
+ * when the request completes, whether it failed or not. Mutations and subscriptions read the latest
+ * catalog.
+ */
+public class SnapshotReadsInstrumentation extends SimplePerformantInstrumentation {
+    private static final Object SNAPSHOT_KEY = MovieRepository.Snapshot.class;
+
+    private final MovieRepository movieRepository;
+
+    public SnapshotReadsInstrumentation(MovieRepository movieRepository) {
+        this.movieRepository = movieRepository;
+    }
+
+    /**
+     * @return the snapshot pinned for the operation, or null if there is none, in which case each read
+     *         pins its own
+     */
+    public static MovieRepository.Snapshot snapshotOf(DataFetchingEnvironment environment) {
+        if (environment == null || environment.getGraphQlContext() == null) {
+            return null;
+        }
+        return environment.getGraphQlContext().get(SNAPSHOT_KEY);
+    }
+
+    @Override
+    public InstrumentationState createState(InstrumentationCreateStateParameters parameters) {
+        return new SnapshotState();
+    }
+
+    // The whole request completes even if another instrumentation rejects the operation after it began
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecution(InstrumentationExecutionParameters parameters,
+                                                                  InstrumentationState state) {
+        SnapshotState snapshotState = (SnapshotState) state;
+        return SimpleInstrumentationContext.whenCompleted((result, exception) -> {
+            if (snapshotState.snapshot != null) {
+                snapshotState.snapshot.close();
+            }
+        });
+    }
+
+    @Override
+    public InstrumentationContext<ExecutionResult> beginExecuteOperation(
+            InstrumentationExecuteOperationParameters parameters, InstrumentationState state) {
+        OperationDefinition operation = parameters.getExecutionContext().getOperationDefinition();
+        if (operation.getOperation() == OperationDefinition.Operation.QUERY) {
+            MovieRepository.Snapshot snapshot = movieRepository.snapshot();
+            ((SnapshotState) state).snapshot = snapshot;
+            parameters.getExecutionContext().getGraphQLContext().put(SNAPSHOT_KEY, snapshot);
+        }
+        return SimpleInstrumentationContext.noOp();
+    }
+
+    private static final class SnapshotState implements InstrumentationState {
+        private volatile MovieRepository.Snapshot snapshot;
+    }
+}
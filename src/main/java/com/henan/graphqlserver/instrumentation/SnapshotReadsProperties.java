@@ -0,0 +1,11 @@
+package com.henan.graphqlserver.instrumentation;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.snapshot-reads")
+public class SnapshotReadsProperties {
+    // Without it, every read of a query pins its own snapshot and they may see different writes
+    private boolean enabled = true;
+}
@@ -0,0 +1,132 @@
+package com.henan.graphqlserver.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Parses one line of a catalog file. Parsers are stateless and shared by all workers.
+ *
+ * CSV files start with a header naming their columns, in any order: {@code id, title, releaseYear,
+ * director, genre, rating, actorIds} for movies and {@code id, name, birthYear} for actors. Actor ids are
+ * separated by {@code |}. Fields may be quoted, with {@code ""} for a quote, but cannot span lines. Empty
+ * fields are null.
+ */
+@FunctionalInterface
+interface CatalogLineParser<T> {
+
+    T parse(String line) throws IOException;
+
+    /**
+     * @return a parser for the file, which must be named {@code .jsonl}, {@code .ndjson} or {@code .csv}
+     * @param header the first line of a CSV file, ignored for JSON Lines
+     */
+    static <T> CatalogLineParser<T> forFile(String filename, String header, Class<T> type,
+                                            ObjectMapper objectMapper) {
+        String name = filename.toLowerCase(Locale.ROOT);
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson")) {
+            ObjectReader reader = objectMapper.readerFor(type);
+            return reader::readValue;
+        }
+        if (!name.endsWith(".csv")) {
+            throw new IllegalArgumentException("Unsupported catalog file " + filename
+                    + ", expected .jsonl, .ndjson or .csv");
+        }
+        if (header == null) {
+            throw new IllegalArgumentException("Missing CSV header in " + filename);
+        }
+        List<String> columns = Arrays.stream(splitCsv(header)).map(String::trim).toList();
+        CatalogLineParser<?> parser = type == Movie.class ? movies(columns) : actors(columns);
+        @SuppressWarnings("unchecked")
+        CatalogLineParser<T> typed = (CatalogLineParser<T>) parser;
+        return typed;
+    }
+
+    private static CatalogLineParser<Movie> movies(List<String> columns) {
+        int id = required(columns, "id");
+        int title = columns.indexOf("title");
+        int releaseYear = columns.indexOf("releaseYear");
+        int director = columns.indexOf("director");
+        int genre = columns.indexOf("genre");
+        int rating = columns.indexOf("rating");
+        int actorIds = columns.indexOf("actorIds");
+        return line -> {
+            String[] fields = fields(line, columns.size());
+            String actors = field(fields, actorIds);
+            return new Movie(field(fields, id), field(fields, title), integer(fields, releaseYear),
+                    field(fields, director), field(fields, genre),
+                    field(fields, rating) != null ? Float.valueOf(field(fields, rating)) : null,
+                    actors != null ? List.of(actors.split("\\|")) : null);
+        };
+    }
+
+    private static CatalogLineParser<Actor> actors(List<String> columns) {
+        int id = required(columns, "id");
+        int name = columns.indexOf("name");
+        int birthYear = columns.indexOf("birthYear");
+        return line -> {
+            String[] fields = fields(line, columns.size());
+            return new Actor(field(fields, id), field(fields, name), integer(fields, birthYear));
+        };
+    }
+
+    private static int required(List<String> columns, String column) {
+        int index = columns.indexOf(column);
+        if (index < 0) {
+            throw new IllegalArgumentException("Missing CSV column " + column);
+        }
+        return index;
+    }
+
+    private static String[] fields(String line, int columns) throws IOException {
+        String[] fields = splitCsv(line);
+        if (fields.length != columns) {
+            throw new IOException("Expected " + columns + " fields but found " + fields.length);
+        }
+        return fields;
+    }
+
+    private static String field(String[] fields, int index) {
+        return index >= 0 && !fields[index].isEmpty() ? fields[index] : null;
+    }
+
+    private static Integer integer(String[] fields, int index) {
+        String value = field(fields, index);
+        return value != null ? Integer.valueOf(value) : null;
+    }
+
+    private static String[] splitCsv(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields.toArray(String[]::new);
+    }
+}
@@ -0,0 +1,232 @@
+package com.henan.graphqlserver.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.persistence.CatalogPersistence;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.core.io.Resource;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntToLongFunction;
+
+/**
+ * Seeds the catalog from JSON Lines or CSV files at startup.
+ *
+ * One thread reads the file and cuts it into chunks of {@code chunk-size} lines. It reserves the catalog
+ * positions of each chunk before handing it to a worker, which parses the chunk and inserts it through
+ * the repository's bulk load. Chunks are therefore inserted in parallel but keep the order of the file.
+ * At most two chunks per worker are queued at once, however large the file.
+ *
+ * The load runs as an {@link ApplicationRunner}, so Spring Boot reports the application ready only once
+ * it completes, and {@link CatalogLoadingFilter} turns GraphQL requests away until then. With
+ * {@code serve-partial}, the load runs in the background instead and requests see the movies loaded so
+ * far. Actors are loaded before movies. The loaded movies replace the sample movies.
+ *
+ * When persistence has restored a catalog from a snapshot, the files are not loaded again. Otherwise the
+ * loaded catalog is written to a snapshot, since the bulk load bypasses the log.
+ */
+public class CatalogLoader implements ApplicationRunner {
+    private static final Logger log = LoggerFactory.getLogger(CatalogLoader.class);
+
+    private final CatalogLoaderProperties properties;
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final ObjectMapper objectMapper;
+    private final CatalogPersistence persistence;
+    private final MeterRegistry meterRegistry;
+    private volatile boolean loading = true;
+
+    /**
+     * @param persistence the persistence of the catalog, or null if it is not persisted
+     */
+    public CatalogLoader(CatalogLoaderProperties properties, MovieRepository movieRepository,
+                         ActorRepository actorRepository, ObjectMapper objectMapper,
+                         CatalogPersistence persistence, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+        this.objectMapper = objectMapper;
+        this.persistence = persistence;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @return whether the catalog is still being loaded
+     */
+    public boolean isLoading() {
+        return loading;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (persistence != null && persistence.isRestored()) {
+            loading = false;
+            log.info("Catalog restored from a snapshot, not loading the catalog files");
+            return;
+        }
+        if (properties.isServePartial()) {
+            Thread.ofPlatform().name("catalog-loader").start(() -> {
+                try {
+                    load();
+                } catch (RuntimeException e) {
+                    log.error("Could not load the catalog, serving the movies loaded so far", e);
+                }
+            });
+        } else {
+            load();
+        }
+    }
+
+    private void load() {
+        try {
+            if (properties.getActors() != null) {
+                try (ActorRepository.BulkLoad bulk = actorRepository.bulkLoad()) {
+                    load(properties.getActors(), Actor.class, bulk::reserve, bulk::insert);
+                }
+            }
+            if (properties.getMovies() != null) {
+                movieRepository.deleteAllById(movieRepository.stream().map(Movie::getId).toList());
+                try (MovieRepository.BulkLoad bulk = movieRepository.bulkLoad()) {
+                    load(properties.getMovies(), Movie.class, bulk::reserve, bulk::insert);
+                }
+            }
+            if (persistence != null) {
+                persistence.snapshot();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the catalog", e);
+        } finally {
+            loading = false;
+        }
+    }
+
+    private <T> void load(Resource resource, Class<T> type, IntToLongFunction reserve, ChunkSink<T> sink)
+            throws IOException {
+        String kind = type.getSimpleName().toLowerCase(Locale.ROOT) + "s";
+        int parallelism = properties.getParallelism() > 0
+                ? properties.getParallelism() : Runtime.getRuntime().availableProcessors();
+        int chunkSize = properties.getChunkSize();
+        long started = System.nanoTime();
+        long count = 0;
+
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism,
+                Thread.ofPlatform().name("catalog-loader-", 1).factory());
+        Semaphore inFlight = new Semaphore(parallelism * 2);
+        List<Future<Integer>> chunks = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8), 1 << 16)) {
+            String filename = resource.getFilename() != null ? resource.getFilename() : resource.getDescription();
+            boolean csv = filename.toLowerCase(Locale.ROOT).endsWith(".csv");
+            String header = csv ? reader.readLine() : null;
+            CatalogLineParser<T> parser = CatalogLineParser.forFile(filename, header, type, objectMapper);
+
+            long lineNumber = csv ? 2 : 1;
+            List<String> lines = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+                if (lines.size() == chunkSize) {
+                    chunks.add(submit(workers, inFlight, parser, lines, lineNumber, reserve, sink, filename));
+                    lineNumber += lines.size();
+                    lines = new ArrayList<>(chunkSize);
+                    count += collect(chunks, false);
+                }
+            }
+            if (!lines.isEmpty()) {
+                chunks.add(submit(workers, inFlight, parser, lines, lineNumber, reserve, sink, filename));
+            }
+            count += collect(chunks, true);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while loading " + kind, e);
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof RuntimeException runtime
+                    ? runtime : new IllegalStateException(e.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - started;
+        Timer.builder("catalog.load").tag("type", kind).register(meterRegistry).record(elapsed, TimeUnit.NANOSECONDS);
+        Counter.builder("catalog.load.items").tag("type", kind).register(meterRegistry).increment(count);
+        log.info("Loaded {} {} from {} in {} ms ({} per second)", count, kind, resource.getDescription(),
+                TimeUnit.NANOSECONDS.toMillis(elapsed), Math.round(count / (elapsed / 1e9)));
+    }
+
+    private <T> Future<Integer> submit(ExecutorService workers, Semaphore inFlight, CatalogLineParser<T> parser,
+                                       List<String> lines, long firstLineNumber, IntToLongFunction reserve,
+                                       ChunkSink<T> sink, String filename) throws InterruptedException {
+        long first = reserve.applyAsLong(lines.size());
+        inFlight.acquire();
+        return workers.submit(() -> {
+            try {
+                List<T> items = new ArrayList<>(lines.size());
+                for (int i = 0; i < lines.size(); i++) {
+                    String line = lines.get(i);
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        items.add(parser.parse(line));
+                    } catch (IOException | RuntimeException e) {
+                        throw new IllegalArgumentException("Line " + (firstLineNumber + i) + " of " + filename
+                                + " is invalid: " + e.getMessage(), e);
+                    }
+                }
+                // Blank lines leave their reserved positions unused, which keeps the order intact
+                sink.insert(first, items);
+                return items.size();
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    /**
+     * Removes the finished chunks, or waits for all of them, and rethrows the failure of any of them, so
+     * reading stops as soon as a chunk has failed.
+     *
+     * @return the number of items in the removed chunks
+     */
+    private static long collect(List<Future<Integer>> chunks, boolean all)
+            throws ExecutionException, InterruptedException {
+        long count = 0;
+        Iterator<Future<Integer>> iterator = chunks.iterator();
+        while (iterator.hasNext()) {
+            Future<Integer> chunk = iterator.next();
+            if (all || chunk.isDone()) {
+                count += chunk.get();
+                iterator.remove();
+            }
+        }
+        return count;
+    }
+
+    @FunctionalInterface
+    private interface ChunkSink<T> {
+        void insert(long first, List<T> items);
+    }
+}
@@ -0,0 +1,43 @@
+package com.henan.graphqlserver.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.persistence.CatalogPersistence;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.loader", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(CatalogLoaderProperties.class)
+public class CatalogLoaderConfiguration {
+
+    @Bean
+    public CatalogLoader catalogLoader(CatalogLoaderProperties properties, MovieRepository movieRepository,
+                                       ActorRepository actorRepository, ObjectMapper objectMapper,
+                                       ObjectProvider<CatalogPersistence> persistence,
+                                       MeterRegistry meterRegistry) {
+        return new CatalogLoader(properties, movieRepository, actorRepository, objectMapper,
+                persistence.getIfAvailable(), meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(prefix = "graphql-server.loader", name = "serve-partial", havingValue = "false",
+            matchIfMissing = true)
+    public FilterRegistrationBean<CatalogLoadingFilter> catalogLoadingFilter(
+            CatalogLoader catalogLoader, @Value("${spring.graphql.path:/graphql}") String graphQlPath) {
+        FilterRegistrationBean<CatalogLoadingFilter> registration =
+                new FilterRegistrationBean<>(new CatalogLoadingFilter(catalogLoader));
+        registration.addUrlPatterns(graphQlPath);
+        // Ahead of the response cache, which would otherwise answer from entries of the partial catalog
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
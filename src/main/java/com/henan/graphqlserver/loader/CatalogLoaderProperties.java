@@ -0,0 +1,20 @@
+package com.henan.graphqlserver.loader;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.core.io.Resource;
+
+@Data
+@ConfigurationProperties("graphql-server.loader")
+public class CatalogLoaderProperties {
+    private boolean enabled = false;
+    // JSON Lines (.jsonl, .ndjson) or CSV (.csv) files; a missing property skips that kind
+    private Resource movies;
+    private Resource actors;
+    // Lines parsed and inserted together by one worker
+    private int chunkSize = 10_000;
+    // Worker threads, 0 for one per available processor
+    private int parallelism = 0;
+    // Accept requests while loading instead of holding readiness until the catalog is complete
+    private boolean servePartial = false;
+}
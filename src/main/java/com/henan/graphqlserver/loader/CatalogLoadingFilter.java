@@ -0,0 +1,38 @@
+package com.henan.graphqlserver.loader;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Answers GraphQL requests with 503 Service Unavailable while {@link CatalogLoader} is loading, so no client
+ * sees a partial catalog even if it reaches the server before its readiness probe passes.
+ */
+public class CatalogLoadingFilter extends OncePerRequestFilter {
+    private static final String BODY = "{\"errors\":[{\"message\":\"The catalog is still loading\"}]}";
+
+    private final CatalogLoader catalogLoader;
+
+    public CatalogLoadingFilter(CatalogLoader catalogLoader) {
+        this.catalogLoader = catalogLoader;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (!catalogLoader.isLoading()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.getWriter().write(BODY);
+    }
+}
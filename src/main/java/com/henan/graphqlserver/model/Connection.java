@@ -0,0 +1,22 @@
+package com.henan.graphqlserver.model;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+@Getter
+@AllArgsConstructor
+public class Connection<T> {
+    private final List<Edge<T>> edges;
+    private final PageInfo pageInfo;
+    @Getter(AccessLevel.NONE)
+    private final Supplier<Integer> totalCount;
+
+    // Only computed when the client selects totalCount
+    public Integer getTotalCount() {
+        return totalCount.get();
+    }
+}
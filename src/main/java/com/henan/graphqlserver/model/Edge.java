@@ -0,0 +1,11 @@
+package com.henan.graphqlserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class Edge<T> {
+    private T node;
+    private String cursor;
+}
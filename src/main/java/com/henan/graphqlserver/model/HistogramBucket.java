@@ -0,0 +1,14 @@
+package com.henan.graphqlserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HistogramBucket {
+    private float from;
+    private float to;
+    private int count;
+}
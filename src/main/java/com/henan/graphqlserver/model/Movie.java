@@ -16,5 +16,5 @@ public class Movie {
     private String director;
     private String genre;
     private Float rating;
-    private List<Actor> actors;
+    private List<String> actorIds;
 } 
\ No newline at end of file
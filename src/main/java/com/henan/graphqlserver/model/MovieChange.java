@@ -0,0 +1,15 @@
+package com.henan.graphqlserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@Data
+@AllArgsConstructor
+public class MovieChange {
+    private MovieChangeType type;
+    private String id;
+    // Null when deleted
+    private Movie movie;
+    // Null when created
+    private Movie previous;
+}
@@ -0,0 +1,7 @@
+package com.henan.graphqlserver.model;
+
+public enum MovieChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
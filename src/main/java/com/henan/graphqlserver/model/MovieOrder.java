@@ -0,0 +1,13 @@
+package com.henan.graphqlserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieOrder {
+    private MovieOrderField field;
+    private SortDirection direction = SortDirection.DESC;
+}
@@ -0,0 +1,7 @@
+package com.henan.graphqlserver.model;
+
+public enum MovieOrderField {
+    RATING,
+    RELEASE_YEAR,
+    TITLE
+}
@@ -0,0 +1,19 @@
+package com.henan.graphqlserver.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovieStats {
+    private int count;
+    private List<FacetCount> genres;
+    private List<FacetCount> decades;
+    private List<FacetCount> directors;
+    private List<HistogramBucket> ratingHistogram;
+    private Float averageRating;
+}
@@ -0,0 +1,9 @@
+package com.henan.graphqlserver.model;
+
+import lombok.Data;
+
+@Data
+public class MovieUpsertInput {
+    private String id;
+    private MovieInput movie;
+}
@@ -0,0 +1,6 @@
+package com.henan.graphqlserver.model;
+
+public enum SortDirection {
+    ASC,
+    DESC
+}
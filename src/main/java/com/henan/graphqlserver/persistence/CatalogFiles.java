@@ -0,0 +1,54 @@
+package com.henan.graphqlserver.persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Names of the files in the data directory. Log segments are numbered from 1, and {@code snapshot-N}
+ * holds the catalog as of the end of segment {@code N}, so recovery loads the newest snapshot and replays
+ * the segments after it. Snapshot 0 is the catalog the server started with before anything was logged.
+ */
+final class CatalogFiles {
+    private static final Pattern LOG_SEGMENT = Pattern.compile("log-(\\d{20})\\.bin");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d{20})\\.bin");
+
+    private CatalogFiles() {
+    }
+
+    static Path logSegment(Path directory, long segment) {
+        return directory.resolve("log-%020d.bin".formatted(segment));
+    }
+
+    static Path snapshot(Path directory, long segment) {
+        return directory.resolve("snapshot-%020d.bin".formatted(segment));
+    }
+
+    /**
+     * @return the numbers of the log segments in the directory, in ascending order
+     */
+    static List<Long> logSegments(Path directory) throws IOException {
+        return list(directory, LOG_SEGMENT);
+    }
+
+    /**
+     * @return the numbers of the snapshots in the directory, in ascending order
+     */
+    static List<Long> snapshots(Path directory) throws IOException {
+        return list(directory, SNAPSHOT);
+    }
+
+    private static List<Long> list(Path directory, Pattern pattern) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> pattern.matcher(file.getFileName().toString()))
+                    .filter(Matcher::matches)
+                    .map(matcher -> Long.parseLong(matcher.group(1)))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
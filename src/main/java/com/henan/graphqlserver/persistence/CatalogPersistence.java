@@ -0,0 +1,218 @@
+package com.henan.graphqlserver.persistence;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.CatalogJournal;
+import com.henan.graphqlserver.repository.MovieRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Makes the movie and actor stores durable with a {@link MutationLog} and periodic snapshots.
+ *
+ * Recovery runs once every singleton is created, which is after the datafetchers have saved the sample
+ * data and before the server accepts requests. On the first start the sample data becomes snapshot 0.
+ * On later starts the sample movies are replaced by the newest snapshot and the log segments after it.
+ * Actors cannot be deleted, so the recovered actors are saved over the sample ones.
+ *
+ * A snapshot rotates the log first, waits until the movie store has published every write in the closed
+ * segments, and then copies the stores. A batch of movie writes only publishes once all of its writes are in
+ * the log, and the copy only sees published writes, so without the wait a batch that straddles the rotation
+ * would be in neither the snapshot nor the remaining segments. Writes in the new segment may or may not be
+ * in the copy, and replaying them on top of it gives the same state either way.
+ */
+public class CatalogPersistence implements SmartInitializingSingleton, DisposableBean {
+    private static final Logger log = LoggerFactory.getLogger(CatalogPersistence.class);
+
+    private final PersistenceProperties properties;
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+    private final Path directory;
+
+    private MutationLog mutationLog;
+    private ScheduledExecutorService scheduler;
+    private long snapshotTicket;
+    private boolean restored;
+
+    public CatalogPersistence(PersistenceProperties properties, MovieRepository movieRepository,
+                              ActorRepository actorRepository) {
+        this.properties = properties;
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+        this.directory = properties.getDirectory();
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            Files.createDirectories(directory);
+            mutationLog = MutationLog.open(directory, recover() + 1, properties.isFsync());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not recover the catalog from " + directory, e);
+        }
+        movieRepository.setJournal(mutationLog);
+        actorRepository.setJournal(mutationLog);
+
+        long interval = properties.getSnapshotInterval().toMillis();
+        scheduler = Executors.newSingleThreadScheduledExecutor(
+                Thread.ofPlatform().name("catalog-snapshot").daemon().factory());
+        scheduler.scheduleWithFixedDelay(this::scheduledSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return whether the catalog was restored from a snapshot taken after the first start, rather than
+     * started from the data the application created itself
+     */
+    public boolean isRestored() {
+        return restored;
+    }
+
+    /**
+     * Writes a snapshot of the current catalog and removes the log segments and snapshots it replaces.
+     */
+    public synchronized void snapshot() throws IOException {
+        long ticket = mutationLog.lastTicket();
+        long segment = mutationLog.rotate();
+        movieRepository.awaitPublished();
+        writeSnapshot(segment);
+        snapshotTicket = ticket;
+
+        for (long older : CatalogFiles.snapshots(directory)) {
+            if (older < segment) {
+                Files.deleteIfExists(CatalogFiles.snapshot(directory, older));
+            }
+        }
+        for (long closed : CatalogFiles.logSegments(directory)) {
+            if (closed <= segment) {
+                Files.deleteIfExists(CatalogFiles.logSegment(directory, closed));
+            }
+        }
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        if (mutationLog != null) {
+            movieRepository.setJournal(CatalogJournal.NONE);
+            actorRepository.setJournal(CatalogJournal.NONE);
+            mutationLog.close();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            synchronized (this) {
+                if (mutationLog.lastTicket() == snapshotTicket) {
+                    return;
+                }
+                snapshot();
+            }
+        } catch (IOException | RuntimeException e) {
+            // Keep the schedule alive, the log still holds every write
+            log.warn("Could not write a catalog snapshot to {}", directory, e);
+        }
+    }
+
+    /**
+     * Loads the newest snapshot and replays the log segments after it into the stores.
+     *
+     * @return the number of the last segment read, or of the snapshot if no segment follows it
+     */
+    private long recover() throws IOException {
+        List<Long> snapshots = CatalogFiles.snapshots(directory);
+        List<Long> segments = CatalogFiles.logSegments(directory);
+        if (snapshots.isEmpty()) {
+            if (!segments.isEmpty()) {
+                throw new IOException("Found log segments but no snapshot in " + directory);
+            }
+            writeSnapshot(0);
+            return 0;
+        }
+
+        long started = System.nanoTime();
+        long base = snapshots.getLast();
+        restored = base > 0;
+        Map<String, Movie> movies = new LinkedHashMap<>();
+        Map<String, Actor> actors = new LinkedHashMap<>();
+        Path snapshot = CatalogFiles.snapshot(directory, base);
+        if (RecordFile.read(snapshot, RecordFile.SNAPSHOT_MAGIC, record -> replay(record, movies, actors))
+                != Files.size(snapshot)) {
+            throw new IOException("Corrupt snapshot " + snapshot);
+        }
+        List<Long> tail = segments.stream().filter(segment -> segment > base).toList();
+        for (long segment : tail) {
+            Path file = CatalogFiles.logSegment(directory, segment);
+            long end = RecordFile.read(file, RecordFile.LOG_MAGIC, record -> replay(record, movies, actors));
+            if (end < Files.size(file)) {
+                if (segment != tail.getLast()) {
+                    throw new IOException("Corrupt log segment " + file);
+                }
+                // The last records were not completely written before the process stopped, so no write
+                // waiting for them was acknowledged
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(end);
+                    channel.force(true);
+                }
+            }
+        }
+
+        movieRepository.deleteAllById(movieRepository.stream().map(Movie::getId).toList());
+        movieRepository.saveAll(new ArrayList<>(movies.values()));
+        actors.values().forEach(actorRepository::save);
+        log.info("Recovered {} movies and {} actors from snapshot {} and {} log segments in {} ms",
+                movies.size(), actors.size(), base, tail.size(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        return tail.isEmpty() ? base : tail.getLast();
+    }
+
+    private static void replay(CatalogRecord record, Map<String, Movie> movies, Map<String, Actor> actors) {
+        switch (record) {
+            case CatalogRecord.MoviePut put -> movies.put(put.movie().getId(), put.movie());
+            case CatalogRecord.MovieDeleted deleted -> movies.remove(deleted.id());
+            case CatalogRecord.ActorPut put -> actors.put(put.actor().getId(), put.actor());
+            case CatalogRecord.MoviesPut put -> put.movies().forEach(movie -> movies.put(movie.getId(), movie));
+            case CatalogRecord.MoviesDeleted deleted -> deleted.ids().forEach(movies::remove);
+        }
+    }
+
+    /**
+     * Writes the stores to a temporary file and renames it, so a snapshot file is always complete.
+     */
+    private void writeSnapshot(long segment) throws IOException {
+        Path target = CatalogFiles.snapshot(directory, segment);
+        Path temporary = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.deleteIfExists(temporary);
+        try (RecordFile.Writer writer = RecordFile.create(temporary, RecordFile.SNAPSHOT_MAGIC)) {
+            for (Actor actor : actorRepository.findAll()) {
+                writer.write(new CatalogRecord.ActorPut(actor));
+            }
+            Iterator<Movie> movies = movieRepository.stream().iterator();
+            while (movies.hasNext()) {
+                writer.write(new CatalogRecord.MoviePut(movies.next()));
+            }
+            writer.force();
+        }
+        Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
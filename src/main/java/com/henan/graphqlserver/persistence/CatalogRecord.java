@@ -0,0 +1,35 @@
+package com.henan.graphqlserver.persistence;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.List;
+
+/**
+ * A write to the catalog as stored in the log and in snapshots. Records carry the full state of the
+ * movie or actor after the write, so replaying a record twice, or on top of a snapshot that already
+ * contains it, leaves the same state.
+ */
+sealed interface CatalogRecord {
+
+    record MoviePut(Movie movie) implements CatalogRecord {
+    }
+
+    record MovieDeleted(String id) implements CatalogRecord {
+    }
+
+    record ActorPut(Actor actor) implements CatalogRecord {
+    }
+
+    /**
+     * Movies written by one atomic batch, framed together so a torn tail drops all of them or none.
+     */
+    record MoviesPut(List<Movie> movies) implements CatalogRecord {
+    }
+
+    /**
+     * Ids deleted by one atomic batch, framed together like {@link MoviesPut}.
+     */
+    record MoviesDeleted(List<String> ids) implements CatalogRecord {
+    }
+}
@@ -0,0 +1,246 @@
+package com.henan.graphqlserver.persistence;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.CatalogJournal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Append-only log of catalog writes, split into numbered segments, with group commit.
+ *
+ * Appending only queues the record in memory. A single writer thread takes everything queued since its last
+ * round, writes it to the current segment and forces it to disk once, then releases every writer waiting in
+ * {@link #awaitDurable(long)} for that round. While one round is being forced, the next one fills up, so
+ * the number of fsyncs stays flat as the write rate grows.
+ *
+ * Once a write fails, the log stops writing, and every later append and wait throws, since the records that
+ * would follow the lost ones can no longer be replayed safely. Rejecting the append keeps the stores from
+ * applying a write the log will never hold.
+ */
+final class MutationLog implements CatalogJournal, Closeable {
+    private final Path directory;
+    private final boolean fsync;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition appended = lock.newCondition();
+    private final Condition written = lock.newCondition();
+    private final Thread writer;
+
+    // Guarded by lock
+    private List<CatalogRecord> pending = new ArrayList<>();
+    private long lastTicket;
+    private long durableTicket;
+    private long rotationTicket = -1;
+    private IOException failure;
+    private boolean closed;
+
+    // Only used by the writer thread, and by close() once it has stopped
+    private RecordFile.Writer segmentWriter;
+    private long segment;
+
+    private MutationLog(Path directory, long segment, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segment = segment;
+        this.fsync = fsync;
+        this.segmentWriter = RecordFile.create(CatalogFiles.logSegment(directory, segment), RecordFile.LOG_MAGIC);
+        segmentWriter.force();
+        this.writer = Thread.ofPlatform().name("catalog-log-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Creates the segment with the given number and starts appending to it.
+     */
+    static MutationLog open(Path directory, long segment, boolean fsync) throws IOException {
+        return new MutationLog(directory, segment, fsync);
+    }
+
+    @Override
+    public long moviePut(Movie movie) {
+        return append(new CatalogRecord.MoviePut(movie));
+    }
+
+    @Override
+    public long movieDeleted(String id) {
+        return append(new CatalogRecord.MovieDeleted(id));
+    }
+
+    @Override
+    public long actorPut(Actor actor) {
+        return append(new CatalogRecord.ActorPut(actor));
+    }
+
+    @Override
+    public long moviesPut(List<Movie> movies) {
+        return append(new CatalogRecord.MoviesPut(movies));
+    }
+
+    @Override
+    public long moviesDeleted(List<String> ids) {
+        return append(new CatalogRecord.MoviesDeleted(ids));
+    }
+
+    @Override
+    public void awaitDurable(long ticket) {
+        lock.lock();
+        try {
+            while (durableTicket < ticket && failure == null) {
+                written.awaitUninterruptibly();
+            }
+            if (durableTicket < ticket) {
+                throw new UncheckedIOException("Mutation log is not writable", failure);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the ticket of the last appended record, 0 if nothing was appended yet
+     */
+    long lastTicket() {
+        lock.lock();
+        try {
+            return lastTicket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the current segment once every record appended so far is in it, and continues in a new one.
+     *
+     * @return the number of the closed segment
+     */
+    long rotate() {
+        long ticket;
+        long closedSegment;
+        lock.lock();
+        try {
+            ticket = lastTicket;
+            rotationTicket = ticket;
+            appended.signal();
+            while (rotationTicket >= 0 && failure == null) {
+                written.awaitUninterruptibly();
+            }
+            closedSegment = segment - 1;
+        } finally {
+            lock.unlock();
+        }
+        awaitDurable(ticket);
+        return closedSegment;
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            appended.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        segmentWriter.close();
+    }
+
+    private long append(CatalogRecord record) {
+        lock.lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Mutation log is closed");
+            }
+            if (failure != null) {
+                throw new UncheckedIOException("Mutation log is not writable", failure);
+            }
+            pending.add(record);
+            appended.signal();
+            return ++lastTicket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            List<CatalogRecord> batch;
+            long batchTicket;
+            long rotateAfter;
+            lock.lock();
+            try {
+                while (pending.isEmpty() && rotationTicket < 0 && !closed) {
+                    appended.awaitUninterruptibly();
+                }
+                if (pending.isEmpty() && rotationTicket < 0) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                batchTicket = lastTicket;
+                rotateAfter = rotationTicket;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            if (failure == null) {
+                try {
+                    write(batch, batchTicket, rotateAfter);
+                } catch (IOException e) {
+                    error = e;
+                }
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else if (failure == null) {
+                    durableTicket = batchTicket;
+                }
+                if (rotateAfter >= 0) {
+                    rotationTicket = -1;
+                }
+                written.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Writes the batch, whose last record has the given ticket. With a rotation pending, the records up to
+     * {@code rotateAfter} go to the current segment and the rest to the next one.
+     */
+    private void write(List<CatalogRecord> batch, long batchTicket, long rotateAfter) throws IOException {
+        long firstTicket = batchTicket - batch.size() + 1;
+        int split = rotateAfter >= 0 ? (int) (rotateAfter - firstTicket + 1) : batch.size();
+        for (int i = 0; i < split; i++) {
+            segmentWriter.write(batch.get(i));
+        }
+        if (rotateAfter >= 0) {
+            segmentWriter.force();
+            segmentWriter.close();
+            segment++;
+            segmentWriter = RecordFile.create(CatalogFiles.logSegment(directory, segment), RecordFile.LOG_MAGIC);
+        }
+        for (int i = split; i < batch.size(); i++) {
+            segmentWriter.write(batch.get(i));
+        }
+        if (fsync) {
+            segmentWriter.force();
+        } else {
+            segmentWriter.flush();
+        }
+    }
+}
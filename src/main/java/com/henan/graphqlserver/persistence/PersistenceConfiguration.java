@@ -0,0 +1,20 @@
+package com.henan.graphqlserver.persistence;
+
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.persistence", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(PersistenceProperties.class)
+public class PersistenceConfiguration {
+
+    @Bean
+    public CatalogPersistence catalogPersistence(PersistenceProperties properties, MovieRepository movieRepository,
+                                                 ActorRepository actorRepository) {
+        return new CatalogPersistence(properties, movieRepository, actorRepository);
+    }
+}
@@ -0,0 +1,19 @@
+package com.henan.graphqlserver.persistence;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@ConfigurationProperties("graphql-server.persistence")
+public class PersistenceProperties {
+    private boolean enabled = false;
+    // Holds the log segments and snapshots, created on first start
+    private Path directory = Path.of("data");
+    // Force each group commit to disk; without it an operating system crash can lose the latest writes
+    private boolean fsync = true;
+    // How often the catalog is written to a new snapshot, if anything was logged since the last one
+    private Duration snapshotInterval = Duration.ofMinutes(10);
+}
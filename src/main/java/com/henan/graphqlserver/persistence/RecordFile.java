@@ -0,0 +1,320 @@
+package com.henan.graphqlserver.persistence;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Binary format shared by log segments and snapshots: an 8-byte header with a magic number and the format
+ * version, followed by records framed as {@code length, CRC32C checksum, payload}. A payload starts with
+ * the record type, followed by the fields of the movie or actor, or by the movies or ids of an atomic batch.
+ * Strings are stored as UTF-8 with their length, -1 for null.
+ *
+ * Files are read through memory-mapped windows, so the payloads are decoded without copying them into
+ * heap buffers first.
+ */
+final class RecordFile {
+    static final int LOG_MAGIC = 0x4D4C4F47;
+    static final int SNAPSHOT_MAGIC = 0x4D534E50;
+    static final int HEADER_BYTES = 8;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int FRAME_BYTES = 8;
+    private static final int FLUSH_BYTES = 1 << 20;
+    private static final long WINDOW_BYTES = 256L << 20;
+
+    private static final byte MOVIE_PUT = 1;
+    private static final byte MOVIE_DELETED = 2;
+    private static final byte ACTOR_PUT = 3;
+    private static final byte MOVIES_PUT = 4;
+    private static final byte MOVIES_DELETED = 5;
+
+    private RecordFile() {
+    }
+
+    /**
+     * Creates the file, which must not exist yet, and writes its header.
+     */
+    static Writer create(Path file, int magic) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        Writer writer = new Writer(channel);
+        writer.buffer.putInt(magic).putInt(FORMAT_VERSION);
+        return writer;
+    }
+
+    /**
+     * Reads the records of the file in order, up to its end or to the first incomplete or corrupt record.
+     * A file too short to hold a header has no records.
+     *
+     * @return the offset just past the last valid record, 0 if the header is incomplete
+     * @throws IOException if the file cannot be read or is not a file of the expected kind
+     */
+    static long read(Path file, int magic, Consumer<CatalogRecord> consumer) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Window window = new Window(channel);
+            if (window.size < HEADER_BYTES) {
+                return 0;
+            }
+            ByteBuffer header = window.map(0, HEADER_BYTES);
+            if (header.getInt() != magic || header.getInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported file format: " + file);
+            }
+
+            CRC32C checksum = new CRC32C();
+            long position = HEADER_BYTES;
+            while (window.size - position >= FRAME_BYTES) {
+                ByteBuffer frame = window.map(position, FRAME_BYTES);
+                int length = frame.getInt();
+                int expected = frame.getInt();
+                if (length < 1 || window.size - position - FRAME_BYTES < length) {
+                    break;
+                }
+                ByteBuffer payload = window.map(position + FRAME_BYTES, length);
+                checksum.reset();
+                checksum.update(payload.duplicate());
+                if ((int) checksum.getValue() != expected) {
+                    break;
+                }
+                consumer.accept(decode(payload, file));
+                position += FRAME_BYTES + length;
+            }
+            return position;
+        }
+    }
+
+    private static CatalogRecord decode(ByteBuffer payload, Path file) throws IOException {
+        try {
+            return switch (payload.get()) {
+                case MOVIE_PUT -> new CatalogRecord.MoviePut(getMovie(payload));
+                case MOVIE_DELETED -> new CatalogRecord.MovieDeleted(getString(payload));
+                case ACTOR_PUT -> new CatalogRecord.ActorPut(
+                        new Actor(getString(payload), getString(payload), getInteger(payload)));
+                case MOVIES_PUT -> {
+                    int size = payload.getInt();
+                    List<Movie> movies = new ArrayList<>(size);
+                    for (int i = 0; i < size; i++) {
+                        movies.add(getMovie(payload));
+                    }
+                    yield new CatalogRecord.MoviesPut(movies);
+                }
+                case MOVIES_DELETED -> new CatalogRecord.MoviesDeleted(getStrings(payload));
+                default -> throw new IOException("Unknown record type in " + file);
+            };
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Malformed record in " + file, e);
+        }
+    }
+
+    private static Movie getMovie(ByteBuffer buffer) {
+        return new Movie(getString(buffer), getString(buffer), getInteger(buffer), getString(buffer),
+                getString(buffer), getFloat(buffer), getStrings(buffer));
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static Integer getInteger(ByteBuffer buffer) {
+        return buffer.get() != 0 ? buffer.getInt() : null;
+    }
+
+    private static Float getFloat(ByteBuffer buffer) {
+        return buffer.get() != 0 ? buffer.getFloat() : null;
+    }
+
+    private static List<String> getStrings(ByteBuffer buffer) {
+        int size = buffer.getInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> strings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            strings.add(getString(buffer));
+        }
+        return strings;
+    }
+
+    /**
+     * Maps the file in windows of up to {@link #WINDOW_BYTES}, so files larger than a mapped buffer can
+     * hold are read as well. A window is replaced only when a read crosses its end.
+     */
+    private static final class Window {
+        private final FileChannel channel;
+        private final long size;
+        private MappedByteBuffer buffer;
+        private long start;
+
+        private Window(FileChannel channel) throws IOException {
+            this.channel = channel;
+            this.size = channel.size();
+        }
+
+        ByteBuffer map(long position, int length) throws IOException {
+            if (buffer == null || position < start || position + length > start + buffer.capacity()) {
+                start = position;
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                        Math.min(Math.max(WINDOW_BYTES, length), size - position));
+            }
+            return buffer.slice((int) (position - start), length);
+        }
+    }
+
+    /**
+     * Appends framed records to a file through a heap buffer that is written out every megabyte and on
+     * {@link #flush()}. Not thread-safe.
+     */
+    static final class Writer implements Closeable {
+        private final FileChannel channel;
+        private final CRC32C checksum = new CRC32C();
+        private ByteBuffer buffer = ByteBuffer.allocate(FLUSH_BYTES * 2);
+
+        private Writer(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        void write(CatalogRecord record) throws IOException {
+            int start = buffer.position();
+            ensure(FRAME_BYTES + 1);
+            buffer.position(start + FRAME_BYTES);
+            switch (record) {
+                case CatalogRecord.MoviePut put -> {
+                    buffer.put(MOVIE_PUT);
+                    putMovie(put.movie());
+                }
+                case CatalogRecord.MovieDeleted deleted -> {
+                    buffer.put(MOVIE_DELETED);
+                    putString(deleted.id());
+                }
+                case CatalogRecord.ActorPut put -> {
+                    Actor actor = put.actor();
+                    buffer.put(ACTOR_PUT);
+                    putString(actor.getId());
+                    putString(actor.getName());
+                    putInteger(actor.getBirthYear());
+                }
+                case CatalogRecord.MoviesPut put -> {
+                    buffer.put(MOVIES_PUT);
+                    ensure(4);
+                    buffer.putInt(put.movies().size());
+                    put.movies().forEach(this::putMovie);
+                }
+                case CatalogRecord.MoviesDeleted deleted -> {
+                    buffer.put(MOVIES_DELETED);
+                    putStrings(deleted.ids());
+                }
+            }
+            int length = buffer.position() - start - FRAME_BYTES;
+            checksum.reset();
+            checksum.update(buffer.slice(start + FRAME_BYTES, length));
+            buffer.putInt(start, length).putInt(start + 4, (int) checksum.getValue());
+            if (buffer.position() >= FLUSH_BYTES) {
+                flush();
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Flushes the buffer and forces the written bytes to the storage device.
+         */
+        void force() throws IOException {
+            flush();
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flush();
+            } finally {
+                channel.close();
+            }
+        }
+
+        private void putMovie(Movie movie) {
+            putString(movie.getId());
+            putString(movie.getTitle());
+            putInteger(movie.getReleaseYear());
+            putString(movie.getDirector());
+            putString(movie.getGenre());
+            putFloat(movie.getRating());
+            putStrings(movie.getActorIds());
+        }
+
+        private void putString(String value) {
+            if (value == null) {
+                ensure(4);
+                buffer.putInt(-1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensure(4 + bytes.length);
+            buffer.putInt(bytes.length).put(bytes);
+        }
+
+        private void putInteger(Integer value) {
+            ensure(5);
+            if (value == null) {
+                buffer.put((byte) 0);
+            } else {
+                buffer.put((byte) 1).putInt(value);
+            }
+        }
+
+        private void putFloat(Float value) {
+            ensure(5);
+            if (value == null) {
+                buffer.put((byte) 0);
+            } else {
+                buffer.put((byte) 1).putFloat(value);
+            }
+        }
+
+        private void putStrings(List<String> values) {
+            ensure(4);
+            if (values == null) {
+                buffer.putInt(-1);
+                return;
+            }
+            buffer.putInt(values.size());
+            for (String value : values) {
+                putString(value);
+            }
+        }
+
+        // Grows the buffer so a record never has to be split across flushes
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer grown = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            }
+        }
+    }
+}
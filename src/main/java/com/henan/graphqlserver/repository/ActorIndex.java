@@ -0,0 +1,85 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reverse index from actor id to the movies the actor appears in.
+ */
+class ActorIndex implements MovieIndex {
+    // Empty posting sets are kept for the same reason as in GenreIndex.
+    private final ConcurrentHashMap<String, SequenceSet> postings = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(long sequence, Movie movie) {
+        for (String actorId : actorIdsOf(movie)) {
+            add(sequence, actorId);
+        }
+    }
+
+    @Override
+    public void addAll(long first, List<Movie> movies) {
+        SequenceSet.Runs<String> runs = new SequenceSet.Runs<>();
+        for (int i = 0; i < movies.size(); i++) {
+            for (String actorId : actorIdsOf(movies.get(i))) {
+                runs.add(actorId, first + i);
+            }
+        }
+        runs.addTo(actorId -> postings.computeIfAbsent(actorId, key -> new SequenceSet()));
+    }
+
+    @Override
+    public void remove(long sequence, Movie movie) {
+        for (String actorId : actorIdsOf(movie)) {
+            remove(sequence, actorId);
+        }
+    }
+
+    /**
+     * Only touches the actors that were added to or removed from the movie.
+     */
+    @Override
+    public void update(long sequence, Movie previous, Movie current) {
+        List<String> previousIds = actorIdsOf(previous);
+        List<String> currentIds = actorIdsOf(current);
+        if (previousIds.equals(currentIds)) {
+            return;
+        }
+        for (String actorId : previousIds) {
+            if (!currentIds.contains(actorId)) {
+                remove(sequence, actorId);
+            }
+        }
+        for (String actorId : currentIds) {
+            if (!previousIds.contains(actorId)) {
+                add(sequence, actorId);
+            }
+        }
+    }
+
+    /**
+     * @return the movies of the actor with a sequence after {@code after}, in ascending order
+     */
+    PrimitiveIterator.OfLong sequences(String actorId, long after) {
+        SequenceSet sequences = postings.get(actorId);
+        return (sequences != null ? sequences.view() : SequenceSet.View.EMPTY).iterator(after);
+    }
+
+    private void add(long sequence, String actorId) {
+        postings.computeIfAbsent(actorId, key -> new SequenceSet()).add(sequence);
+    }
+
+    private void remove(long sequence, String actorId) {
+        SequenceSet sequences = postings.get(actorId);
+        if (sequences != null) {
+            sequences.remove(sequence);
+        }
+    }
+
+    private static List<String> actorIdsOf(Movie movie) {
+        return movie.getActorIds() != null ? movie.getActorIds() : List.of();
+    }
+}
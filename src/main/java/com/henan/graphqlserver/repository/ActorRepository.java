@@ -0,0 +1,188 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Actor;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Thread-safe actor store shared by every resolver that needs actors. Movies only keep actor ids, so
+ * a change to an actor here is visible in every movie the actor appears in.
+ *
+ * Writes of an id are serialized by a {@link ReentrantLock} picked by its hash, as in {@link MovieRepository},
+ * so a write waiting for the journal parks a virtual thread instead of pinning its carrier.
+ */
+@Repository
+public class ActorRepository {
+    private static final String CURSOR_TYPE = "actor";
+    private static final int WRITE_LOCKS = 1 << 8;
+
+    private final ConcurrentHashMap<String, Slot> slotsById = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Long, Slot> slotsBySequence = new ConcurrentSkipListMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCKS];
+    private volatile CatalogJournal journal = CatalogJournal.NONE;
+
+    public ActorRepository() {
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Sends every later write to the journal. A write the journal rejects is not applied, and the others are
+     * visible once applied and return once the journal has made them durable, see
+     * {@link MovieRepository#setJournal}.
+     */
+    public void setJournal(CatalogJournal journal) {
+        this.journal = journal;
+    }
+
+    public Actor findById(String id) {
+        if (id == null) {
+            return null;
+        }
+        Slot slot = slotsById.get(id);
+        return slot != null ? slot.actor : null;
+    }
+
+    /**
+     * Looks up a batch of actors in one call. Ids without an actor are left out of the result.
+     */
+    public Map<String, Actor> findAllById(Collection<String> ids) {
+        Map<String, Actor> actors = new HashMap<>();
+        for (String id : ids) {
+            Actor actor = findById(id);
+            if (actor != null) {
+                actors.put(id, actor);
+            }
+        }
+        return actors;
+    }
+
+    /**
+     * Returns a point-in-time copy of all actors in insertion order.
+     */
+    public List<Actor> findAll() {
+        return slotsBySequence.values().stream().map(slot -> slot.actor).toList();
+    }
+
+    /**
+     * Reads up to {@code first} actors after the cursor, in insertion order.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Actor> findPage(int first, String after) {
+        long afterSequence = Cursors.decode(CURSOR_TYPE, after);
+        List<Actor> actors = new ArrayList<>();
+        List<String> cursors = new ArrayList<>();
+        boolean hasNextPage = false;
+        for (Slot slot : slotsBySequence.tailMap(afterSequence, false).values()) {
+            if (actors.size() == first) {
+                hasNextPage = true;
+                break;
+            }
+            actors.add(slot.actor);
+            cursors.add(Cursors.encode(CURSOR_TYPE, slot.sequence));
+        }
+        return new Page<>(actors, cursors, hasNextPage, after != null);
+    }
+
+    public int count() {
+        return slotsById.size();
+    }
+
+    /**
+     * Returns a number that grows with every write, bumped after the write is applied.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    public boolean existsById(String id) {
+        return id != null && slotsById.containsKey(id);
+    }
+
+    /**
+     * Inserts the actor, or replaces the stored actor with the same id while keeping its position.
+     */
+    public Actor save(Actor actor) {
+        CatalogJournal journal = this.journal;
+        long ticket = put(actor, sequence::incrementAndGet, journal);
+        version.incrementAndGet();
+        journal.awaitDurable(ticket);
+        return actor;
+    }
+
+    /**
+     * Starts a bulk load, fed from several threads at once like {@link MovieRepository#bulkLoad()}.
+     */
+    public BulkLoad bulkLoad() {
+        return new BulkLoad();
+    }
+
+    private long put(Actor actor, LongSupplier newSequence, CatalogJournal journal) {
+        int hash = actor.getId().hashCode();
+        ReentrantLock lock = writeLocks[(hash ^ (hash >>> 16)) & (WRITE_LOCKS - 1)];
+        lock.lock();
+        try {
+            long ticket = journal.actorPut(actor);
+            Slot slot = slotsById.get(actor.getId());
+            if (slot == null) {
+                slot = new Slot(newSequence.getAsLong(), actor);
+                slotsBySequence.put(slot.sequence, slot);
+                slotsById.put(actor.getId(), slot);
+            } else {
+                slot.actor = actor;
+            }
+            return ticket;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Inserts chunks of actors at positions reserved in input order, see {@link MovieRepository.BulkLoad}.
+     */
+    public final class BulkLoad implements AutoCloseable {
+
+        private BulkLoad() {
+        }
+
+        public long reserve(int size) {
+            return sequence.getAndAdd(size) + 1;
+        }
+
+        public void insert(long first, List<Actor> actors) {
+            for (int i = 0; i < actors.size(); i++) {
+                long position = first + i;
+                put(actors.get(i), () -> position, CatalogJournal.NONE);
+            }
+        }
+
+        @Override
+        public void close() {
+            version.incrementAndGet();
+        }
+    }
+
+    private static final class Slot {
+        private final long sequence;
+        private volatile Actor actor;
+
+        private Slot(long sequence, Actor actor) {
+            this.sequence = sequence;
+            this.actor = actor;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.List;
+
+/**
+ * Receives every write applied to the movie and actor stores, for example to make them durable.
+ *
+ * The append methods are called while the store holds the write lock of the changed id, before the write is
+ * applied, so the writes of one id reach the journal in the order they are applied. They must not block for
+ * long, and may throw to reject the write, which the store then leaves unapplied. Each returns a ticket, and
+ * {@link #awaitDurable(long)} is called with the highest ticket of an operation after the lock is released
+ * and the write is visible.
+ */
+public interface CatalogJournal {
+
+    CatalogJournal NONE = new CatalogJournal() {
+        @Override
+        public long moviePut(Movie movie) {
+            return 0;
+        }
+
+        @Override
+        public long movieDeleted(String id) {
+            return 0;
+        }
+
+        @Override
+        public long actorPut(Actor actor) {
+            return 0;
+        }
+
+        @Override
+        public void awaitDurable(long ticket) {
+        }
+    };
+
+    long moviePut(Movie movie);
+
+    long movieDeleted(String id);
+
+    long actorPut(Actor actor);
+
+    /**
+     * Appends the movies of a batch that must be applied whole, as one write. The store holds the write locks
+     * of all their ids. A journal that cannot frame a batch appends the movies one by one.
+     */
+    default long moviesPut(List<Movie> movies) {
+        long ticket = 0;
+        for (Movie movie : movies) {
+            ticket = moviePut(movie);
+        }
+        return ticket;
+    }
+
+    /**
+     * Appends the deletions of a batch that must be applied whole, as one write, like {@link #moviesPut}.
+     */
+    default long moviesDeleted(List<String> ids) {
+        long ticket = 0;
+        for (String id : ids) {
+            ticket = movieDeleted(id);
+        }
+        return ticket;
+    }
+
+    /**
+     * Blocks until every write up to the given ticket is durable.
+     */
+    void awaitDurable(long ticket);
+}
@@ -0,0 +1,22 @@
+package com.henan.graphqlserver.repository;
+
+import org.springframework.stereotype.Component;
+
+/**
+ * Combined write version of the movie and actor stores. Both versions only grow, so their sum grows
+ * with every write to either store and never repeats.
+ */
+@Component
+public class CatalogVersion {
+    private final MovieRepository movieRepository;
+    private final ActorRepository actorRepository;
+
+    public CatalogVersion(MovieRepository movieRepository, ActorRepository actorRepository) {
+        this.movieRepository = movieRepository;
+        this.actorRepository = actorRepository;
+    }
+
+    public long current() {
+        return movieRepository.version() + actorRepository.version();
+    }
+}
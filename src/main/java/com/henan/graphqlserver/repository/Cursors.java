@@ -0,0 +1,38 @@
+package com.henan.graphqlserver.repository;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Encodes store positions as opaque pagination cursors. A cursor names the insertion sequence of the
+ * last item a client has seen, so it stays valid while other items are added or removed.
+ */
+final class Cursors {
+
+    private Cursors() {
+    }
+
+    static String encode(String type, long sequence) {
+        String value = type + ":" + sequence;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the sequence named by the cursor, or 0 for a null cursor, which starts at the beginning
+     * @throws IllegalArgumentException if the cursor was not produced by {@link #encode} for this type
+     */
+    static long decode(String type, String cursor) {
+        if (cursor == null) {
+            return 0;
+        }
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (value.startsWith(type + ":")) {
+                return Long.parseLong(value.substring(type.length() + 1));
+            }
+        } catch (IllegalArgumentException e) {
+            // Not base64 or not a number, reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + cursor);
+    }
+}
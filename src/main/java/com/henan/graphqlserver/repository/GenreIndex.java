@@ -0,0 +1,71 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hash index from normalized (lower-cased) genre to the movies in that genre.
+ */
+class GenreIndex implements MovieIndex {
+    // Empty posting sets are kept rather than removed, so a concurrent add and remove for the same
+    // genre can never lose an entry. The number of distinct genres is small.
+    private final ConcurrentHashMap<String, SequenceSet> postings = new ConcurrentHashMap<>();
+
+    static String normalize(String genre) {
+        return genre.toLowerCase(Locale.ROOT);
+    }
+
+    @Override
+    public void add(long sequence, Movie movie) {
+        if (movie.getGenre() != null) {
+            postings.computeIfAbsent(normalize(movie.getGenre()), key -> new SequenceSet()).add(sequence);
+        }
+    }
+
+    @Override
+    public void addAll(long first, List<Movie> movies) {
+        SequenceSet.Runs<String> runs = new SequenceSet.Runs<>();
+        for (int i = 0; i < movies.size(); i++) {
+            String genre = movies.get(i).getGenre();
+            if (genre != null) {
+                runs.add(normalize(genre), first + i);
+            }
+        }
+        runs.addTo(genre -> postings.computeIfAbsent(genre, key -> new SequenceSet()));
+    }
+
+    @Override
+    public void remove(long sequence, Movie movie) {
+        if (movie.getGenre() != null) {
+            SequenceSet sequences = postings.get(normalize(movie.getGenre()));
+            if (sequences != null) {
+                sequences.remove(sequence);
+            }
+        }
+    }
+
+    @Override
+    public void update(long sequence, Movie previous, Movie current) {
+        if (!Objects.equals(previous.getGenre(), current.getGenre())) {
+            MovieIndex.super.update(sequence, previous, current);
+        }
+    }
+
+    long estimate(String genre) {
+        SequenceSet sequences = postings.get(normalize(genre));
+        return sequences != null ? sequences.size() : 0;
+    }
+
+    /**
+     * @return the movies in the genre with a sequence after {@code after}, in ascending order
+     */
+    PrimitiveIterator.OfLong sequences(String genre, long after) {
+        SequenceSet sequences = postings.get(normalize(genre));
+        return (sequences != null ? sequences.view() : SequenceSet.View.EMPTY).iterator(after);
+    }
+}
@@ -0,0 +1,23 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.MovieChange;
+
+import java.util.List;
+
+/**
+ * Receives the changes of every write to the movie store once it is published.
+ *
+ * It is called while the store publishes the write, so changes arrive in the order readers see them, and
+ * must only hand them off. Bulk loads are not reported.
+ */
+@FunctionalInterface
+public interface MovieChangeListener {
+
+    MovieChangeListener NONE = changes -> {
+    };
+
+    /**
+     * @param changes the changes of one write, in the order they were made
+     */
+    void moviesChanged(List<MovieChange> changes);
+}
@@ -0,0 +1,405 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieFilter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Struct-of-arrays storage of the movies for {@link MovieRepository} in columnar mode.
+ *
+ * Each movie occupies a row, which holds the head version of its {@link MovieSlot}. Release years and
+ * ratings are primitive columns, genres, directors and actor ids are codes into shared
+ * {@link StringDictionary dictionaries}, and {@link Movie} objects are only created for the rows a caller
+ * reads. Rows are grouped into pages of {@value #PAGE_SIZE}, each with a {@link StampedLock}: a write holds
+ * the page's write lock while it replaces the row and the slot's head together, single rows are read
+ * optimistically and read again under the read lock if a write interfered, and scans hold the read lock of
+ * one page at a time. A reader therefore never sees half of a write.
+ *
+ * Every read is at a snapshot stamp. A row is only read when the version the snapshot sees is the head;
+ * otherwise the snapshot sees an older version, which the slot keeps as an object, or none.
+ *
+ * Rows are freed once no snapshot can see their movie and are then reused. Each row stores the slot it
+ * belongs to, which readers compare with the slot they expect, so a reader holding a stale row gets
+ * nothing rather than another movie.
+ */
+final class MovieColumns {
+    static final int PAGE_SIZE = 1 << 12;
+    private static final int PAGE_SHIFT = 12;
+    private static final int NO_RELEASE_YEAR = Integer.MIN_VALUE;
+    // A missing rating is stored as NaN, which no GraphQL Float can hold and which fails every comparison
+    private static final float NO_RATING = Float.NaN;
+
+    private final StringDictionary genres = new StringDictionary();
+    private final StringDictionary directors = new StringDictionary();
+    private final StringDictionary actors = new StringDictionary();
+    private volatile Page[] pages = new Page[0];
+
+    // A lock rather than a monitor, so a virtual thread that waits for it parks instead of pinning its carrier
+    private final ReentrantLock rowsLock = new ReentrantLock();
+    // Guarded by rowsLock
+    private int rowCount;
+    private int[] freeRows = new int[16];
+    private int freeCount;
+
+    /**
+     * Reserves a row, reusing the row of a deleted movie if there is one.
+     */
+    int allocate() {
+        rowsLock.lock();
+        try {
+            if (freeCount > 0) {
+                return freeRows[--freeCount];
+            }
+            int row = rowCount++;
+            if (row >> PAGE_SHIFT == pages.length) {
+                Page[] grown = Arrays.copyOf(pages, pages.length + 1);
+                grown[pages.length] = new Page();
+                pages = grown;
+            }
+            return row;
+        } finally {
+            rowsLock.unlock();
+        }
+    }
+
+    /**
+     * Clears the row and makes it available to {@link #allocate()}.
+     */
+    void free(int row) {
+        Page page = page(row);
+        int i = row & (PAGE_SIZE - 1);
+        long stamp = page.lock.writeLock();
+        try {
+            page.slots[i] = null;
+            page.titles[i] = null;
+            page.actorIds[i] = null;
+        } finally {
+            page.lock.unlockWrite(stamp);
+        }
+        rowsLock.lock();
+        try {
+            if (freeCount == freeRows.length) {
+                freeRows = Arrays.copyOf(freeRows, freeCount * 2);
+            }
+            freeRows[freeCount++] = row;
+        } finally {
+            rowsLock.unlock();
+        }
+    }
+
+    /**
+     * Stores the movie in the row of the slot and makes the version, which holds no movie of its own, the
+     * slot's head.
+     */
+    void write(MovieSlot slot, Movie movie, MovieSlot.Version version) {
+        int row = slot.row;
+        int genre = genres.encode(movie.getGenre());
+        int director = directors.encode(movie.getDirector());
+        int[] actorIds = encode(movie.getActorIds());
+        Page page = page(row);
+        int i = row & (PAGE_SIZE - 1);
+        long stamp = page.lock.writeLock();
+        try {
+            page.slots[i] = slot;
+            page.titles[i] = movie.getTitle();
+            page.releaseYears[i] = movie.getReleaseYear() != null ? movie.getReleaseYear() : NO_RELEASE_YEAR;
+            page.ratings[i] = movie.getRating() != null ? movie.getRating() : NO_RATING;
+            page.genres[i] = genre;
+            page.directors[i] = director;
+            page.actorIds[i] = actorIds;
+            slot.head = version;
+        } finally {
+            page.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Reads the head version of the slot, committed or not, for a write that replaces or deletes it. Must
+     * hold the lock of the slot's id, which every write of the row holds as well.
+     *
+     * @return the movie, or null if the head is a deletion
+     */
+    Movie readHead(MovieSlot slot) {
+        MovieSlot.Version head = slot.head;
+        if (head.deleted || head.movie != null) {
+            return head.movie;
+        }
+        return movie(page(slot.row), slot.row & (PAGE_SIZE - 1), MovieProjection.ALL);
+    }
+
+    /**
+     * Reads the movie of the slot as seen by a snapshot if it matches the filter, without creating it
+     * otherwise.
+     *
+     * @param filter the filter, or null to read the movie unconditionally
+     * @param projection the columns to decode into the movie
+     * @return the movie, or null if it does not match, the snapshot sees no movie or the row no longer
+     *         belongs to the slot
+     */
+    Movie readIf(MovieSlot slot, long at, Filter filter, MovieProjection projection) {
+        Page page = page(slot.row);
+        int i = slot.row & (PAGE_SIZE - 1);
+        long stamp = page.lock.tryOptimisticRead();
+        Movie movie = readIf(page, i, slot, at, filter, projection);
+        if (!page.lock.validate(stamp)) {
+            stamp = page.lock.readLock();
+            try {
+                movie = readIf(page, i, slot, at, filter, projection);
+            } finally {
+                page.lock.unlockRead(stamp);
+            }
+        }
+        return movie;
+    }
+
+    /**
+     * Compiles the filter against the dictionaries, for use with the methods of this class.
+     */
+    Filter filter(MovieFilter filter) {
+        return new Filter(filter, genres);
+    }
+
+    /**
+     * @return the number of pages, the end of the page range that the scans below accept
+     */
+    int pageCount() {
+        return pages.length;
+    }
+
+    /**
+     * Counts the movies a snapshot sees that match the filter in a range of pages by scanning the columns,
+     * without creating any movie.
+     */
+    long count(Filter filter, long at, int fromPage, int toPage) {
+        long count = 0;
+        Page[] pages = this.pages;
+        for (int p = fromPage; p < toPage; p++) {
+            Page page = pages[p];
+            long stamp = page.lock.readLock();
+            try {
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    MovieSlot.Version version = visible(page, i, at);
+                    if (version != null && filter.test(page, i, version)) {
+                        count++;
+                    }
+                }
+            } finally {
+                page.lock.unlockRead(stamp);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Adds the movies a snapshot sees that match the filter in a range of pages to the statistics by
+     * scanning the columns, without creating any movie.
+     */
+    void aggregate(Filter filter, long at, MovieStatistics statistics, int fromPage, int toPage) {
+        Page[] pages = this.pages;
+        for (int p = fromPage; p < toPage; p++) {
+            Page page = pages[p];
+            long stamp = page.lock.readLock();
+            try {
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    MovieSlot.Version version = visible(page, i, at);
+                    if (version == null || !filter.test(page, i, version)) {
+                        continue;
+                    }
+                    if (version.movie != null) {
+                        statistics.add(0, version.movie);
+                    } else {
+                        int releaseYear = page.releaseYears[i];
+                        float rating = page.ratings[i];
+                        statistics.add(genres.decode(page.genres[i]),
+                                releaseYear != NO_RELEASE_YEAR ? releaseYear : null,
+                                directors.decode(page.directors[i]), Float.isNaN(rating) ? null : rating);
+                    }
+                }
+            } finally {
+                page.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Returns the movies a snapshot sees that match the filter in a range of pages with their insertion
+     * sequences, scanning the columns and creating only the matching movies, with the columns of the
+     * projection. Rows are reused, so the result is not in insertion order.
+     */
+    List<MovieOrdering.Ranked> select(Filter filter, long at, int fromPage, int toPage,
+                                      MovieProjection projection) {
+        List<MovieOrdering.Ranked> matches = new ArrayList<>();
+        Page[] pages = this.pages;
+        for (int p = fromPage; p < toPage; p++) {
+            Page page = pages[p];
+            long stamp = page.lock.readLock();
+            try {
+                for (int i = 0; i < PAGE_SIZE; i++) {
+                    MovieSlot.Version version = visible(page, i, at);
+                    if (version != null && filter.test(page, i, version)) {
+                        matches.add(new MovieOrdering.Ranked(page.slots[i].sequence,
+                                version.movie != null ? version.movie : movie(page, i, projection)));
+                    }
+                }
+            } finally {
+                page.lock.unlockRead(stamp);
+            }
+        }
+        return matches;
+    }
+
+    private Page page(int row) {
+        return pages[row >> PAGE_SHIFT];
+    }
+
+    // May run without a lock, so it must not fail on a row that is being written
+    private Movie readIf(Page page, int i, MovieSlot slot, long at, Filter filter, MovieProjection projection) {
+        if (page.slots[i] != slot) {
+            return null;
+        }
+        MovieSlot.Version version = visible(page, i, at);
+        if (version == null || (filter != null && !filter.test(page, i, version))) {
+            return null;
+        }
+        return version.movie != null ? version.movie : movie(page, i, projection);
+    }
+
+    /**
+     * @return the version of the row's slot that the snapshot sees, or null if it sees none or a deletion.
+     *         A version without a movie is held in the row.
+     */
+    private static MovieSlot.Version visible(Page page, int i, long at) {
+        MovieSlot slot = page.slots[i];
+        if (slot == null) {
+            return null;
+        }
+        MovieSlot.Version version = slot.at(at);
+        return version != null && !version.deleted ? version : null;
+    }
+
+    // Dictionary codes decode to the dictionary's own strings, so only the movie and its actor ids are allocated
+    private Movie movie(Page page, int i, MovieProjection projection) {
+        MovieSlot slot = page.slots[i];
+        Movie movie = new Movie();
+        movie.setId(slot != null ? slot.id : null);
+        if (projection.includes(MovieProjection.Field.TITLE)) {
+            movie.setTitle(page.titles[i]);
+        }
+        if (projection.includes(MovieProjection.Field.RELEASE_YEAR)) {
+            int releaseYear = page.releaseYears[i];
+            movie.setReleaseYear(releaseYear != NO_RELEASE_YEAR ? releaseYear : null);
+        }
+        if (projection.includes(MovieProjection.Field.DIRECTOR)) {
+            movie.setDirector(directors.decode(page.directors[i]));
+        }
+        if (projection.includes(MovieProjection.Field.GENRE)) {
+            movie.setGenre(genres.decode(page.genres[i]));
+        }
+        if (projection.includes(MovieProjection.Field.RATING)) {
+            float rating = page.ratings[i];
+            movie.setRating(Float.isNaN(rating) ? null : rating);
+        }
+        if (projection.includes(MovieProjection.Field.ACTOR_IDS)) {
+            movie.setActorIds(decode(page.actorIds[i]));
+        }
+        return movie;
+    }
+
+    private int[] encode(List<String> actorIds) {
+        if (actorIds == null) {
+            return null;
+        }
+        int[] codes = new int[actorIds.size()];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = actors.encode(actorIds.get(i));
+        }
+        return codes;
+    }
+
+    private List<String> decode(int[] codes) {
+        if (codes == null) {
+            return null;
+        }
+        String[] actorIds = new String[codes.length];
+        for (int i = 0; i < codes.length; i++) {
+            actorIds[i] = actors.decode(codes[i]);
+        }
+        return Arrays.asList(actorIds);
+    }
+
+    /**
+     * A {@link MovieFilter} compiled to comparisons on the columns. Bounds that are not set cover every
+     * value, and the genre is turned into a table of the matching dictionary codes.
+     */
+    static final class Filter {
+        private final MovieFilter source;
+        private final String title;
+        private final boolean[] genres;
+        private final int releaseYearFrom;
+        private final int releaseYearTo;
+        private final boolean rated;
+        private final float minRating;
+        private final float maxRating;
+
+        private Filter(MovieFilter filter, StringDictionary genreDictionary) {
+            source = filter;
+            title = MovieQueryPlanner.hasText(filter.getTitle()) ? filter.getTitle() : null;
+            genres = MovieQueryPlanner.hasText(filter.getGenre())
+                    ? genreDictionary.matching(filter.getGenre()::equalsIgnoreCase) : null;
+            boolean dated = filter.getReleaseYearFrom() != null || filter.getReleaseYearTo() != null;
+            releaseYearFrom = filter.getReleaseYearFrom() != null ? filter.getReleaseYearFrom()
+                    : dated ? NO_RELEASE_YEAR + 1 : Integer.MIN_VALUE;
+            releaseYearTo = filter.getReleaseYearTo() != null ? filter.getReleaseYearTo() : Integer.MAX_VALUE;
+            rated = filter.getMinRating() != null || filter.getMaxRating() != null;
+            minRating = filter.getMinRating() != null ? filter.getMinRating() : Float.NEGATIVE_INFINITY;
+            maxRating = filter.getMaxRating() != null ? filter.getMaxRating() : Float.POSITIVE_INFINITY;
+        }
+
+        // Versions that are not held in the row are tested as objects
+        private boolean test(Page page, int i, MovieSlot.Version version) {
+            return version.movie != null ? MovieQueryPlanner.matches(source, version.movie) : test(page, i);
+        }
+
+        // The cheap primitive comparisons come first, the title only for rows that pass them
+        private boolean test(Page page, int i) {
+            int releaseYear = page.releaseYears[i];
+            if (releaseYear < releaseYearFrom || releaseYear > releaseYearTo) {
+                return false;
+            }
+            if (rated) {
+                float rating = page.ratings[i];
+                if (!(rating >= minRating && rating <= maxRating)) {
+                    return false;
+                }
+            }
+            if (genres != null) {
+                int genre = page.genres[i];
+                if (genre < 0 || genre >= genres.length || !genres[genre]) {
+                    return false;
+                }
+            }
+            if (title != null) {
+                String movieTitle = page.titles[i];
+                return movieTitle != null && TitleIndex.containsIgnoreCase(movieTitle, title);
+            }
+            return true;
+        }
+    }
+
+    private static final class Page {
+        private final StampedLock lock = new StampedLock();
+        // Null for free rows
+        private final MovieSlot[] slots = new MovieSlot[PAGE_SIZE];
+        private final String[] titles = new String[PAGE_SIZE];
+        private final int[] releaseYears = new int[PAGE_SIZE];
+        private final float[] ratings = new float[PAGE_SIZE];
+        private final int[] genres = new int[PAGE_SIZE];
+        private final int[] directors = new int[PAGE_SIZE];
+        private final int[][] actorIds = new int[PAGE_SIZE][];
+    }
+}
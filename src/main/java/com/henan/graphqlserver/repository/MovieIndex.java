@@ -0,0 +1,35 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.List;
+
+/**
+ * Secondary index maintained by {@link MovieRepository}. Entries are keyed by the movie's insertion
+ * sequence so results can be returned in the same order as a full scan.
+ */
+interface MovieIndex {
+
+    void add(long sequence, Movie movie);
+
+    void remove(long sequence, Movie movie);
+
+    /**
+     * Adds the movies stored at consecutive sequences from {@code first}. Indexes override this to collect the
+     * entries by posting list and add each list's at once.
+     */
+    default void addAll(long first, List<Movie> movies) {
+        for (int i = 0; i < movies.size(); i++) {
+            add(first + i, movies.get(i));
+        }
+    }
+
+    /**
+     * Moves the entry of a movie from its previous to its current state. Indexes override this to skip
+     * work when the indexed attribute did not change.
+     */
+    default void update(long sequence, Movie previous, Movie current) {
+        remove(sequence, previous);
+        add(sequence, current);
+    }
+}
@@ -0,0 +1,45 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieOrder;
+import com.henan.graphqlserver.model.SortDirection;
+
+import java.util.Comparator;
+import java.util.function.Function;
+
+/**
+ * Comparators for ordered searches. Movies without a value for the ordering field always sort last,
+ * and ties are broken by insertion sequence so the same query always returns the same order.
+ */
+final class MovieOrdering {
+
+    private MovieOrdering() {
+    }
+
+    static Comparator<Ranked> comparator(MovieOrder orderBy) {
+        Comparator<Ranked> byField = switch (orderBy.getField()) {
+            case RATING -> byValue(Movie::getRating, Comparator.naturalOrder(), orderBy.getDirection());
+            case RELEASE_YEAR -> byValue(Movie::getReleaseYear, Comparator.naturalOrder(), orderBy.getDirection());
+            case TITLE -> byValue(Movie::getTitle,
+                    String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder()), orderBy.getDirection());
+        };
+        return byField.thenComparingLong(Ranked::sequence);
+    }
+
+    static boolean isDescending(MovieOrder orderBy) {
+        return orderBy.getDirection() != SortDirection.ASC;
+    }
+
+    private static <T> Comparator<Ranked> byValue(Function<Movie, T> extractor, Comparator<T> order,
+                                                  SortDirection direction) {
+        Comparator<T> directed = direction == SortDirection.ASC ? order : order.reversed();
+        return Comparator.comparing(ranked -> extractor.apply(ranked.movie()), Comparator.nullsLast(directed));
+    }
+
+    /**
+     * A movie together with its insertion sequence, captured once so comparisons stay stable while the
+     * store changes.
+     */
+    record Ranked(long sequence, Movie movie) {
+    }
+}
@@ -0,0 +1,57 @@
+package com.henan.graphqlserver.repository;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The fields of {@link com.henan.graphqlserver.model.Movie} that a reader needs, so the repository can leave
+ * the others unset. The id is always set.
+ *
+ * Only the columnar mode acts on it: it skips decoding the columns that are not needed. Stored movie objects
+ * are shared rather than copied, so they are returned whole whatever the projection.
+ */
+public final class MovieProjection {
+    public static final MovieProjection ALL = new MovieProjection(EnumSet.allOf(Field.class));
+    public static final MovieProjection ID = new MovieProjection(EnumSet.noneOf(Field.class));
+
+    private final Set<Field> fields;
+
+    private MovieProjection(Set<Field> fields) {
+        this.fields = fields;
+    }
+
+    public static MovieProjection of(Set<Field> fields) {
+        return fields.isEmpty() ? ID : fields.size() == Field.values().length ? ALL
+                : new MovieProjection(EnumSet.copyOf(fields));
+    }
+
+    public boolean includes(Field field) {
+        return fields.contains(field);
+    }
+
+    /**
+     * @return a projection with the field as well, for reads that evaluate it themselves
+     */
+    public MovieProjection with(Field field) {
+        if (fields.contains(field)) {
+            return this;
+        }
+        EnumSet<Field> extended = EnumSet.of(field);
+        extended.addAll(fields);
+        return of(extended);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieProjection" + fields;
+    }
+
+    public enum Field {
+        TITLE,
+        RELEASE_YEAR,
+        DIRECTOR,
+        GENRE,
+        RATING,
+        ACTOR_IDS
+    }
+}
@@ -0,0 +1,170 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.model.MovieOrder;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PrimitiveIterator;
+import java.util.function.Consumer;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+
+/**
+ * Chooses how {@link MovieRepository#search(MovieFilter)} finds its candidates. Every index that can
+ * answer a predicate of the filter is costed by the number of entries it would return, the cheapest
+ * one is scanned, and the remaining predicates are checked on its candidates only.
+ */
+class MovieQueryPlanner {
+    private final TitleIndex titleIndex;
+    private final GenreIndex genreIndex;
+    private final RangeIndex<Integer> releaseYearIndex;
+    private final RangeIndex<Float> ratingIndex;
+
+    MovieQueryPlanner(TitleIndex titleIndex, GenreIndex genreIndex, RangeIndex<Integer> releaseYearIndex,
+                      RangeIndex<Float> ratingIndex) {
+        this.titleIndex = titleIndex;
+        this.genreIndex = genreIndex;
+        this.releaseYearIndex = releaseYearIndex;
+        this.ratingIndex = ratingIndex;
+    }
+
+    /**
+     * @return the most selective index scan for the filter, or null if no index applies and the whole
+     *         catalog has to be scanned
+     */
+    IndexScan plan(MovieFilter filter) {
+        List<IndexScan> scans = new ArrayList<>();
+        if (TitleIndex.supports(filter.getTitle())) {
+            String title = filter.getTitle();
+            scans.add(new IndexScan("title", titleIndex.estimate(title),
+                    after -> titleIndex.sequences(title, after)));
+        }
+        if (hasText(filter.getGenre())) {
+            String genre = filter.getGenre();
+            scans.add(new IndexScan("genre", genreIndex.estimate(genre),
+                    after -> genreIndex.sequences(genre, after)));
+        }
+        if (filter.getReleaseYearFrom() != null || filter.getReleaseYearTo() != null) {
+            Integer from = filter.getReleaseYearFrom();
+            Integer to = filter.getReleaseYearTo();
+            scans.add(new IndexScan("releaseYear", releaseYearIndex.estimate(from, to),
+                    after -> releaseYearIndex.sequences(from, to, after)));
+        }
+        if (filter.getMinRating() != null || filter.getMaxRating() != null) {
+            Float from = filter.getMinRating();
+            Float to = filter.getMaxRating();
+            scans.add(new IndexScan("rating", ratingIndex.estimate(from, to),
+                    after -> ratingIndex.sequences(from, to, after)));
+        }
+        return scans.stream()
+                .min(Comparator.comparingLong(IndexScan::estimate))
+                .orElse(null);
+    }
+
+    /**
+     * Decides how to answer an ordered search for the top {@code limit} matches. When the ordering field
+     * has a sorted index, walking it in order stops after about {@code limit / selectivity} entries, where
+     * the selectivity is estimated from the best candidate scan. The walk is returned when that is
+     * expected to visit fewer entries than verifying every candidate; otherwise null, and the caller
+     * keeps the top matches of the candidates in a bounded heap.
+     */
+    IndexWalk planWalk(MovieFilter filter, MovieOrder orderBy, int limit, long catalogSize) {
+        boolean descending = MovieOrdering.isDescending(orderBy);
+        return switch (orderBy.getField()) {
+            case RATING -> walkOf("rating", ratingIndex, filter.getMinRating(), filter.getMaxRating(),
+                    descending, filter, limit, catalogSize);
+            case RELEASE_YEAR -> walkOf("releaseYear", releaseYearIndex, filter.getReleaseYearFrom(),
+                    filter.getReleaseYearTo(), descending, filter, limit, catalogSize);
+            case TITLE -> null;
+        };
+    }
+
+    private <K extends Comparable<K>> IndexWalk walkOf(String name, RangeIndex<K> index, K from, K to,
+                                                       boolean descending, MovieFilter filter, int limit,
+                                                       long catalogSize) {
+        long walkSize = index.estimate(from, to);
+        IndexScan best = plan(filter);
+        long candidates = best != null ? best.estimate() : catalogSize;
+        if (candidates == 0) {
+            return null;
+        }
+        double expectedVisits = (double) limit * walkSize / candidates;
+        if (expectedVisits > candidates) {
+            return null;
+        }
+        return new IndexWalk(name, walkSize, visitor -> index.walk(from, to, descending, visitor));
+    }
+
+    static boolean matches(MovieFilter filter, Movie movie) {
+        // Title filter (case-insensitive contains)
+        if (hasText(filter.getTitle())) {
+            if (movie.getTitle() == null || !TitleIndex.containsIgnoreCase(movie.getTitle(), filter.getTitle())) {
+                return false;
+            }
+        }
+
+        // Genre filter (case-insensitive exact match)
+        if (hasText(filter.getGenre())) {
+            if (movie.getGenre() == null || !movie.getGenre().equalsIgnoreCase(filter.getGenre())) {
+                return false;
+            }
+        }
+
+        // Rating range filter
+        if (filter.getMinRating() != null || filter.getMaxRating() != null) {
+            if (movie.getRating() == null) {
+                return false;
+            }
+            if (filter.getMinRating() != null && movie.getRating() < filter.getMinRating()) {
+                return false;
+            }
+            if (filter.getMaxRating() != null && movie.getRating() > filter.getMaxRating()) {
+                return false;
+            }
+        }
+
+        // Release year range filter
+        if (filter.getReleaseYearFrom() != null || filter.getReleaseYearTo() != null) {
+            if (movie.getReleaseYear() == null) {
+                return false;
+            }
+            if (filter.getReleaseYearFrom() != null && movie.getReleaseYear() < filter.getReleaseYearFrom()) {
+                return false;
+            }
+            if (filter.getReleaseYearTo() != null && movie.getReleaseYear() > filter.getReleaseYearTo()) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return whether the filter has no predicate, so every movie matches
+     */
+    static boolean isEmpty(MovieFilter filter) {
+        return !hasText(filter.getTitle()) && !hasText(filter.getGenre())
+                && filter.getMinRating() == null && filter.getMaxRating() == null
+                && filter.getReleaseYearFrom() == null && filter.getReleaseYearTo() == null;
+    }
+
+    static boolean hasText(String value) {
+        return value != null && !value.isEmpty();
+    }
+
+    /**
+     * A scan over one index, with the number of entries it is expected to produce. The source returns the
+     * entries after a sequence in ascending order.
+     */
+    record IndexScan(String index, long estimate, LongFunction<PrimitiveIterator.OfLong> source) {
+    }
+
+    /**
+     * An in-order walk over a sorted index that the visitor can stop early.
+     */
+    record IndexWalk(String index, long estimate, Consumer<LongPredicate> source) {
+    }
+}
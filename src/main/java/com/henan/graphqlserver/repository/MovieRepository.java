@@ -0,0 +1,1492 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieChange;
+import com.henan.graphqlserver.model.MovieChangeType;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.model.MovieOrder;
+import com.henan.graphqlserver.model.MovieStats;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongFunction;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Thread-safe movie store with O(1) lookup by id.
+ *
+ * Writes for a given id are serialized by one of a fixed set of {@link ReentrantLock}s picked by the hash of
+ * the id, so writes to different movies mostly proceed in parallel. A write may wait for the journal or for a
+ * page of the columns while it holds the lock, and a virtual thread parks on a {@code ReentrantLock} rather
+ * than pinning its carrier thread as it would inside {@link ConcurrentHashMap#compute}. Movies are also kept in
+ * insertion order in a skip list so iteration is stable and never throws
+ * {@link java.util.ConcurrentModificationException} while writes happen.
+ *
+ * Reads are snapshot-isolated. A write never changes a stored movie: it adds an immutable version to the
+ * movie's {@link MovieSlot}, and publishes its versions, all those of a batch at once, by giving them the
+ * next commit stamp. A read pins the last published stamp and only sees the versions committed at or
+ * before it, so the reads given one {@link Snapshot} all see the catalog as it was between two writes,
+ * however long they take. Reads take no lock, only publishing a write is serialized. Older versions and
+ * deleted movies are dropped once no pinned snapshot can see them.
+ *
+ * Secondary indexes on title trigrams, genre, release year, rating and actors are updated under the
+ * same per-id lock, and {@link #search(MovieFilter)} uses them through {@link MovieQueryPlanner}. They
+ * follow the latest writes, so a snapshot adds the movies written since the oldest pinned snapshot to the
+ * candidates of an index, and checks every candidate against the version it sees. Catalog-wide statistics
+ * are updated when a write is published, and a snapshot corrects them for the writes published after it.
+ *
+ * In columnar mode the movies are stored in {@link MovieColumns} instead of as objects, and read movies
+ * are copies created on demand. Filters are then evaluated on the columns, so only the movies that are
+ * returned are created, and searches that would visit a large part of the catalog through an index scan
+ * the columns instead. The list reads take a {@link MovieProjection}, and only decode the columns of the
+ * fields it includes.
+ *
+ * A search that scans the whole catalog, or all of its columns, is split into chunks of consecutive
+ * sequences or pages once the catalog reaches {@code parallel-scan-threshold} movies. The chunks run on a
+ * dedicated {@link ForkJoinPool}, so request threads and the common pool are never used for them, and their
+ * results are combined in chunk order, which keeps the order of a sequential scan.
+ */
+@Repository
+public class MovieRepository {
+    private static final String CURSOR_TYPE = "movie";
+    // In columnar mode, an index that returns more than this fraction of the catalog loses to a column scan,
+    // which skips sorting the candidates and looking each of them up
+    private static final int COLUMN_SCAN_DIVISOR = 16;
+    // More chunks than threads, so a thread that finishes early takes over work of a slower one
+    private static final int CHUNKS_PER_THREAD = 4;
+    // A power of two, so the lock of an id is picked with a mask
+    private static final int WRITE_LOCKS = 1 << 10;
+    private static final MovieProjection STATISTICS = MovieProjection.of(EnumSet.of(
+            MovieProjection.Field.RELEASE_YEAR, MovieProjection.Field.DIRECTOR, MovieProjection.Field.GENRE,
+            MovieProjection.Field.RATING));
+
+    private final ConcurrentHashMap<String, MovieSlot> slotsById = new ConcurrentHashMap<>();
+    // Serialize the writes of an id, and the pruning of its slots
+    private final ReentrantLock[] writeLocks = new ReentrantLock[WRITE_LOCKS];
+    // Also holds the slots of deleted movies until no snapshot can see them
+    private final ConcurrentSkipListMap<Long, MovieSlot> slotsBySequence = new ConcurrentSkipListMap<>();
+    // The slots written since the oldest pinned snapshot, whose index entries may not be what it sees
+    private final ConcurrentHashMap<Long, MovieSlot> recent = new ConcurrentHashMap<>();
+    // Written slots whose older versions are pruned once no snapshot can see them, in commit order
+    private final ConcurrentLinkedQueue<Retired> retired = new ConcurrentLinkedQueue<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    // The movies stored by the latest writes, published or not, for planning
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Serializes publishing, and lets snapshots read the statistics optimistically
+    private final StampedLock commitLock = new StampedLock();
+    private volatile long published;
+    // The pinned stamps, each with the number of snapshots pinning it
+    private final ConcurrentSkipListMap<Long, Integer> pins = new ConcurrentSkipListMap<>();
+    // Pruning may have removed versions that only a snapshot before this stamp would see
+    private volatile long horizon;
+    private final ReentrantLock pruneLock = new ReentrantLock();
+    // The batches that may have sent writes to the journal and are not published yet
+    private final Set<Batch> unpublished = ConcurrentHashMap.newKeySet();
+
+    private final TitleIndex titleIndex = new TitleIndex();
+    private final GenreIndex genreIndex = new GenreIndex();
+    private final RangeIndex<Integer> releaseYearIndex = new RangeIndex<>(Movie::getReleaseYear);
+    private final RangeIndex<Float> ratingIndex = new RangeIndex<>(Movie::getRating);
+    private final ActorIndex actorIndex = new ActorIndex();
+    // Holds the published catalog, unlike the indexes
+    private final MovieStatistics statistics = new MovieStatistics();
+    private final List<MovieIndex> indexes = List.of(titleIndex, genreIndex, releaseYearIndex, ratingIndex, actorIndex);
+    private final MovieQueryPlanner planner =
+            new MovieQueryPlanner(titleIndex, genreIndex, releaseYearIndex, ratingIndex);
+    // Null unless columnar
+    private final MovieColumns columns;
+    // Null if scans run on a single thread
+    private final ForkJoinPool scanPool;
+    private final int parallelScanThreshold;
+    private volatile CatalogJournal journal = CatalogJournal.NONE;
+    private volatile MovieChangeListener changeListener = MovieChangeListener.NONE;
+
+    public MovieRepository() {
+        this(new MovieStoreProperties());
+    }
+
+    @Autowired
+    public MovieRepository(MovieStoreProperties properties) {
+        this.columns = properties.isColumnar() ? new MovieColumns() : null;
+        int parallelism = properties.getScanParallelism() > 0
+                ? properties.getScanParallelism() : Runtime.getRuntime().availableProcessors();
+        this.scanPool = parallelism > 1
+                ? new ForkJoinPool(parallelism, MovieRepository::scanThread, null, false) : null;
+        this.parallelScanThreshold = properties.getParallelScanThreshold();
+        for (int i = 0; i < writeLocks.length; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Sends every later write to the journal. A write the journal rejects is not applied. Writes are published
+     * once they are in the journal and return once it has made them durable, so a write can be visible before
+     * it is durable: should the journal fail in between, the writer gets the error and the write is lost on
+     * restart.
+     */
+    public void setJournal(CatalogJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Reports the changes of every later write, except bulk loads, to the listener.
+     */
+    public void setChangeListener(MovieChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    /**
+     * Returns a predicate that matches movies against the filter the same way searches do.
+     */
+    public static Predicate<Movie> matcher(MovieFilter filter) {
+        if (filter == null || MovieQueryPlanner.isEmpty(filter)) {
+            return movie -> true;
+        }
+        return movie -> MovieQueryPlanner.matches(filter, movie);
+    }
+
+    /**
+     * Pins the catalog as of the last published write. Every read given the snapshot sees that state until
+     * the snapshot is closed, and the versions it sees are kept until then. The read methods without a
+     * snapshot, or given null, pin one for the duration of the call.
+     */
+    public Snapshot snapshot() {
+        return new Snapshot(pin());
+    }
+
+    public Movie findById(String id) {
+        return findById(id, null);
+    }
+
+    public Movie findById(String id, Snapshot snapshot) {
+        if (id == null) {
+            return null;
+        }
+        return read(snapshot, at -> {
+            // A deleted movie may have been replaced by a new movie with the same id since the snapshot
+            for (MovieSlot slot = slotsById.get(id); slot != null; slot = slot.replaced) {
+                if (slot.at(at) != null) {
+                    return read(slot, at);
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * Returns a point-in-time copy of all movies in insertion order.
+     */
+    public List<Movie> findAll() {
+        return findAll(null);
+    }
+
+    public List<Movie> findAll(Snapshot snapshot) {
+        return findAll(snapshot, MovieProjection.ALL);
+    }
+
+    public List<Movie> findAll(Snapshot snapshot, MovieProjection projection) {
+        return read(snapshot, at -> scan(0)
+                .map(slot -> read(slot, at, projection))
+                .filter(Objects::nonNull)
+                .toList());
+    }
+
+    /**
+     * Streams the movies in insertion order. The stream is weakly consistent: it reflects some or all
+     * writes published after it was created, but never fails because of them.
+     */
+    public Stream<Movie> stream() {
+        // The newest published version of a movie is never pruned, so no snapshot is needed
+        return slotsBySequence.values().stream().map(slot -> read(slot, Long.MAX_VALUE)).filter(Objects::nonNull);
+    }
+
+    public int count() {
+        return count(null, null);
+    }
+
+    /**
+     * Returns a number that grows with every write. It is bumped after the write is published, so a reader
+     * that sees the same version before and after reading has not missed a write that completed.
+     */
+    public long version() {
+        return version.get();
+    }
+
+    /**
+     * Reads up to {@code first} movies after the cursor, in insertion order, without touching the rest of
+     * the catalog.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Movie> findPage(int first, String after) {
+        return findPage(first, after, null);
+    }
+
+    public Page<Movie> findPage(int first, String after, Snapshot snapshot) {
+        return findPage(first, after, snapshot, MovieProjection.ALL);
+    }
+
+    public Page<Movie> findPage(int first, String after, Snapshot snapshot, MovieProjection projection) {
+        long afterSequence = Cursors.decode(CURSOR_TYPE, after);
+        return read(snapshot, at ->
+                page(scan(afterSequence), slot -> read(slot, at, projection), first, after != null));
+    }
+
+    /**
+     * Returns the movies whose genre equals the given one, ignoring case, in insertion order.
+     */
+    public List<Movie> findByGenre(String genre) {
+        return findByGenre(genre, null);
+    }
+
+    public List<Movie> findByGenre(String genre, Snapshot snapshot) {
+        return findByGenre(genre, snapshot, MovieProjection.ALL);
+    }
+
+    public List<Movie> findByGenre(String genre, Snapshot snapshot, MovieProjection projection) {
+        if (genre == null) {
+            return List.of();
+        }
+        return read(snapshot, at -> collect(after -> genreIndex.sequences(genre, after),
+                movie -> movie.getGenre() != null && movie.getGenre().equalsIgnoreCase(genre), at,
+                projection.with(MovieProjection.Field.GENRE)));
+    }
+
+    /**
+     * Looks up the movies of a batch of actors in one call, each list in insertion order. Every requested
+     * id is present in the result, with an empty list if the actor appears in no movie.
+     */
+    public Map<String, List<Movie>> findByActorIds(Collection<String> actorIds) {
+        return findByActorIds(actorIds, null);
+    }
+
+    public Map<String, List<Movie>> findByActorIds(Collection<String> actorIds, Snapshot snapshot) {
+        return read(snapshot, at -> {
+            Map<String, List<Movie>> movies = new HashMap<>();
+            for (String actorId : actorIds) {
+                movies.put(actorId, collect(after -> actorIndex.sequences(actorId, after),
+                        movie -> movie.getActorIds() != null && movie.getActorIds().contains(actorId), at,
+                        MovieProjection.ALL));
+            }
+            return movies;
+        });
+    }
+
+    /**
+     * Returns the movies matching every predicate of the filter, in insertion order. The most selective
+     * applicable index supplies the candidates; without one the whole catalog is scanned.
+     */
+    public List<Movie> search(MovieFilter filter) {
+        return search(filter, (Snapshot) null);
+    }
+
+    public List<Movie> search(MovieFilter filter, Snapshot snapshot) {
+        return search(filter, snapshot, MovieProjection.ALL);
+    }
+
+    public List<Movie> search(MovieFilter filter, Snapshot snapshot, MovieProjection projection) {
+        if (filter == null) {
+            return findAll(snapshot, projection);
+        }
+        return read(snapshot, at -> {
+            MovieQueryPlanner.IndexScan scan = planner.plan(filter);
+            if (scansColumns(scan)) {
+                MovieColumns.Filter compiled = columns.filter(filter);
+                List<MovieOrdering.Ranked> matches = new ArrayList<>();
+                inChunks(columns.pageCount(),
+                        (from, to) -> columns.select(compiled, at, (int) from, (int) to, projection))
+                        .forEach(matches::addAll);
+                matches.sort(Comparator.comparingLong(MovieOrdering.Ranked::sequence));
+                return matches.stream().map(MovieOrdering.Ranked::movie).toList();
+            }
+            Function<MovieSlot, Movie> matching = matching(filter, at, projection);
+            if (scan == null) {
+                return inChunks(sequence.get(), (from, to) -> range(from, to)
+                        .map(matching)
+                        .filter(Objects::nonNull)
+                        .toList())
+                        .stream()
+                        .flatMap(List::stream)
+                        .toList();
+            }
+            return slots(scan, 0)
+                    .map(matching)
+                    .filter(Objects::nonNull)
+                    .toList();
+        });
+    }
+
+    /**
+     * Reads up to {@code first} movies matching the filter after the cursor, in insertion order. Only the
+     * candidates up to the end of the page are fetched and verified.
+     *
+     * @throws IllegalArgumentException if the cursor is malformed
+     */
+    public Page<Movie> search(MovieFilter filter, int first, String after) {
+        return search(filter, first, after, null);
+    }
+
+    public Page<Movie> search(MovieFilter filter, int first, String after, Snapshot snapshot) {
+        return search(filter, first, after, snapshot, MovieProjection.ALL);
+    }
+
+    public Page<Movie> search(MovieFilter filter, int first, String after, Snapshot snapshot,
+                              MovieProjection projection) {
+        if (filter == null) {
+            return findPage(first, after, snapshot, projection);
+        }
+        long afterSequence = Cursors.decode(CURSOR_TYPE, after);
+        return read(snapshot, at -> page(slots(planner.plan(filter), afterSequence),
+                matching(filter, at, projection), first, after != null));
+    }
+
+    /**
+     * Returns at most {@code limit} movies matching the filter, sorted by {@code orderBy} when given and
+     * in insertion order otherwise. The full result is never sorted: either the sorted index of the
+     * ordering field is walked in order until enough matches are found, or the best candidates are kept
+     * in a heap of size {@code limit}, whichever {@link MovieQueryPlanner#planWalk} expects to be cheaper.
+     */
+    public List<Movie> search(MovieFilter filter, MovieOrder orderBy, int limit) {
+        return search(filter, orderBy, limit, null);
+    }
+
+    public List<Movie> search(MovieFilter filter, MovieOrder orderBy, int limit, Snapshot snapshot) {
+        return search(filter, orderBy, limit, snapshot, MovieProjection.ALL);
+    }
+
+    public List<Movie> search(MovieFilter filter, MovieOrder orderBy, int limit, Snapshot snapshot,
+                              MovieProjection projection) {
+        MovieFilter effectiveFilter = filter != null ? filter : new MovieFilter();
+        if (limit == 0) {
+            return List.of();
+        }
+        // The movies are ranked by the ordering field, so it is read whether it was asked for or not
+        MovieProjection ranked = orderBy != null ? projection.with(orderField(orderBy)) : projection;
+        return read(snapshot, at -> {
+            Function<MovieSlot, Movie> matching = matching(effectiveFilter, at, ranked);
+            if (orderBy == null) {
+                return slots(planner.plan(effectiveFilter), 0)
+                        .map(matching)
+                        .filter(Objects::nonNull)
+                        .limit(limit)
+                        .toList();
+            }
+
+            Comparator<MovieOrdering.Ranked> order = MovieOrdering.comparator(orderBy);
+            MovieQueryPlanner.IndexWalk walk = planner.planWalk(effectiveFilter, orderBy, limit, size.get());
+            if (walk != null) {
+                List<MovieOrdering.Ranked> top = walkTop(walk, matching, order, limit);
+                // Movies without a value for the ordering field are not in the index but sort last, so a
+                // walk that runs out of entries may have missed some of them
+                if (top != null) {
+                    return top.stream().map(MovieOrdering.Ranked::movie).toList();
+                }
+            }
+            MovieQueryPlanner.IndexScan scan = planner.plan(effectiveFilter);
+            List<MovieOrdering.Ranked> top;
+            if (scan == null) {
+                // The best matches overall are among the best matches of each chunk
+                top = new ArrayList<>();
+                inChunks(sequence.get(), (from, to) -> heapTop(range(from, to), matching, order, limit))
+                        .forEach(top::addAll);
+                top.sort(order);
+                top = top.subList(0, Math.min(limit, top.size()));
+            } else {
+                top = heapTop(slots(scan, 0), matching, order, limit);
+            }
+            return top.stream().map(MovieOrdering.Ranked::movie).toList();
+        });
+    }
+
+    /**
+     * Returns facet counts and rating statistics for the movies matching the filter. Without predicates
+     * the incrementally maintained catalog totals are returned; otherwise the candidates of the best
+     * index are aggregated in a single pass.
+     */
+    public MovieStats stats(MovieFilter filter) {
+        return stats(filter, null);
+    }
+
+    public MovieStats stats(MovieFilter filter, Snapshot snapshot) {
+        if (filter == null || MovieQueryPlanner.isEmpty(filter)) {
+            return read(snapshot, at -> totals(at).toStats());
+        }
+        return read(snapshot, at -> {
+            // Chunks add to the same statistics, which are thread-safe
+            MovieStatistics filtered = new MovieStatistics();
+            MovieQueryPlanner.IndexScan scan = planner.plan(filter);
+            if (scansColumns(scan)) {
+                MovieColumns.Filter compiled = columns.filter(filter);
+                inChunks(columns.pageCount(), (from, to) -> {
+                    columns.aggregate(compiled, at, filtered, (int) from, (int) to);
+                    return filtered;
+                });
+            } else {
+                Function<MovieSlot, Movie> matching = matching(filter, at, STATISTICS);
+                Function<Stream<MovieSlot>, MovieStatistics> aggregate = slots -> {
+                    slots.map(matching).filter(Objects::nonNull).forEach(movie -> filtered.add(0, movie));
+                    return filtered;
+                };
+                if (scan == null) {
+                    inChunks(sequence.get(), (from, to) -> aggregate.apply(range(from, to)));
+                } else {
+                    aggregate.apply(slots(scan, 0));
+                }
+            }
+            return filtered.toStats();
+        });
+    }
+
+    /**
+     * Estimates how many movies match the filter without reading any: the size of the index scan the planner
+     * would pick, which bounds the matches from above, or the catalog size if no index serves the filter.
+     */
+    public long estimate(MovieFilter filter) {
+        long catalogSize = size.get();
+        if (filter == null || MovieQueryPlanner.isEmpty(filter)) {
+            return catalogSize;
+        }
+        MovieQueryPlanner.IndexScan scan = planner.plan(filter);
+        return scan != null ? Math.min(scan.estimate(), catalogSize) : catalogSize;
+    }
+
+    /**
+     * Counts the movies matching the filter without materializing them.
+     */
+    public int count(MovieFilter filter) {
+        return count(filter, null);
+    }
+
+    public int count(MovieFilter filter, Snapshot snapshot) {
+        if (filter == null) {
+            return read(snapshot, this::countAt);
+        }
+        return read(snapshot, at -> {
+            MovieQueryPlanner.IndexScan scan = planner.plan(filter);
+            if (scansColumns(scan)) {
+                MovieColumns.Filter compiled = columns.filter(filter);
+                return (int) inChunks(columns.pageCount(),
+                        (from, to) -> columns.count(compiled, at, (int) from, (int) to))
+                        .stream()
+                        .mapToLong(Long::longValue)
+                        .sum();
+            }
+            Function<MovieSlot, Movie> matching = matching(filter, at, MovieProjection.ID);
+            Function<Stream<MovieSlot>, Long> count = slots -> slots.map(matching).filter(Objects::nonNull).count();
+            if (scan == null) {
+                return (int) inChunks(sequence.get(), (from, to) -> count.apply(range(from, to)))
+                        .stream()
+                        .mapToLong(Long::longValue)
+                        .sum();
+            }
+            return count.apply(slots(scan, 0)).intValue();
+        });
+    }
+
+    /**
+     * Inserts the movie, or replaces the stored movie with the same id while keeping its position. The
+     * repository stores a copy, so later changes to the movie do not affect it.
+     */
+    public Movie save(Movie movie) {
+        CatalogJournal journal = this.journal;
+        Batch batch = begin();
+        try {
+            put(movie, sequence::incrementAndGet, journal, batch);
+        } finally {
+            publish(batch);
+        }
+        journal.awaitDurable(batch.ticket);
+        return movie;
+    }
+
+    /**
+     * Saves a batch of movies in one pass: each movie is written and indexed under the lock of its id,
+     * then the whole batch is published at once and the version is bumped once.
+     */
+    public List<Movie> saveAll(List<Movie> movies) {
+        CatalogJournal journal = this.journal;
+        Batch batch = begin();
+        try {
+            for (Movie movie : movies) {
+                put(movie, sequence::incrementAndGet, journal, batch);
+            }
+        } finally {
+            publish(batch);
+        }
+        journal.awaitDurable(batch.ticket);
+        return movies;
+    }
+
+    /**
+     * Applies the change to a copy of the stored movie while holding the write lock for its id, then
+     * publishes the copy as the new version. Readers see either the old or the new movie, never a mix.
+     *
+     * @return the updated movie, or null if no movie has the given id
+     */
+    public Movie update(String id, Consumer<Movie> change) {
+        CatalogJournal journal = this.journal;
+        Batch batch = begin();
+        Movie updated = null;
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            MovieSlot slot = slotsById.get(id);
+            Movie previous = slot != null ? head(slot) : null;
+            if (previous != null) {
+                Movie movie = copyOf(previous);
+                change.accept(movie);
+                Movie stored = StoredMovie.of(movie);
+                batch.ticket = journal.moviePut(stored);
+                write(id, slot, previous, stored, null, batch);
+                updated = movie;
+            }
+        } finally {
+            lock.unlock();
+            publish(batch);
+        }
+        if (updated == null) {
+            return null;
+        }
+        journal.awaitDurable(batch.ticket);
+        return updated;
+    }
+
+    /**
+     * Inserts or updates a batch of movies in one pass, in iteration order. Each change is given a copy
+     * of the stored movie, or null if there is none, under the write lock of its id and returns the
+     * movie to store, or null to leave the id as it is. The whole batch is published at once and the
+     * version is bumped once.
+     *
+     * @return the stored movies by id, in iteration order, null for the ids that were left as they were
+     */
+    public Map<String, Movie> upsertAll(Map<String, UnaryOperator<Movie>> changes) {
+        CatalogJournal journal = this.journal;
+        Map<String, Movie> movies = new LinkedHashMap<>();
+        Batch batch = begin();
+        try {
+            changes.forEach((id, change) -> movies.put(id, upsert(id, change, journal, batch)));
+        } finally {
+            publish(batch);
+        }
+        journal.awaitDurable(batch.ticket);
+        return movies;
+    }
+
+    /**
+     * Like {@link #upsertAll}, but applies either every change or none. The write locks of all the ids are
+     * held while every change computes its movie and until the movies are written, so a change that throws
+     * leaves the catalog as it was, and no concurrent write gets in between. The movies go to the journal as
+     * one record, so recovery replays either all of them or none.
+     *
+     * @return the stored movies by id, in iteration order
+     * @throws RuntimeException what a change threw, before anything was written
+     */
+    public Map<String, Movie> upsertAllOrNone(Map<String, UnaryOperator<Movie>> changes) {
+        CatalogJournal journal = this.journal;
+        Map<String, Movie> movies = new LinkedHashMap<>();
+        Batch batch = begin();
+        List<ReentrantLock> locks = lockAll(changes.keySet());
+        try {
+            Map<String, Movie> stored = new LinkedHashMap<>();
+            changes.forEach((id, change) -> {
+                MovieSlot slot = slotsById.get(id);
+                Movie previous = slot != null ? head(slot) : null;
+                Movie movie = change.apply(previous != null ? copyOf(previous) : null);
+                movies.put(id, movie);
+                if (movie != null) {
+                    stored.put(id, StoredMovie.of(movie));
+                }
+            });
+            if (!stored.isEmpty()) {
+                batch.ticket = journal.moviesPut(List.copyOf(stored.values()));
+            }
+            stored.forEach((id, movie) -> {
+                MovieSlot slot = slotsById.get(id);
+                write(id, slot, slot != null ? head(slot) : null, movie, sequence::incrementAndGet, batch);
+            });
+        } finally {
+            unlockAll(locks);
+            publish(batch);
+        }
+        journal.awaitDurable(batch.ticket);
+        return movies;
+    }
+
+    public boolean deleteById(String id) {
+        return !deleteAllById(id != null ? List.of(id) : List.of()).isEmpty();
+    }
+
+    /**
+     * Deletes a batch of movies in one pass, publishing the deletions at once and bumping the version once
+     * if any of them was removed.
+     *
+     * @return the ids that were removed
+     */
+    public Set<String> deleteAllById(Collection<String> ids) {
+        CatalogJournal journal = this.journal;
+        Set<String> removed = new HashSet<>();
+        Batch batch = begin();
+        try {
+            for (String id : ids) {
+                if (remove(id, journal, batch)) {
+                    removed.add(id);
+                }
+            }
+        } finally {
+            publish(batch);
+        }
+        journal.awaitDurable(batch.ticket);
+        return removed;
+    }
+
+    /**
+     * Deletes a batch of movies only if every id has a movie. The write locks of all the ids are held from the
+     * check until the deletions are written, so no concurrent write can delete or create one in between. The
+     * deletions go to the journal as one record, so recovery replays either all of them or none.
+     *
+     * @return the ids without a movie, in iteration order. The batch was deleted only if there are none.
+     */
+    public Set<String> deleteAllByIdOrNone(Collection<String> ids) {
+        CatalogJournal journal = this.journal;
+        Set<String> missing = new LinkedHashSet<>();
+        Batch batch = begin();
+        List<ReentrantLock> locks = lockAll(ids);
+        try {
+            for (String id : ids) {
+                MovieSlot slot = id != null ? slotsById.get(id) : null;
+                if (slot == null || head(slot) == null) {
+                    missing.add(id);
+                }
+            }
+            if (missing.isEmpty() && !ids.isEmpty()) {
+                batch.ticket = journal.moviesDeleted(List.copyOf(new LinkedHashSet<>(ids)));
+                for (String id : ids) {
+                    MovieSlot slot = slotsById.get(id);
+                    Movie previous = head(slot);
+                    if (previous != null) {
+                        write(id, slot, previous, null, null, batch);
+                    }
+                }
+            }
+        } finally {
+            unlockAll(locks);
+            publish(batch);
+        }
+        journal.awaitDurable(batch.ticket);
+        return missing;
+    }
+
+    /**
+     * Waits until every write that was sent to the journal before the call is published, so that
+     * {@link #stream()} sees it. A batch sends each of its writes to the journal as it applies it, but
+     * publishes them only once all of them are applied.
+     */
+    public void awaitPublished() {
+        for (Batch batch : List.copyOf(unpublished)) {
+            batch.published.join();
+        }
+    }
+
+    /**
+     * Starts a bulk load. Unlike {@link #saveAll}, a bulk load can be fed from several threads at once while
+     * keeping a deterministic order, and its writes bypass the journal and the change listener.
+     */
+    public BulkLoad bulkLoad() {
+        return new BulkLoad();
+    }
+
+    /**
+     * Appends a copy of the movie to the journal and writes it under the lock of its id. A new movie is
+     * placed at the sequence given by {@code newSequence}.
+     */
+    private void put(Movie movie, LongSupplier newSequence, CatalogJournal journal, Batch batch) {
+        Movie stored = StoredMovie.of(movie);
+        String id = movie.getId();
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            MovieSlot slot = slotsById.get(id);
+            batch.ticket = journal.moviePut(stored);
+            write(id, slot, slot != null ? head(slot) : null, stored, newSequence, batch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Movie upsert(String id, UnaryOperator<Movie> change, CatalogJournal journal, Batch batch) {
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            MovieSlot slot = slotsById.get(id);
+            Movie previous = slot != null ? head(slot) : null;
+            Movie changed = change.apply(previous != null ? copyOf(previous) : null);
+            if (changed == null) {
+                return null;
+            }
+            Movie stored = StoredMovie.of(changed);
+            batch.ticket = journal.moviePut(stored);
+            write(id, slot, previous, stored, sequence::incrementAndGet, batch);
+            return changed;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return whether a movie had the given id
+     */
+    private boolean remove(String id, CatalogJournal journal, Batch batch) {
+        if (id == null) {
+            return false;
+        }
+        ReentrantLock lock = writeLock(id);
+        lock.lock();
+        try {
+            MovieSlot slot = slotsById.get(id);
+            Movie previous = slot != null ? head(slot) : null;
+            if (previous == null) {
+                return false;
+            }
+            batch.ticket = journal.movieDeleted(id);
+            write(id, slot, previous, null, null, batch);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private ReentrantLock writeLock(String id) {
+        return writeLocks[lockIndex(id)];
+    }
+
+    private static int lockIndex(String id) {
+        int hash = id.hashCode();
+        return (hash ^ (hash >>> 16)) & (WRITE_LOCKS - 1);
+    }
+
+    /**
+     * Takes the write locks of all the ids in index order, so two threads locking overlapping sets never wait
+     * for each other. Writes of a single id hold one lock at a time, and the locks are reentrant, so the
+     * holder can still write each id on its own.
+     *
+     * @return the locks taken, to pass to {@link #unlockAll}
+     */
+    private List<ReentrantLock> lockAll(Collection<String> ids) {
+        int[] lockIndexes = ids.stream().filter(Objects::nonNull).mapToInt(MovieRepository::lockIndex)
+                .distinct().sorted().toArray();
+        List<ReentrantLock> locks = new ArrayList<>(lockIndexes.length);
+        for (int index : lockIndexes) {
+            writeLocks[index].lock();
+            locks.add(writeLocks[index]);
+        }
+        return locks;
+    }
+
+    private static void unlockAll(List<ReentrantLock> locks) {
+        for (int i = locks.size() - 1; i >= 0; i--) {
+            locks.get(i).unlock();
+        }
+    }
+
+    /**
+     * Adds a version to the slot of the id, or to a new slot that replaces it in {@code slotsById} if it has
+     * no movie, and updates the indexes. The version is published with the batch. Must hold the lock of the
+     * id.
+     *
+     * @param slot     the slot of the id, or null
+     * @param previous the head of the slot, or null if it has none or it is a deletion
+     * @param movie    the stored movie, or null to delete the movie
+     */
+    private void write(String id, MovieSlot slot, Movie previous, Movie movie, LongSupplier newSequence,
+                       Batch batch) {
+        if (previous == null) {
+            long sequence = newSequence.getAsLong();
+            for (MovieIndex index : indexes) {
+                index.add(sequence, movie);
+            }
+            insertSlot(id, slot, movie, sequence, batch);
+            return;
+        }
+        // Snapshots find the slot through recent before its index entries change
+        recent.put(slot.sequence, slot);
+        push(slot, previous, movie, batch.commit);
+        if (movie != null) {
+            for (MovieIndex index : indexes) {
+                index.update(slot.sequence, previous, movie);
+            }
+        } else {
+            for (MovieIndex index : indexes) {
+                index.remove(slot.sequence, previous);
+            }
+            size.decrementAndGet();
+        }
+        batch.add(slot, previous, movie);
+    }
+
+    /**
+     * Stores a new movie at the given sequence, replacing the slot of a deleted one if there is one. The index
+     * entries of the movie must already be added: until the slot is stored, reads skip them. Must hold the lock
+     * of the id.
+     */
+    private void insertSlot(String id, MovieSlot replaced, Movie movie, long sequence, Batch batch) {
+        MovieSlot inserted = new MovieSlot(id, sequence, columns != null ? columns.allocate() : -1);
+        inserted.replaced = replaced;
+        recent.put(inserted.sequence, inserted);
+        slotsBySequence.put(inserted.sequence, inserted);
+        push(inserted, null, movie, batch.commit);
+        size.incrementAndGet();
+        batch.add(inserted, null, movie);
+        slotsById.put(id, inserted);
+    }
+
+    // Must hold the lock of the slot's id. A null movie is a deletion.
+    private void push(MovieSlot slot, Movie previous, Movie movie, MovieSlot.Commit commit) {
+        MovieSlot.Version head = slot.head;
+        if (columns == null) {
+            slot.head = new MovieSlot.Version(movie, movie == null, commit, head);
+        } else if (movie == null) {
+            // The row keeps the deleted movie until no snapshot can see it
+            slot.head = new MovieSlot.Version(null, true, commit, head);
+        } else {
+            // The row only holds the head, so the replaced head is kept as an object
+            MovieSlot.Version older = head != null
+                    ? new MovieSlot.Version(StoredMovie.of(previous), false, head.commit, head.older) : null;
+            columns.write(slot, movie, new MovieSlot.Version(null, false, commit, older));
+        }
+    }
+
+    /**
+     * @return the head of the slot, published or not, or null if it is a deletion. Must hold the lock of
+     *         the slot's id.
+     */
+    private Movie head(MovieSlot slot) {
+        return columns != null ? columns.readHead(slot) : slot.head.movie;
+    }
+
+    /**
+     * Starts a batch of writes that are sent to the journal, see {@link #awaitPublished()}.
+     */
+    private Batch begin() {
+        Batch batch = new Batch();
+        unpublished.add(batch);
+        return batch;
+    }
+
+    /**
+     * Publishes the versions of the batch under the next commit stamp and bumps the version.
+     */
+    private void publish(Batch batch) {
+        try {
+            if (commit(batch, changeListener)) {
+                version.incrementAndGet();
+            }
+        } finally {
+            unpublished.remove(batch);
+            batch.published.complete(null);
+        }
+    }
+
+    /**
+     * Publishes the versions of the batch under the next commit stamp, applying them to the statistics and
+     * reporting them to the listener at the same time, then prunes what no snapshot needs any more.
+     *
+     * @return whether the batch wrote anything
+     */
+    private boolean commit(Batch batch, MovieChangeListener listener) {
+        if (batch.slots.isEmpty()) {
+            return false;
+        }
+        long stamp;
+        long lock = commitLock.writeLock();
+        try {
+            stamp = published + 1;
+            for (int i = 0; i < batch.slots.size(); i++) {
+                Movie previous = batch.previous.get(i);
+                Movie current = batch.current.get(i);
+                if (previous == null) {
+                    statistics.add(0, current);
+                } else if (current == null) {
+                    statistics.remove(0, previous);
+                } else {
+                    statistics.update(0, previous, current);
+                }
+            }
+            batch.commit.stamp = stamp;
+            published = stamp;
+            if (listener != MovieChangeListener.NONE) {
+                listener.moviesChanged(batch.changes());
+            }
+        } finally {
+            commitLock.unlockWrite(lock);
+        }
+        for (MovieSlot slot : batch.slots) {
+            retired.add(new Retired(slot, stamp));
+        }
+        prune();
+        return true;
+    }
+
+    /**
+     * Pins the last published stamp.
+     */
+    private long pin() {
+        while (true) {
+            long stamp = published;
+            pins.merge(stamp, 1, Integer::sum);
+            // Pruning publishes its horizon before it looks at the pins, so either it has seen this pin or
+            // the check sees a horizon past the stamp and the pin is retried at a newer stamp
+            if (horizon <= stamp) {
+                return stamp;
+            }
+            unpin(stamp);
+        }
+    }
+
+    private void unpin(long stamp) {
+        pins.computeIfPresent(stamp, (key, count) -> count > 1 ? count - 1 : null);
+    }
+
+    /**
+     * Reads at the snapshot, or at a snapshot pinned for the call if it is null.
+     */
+    private <T> T read(Snapshot snapshot, LongFunction<T> reader) {
+        if (snapshot != null) {
+            return reader.apply(snapshot.stamp());
+        }
+        long stamp = pin();
+        try {
+            return reader.apply(stamp);
+        } finally {
+            unpin(stamp);
+        }
+    }
+
+    /**
+     * Drops the versions that no snapshot can see any more from the slots written before the oldest
+     * pinned snapshot, and the slots of the movies deleted before it. Runs on one thread at a time; a
+     * thread that finds it running leaves the work to it or to the next write.
+     */
+    private void prune() {
+        if (!pruneLock.tryLock()) {
+            return;
+        }
+        try {
+            long limit = published;
+            horizon = limit;
+            Map.Entry<Long, Integer> oldest = pins.firstEntry();
+            if (oldest != null && oldest.getKey() < limit) {
+                limit = oldest.getKey();
+                horizon = limit;
+            }
+            Retired next;
+            while ((next = retired.peek()) != null && next.stamp() <= limit) {
+                retired.poll();
+                prune(next.slot(), limit);
+            }
+        } finally {
+            pruneLock.unlock();
+        }
+    }
+
+    private void prune(MovieSlot slot, long limit) {
+        ReentrantLock lock = writeLock(slot.id);
+        lock.lock();
+        try {
+            slot.prune(limit);
+            MovieSlot.Version head = slot.head;
+            long committed = head.commit.stamp;
+            if (committed == MovieSlot.Commit.PENDING || committed > limit) {
+                // Written again since, which retires the slot again
+                return;
+            }
+            recent.remove(slot.sequence, slot);
+            if (!head.deleted || !slotsBySequence.remove(slot.sequence, slot)) {
+                return;
+            }
+            if (columns != null) {
+                columns.free(slot.row);
+            }
+            if (!slotsById.remove(slot.id, slot)) {
+                for (MovieSlot newer = slotsById.get(slot.id); newer != null; newer = newer.replaced) {
+                    if (newer.replaced == slot) {
+                        newer.replaced = slot.replaced;
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the movie of the slot that the snapshot sees, or null if it sees none or a deletion
+     */
+    private Movie read(MovieSlot slot, long at) {
+        return read(slot, at, MovieProjection.ALL);
+    }
+
+    private Movie read(MovieSlot slot, long at, MovieProjection projection) {
+        if (columns != null) {
+            return columns.readIf(slot, at, null, projection);
+        }
+        MovieSlot.Version version = slot.at(at);
+        return version != null ? version.movie : null;
+    }
+
+    /**
+     * Returns a function that reads the movie of a slot that the snapshot sees if it matches the filter,
+     * and null otherwise. In columnar mode the filter is evaluated on the columns, so only matching movies
+     * are created.
+     */
+    private Function<MovieSlot, Movie> matching(MovieFilter filter, long at, MovieProjection projection) {
+        if (columns != null) {
+            MovieColumns.Filter compiled = columns.filter(filter);
+            return slot -> columns.readIf(slot, at, compiled, projection);
+        }
+        return slot -> {
+            Movie movie = read(slot, at);
+            return movie != null && MovieQueryPlanner.matches(filter, movie) ? movie : null;
+        };
+    }
+
+    /**
+     * The movies of the catalog as a snapshot sees them: the published count, read optimistically, minus
+     * the writes published after the snapshot.
+     */
+    private int countAt(long at) {
+        long lock = commitLock.tryOptimisticRead();
+        long committed = published;
+        long count = statistics.count();
+        if (!commitLock.validate(lock)) {
+            lock = commitLock.readLock();
+            try {
+                committed = published;
+                count = statistics.count();
+            } finally {
+                commitLock.unlockRead(lock);
+            }
+        }
+        if (committed != at) {
+            for (MovieSlot slot : recent.values()) {
+                count += exists(slot.at(at)) - exists(slot.at(committed));
+            }
+        }
+        return (int) count;
+    }
+
+    /**
+     * The catalog-wide statistics as a snapshot sees them: the published ones, read optimistically, minus
+     * the writes published after the snapshot.
+     */
+    private MovieStatistics totals(long at) {
+        long lock = commitLock.tryOptimisticRead();
+        long committed = published;
+        MovieStatistics totals = statistics.copy();
+        if (!commitLock.validate(lock)) {
+            lock = commitLock.readLock();
+            try {
+                committed = published;
+                totals = statistics.copy();
+            } finally {
+                commitLock.unlockRead(lock);
+            }
+        }
+        if (committed != at) {
+            for (MovieSlot slot : recent.values()) {
+                MovieSlot.Version then = slot.at(at);
+                MovieSlot.Version now = slot.at(committed);
+                // In columnar mode the same version may be found as the row's head and, once replaced, as an
+                // object, so versions are compared by their commit
+                if ((then != null ? then.commit : null) != (now != null ? now.commit : null)) {
+                    Movie latest = read(slot, committed);
+                    if (latest != null) {
+                        totals.remove(0, latest);
+                    }
+                    Movie seen = read(slot, at);
+                    if (seen != null) {
+                        totals.add(0, seen);
+                    }
+                }
+            }
+        }
+        return totals;
+    }
+
+    private static int exists(MovieSlot.Version version) {
+        return version != null && !version.deleted ? 1 : 0;
+    }
+
+    /**
+     * @return whether to answer a whole-catalog search from the columns rather than from the index scan
+     */
+    private boolean scansColumns(MovieQueryPlanner.IndexScan scan) {
+        return columns != null && (scan == null || scan.estimate() > size.get() / COLUMN_SCAN_DIVISOR);
+    }
+
+    /**
+     * Materializes index candidates in insertion order, re-checking each against the movie the snapshot
+     * sees so a concurrent update can never produce a false match.
+     */
+    private List<Movie> collect(LongFunction<PrimitiveIterator.OfLong> source, Predicate<Movie> predicate, long at,
+                                MovieProjection projection) {
+        return candidates(source, 0)
+                .map(slot -> read(slot, at, projection))
+                .filter(movie -> movie != null && predicate.test(movie))
+                .toList();
+    }
+
+    /**
+     * Streams the candidate slots of the planned index scan after the given sequence, or of the whole
+     * catalog when no index applies.
+     */
+    private Stream<MovieSlot> slots(MovieQueryPlanner.IndexScan scan, long afterSequence) {
+        return scan != null ? candidates(scan.source(), afterSequence) : scan(afterSequence);
+    }
+
+    private Stream<MovieSlot> scan(long afterSequence) {
+        return slotsBySequence.tailMap(afterSequence, false).values().stream();
+    }
+
+    // The slots with a sequence in (from, to]
+    private Stream<MovieSlot> range(long from, long to) {
+        return slotsBySequence.subMap(from, false, to, true).values().stream();
+    }
+
+    /**
+     * Splits the positions {@code [0, size)}, sequences or pages, into chunks and scans them on the scan pool,
+     * or scans them as one chunk on the calling thread while the catalog is below the threshold. The calling
+     * thread waits for the chunks; a chunk that fails fails the whole scan.
+     *
+     * @return the results of the chunks, in position order
+     */
+    private <R> List<R> inChunks(long size, ChunkScan<R> chunk) {
+        if (scanPool == null || this.size.get() < parallelScanThreshold) {
+            return List.of(chunk.scan(0, size));
+        }
+        long width = Math.max(1, Math.ceilDiv(size, (long) scanPool.getParallelism() * CHUNKS_PER_THREAD));
+        List<ForkJoinTask<R>> tasks = new ArrayList<>();
+        for (long from = 0; from < size; from += width) {
+            long start = from;
+            long end = Math.min(size, from + width);
+            tasks.add(scanPool.submit(() -> chunk.scan(start, end)));
+        }
+        List<R> results = new ArrayList<>(tasks.size());
+        for (ForkJoinTask<R> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private static ForkJoinWorkerThread scanThread(ForkJoinPool pool) {
+        ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+        thread.setName("movie-scan-" + thread.getPoolIndex());
+        return thread;
+    }
+
+    /**
+     * Streams the slots of the index entries after the given sequence in insertion order, plus the slots
+     * written since the oldest pinned snapshot, whose entries may have moved away from what the snapshot
+     * sees. The index is read first: a write adds its slot to the recent ones before it changes the index,
+     * and the source takes views of its posting lists, which keep their entries, before the recent ones are
+     * read. Both come out in ascending order, so they are merged lazily and a page stops reading the index
+     * once it is full.
+     */
+    private Stream<MovieSlot> candidates(LongFunction<PrimitiveIterator.OfLong> source, long afterSequence) {
+        PrimitiveIterator.OfLong indexed = source.apply(afterSequence);
+        long[] written = recent.keySet().stream()
+                .mapToLong(Long::longValue)
+                .filter(sequence -> sequence > afterSequence)
+                .sorted()
+                .toArray();
+        PrimitiveIterator.OfLong sequences = SequenceSet.merge(indexed, Arrays.stream(written).iterator());
+        return StreamSupport.longStream(Spliterators.spliteratorUnknownSize(sequences,
+                        Spliterator.ORDERED | Spliterator.SORTED | Spliterator.DISTINCT | Spliterator.NONNULL), false)
+                .mapToObj(slotsBySequence::get)
+                .filter(Objects::nonNull);
+    }
+
+    /**
+     * Walks the index in order until it has found {@code limit} matches among the movies not written since
+     * the oldest pinned snapshot, whose index entries are what the snapshot sees, then adds the matches
+     * among the movies that were.
+     *
+     * @return the best {@code limit} matches, best first, or null if the walk ran out of entries first
+     */
+    private List<MovieOrdering.Ranked> walkTop(MovieQueryPlanner.IndexWalk walk, Function<MovieSlot, Movie> matching,
+                                               Comparator<MovieOrdering.Ranked> order, int limit) {
+        List<MovieOrdering.Ranked> top = new ArrayList<>();
+        // An entry can be visited twice while a concurrent update moves it between keys
+        Set<Long> seen = new HashSet<>();
+        walk.source().accept(sequence -> {
+            if (recent.containsKey(sequence) || !seen.add(sequence)) {
+                return true;
+            }
+            MovieSlot slot = slotsBySequence.get(sequence);
+            Movie movie = slot != null ? matching.apply(slot) : null;
+            if (movie != null) {
+                top.add(new MovieOrdering.Ranked(sequence, movie));
+            }
+            return top.size() < limit;
+        });
+        if (top.size() < limit) {
+            return null;
+        }
+        for (MovieSlot slot : recent.values()) {
+            Movie movie = seen.contains(slot.sequence) ? null : matching.apply(slot);
+            if (movie != null) {
+                top.add(new MovieOrdering.Ranked(slot.sequence, movie));
+            }
+        }
+        top.sort(order);
+        return top.subList(0, limit);
+    }
+
+    /**
+     * @return the best {@code limit} matches, best first
+     */
+    private static List<MovieOrdering.Ranked> heapTop(Stream<MovieSlot> slots, Function<MovieSlot, Movie> matching,
+                                                      Comparator<MovieOrdering.Ranked> order, int limit) {
+        // The head of the heap is the worst of the best matches seen so far
+        PriorityQueue<MovieOrdering.Ranked> heap = new PriorityQueue<>(order.reversed());
+        slots.forEach(slot -> {
+            Movie movie = matching.apply(slot);
+            if (movie == null) {
+                return;
+            }
+            MovieOrdering.Ranked ranked = new MovieOrdering.Ranked(slot.sequence, movie);
+            if (heap.size() < limit) {
+                heap.add(ranked);
+            } else if (order.compare(ranked, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(ranked);
+            }
+        });
+        List<MovieOrdering.Ranked> top = new ArrayList<>(heap);
+        top.sort(order);
+        return top;
+    }
+
+    /**
+     * @param reader reads the movie of a slot, or returns null to skip it
+     */
+    private static Page<Movie> page(Stream<MovieSlot> slots, Function<MovieSlot, Movie> reader, int first,
+                                    boolean hasPreviousPage) {
+        List<Movie> movies = new ArrayList<>();
+        List<String> cursors = new ArrayList<>();
+        boolean hasNextPage = false;
+        Iterator<MovieSlot> iterator = slots.iterator();
+        while (iterator.hasNext()) {
+            MovieSlot slot = iterator.next();
+            Movie movie = reader.apply(slot);
+            if (movie == null) {
+                continue;
+            }
+            if (movies.size() == first) {
+                hasNextPage = true;
+                break;
+            }
+            movies.add(movie);
+            cursors.add(Cursors.encode(CURSOR_TYPE, slot.sequence));
+        }
+        return new Page<>(movies, cursors, hasNextPage, hasPreviousPage);
+    }
+
+    private static MovieProjection.Field orderField(MovieOrder orderBy) {
+        return switch (orderBy.getField()) {
+            case RATING -> MovieProjection.Field.RATING;
+            case RELEASE_YEAR -> MovieProjection.Field.RELEASE_YEAR;
+            case TITLE -> MovieProjection.Field.TITLE;
+        };
+    }
+
+    private static Movie copyOf(Movie movie) {
+        return new Movie(movie.getId(), movie.getTitle(), movie.getReleaseYear(), movie.getDirector(),
+                movie.getGenre(), movie.getRating(), movie.getActorIds());
+    }
+
+    /**
+     * A pinned state of the catalog, see {@link #snapshot()}. It can be read from several threads at once,
+     * and must be closed once the reads are done, so the versions it sees can be dropped.
+     */
+    public final class Snapshot implements AutoCloseable {
+        private final long stamp;
+        private final AtomicBoolean open = new AtomicBoolean(true);
+
+        private Snapshot(long stamp) {
+            this.stamp = stamp;
+        }
+
+        private long stamp() {
+            if (!open.get()) {
+                throw new IllegalStateException("The snapshot is closed");
+            }
+            return stamp;
+        }
+
+        @Override
+        public void close() {
+            if (open.compareAndSet(true, false)) {
+                unpin(stamp);
+                prune();
+            }
+        }
+    }
+
+    /**
+     * Inserts chunks of movies from several threads. Each chunk first reserves its positions, from the
+     * thread that reads the input in order, and can then be inserted from any thread, in any order, and
+     * still ends up where it was reserved. Movies whose id is already stored replace the stored movie and
+     * keep its position. Each chunk is published at once, and closing the load bumps the version once.
+     */
+    public final class BulkLoad implements AutoCloseable {
+
+        private BulkLoad() {
+        }
+
+        /**
+         * Reserves the positions of the next {@code size} movies.
+         *
+         * @return the first reserved position, to pass to {@link #insert}
+         */
+        public long reserve(int size) {
+            return sequence.getAndAdd(size) + 1;
+        }
+
+        /**
+         * Stores and indexes the movies at the positions reserved from {@code first} on. Thread-safe.
+         *
+         * The index entries of the chunk are added first, collected by posting list, so each list is locked
+         * once and each of its blocks copied at most once per chunk, rather than once per movie. Reads skip an
+         * entry until its movie is stored. A movie whose id is already stored when it gets there replaces it
+         * like {@link #save}, and its entries at the reserved position are removed again.
+         */
+        public void insert(long first, List<Movie> movies) {
+            List<Movie> stored = new ArrayList<>(movies.size());
+            for (Movie movie : movies) {
+                stored.add(StoredMovie.of(movie));
+            }
+            for (MovieIndex index : indexes) {
+                index.addAll(first, stored);
+            }
+            Batch batch = new Batch();
+            try {
+                for (int i = 0; i < stored.size(); i++) {
+                    Movie movie = stored.get(i);
+                    long position = first + i;
+                    if (!load(movie, position, batch)) {
+                        for (MovieIndex index : indexes) {
+                            index.remove(position, movie);
+                        }
+                    }
+                }
+            } finally {
+                commit(batch, MovieChangeListener.NONE);
+            }
+        }
+
+        /**
+         * @return whether the movie was stored at the position, rather than replaced a stored one
+         */
+        private boolean load(Movie movie, long position, Batch batch) {
+            String id = movie.getId();
+            ReentrantLock lock = writeLock(id);
+            lock.lock();
+            try {
+                MovieSlot slot = slotsById.get(id);
+                Movie previous = slot != null ? head(slot) : null;
+                if (previous == null) {
+                    insertSlot(id, slot, movie, position, batch);
+                    return true;
+                }
+                write(id, slot, previous, movie, null, batch);
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            version.incrementAndGet();
+        }
+    }
+
+    @FunctionalInterface
+    private interface ChunkScan<R> {
+        R scan(long from, long to);
+    }
+
+    /**
+     * The writes of one call, published together.
+     */
+    private static final class Batch {
+        private final MovieSlot.Commit commit = new MovieSlot.Commit();
+        private final List<MovieSlot> slots = new ArrayList<>();
+        // What each write changes in the statistics: no previous movie for an insert, no current one for a
+        // deletion
+        private final List<Movie> previous = new ArrayList<>();
+        private final List<Movie> current = new ArrayList<>();
+        private final CompletableFuture<Void> published = new CompletableFuture<>();
+        private long ticket;
+
+        private void add(MovieSlot slot, Movie previous, Movie current) {
+            slots.add(slot);
+            this.previous.add(previous);
+            this.current.add(current);
+        }
+
+        private List<MovieChange> changes() {
+            List<MovieChange> changes = new ArrayList<>(slots.size());
+            for (int i = 0; i < slots.size(); i++) {
+                Movie previous = this.previous.get(i);
+                Movie current = this.current.get(i);
+                MovieChangeType type = previous == null ? MovieChangeType.CREATED
+                        : current == null ? MovieChangeType.DELETED : MovieChangeType.UPDATED;
+                changes.add(new MovieChange(type, slots.get(i).id, current, previous));
+            }
+            return changes;
+        }
+    }
+
+    private record Retired(MovieSlot slot, long stamp) {
+    }
+}
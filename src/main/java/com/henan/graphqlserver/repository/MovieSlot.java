@@ -0,0 +1,81 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+/**
+ * The position of a movie in {@link MovieRepository} and its versions, newest first.
+ *
+ * Every write adds a version, or a deletion marker, to the head of the chain. Versions belong to a
+ * {@link Commit} whose stamp is set when the write that created them is published, all at once for a
+ * batch, and a reader at a snapshot stamp sees the newest version committed at or before it. Versions
+ * that no pinned snapshot can see any more are cut off the chain by the repository.
+ *
+ * In columnar mode the head version is held in the movie's row of {@link MovieColumns}, and older
+ * versions are kept as objects.
+ */
+final class MovieSlot {
+    final String id;
+    final long sequence;
+    // The row of the movie in columnar mode, -1 otherwise
+    final int row;
+    // Written under the lock of the id, in columnar mode also under the write lock of the row's page
+    volatile Version head;
+    // The deleted slot of the same id that this one replaced, until no snapshot can see it
+    volatile MovieSlot replaced;
+
+    MovieSlot(String id, long sequence, int row) {
+        this.id = id;
+        this.sequence = sequence;
+        this.row = row;
+    }
+
+    /**
+     * @return the newest version committed at or before the stamp, or null if there is none
+     */
+    Version at(long stamp) {
+        for (Version version = head; version != null; version = version.older) {
+            long committed = version.commit.stamp;
+            if (committed != Commit.PENDING && committed <= stamp) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Cuts off the versions older than the newest one committed at or before the stamp.
+     */
+    void prune(long stamp) {
+        Version version = at(stamp);
+        if (version != null) {
+            version.older = null;
+        }
+    }
+
+    /**
+     * One version of the movie. Its movie is never modified once the version is created.
+     */
+    static final class Version {
+        // Null for a deletion, and in columnar mode for the head version, which is held in the row
+        final Movie movie;
+        final boolean deleted;
+        final Commit commit;
+        volatile Version older;
+
+        Version(Movie movie, boolean deleted, Commit commit, Version older) {
+            this.movie = movie;
+            this.deleted = deleted;
+            this.commit = commit;
+            this.older = older;
+        }
+    }
+
+    /**
+     * The stamp shared by the versions of one write, set when the write is published.
+     */
+    static final class Commit {
+        static final long PENDING = 0;
+
+        volatile long stamp = PENDING;
+    }
+}
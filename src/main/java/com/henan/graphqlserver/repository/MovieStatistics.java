@@ -0,0 +1,142 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.FacetCount;
+import com.henan.graphqlserver.model.HistogramBucket;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieStats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts movies per genre, decade and director, plus a rating histogram and average.
+ *
+ * The repository maintains one instance for the published catalog, so the catalog-wide statistics are read
+ * without scanning; a snapshot reads a {@link #copy()} corrected for the writes published after it.
+ * Filtered statistics use a fresh instance filled in one pass over the search candidates.
+ */
+class MovieStatistics implements MovieIndex {
+    static final int RATING_BUCKETS = 10;
+
+    private final LongAdder count = new LongAdder();
+    private final Map<String, LongAdder> genres = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> decades = new ConcurrentHashMap<>();
+    private final Map<String, LongAdder> directors = new ConcurrentHashMap<>();
+    private final LongAdder[] ratingHistogram = new LongAdder[RATING_BUCKETS];
+    private final LongAdder ratedCount = new LongAdder();
+    private final DoubleAdder ratingSum = new DoubleAdder();
+
+    MovieStatistics() {
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            ratingHistogram[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void add(long sequence, Movie movie) {
+        apply(movie.getGenre(), movie.getReleaseYear(), movie.getDirector(), movie.getRating(), 1);
+    }
+
+    /**
+     * Adds a movie given by the values that are counted, for callers that do not have a {@link Movie}.
+     */
+    void add(String genre, Integer releaseYear, String director, Float rating) {
+        apply(genre, releaseYear, director, rating, 1);
+    }
+
+    @Override
+    public void remove(long sequence, Movie movie) {
+        apply(movie.getGenre(), movie.getReleaseYear(), movie.getDirector(), movie.getRating(), -1);
+    }
+
+    @Override
+    public void update(long sequence, Movie previous, Movie current) {
+        if (!Objects.equals(previous.getGenre(), current.getGenre())
+                || !Objects.equals(previous.getReleaseYear(), current.getReleaseYear())
+                || !Objects.equals(previous.getDirector(), current.getDirector())
+                || !Objects.equals(previous.getRating(), current.getRating())) {
+            MovieIndex.super.update(sequence, previous, current);
+        }
+    }
+
+    long count() {
+        return count.sum();
+    }
+
+    /**
+     * Copies the statistics. The copy is only consistent if they do not change meanwhile.
+     */
+    MovieStatistics copy() {
+        MovieStatistics copy = new MovieStatistics();
+        copy.count.add(count.sum());
+        copyCounts(genres, copy.genres);
+        copyCounts(decades, copy.decades);
+        copyCounts(directors, copy.directors);
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            copy.ratingHistogram[i].add(ratingHistogram[i].sum());
+        }
+        copy.ratedCount.add(ratedCount.sum());
+        copy.ratingSum.add(ratingSum.sum());
+        return copy;
+    }
+
+    MovieStats toStats() {
+        List<HistogramBucket> histogram = new ArrayList<>(RATING_BUCKETS);
+        for (int i = 0; i < RATING_BUCKETS; i++) {
+            histogram.add(new HistogramBucket(i, i + 1, ratingHistogram[i].intValue()));
+        }
+        long rated = ratedCount.sum();
+        Float averageRating = rated > 0 ? (float) (ratingSum.sum() / rated) : null;
+        return new MovieStats(count.intValue(), facets(genres), facets(decades), facets(directors), histogram,
+                averageRating);
+    }
+
+    private void apply(String genre, Integer releaseYear, String director, Float rating, int delta) {
+        count.add(delta);
+        increment(genres, genre, delta);
+        increment(decades, releaseYear != null ? decadeOf(releaseYear) : null, delta);
+        increment(directors, director, delta);
+        if (rating != null) {
+            ratingHistogram[bucketOf(rating)].add(delta);
+            ratedCount.add(delta);
+            ratingSum.add(delta * rating);
+        }
+    }
+
+    private static void copyCounts(Map<String, LongAdder> from, Map<String, LongAdder> to) {
+        from.forEach((value, count) -> to.computeIfAbsent(value, key -> new LongAdder()).add(count.sum()));
+    }
+
+    private static void increment(Map<String, LongAdder> counts, String value, int delta) {
+        if (value != null) {
+            counts.computeIfAbsent(value, key -> new LongAdder()).add(delta);
+        }
+    }
+
+    // Values whose count dropped to zero are kept as counters and skipped here
+    private static List<FacetCount> facets(Map<String, LongAdder> counts) {
+        List<FacetCount> facets = new ArrayList<>();
+        counts.forEach((value, count) -> {
+            int current = count.intValue();
+            if (current > 0) {
+                facets.add(new FacetCount(value, current));
+            }
+        });
+        facets.sort(Comparator.comparingInt(FacetCount::getCount).reversed().thenComparing(FacetCount::getValue));
+        return facets;
+    }
+
+    static String decadeOf(int releaseYear) {
+        return Math.floorDiv(releaseYear, 10) * 10 + "s";
+    }
+
+    static int bucketOf(float rating) {
+        return Math.max(0, Math.min(RATING_BUCKETS - 1, (int) Math.floor(rating)));
+    }
+}
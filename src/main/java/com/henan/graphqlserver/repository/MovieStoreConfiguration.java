@@ -0,0 +1,12 @@
+package com.henan.graphqlserver.repository;
+
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Binds the {@link MovieStoreProperties} that {@link MovieRepository} is created with.
+ */
+@Configuration
+@EnableConfigurationProperties(MovieStoreProperties.class)
+public class MovieStoreConfiguration {
+}
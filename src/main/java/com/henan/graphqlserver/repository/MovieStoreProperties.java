@@ -0,0 +1,15 @@
+package com.henan.graphqlserver.repository;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.movie-store")
+public class MovieStoreProperties {
+    // Store movies in primitive and dictionary-encoded columns instead of as objects
+    private boolean columnar = false;
+    // Full scans of catalogs with at least this many movies are split across the scan threads
+    private int parallelScanThreshold = 100_000;
+    // Scan threads, 0 for one per available processor; with 1, scans run on the request thread
+    private int scanParallelism = 0;
+}
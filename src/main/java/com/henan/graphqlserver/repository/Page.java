@@ -0,0 +1,9 @@
+package com.henan.graphqlserver.repository;
+
+import java.util.List;
+
+/**
+ * One page of results read in store order, with an opaque cursor for every item.
+ */
+public record Page<T>(List<T> items, List<String> cursors, boolean hasNextPage, boolean hasPreviousPage) {
+}
@@ -0,0 +1,117 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * Sorted index over a comparable movie attribute, used for range predicates such as release year
+ * and rating. A range lookup touches only the keys inside the range.
+ */
+class RangeIndex<K extends Comparable<K>> implements MovieIndex {
+    private final Function<Movie, K> keyExtractor;
+    // Empty posting sets are kept for the same reason as in GenreIndex; the key domain is small.
+    private final ConcurrentSkipListMap<K, SequenceSet> postings = new ConcurrentSkipListMap<>();
+
+    RangeIndex(Function<Movie, K> keyExtractor) {
+        this.keyExtractor = keyExtractor;
+    }
+
+    @Override
+    public void add(long sequence, Movie movie) {
+        K key = keyExtractor.apply(movie);
+        if (key != null) {
+            postings.computeIfAbsent(key, k -> new SequenceSet()).add(sequence);
+        }
+    }
+
+    @Override
+    public void addAll(long first, List<Movie> movies) {
+        SequenceSet.Runs<K> runs = new SequenceSet.Runs<>();
+        for (int i = 0; i < movies.size(); i++) {
+            K key = keyExtractor.apply(movies.get(i));
+            if (key != null) {
+                runs.add(key, first + i);
+            }
+        }
+        runs.addTo(key -> postings.computeIfAbsent(key, k -> new SequenceSet()));
+    }
+
+    @Override
+    public void remove(long sequence, Movie movie) {
+        K key = keyExtractor.apply(movie);
+        if (key != null) {
+            SequenceSet sequences = postings.get(key);
+            if (sequences != null) {
+                sequences.remove(sequence);
+            }
+        }
+    }
+
+    @Override
+    public void update(long sequence, Movie previous, Movie current) {
+        if (!Objects.equals(keyExtractor.apply(previous), keyExtractor.apply(current))) {
+            MovieIndex.super.update(sequence, previous, current);
+        }
+    }
+
+    /**
+     * Counts the entries with a key between {@code from} and {@code to}, both inclusive. A null bound
+     * leaves that side of the range open.
+     */
+    long estimate(K from, K to) {
+        long count = 0;
+        for (SequenceSet sequences : range(from, to).values()) {
+            count += sequences.size();
+        }
+        return count;
+    }
+
+    /**
+     * @return the entries between the bounds with a sequence after {@code after}, in ascending order of
+     *         sequence and once each, even while an update moves an entry between keys
+     */
+    PrimitiveIterator.OfLong sequences(K from, K to, long after) {
+        List<SequenceSet.View> views = new ArrayList<>();
+        for (SequenceSet sequences : range(from, to).values()) {
+            views.add(sequences.view());
+        }
+        return views.isEmpty() ? SequenceSet.View.EMPTY.iterator(after) : SequenceSet.union(views, after);
+    }
+
+    /**
+     * Visits the entries between the bounds in key order, and in insertion order within a key, until the
+     * visitor returns false.
+     */
+    void walk(K from, K to, boolean descending, LongPredicate visitor) {
+        NavigableMap<K, SequenceSet> range = range(from, to);
+        for (SequenceSet sequences : (descending ? range.descendingMap() : range).values()) {
+            if (!sequences.view().forEachWhile(visitor)) {
+                return;
+            }
+        }
+    }
+
+    private NavigableMap<K, SequenceSet> range(K from, K to) {
+        if (from != null && to != null) {
+            if (from.compareTo(to) > 0) {
+                return new ConcurrentSkipListMap<>();
+            }
+            return postings.subMap(from, true, to, true);
+        }
+        if (from != null) {
+            return postings.tailMap(from, true);
+        }
+        if (to != null) {
+            return postings.headMap(to, true);
+        }
+        return postings;
+    }
+}
@@ -0,0 +1,745 @@
+package com.henan.graphqlserver.repository;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+/**
+ * Sorted set of movie sequences, the posting list of one index key. Like a Roaring bitmap, the sequences are
+ * split by their high bits into blocks of {@value #BLOCK_SIZE}. A block keeps the low bits as a sorted
+ * {@code char[]} while it holds up to {@value #ARRAY_LIMIT} of them, and as a bitmap of {@value #BLOCK_SIZE}
+ * bits, 8 KB, once it holds more. An entry takes at most two bytes rather than a boxed {@code Long} in a hash
+ * set, sets are intersected and merged on primitives, and the entries come out in ascending order without a
+ * sort.
+ *
+ * Reads never lock. Writes to one set are serialized by a {@link ReentrantLock}, and copy what they would
+ * otherwise take away from a reader. A sequence above the last one of an array block fills a free slot after
+ * its end, and any sequence is set in place in a bitmap block. Any other change copies the block, so however
+ * full the set, a change copies at most 8 KB. A change to the list of blocks copies the list. A {@link View}
+ * therefore keeps every entry the set had when it was taken, and can only gain the sequences added since.
+ */
+final class SequenceSet {
+    private static final int BLOCK_BITS = 16;
+    static final int BLOCK_SIZE = 1 << BLOCK_BITS;
+    private static final int LOW_MASK = BLOCK_SIZE - 1;
+    // Above this many entries, a sorted array takes more room than the bitmap of its block
+    private static final int ARRAY_LIMIT = 4096;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private volatile View view = View.EMPTY;
+    private volatile long size;
+
+    void add(long sequence) {
+        long high = sequence >>> BLOCK_BITS;
+        char low = (char) (sequence & LOW_MASK);
+        lock.lock();
+        try {
+            View current = view;
+            int index = Arrays.binarySearch(current.highs, high);
+            if (index < 0) {
+                view = current.insert(-index - 1, high, ArrayBlock.of(low));
+            } else {
+                Block block = current.blocks[index];
+                if (block.contains(low)) {
+                    return;
+                }
+                Block added = block.add(low);
+                if (added != block) {
+                    view = current.replace(index, added);
+                }
+            }
+            size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds the first {@code count} sequences of the array, which are in ascending order, as one change: the
+     * lock is taken once, and a block is copied at most once however many of them it gets.
+     */
+    void addAll(long[] sequences, int count) {
+        lock.lock();
+        try {
+            View current = view;
+            long added = 0;
+            int start = 0;
+            while (start < count) {
+                long high = sequences[start] >>> BLOCK_BITS;
+                int end = start + 1;
+                while (end < count && sequences[end] >>> BLOCK_BITS == high) {
+                    end++;
+                }
+                char[] lows = new char[end - start];
+                for (int i = start; i < end; i++) {
+                    lows[i - start] = (char) (sequences[i] & LOW_MASK);
+                }
+                int index = Arrays.binarySearch(current.highs, high);
+                Block block = index >= 0 ? current.blocks[index] : ArrayBlock.EMPTY;
+                int before = block.cardinality();
+                Block merged = block.addAll(lows);
+                added += merged.cardinality() - before;
+                if (index < 0) {
+                    current = current.insert(-index - 1, high, merged);
+                } else if (merged != block) {
+                    current = current.replace(index, merged);
+                }
+                start = end;
+            }
+            view = current;
+            size += added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void remove(long sequence) {
+        long high = sequence >>> BLOCK_BITS;
+        char low = (char) (sequence & LOW_MASK);
+        lock.lock();
+        try {
+            View current = view;
+            int index = Arrays.binarySearch(current.highs, high);
+            if (index < 0) {
+                return;
+            }
+            Block block = current.blocks[index];
+            if (!block.contains(low)) {
+                return;
+            }
+            view = block.cardinality() == 1 ? current.remove(index) : current.replace(index, block.remove(low));
+            size--;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    long size() {
+        return size;
+    }
+
+    View view() {
+        return view;
+    }
+
+    /**
+     * Iterates the sequences after {@code after} that are in every view, in ascending order. The views are
+     * probed in the given order, so the smallest one should come first.
+     */
+    static PrimitiveIterator.OfLong intersection(List<View> views, long after) {
+        if (views.isEmpty()) {
+            return View.EMPTY.iterator(after);
+        }
+        List<View> others = views.subList(1, views.size());
+        return new Filtered(views.get(0).iterator(after), sequence -> {
+            for (View other : others) {
+                if (!other.contains(sequence)) {
+                    return false;
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * Iterates the sequences after {@code after} that are in any of the views, in ascending order and once
+     * each. Block by block, the views are merged into a bitmap of the block.
+     */
+    static PrimitiveIterator.OfLong union(List<View> views, long after) {
+        return views.size() == 1 ? views.get(0).iterator(after) : new Union(views, after);
+    }
+
+    /**
+     * Merges two ascending iterators into one, yielding a sequence in both of them once.
+     */
+    static PrimitiveIterator.OfLong merge(PrimitiveIterator.OfLong first, PrimitiveIterator.OfLong second) {
+        return new Merged(first, second);
+    }
+
+    /**
+     * Collects ascending sequences by key, to add those of each key to its set with one {@link #addAll}.
+     */
+    static final class Runs<K> {
+        private final Map<K, Run> runs = new HashMap<>();
+
+        void add(K key, long sequence) {
+            runs.computeIfAbsent(key, k -> new Run()).add(sequence);
+        }
+
+        /**
+         * Adds the sequences of each key to the set that {@code sets} returns for it.
+         */
+        void addTo(Function<K, SequenceSet> sets) {
+            runs.forEach((key, run) -> sets.apply(key).addAll(run.sequences, run.count));
+        }
+
+        private static final class Run {
+            private long[] sequences = new long[4];
+            private int count;
+
+            private void add(long sequence) {
+                if (count == sequences.length) {
+                    sequences = Arrays.copyOf(sequences, count * 2);
+                }
+                sequences[count++] = sequence;
+            }
+        }
+    }
+
+    private static long sequence(long high, int low) {
+        return high << BLOCK_BITS | low;
+    }
+
+    /**
+     * The entries of a set when the view was taken, plus any added since.
+     */
+    static final class View {
+        static final View EMPTY = new View(new long[0], new Block[0]);
+
+        private final long[] highs;
+        private final Block[] blocks;
+
+        private View(long[] highs, Block[] blocks) {
+            this.highs = highs;
+            this.blocks = blocks;
+        }
+
+        boolean contains(long sequence) {
+            int index = Arrays.binarySearch(highs, sequence >>> BLOCK_BITS);
+            return index >= 0 && blocks[index].contains((char) (sequence & LOW_MASK));
+        }
+
+        /**
+         * Visits the entries in ascending order until the visitor returns false.
+         *
+         * @return whether every entry was visited
+         */
+        boolean forEachWhile(LongPredicate visitor) {
+            for (int i = 0; i < blocks.length; i++) {
+                Block block = blocks[i];
+                for (int cursor = block.seek(0); block.low(cursor) >= 0; cursor = block.next(cursor)) {
+                    if (!visitor.test(sequence(highs[i], block.low(cursor)))) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return the entries after {@code after}, in ascending order
+         */
+        PrimitiveIterator.OfLong iterator(long after) {
+            return new Ascending(this, after);
+        }
+
+        private Block block(long high) {
+            int index = Arrays.binarySearch(highs, high);
+            return index >= 0 ? blocks[index] : null;
+        }
+
+        private View insert(int index, long high, Block block) {
+            long[] newHighs = new long[highs.length + 1];
+            Block[] newBlocks = new Block[blocks.length + 1];
+            System.arraycopy(highs, 0, newHighs, 0, index);
+            System.arraycopy(blocks, 0, newBlocks, 0, index);
+            newHighs[index] = high;
+            newBlocks[index] = block;
+            System.arraycopy(highs, index, newHighs, index + 1, highs.length - index);
+            System.arraycopy(blocks, index, newBlocks, index + 1, blocks.length - index);
+            return new View(newHighs, newBlocks);
+        }
+
+        private View replace(int index, Block block) {
+            Block[] newBlocks = blocks.clone();
+            newBlocks[index] = block;
+            return new View(highs, newBlocks);
+        }
+
+        private View remove(int index) {
+            long[] newHighs = new long[highs.length - 1];
+            Block[] newBlocks = new Block[blocks.length - 1];
+            System.arraycopy(highs, 0, newHighs, 0, index);
+            System.arraycopy(blocks, 0, newBlocks, 0, index);
+            System.arraycopy(highs, index + 1, newHighs, index, highs.length - index - 1);
+            System.arraycopy(blocks, index + 1, newBlocks, index, blocks.length - index - 1);
+            return new View(newHighs, newBlocks);
+        }
+    }
+
+    /**
+     * The low bits of the sequences of one block. A cursor walks them in ascending order: {@link #seek} finds
+     * the first entry at or above a low, and {@link #next} moves past it.
+     */
+    private abstract static sealed class Block permits ArrayBlock, BitmapBlock {
+
+        abstract boolean contains(char low);
+
+        abstract int cardinality();
+
+        /**
+         * @return the cursor of the first entry at or above {@code low}
+         */
+        abstract int seek(int low);
+
+        /**
+         * @return the low of the entry at the cursor, or -1 past the last entry
+         */
+        abstract int low(int cursor);
+
+        abstract int next(int cursor);
+
+        /**
+         * Sets the bits of the entries in a bitmap of the block.
+         */
+        abstract void orInto(long[] bits);
+
+        /**
+         * Adds a low the block does not contain, in place if readers can only gain it.
+         *
+         * @return this block, or the copy that has the low
+         */
+        abstract Block add(char low);
+
+        /**
+         * Adds ascending lows, some of which the block may contain, in place if readers can only gain them.
+         *
+         * @return this block, or the copy that has the lows
+         */
+        abstract Block addAll(char[] lows);
+
+        /**
+         * @return a copy without the low, which the block contains
+         */
+        abstract Block remove(char low);
+    }
+
+    /**
+     * Sorted lows. Slots from {@code count} on are free; only the writer of the set that currently holds the
+     * block fills them.
+     */
+    private static final class ArrayBlock extends Block {
+        static final ArrayBlock EMPTY = new ArrayBlock(new char[0], 0);
+
+        final char[] lows;
+        volatile int count;
+
+        ArrayBlock(char[] lows, int count) {
+            this.lows = lows;
+            this.count = count;
+        }
+
+        static ArrayBlock of(char low) {
+            char[] lows = new char[4];
+            lows[0] = low;
+            return new ArrayBlock(lows, 1);
+        }
+
+        @Override
+        boolean contains(char low) {
+            return Arrays.binarySearch(lows, 0, count, low) >= 0;
+        }
+
+        @Override
+        int cardinality() {
+            return count;
+        }
+
+        @Override
+        int seek(int low) {
+            int position = Arrays.binarySearch(lows, 0, count, (char) low);
+            return position >= 0 ? position : -position - 1;
+        }
+
+        @Override
+        int low(int cursor) {
+            return cursor < count ? lows[cursor] : -1;
+        }
+
+        @Override
+        int next(int cursor) {
+            return cursor + 1;
+        }
+
+        @Override
+        void orInto(long[] bits) {
+            int count = this.count;
+            for (int position = 0; position < count; position++) {
+                int low = lows[position];
+                bits[low >>> 6] |= 1L << low;
+            }
+        }
+
+        @Override
+        Block add(char low) {
+            int count = this.count;
+            int position = -Arrays.binarySearch(lows, 0, count, low) - 1;
+            if (position == count && count < lows.length) {
+                lows[count] = low;
+                this.count = count + 1;
+                return this;
+            }
+            if (count == ARRAY_LIMIT) {
+                BitmapBlock bitmap = BitmapBlock.of(this);
+                bitmap.add(low);
+                return bitmap;
+            }
+            // A full block that is appended to grows by half, so the appends that follow fill free slots. Inserts
+            // below the end copy the block whatever its free slots, so they get none.
+            int capacity = position == count ? Math.min(ARRAY_LIMIT, count + 1 + (count >> 1)) : count + 1;
+            char[] newLows = new char[capacity];
+            System.arraycopy(lows, 0, newLows, 0, position);
+            newLows[position] = low;
+            System.arraycopy(lows, position, newLows, position + 1, count - position);
+            return new ArrayBlock(newLows, count + 1);
+        }
+
+        @Override
+        Block addAll(char[] added) {
+            int count = this.count;
+            if (count > 0 && added[0] > lows[count - 1] && count + added.length <= lows.length) {
+                int last = count;
+                for (char low : added) {
+                    if (low != lows[last - 1]) {
+                        lows[last++] = low;
+                    }
+                }
+                this.count = last;
+                return this;
+            }
+            // Merges the two sorted runs, dropping the lows in both
+            char[] merged = new char[count + added.length];
+            int size = 0;
+            int i = 0;
+            int j = 0;
+            while (i < count || j < added.length) {
+                char low = j == added.length || (i < count && lows[i] <= added[j]) ? lows[i++] : added[j++];
+                if (size == 0 || merged[size - 1] != low) {
+                    merged[size++] = low;
+                }
+            }
+            if (size > ARRAY_LIMIT) {
+                long[] words = new long[BLOCK_SIZE / Long.SIZE];
+                for (int k = 0; k < size; k++) {
+                    words[merged[k] >>> 6] |= 1L << merged[k];
+                }
+                return new BitmapBlock(words, size);
+            }
+            return new ArrayBlock(size == merged.length ? merged : Arrays.copyOf(merged, size), size);
+        }
+
+        @Override
+        Block remove(char low) {
+            int count = this.count;
+            int position = Arrays.binarySearch(lows, 0, count, low);
+            char[] newLows = new char[count - 1];
+            System.arraycopy(lows, 0, newLows, 0, position);
+            System.arraycopy(lows, position + 1, newLows, position, count - position - 1);
+            return new ArrayBlock(newLows, count - 1);
+        }
+    }
+
+    /**
+     * One bit per low. Setting a bit in place is safe for readers: a word read while it is written, even
+     * torn, has every bit it had before and only bits it has after.
+     */
+    private static final class BitmapBlock extends Block {
+        final long[] words;
+        volatile int cardinality;
+
+        BitmapBlock(long[] words, int cardinality) {
+            this.words = words;
+            this.cardinality = cardinality;
+        }
+
+        static BitmapBlock of(ArrayBlock block) {
+            long[] words = new long[BLOCK_SIZE / Long.SIZE];
+            block.orInto(words);
+            return new BitmapBlock(words, block.count);
+        }
+
+        @Override
+        boolean contains(char low) {
+            return (words[low >>> 6] & 1L << low) != 0;
+        }
+
+        @Override
+        int cardinality() {
+            return cardinality;
+        }
+
+        @Override
+        int seek(int low) {
+            int word = low >>> 6;
+            if (word == words.length) {
+                return BLOCK_SIZE;
+            }
+            long bits = words[word] & -1L << low;
+            while (bits == 0) {
+                if (++word == words.length) {
+                    return BLOCK_SIZE;
+                }
+                bits = words[word];
+            }
+            return word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        }
+
+        @Override
+        int low(int cursor) {
+            return cursor < BLOCK_SIZE ? cursor : -1;
+        }
+
+        @Override
+        int next(int cursor) {
+            return seek(cursor + 1);
+        }
+
+        @Override
+        void orInto(long[] bits) {
+            for (int word = 0; word < words.length; word++) {
+                bits[word] |= words[word];
+            }
+        }
+
+        @Override
+        Block add(char low) {
+            words[low >>> 6] |= 1L << low;
+            cardinality++;
+            return this;
+        }
+
+        @Override
+        Block addAll(char[] lows) {
+            int cardinality = this.cardinality;
+            for (char low : lows) {
+                long bit = 1L << low;
+                if ((words[low >>> 6] & bit) == 0) {
+                    words[low >>> 6] |= bit;
+                    cardinality++;
+                }
+            }
+            this.cardinality = cardinality;
+            return this;
+        }
+
+        @Override
+        Block remove(char low) {
+            int cardinality = this.cardinality - 1;
+            // Only half of the array limit, so a block that hovers around it is not converted back and forth
+            if (cardinality <= ARRAY_LIMIT / 2) {
+                char[] lows = new char[cardinality];
+                int position = 0;
+                for (int cursor = seek(0); cursor < BLOCK_SIZE; cursor = next(cursor)) {
+                    if (cursor != low) {
+                        lows[position++] = (char) cursor;
+                    }
+                }
+                return new ArrayBlock(lows, cardinality);
+            }
+            long[] newWords = words.clone();
+            newWords[low >>> 6] &= ~(1L << low);
+            return new BitmapBlock(newWords, cardinality);
+        }
+    }
+
+    private static final class Ascending implements PrimitiveIterator.OfLong {
+        private final View view;
+        private int index;
+        // In the block at index, or -1 before seeking to the low in from
+        private int cursor = -1;
+        private int from;
+
+        Ascending(View view, long after) {
+            this.view = view;
+            if (after < 0) {
+                return;
+            }
+            int found = Arrays.binarySearch(view.highs, after >>> BLOCK_BITS);
+            if (found >= 0) {
+                from = (int) (after & LOW_MASK) + 1;
+                index = from < BLOCK_SIZE ? found : found + 1;
+                from %= BLOCK_SIZE;
+            } else {
+                index = -found - 1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (index < view.blocks.length) {
+                Block block = view.blocks[index];
+                if (cursor < 0) {
+                    cursor = block.seek(from);
+                }
+                if (block.low(cursor) >= 0) {
+                    return true;
+                }
+                index++;
+                cursor = -1;
+                from = 0;
+            }
+            return false;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Block block = view.blocks[index];
+            int low = block.low(cursor);
+            cursor = block.next(cursor);
+            return sequence(view.highs[index], low);
+        }
+    }
+
+    private static final class Union implements PrimitiveIterator.OfLong {
+        private final List<View> views;
+        private final long after;
+        private final long[] highs;
+        private final long[] bits = new long[BLOCK_SIZE / Long.SIZE];
+        private int nextHigh;
+        private long high;
+        private int word = bits.length;
+
+        Union(List<View> views, long after) {
+            this.views = views;
+            this.after = after;
+            long first = Math.max(after, 0) >>> BLOCK_BITS;
+            this.highs = views.stream()
+                    .flatMapToLong(view -> Arrays.stream(view.highs))
+                    .filter(high -> high >= first)
+                    .sorted()
+                    .distinct()
+                    .toArray();
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (true) {
+                while (word < bits.length) {
+                    if (bits[word] != 0) {
+                        return true;
+                    }
+                    word++;
+                }
+                if (nextHigh == highs.length) {
+                    return false;
+                }
+                fill(highs[nextHigh++]);
+            }
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long lowest = Long.lowestOneBit(bits[word]);
+            bits[word] ^= lowest;
+            return sequence(high, word * Long.SIZE + Long.numberOfTrailingZeros(lowest));
+        }
+
+        private void fill(long high) {
+            this.high = high;
+            for (View view : views) {
+                Block block = view.block(high);
+                if (block != null) {
+                    block.orInto(bits);
+                }
+            }
+            if (after >= 0 && high == after >>> BLOCK_BITS) {
+                // Clears the lows up to the one of after
+                int last = (int) (after & LOW_MASK);
+                Arrays.fill(bits, 0, last >>> 6, 0L);
+                bits[last >>> 6] &= last % Long.SIZE == Long.SIZE - 1 ? 0L : -1L << last + 1;
+            }
+            word = 0;
+        }
+    }
+
+    private static final class Filtered implements PrimitiveIterator.OfLong {
+        private final PrimitiveIterator.OfLong source;
+        private final LongPredicate predicate;
+        private long next;
+        private boolean ready;
+
+        Filtered(PrimitiveIterator.OfLong source, LongPredicate predicate) {
+            this.source = source;
+            this.predicate = predicate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!ready && source.hasNext()) {
+                long candidate = source.nextLong();
+                if (predicate.test(candidate)) {
+                    next = candidate;
+                    ready = true;
+                }
+            }
+            return ready;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            ready = false;
+            return next;
+        }
+    }
+
+    private static final class Merged implements PrimitiveIterator.OfLong {
+        private final PrimitiveIterator.OfLong first;
+        private final PrimitiveIterator.OfLong second;
+        private long nextFirst;
+        private long nextSecond;
+        private boolean hasFirst;
+        private boolean hasSecond;
+
+        Merged(PrimitiveIterator.OfLong first, PrimitiveIterator.OfLong second) {
+            this.first = first;
+            this.second = second;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (!hasFirst && first.hasNext()) {
+                nextFirst = first.nextLong();
+                hasFirst = true;
+            }
+            if (!hasSecond && second.hasNext()) {
+                nextSecond = second.nextLong();
+                hasSecond = true;
+            }
+            return hasFirst || hasSecond;
+        }
+
+        @Override
+        public long nextLong() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            long next;
+            if (!hasSecond || (hasFirst && nextFirst <= nextSecond)) {
+                next = nextFirst;
+                hasFirst = false;
+                if (hasSecond && nextSecond == next) {
+                    hasSecond = false;
+                }
+            } else {
+                next = nextSecond;
+                hasSecond = false;
+            }
+            return next;
+        }
+    }
+}
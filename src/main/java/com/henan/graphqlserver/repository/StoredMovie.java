@@ -0,0 +1,67 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A movie version held by {@link MovieRepository}. Versions are shared by every reader of a snapshot, so
+ * they cannot be changed: the setters throw, and the actor ids are an unmodifiable copy. It equals a plain
+ * {@link Movie} with the same fields.
+ */
+final class StoredMovie extends Movie {
+
+    private StoredMovie(Movie movie) {
+        super(movie.getId(), movie.getTitle(), movie.getReleaseYear(), movie.getDirector(), movie.getGenre(),
+                movie.getRating(), movie.getActorIds() != null
+                        ? Collections.unmodifiableList(new ArrayList<>(movie.getActorIds())) : null);
+    }
+
+    /**
+     * @return the movie itself if it is already stored, and a stored copy of it otherwise
+     */
+    static Movie of(Movie movie) {
+        return movie instanceof StoredMovie ? movie : new StoredMovie(movie);
+    }
+
+    @Override
+    public void setId(String id) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setTitle(String title) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setReleaseYear(Integer releaseYear) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setDirector(String director) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setGenre(String genre) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setRating(Float rating) {
+        throw readOnly();
+    }
+
+    @Override
+    public void setActorIds(List<String> actorIds) {
+        throw readOnly();
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("Stored movies are read-only, change them through the repository");
+    }
+}
@@ -0,0 +1,74 @@
+package com.henan.graphqlserver.repository;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Encodes strings as dense int codes, so a column stores one int per row and each distinct value once.
+ *
+ * Codes are never removed or reused, which keeps every code a concurrent reader has seen decodable. Values
+ * that no row uses any more stay in the dictionary; that is cheap for genres and directors, which repeat.
+ */
+final class StringDictionary {
+    static final int NULL = -1;
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    // Replaced by a larger copy when full; a code is stored here before it is published in codes
+    private volatile AtomicReferenceArray<String> values = new AtomicReferenceArray<>(16);
+    // Not a monitor, so a virtual thread that waits to add a value does not pin its carrier
+    private final ReentrantLock lock = new ReentrantLock();
+    // Guarded by lock
+    private int size;
+
+    int encode(String value) {
+        if (value == null) {
+            return NULL;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : add(value);
+    }
+
+    String decode(int code) {
+        return code == NULL ? null : values.get(code);
+    }
+
+    /**
+     * @return a table indexed by code that is true for the values accepted by the predicate. Values added
+     *         later are beyond the end of the table.
+     */
+    boolean[] matching(Predicate<String> predicate) {
+        AtomicReferenceArray<String> current = values;
+        boolean[] matches = new boolean[current.length()];
+        for (int code = 0; code < matches.length; code++) {
+            String value = current.get(code);
+            matches[code] = value != null && predicate.test(value);
+        }
+        return matches;
+    }
+
+    private int add(String value) {
+        lock.lock();
+        try {
+            Integer code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            AtomicReferenceArray<String> current = values;
+            if (size == current.length()) {
+                AtomicReferenceArray<String> grown = new AtomicReferenceArray<>(size * 2);
+                for (int i = 0; i < size; i++) {
+                    grown.set(i, current.get(i));
+                }
+                values = grown;
+                current = grown;
+            }
+            current.set(size, value);
+            codes.put(value, size);
+            return size++;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.PrimitiveIterator;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Trigram inverted index over lower-cased movie titles, used for case-insensitive substring search.
+ *
+ * Every substring match of a query with at least three characters contains all of the query's
+ * trigrams, so the intersection of their posting lists is a complete candidate set. The rarest list is
+ * walked and each entry is probed in the others. Candidates are then verified with
+ * {@link #containsIgnoreCase(String, String)}, which does not allocate.
+ */
+class TitleIndex implements MovieIndex {
+    static final int GRAM_LENGTH = 3;
+
+    // Empty posting sets are kept for the same reason as in GenreIndex.
+    private final ConcurrentHashMap<Long, SequenceSet> postings = new ConcurrentHashMap<>();
+
+    @Override
+    public void add(long sequence, Movie movie) {
+        String title = movie.getTitle();
+        if (title == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= title.length(); i++) {
+            postings.computeIfAbsent(trigram(title, i), key -> new SequenceSet()).add(sequence);
+        }
+    }
+
+    @Override
+    public void addAll(long first, List<Movie> movies) {
+        SequenceSet.Runs<Long> runs = new SequenceSet.Runs<>();
+        for (int m = 0; m < movies.size(); m++) {
+            String title = movies.get(m).getTitle();
+            if (title == null) {
+                continue;
+            }
+            for (int i = 0; i + GRAM_LENGTH <= title.length(); i++) {
+                runs.add(trigram(title, i), first + m);
+            }
+        }
+        runs.addTo(trigram -> postings.computeIfAbsent(trigram, key -> new SequenceSet()));
+    }
+
+    @Override
+    public void remove(long sequence, Movie movie) {
+        String title = movie.getTitle();
+        if (title == null) {
+            return;
+        }
+        for (int i = 0; i + GRAM_LENGTH <= title.length(); i++) {
+            SequenceSet sequences = postings.get(trigram(title, i));
+            if (sequences != null) {
+                sequences.remove(sequence);
+            }
+        }
+    }
+
+    @Override
+    public void update(long sequence, Movie previous, Movie current) {
+        if (!Objects.equals(previous.getTitle(), current.getTitle())) {
+            MovieIndex.super.update(sequence, previous, current);
+        }
+    }
+
+    /**
+     * @return whether the query is long enough to be answered from this index
+     */
+    static boolean supports(String query) {
+        return query != null && query.length() >= GRAM_LENGTH;
+    }
+
+    /**
+     * Returns the size of the rarest posting list of the query, an upper bound of the number of matches.
+     */
+    long estimate(String query) {
+        List<SequenceSet> sets = postingsOf(query);
+        return sets.isEmpty() ? 0 : sets.get(0).size();
+    }
+
+    /**
+     * @return the movies whose title has every trigram of the query, with a sequence after {@code after},
+     *         in ascending order
+     */
+    PrimitiveIterator.OfLong sequences(String query, long after) {
+        List<SequenceSet.View> views = new ArrayList<>();
+        for (SequenceSet sequences : postingsOf(query)) {
+            views.add(sequences.view());
+        }
+        return SequenceSet.intersection(views, after);
+    }
+
+    /**
+     * Case-insensitive {@code text.contains(query)} that does not create lower-cased copies.
+     */
+    static boolean containsIgnoreCase(String text, String query) {
+        int last = text.length() - query.length();
+        for (int i = 0; i <= last; i++) {
+            if (text.regionMatches(true, i, query, 0, query.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the distinct posting lists of the query's trigrams, rarest first, or none if a trigram
+     *         is in no title
+     */
+    private List<SequenceSet> postingsOf(String query) {
+        List<SequenceSet> sets = new ArrayList<>();
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            SequenceSet sequences = postings.get(trigram(query, i));
+            if (sequences == null) {
+                return List.of();
+            }
+            if (!sets.contains(sequences)) {
+                sets.add(sequences);
+            }
+        }
+        sets.sort(Comparator.comparingLong(SequenceSet::size));
+        return sets;
+    }
+
+    /**
+     * Packs the three lower-cased chars starting at {@code offset} into one key.
+     */
+    private static long trigram(String text, int offset) {
+        return ((long) Character.toLowerCase(text.charAt(offset)) << 32)
+                | ((long) Character.toLowerCase(text.charAt(offset + 1)) << 16)
+                | Character.toLowerCase(text.charAt(offset + 2));
+    }
+}
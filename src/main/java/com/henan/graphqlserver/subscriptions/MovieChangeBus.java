@@ -0,0 +1,224 @@
+package com.henan.graphqlserver.subscriptions;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieChange;
+import com.henan.graphqlserver.model.MovieChangeType;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.repository.MovieChangeListener;
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * Fans the changes of the movie store out to the {@code movieChanged} subscribers.
+ *
+ * Subscribers are grouped by filter, so each change is matched once per distinct filter rather than once per
+ * subscriber. A change reaches a subscriber if the movie matched its filter before or after the change, so
+ * subscribers also learn about movies that leave their filter. One thread dispatches the changes in the
+ * order they were published.
+ *
+ * Each subscriber has a buffer of {@code buffer-size} movies, and changes are only taken from it when the
+ * client asks for more. A change to a movie that is still in the buffer is merged into the buffered one,
+ * which keeps its place, so a slow client gets the latest state of each movie rather than every
+ * intermediate one. The changes of one write are buffered together: a write is taken whole if the buffer
+ * had room when it arrived, so a batch mutation larger than the buffer does not end a subscription on its
+ * own. A subscriber whose buffer is still full when the next write arrives is ended with an error, and has
+ * to query the catalog again before it subscribes again.
+ */
+public class MovieChangeBus implements MovieChangeListener, AutoCloseable {
+    private final MovieRepository movieRepository;
+    private final int bufferSize;
+    private final ConcurrentHashMap<MovieFilter, FilterGroup> groups = new ConcurrentHashMap<>();
+    private final AtomicInteger subscribers = new AtomicInteger();
+    private final ExecutorService dispatcher =
+            Executors.newSingleThreadExecutor(Thread.ofPlatform().name("movie-changes").daemon().factory());
+    // Emits buffered changes, which runs the subscription's selection set and sends the result
+    private final ExecutorService emitters = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("movie-changes-emit-", 0).factory());
+    private final Counter delivered;
+    private final Counter conflated;
+    private final Counter overflowed;
+
+    public MovieChangeBus(SubscriptionProperties properties, MovieRepository movieRepository,
+                          MeterRegistry meterRegistry) {
+        this.movieRepository = movieRepository;
+        this.bufferSize = properties.getBufferSize();
+        meterRegistry.gauge("graphql.subscriptions.active", subscribers);
+        this.delivered = meterRegistry.counter("graphql.subscriptions.changes", "outcome", "delivered");
+        this.conflated = meterRegistry.counter("graphql.subscriptions.changes", "outcome", "conflated");
+        this.overflowed = meterRegistry.counter("graphql.subscriptions.overflows");
+        movieRepository.setChangeListener(this);
+    }
+
+    /**
+     * Streams the changes to movies that match the filter before or after the change, from now on.
+     */
+    public Flux<MovieChange> subscribe(MovieFilter filter) {
+        MovieFilter key = filter != null ? filter : new MovieFilter();
+        return Flux.create(sink -> {
+            Subscriber subscriber = new Subscriber(sink);
+            groups.compute(key, (k, group) -> {
+                FilterGroup joined = group != null ? group : new FilterGroup(MovieRepository.matcher(k));
+                joined.subscribers.add(subscriber);
+                return joined;
+            });
+            subscribers.incrementAndGet();
+            sink.onRequest(n -> subscriber.emit());
+            sink.onDispose(() -> {
+                groups.computeIfPresent(key, (k, group) -> {
+                    group.subscribers.remove(subscriber);
+                    return group.subscribers.isEmpty() ? null : group;
+                });
+                subscribers.decrementAndGet();
+            });
+        }, FluxSink.OverflowStrategy.ERROR);
+    }
+
+    // Called while the repository publishes the write, so it only queues the changes
+    @Override
+    public void moviesChanged(List<MovieChange> changes) {
+        if (!groups.isEmpty()) {
+            dispatcher.execute(() -> dispatch(changes));
+        }
+    }
+
+    @Override
+    public void close() {
+        movieRepository.setChangeListener(MovieChangeListener.NONE);
+        dispatcher.shutdownNow();
+        emitters.shutdownNow();
+    }
+
+    private void dispatch(List<MovieChange> changes) {
+        for (FilterGroup group : groups.values()) {
+            List<MovieChange> matching = changes.stream().filter(group::matches).toList();
+            if (!matching.isEmpty()) {
+                for (Subscriber subscriber : group.subscribers) {
+                    subscriber.offer(matching);
+                }
+            }
+        }
+    }
+
+    private record FilterGroup(Predicate<Movie> matcher, Set<Subscriber> subscribers) {
+
+        private FilterGroup(Predicate<Movie> matcher) {
+            this(matcher, ConcurrentHashMap.newKeySet());
+        }
+
+        private boolean matches(MovieChange change) {
+            return (change.getMovie() != null && matcher.test(change.getMovie()))
+                    || (change.getPrevious() != null && matcher.test(change.getPrevious()));
+        }
+    }
+
+    private final class Subscriber {
+        private final FluxSink<MovieChange> sink;
+        // Guarded by this, in the order the movies first changed
+        private final Map<String, MovieChange> buffer = new LinkedHashMap<>();
+        // Emitting runs on one thread at a time; a request or offer while it runs makes it loop again
+        private final AtomicInteger emitting = new AtomicInteger();
+        private boolean overflowing;
+
+        private Subscriber(FluxSink<MovieChange> sink) {
+            this.sink = sink;
+        }
+
+        /**
+         * Buffers the changes of one write, which are taken whole if the buffer has room for one more movie.
+         */
+        private void offer(List<MovieChange> changes) {
+            synchronized (this) {
+                if (overflowing) {
+                    return;
+                }
+                boolean room = buffer.size() < bufferSize;
+                for (MovieChange change : changes) {
+                    MovieChange buffered = buffer.get(change.getId());
+                    if (buffered != null) {
+                        conflated.increment();
+                        MovieChange merged = merge(buffered, change);
+                        if (merged != null) {
+                            buffer.put(change.getId(), merged);
+                        } else {
+                            buffer.remove(change.getId());
+                        }
+                    } else if (room) {
+                        buffer.put(change.getId(), change);
+                    } else {
+                        overflowing = true;
+                        buffer.clear();
+                        break;
+                    }
+                }
+            }
+            emit();
+        }
+
+        private void emit() {
+            if (emitting.getAndIncrement() == 0) {
+                emitters.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            do {
+                if (isOverflowing()) {
+                    overflowed.increment();
+                    sink.error(new IllegalStateException(
+                            "Too many changes are waiting to be sent, query the catalog again and resubscribe"));
+                    return;
+                }
+                MovieChange next;
+                while (sink.requestedFromDownstream() > 0 && (next = poll()) != null) {
+                    delivered.increment();
+                    sink.next(next);
+                }
+            } while (emitting.decrementAndGet() != 0);
+        }
+
+        private synchronized boolean isOverflowing() {
+            return overflowing;
+        }
+
+        private synchronized MovieChange poll() {
+            Iterator<MovieChange> iterator = buffer.values().iterator();
+            if (!iterator.hasNext()) {
+                return null;
+            }
+            MovieChange next = iterator.next();
+            iterator.remove();
+            return next;
+        }
+    }
+
+    /**
+     * Merges a change into the buffered change to the same movie.
+     *
+     * @return the change from the buffered state to the latest, or null if the movie was created and then
+     *         deleted before the subscriber saw it
+     */
+    private static MovieChange merge(MovieChange buffered, MovieChange change) {
+        Movie previous = buffered.getPrevious();
+        Movie movie = change.getMovie();
+        if (previous == null && movie == null) {
+            return null;
+        }
+        MovieChangeType type = previous == null ? MovieChangeType.CREATED
+                : movie == null ? MovieChangeType.DELETED : MovieChangeType.UPDATED;
+        return new MovieChange(type, change.getId(), movie, previous);
+    }
+}
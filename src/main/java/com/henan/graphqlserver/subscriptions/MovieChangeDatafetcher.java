@@ -0,0 +1,24 @@
+package com.henan.graphqlserver.subscriptions;
+
+import com.henan.graphqlserver.model.MovieChange;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.netflix.graphql.dgs.DgsComponent;
+import com.netflix.graphql.dgs.DgsSubscription;
+import com.netflix.graphql.dgs.InputArgument;
+import org.reactivestreams.Publisher;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+
+@DgsComponent
+@ConditionalOnProperty(prefix = "graphql-server.subscriptions", name = "enabled", havingValue = "true")
+public class MovieChangeDatafetcher {
+    private final MovieChangeBus movieChangeBus;
+
+    public MovieChangeDatafetcher(MovieChangeBus movieChangeBus) {
+        this.movieChangeBus = movieChangeBus;
+    }
+
+    @DgsSubscription
+    public Publisher<MovieChange> movieChanged(@InputArgument MovieFilter filter) {
+        return movieChangeBus.subscribe(filter);
+    }
+}
@@ -0,0 +1,24 @@
+package com.henan.graphqlserver.subscriptions;
+
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Subscriptions are served over WebSocket with the graphql-transport-ws protocol, on the path set by
+ * {@code spring.graphql.websocket.path}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "graphql-server.subscriptions", name = "enabled", havingValue = "true")
+@EnableConfigurationProperties(SubscriptionProperties.class)
+public class SubscriptionConfiguration {
+
+    @Bean
+    public MovieChangeBus movieChangeBus(SubscriptionProperties properties, MovieRepository movieRepository,
+                                         MeterRegistry meterRegistry) {
+        return new MovieChangeBus(properties, movieRepository, meterRegistry);
+    }
+}
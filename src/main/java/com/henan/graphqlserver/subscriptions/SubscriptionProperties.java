@@ -0,0 +1,12 @@
+package com.henan.graphqlserver.subscriptions;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("graphql-server.subscriptions")
+public class SubscriptionProperties {
+    private boolean enabled = true;
+    // Movies with changes waiting for a slow subscriber, beyond which its subscription is ended
+    private int bufferSize = 256;
+}
@@ -0,0 +1,140 @@
+package com.henan.graphqlserver;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.CatalogJournal;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.henan.graphqlserver.repository.MovieStoreProperties;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import graphql.ExecutionResult;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+@ActiveProfiles("virtual-threads")
+class VirtualThreadsProfileTest {
+
+    @Autowired
+    private DgsQueryExecutor dgsQueryExecutor;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @MockitoSpyBean
+    private ActorRepository actorRepository;
+
+    @Test
+    @DisplayName("Should resolve sibling fields on separate virtual threads")
+    void shouldResolveSiblingFieldsOnVirtualThreads() {
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        doAnswer(invocation -> {
+            threads.add(Thread.currentThread());
+            return invocation.callRealMethod();
+        }).when(movieRepository).findById(anyString(), any());
+
+        ExecutionResult result = dgsQueryExecutor.execute(
+                "{ first: movie(id: \"1\") { title } second: movie(id: \"2\") { title } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(Map.of("title", "The Godfather"), ((Map<?, ?>) result.getData()).get("second"));
+        assertEquals(2, threads.size());
+        assertTrue(threads.stream().allMatch(Thread::isVirtual));
+    }
+
+    @Test
+    @DisplayName("Should still batch actor lookups across asynchronous parents")
+    void shouldStillBatchActorLookups() {
+        ExecutionResult result = dgsQueryExecutor.execute(
+                "{ movies { actors { name } } movie(id: \"2\") { actors { name } } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        verify(actorRepository, times(1)).findAllById(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should not pin carrier threads while writes wait for the journal")
+    void shouldNotPinCarriersWhileWritesWaitForTheJournal() throws Exception {
+        MovieStoreProperties properties = new MovieStoreProperties();
+        properties.setColumnar(true);
+        MovieRepository movies = new MovieRepository(properties);
+        ActorRepository actors = new ActorRepository();
+        // Parks like a writer waiting for the lock of the mutation log
+        CatalogJournal journal = new CatalogJournal() {
+            @Override
+            public long moviePut(Movie movie) {
+                LockSupport.parkNanos(100_000);
+                return 0;
+            }
+
+            @Override
+            public long movieDeleted(String id) {
+                LockSupport.parkNanos(100_000);
+                return 0;
+            }
+
+            @Override
+            public long actorPut(Actor actor) {
+                LockSupport.parkNanos(100_000);
+                return 0;
+            }
+
+            @Override
+            public void awaitDurable(long ticket) {
+            }
+        };
+        movies.setJournal(journal);
+        actors.setJournal(journal);
+
+        List<RecordedEvent> pinned = new CopyOnWriteArrayList<>();
+        try (RecordingStream recording = new RecordingStream()) {
+            recording.enable("jdk.VirtualThreadPinned").withThreshold(Duration.ZERO);
+            recording.onEvent("jdk.VirtualThreadPinned", pinned::add);
+            recording.startAsync();
+            try (ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor()) {
+                List<Future<?>> writes = new ArrayList<>();
+                for (int i = 0; i < 200; i++) {
+                    // Few ids, so writers of the same movie wait for each other
+                    String id = String.valueOf(i % 10);
+                    writes.add(writers.submit(() -> {
+                        movies.save(new Movie(id, "Movie " + id, 2000, "Director", "Drama", 8.0f, List.of(id)));
+                        movies.deleteById(id);
+                        actors.save(new Actor(id, "Actor " + id, 1970));
+                    }));
+                }
+                for (Future<?> write : writes) {
+                    write.get();
+                }
+            }
+            recording.stop();
+        }
+
+        assertTrue(pinned.isEmpty(), () -> "Pinned carrier threads: " + pinned);
+    }
+}
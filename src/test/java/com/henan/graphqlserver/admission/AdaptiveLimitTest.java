@@ -0,0 +1,80 @@
+package com.henan.graphqlserver.admission;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveLimitTest {
+    private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    @DisplayName("Should grow the limit while fully used requests keep their latency")
+    void shouldGrowWhileLatencyHolds() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 4, 100, 1.5);
+
+        for (int i = 0; i < 200; i++) {
+            limit.release(10 * MILLISECOND, saturate(limit));
+        }
+
+        assertEquals(100, limit.limit());
+    }
+
+    @Test
+    @DisplayName("Should shrink the limit when latency rises, down to its minimum")
+    void shouldShrinkWhenLatencyRises() {
+        AdaptiveLimit limit = new AdaptiveLimit(50, 8, 100, 1.5);
+        for (int i = 0; i < 100; i++) {
+            limit.release(10 * MILLISECOND, saturate(limit));
+        }
+        int before = limit.limit();
+
+        limit.release(100 * MILLISECOND, saturate(limit));
+        assertTrue(limit.limit() < before, limit.limit() + " >= " + before);
+        for (int i = 0; i < 100; i++) {
+            limit.release(100 * MILLISECOND, saturate(limit));
+        }
+
+        assertEquals(8, limit.limit());
+    }
+
+    @Test
+    @DisplayName("Should not change the limit for requests that completed while most of it was unused")
+    void shouldIgnoreSamplesFromLightLoad() {
+        AdaptiveLimit limit = new AdaptiveLimit(20, 4, 100, 1.5);
+
+        for (int i = 0; i < 100; i++) {
+            limit.release(i % 2 == 0 ? MILLISECOND : 100 * MILLISECOND, limit.tryAcquire(1.0));
+        }
+
+        assertEquals(20, limit.limit());
+    }
+
+    @Test
+    @DisplayName("Should admit requests of a lower share only up to their part of the limit")
+    void shouldReserveLimitForHigherShares() {
+        AdaptiveLimit limit = new AdaptiveLimit(10, 1, 10, 1.5);
+
+        for (int i = 1; i <= 5; i++) {
+            assertEquals(i, limit.tryAcquire(0.5));
+        }
+        assertEquals(0, limit.tryAcquire(0.5));
+        for (int i = 6; i <= 10; i++) {
+            assertEquals(i, limit.tryAcquire(1.0));
+        }
+        assertEquals(0, limit.tryAcquire(1.0));
+        assertEquals(10, limit.inFlight());
+    }
+
+    /**
+     * Admits a request as if the whole limit were in use when it started.
+     *
+     * @return the requests in flight to release it with
+     */
+    private static int saturate(AdaptiveLimit limit) {
+        assertTrue(limit.tryAcquire(1.0) > 0);
+        return limit.limit();
+    }
+}
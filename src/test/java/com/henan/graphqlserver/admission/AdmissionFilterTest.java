@@ -0,0 +1,129 @@
+package com.henan.graphqlserver.admission;
+
+import com.henan.graphqlserver.repository.MovieProjection;
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT, properties = {
+        "graphql-server.admission.enabled=true",
+        "graphql-server.admission.initial-limit=2",
+        "graphql-server.admission.min-limit=2",
+        "graphql-server.admission.max-limit=2",
+        "graphql-server.admission.low-share=0.5",
+        "graphql-server.admission.client-rate=1",
+        "graphql-server.admission.client-burst=2",
+        // Cached responses still count against the rate of their client
+        "graphql-server.response-cache.enabled=true"
+})
+class AdmissionFilterTest {
+    private static final Map<String, String> SEARCH = Map.of("query", "{ searchMovies { title } }");
+    private static final Map<String, String> LOOKUP = Map.of("query", "{ movie(id: \"2\") { title } }");
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @Test
+    @DisplayName("Should reject requests over a client's rate with the time until it may send again")
+    void shouldThrottleClients() {
+        assertTrue(post("rate", LOOKUP).contains("The Godfather"));
+        // Served from the response cache
+        assertTrue(post("rate", LOOKUP).contains("The Godfather"));
+
+        HttpClientErrorException.TooManyRequests rejected =
+                assertThrows(HttpClientErrorException.TooManyRequests.class, () -> post("rate", LOOKUP));
+
+        assertEquals("1", rejected.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertTrue(rejected.getResponseBodyAsString().contains("Too many requests from this client"));
+        assertTrue(post("other", LOOKUP).contains("The Godfather"));
+    }
+
+    @Test
+    @DisplayName("Should take a token for every operation of a batch")
+    void shouldThrottleBatchesPerOperation() {
+        assertTrue(post("batch", List.of(LOOKUP, LOOKUP)).contains("The Godfather"));
+
+        HttpClientErrorException.TooManyRequests rejected =
+                assertThrows(HttpClientErrorException.TooManyRequests.class, () -> post("batch", LOOKUP));
+
+        assertTrue(rejected.getResponseBodyAsString().contains("Too many requests from this client"));
+    }
+
+    @Test
+    @DisplayName("Should shed scans at their share of the limit and still admit lookups by id")
+    void shouldShedLowPriorityRequestsFirst() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).when(movieRepository).search(any(), any(MovieRepository.Snapshot.class), any(MovieProjection.class));
+
+        ExecutorService clients = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> scan = clients.submit(() -> post("scan-1", SEARCH));
+            awaitInFlight(1);
+
+            HttpClientErrorException.TooManyRequests shed =
+                    assertThrows(HttpClientErrorException.TooManyRequests.class, () -> post("scan-2", SEARCH));
+            assertEquals("1", shed.getResponseHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+            assertTrue(shed.getResponseBodyAsString().contains("The server is at capacity"));
+            assertTrue(post("lookup", LOOKUP).contains("The Godfather"));
+            // Two lookups take two slots, and only one is free
+            assertThrows(HttpClientErrorException.TooManyRequests.class,
+                    () -> post("lookup-batch", List.of(LOOKUP, LOOKUP)));
+
+            release.countDown();
+            assertTrue(scan.get(10, TimeUnit.SECONDS).contains("The Dark Knight"));
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+        assertEquals(1.0, meterRegistry.get("graphql.admission.requests")
+                .tags("outcome", "shed", "priority", "low").counter().count());
+    }
+
+    private void awaitInFlight(double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (meterRegistry.get("graphql.admission.in-flight").gauge().value() < count) {
+            assertTrue(System.nanoTime() < deadline, "the request was not admitted in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private String post(String client, Object body) {
+        return RestClient.create("http://localhost:" + port).post()
+                .uri("/graphql")
+                .header("X-Client-Id", client)
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(String.class);
+    }
+}
@@ -0,0 +1,48 @@
+package com.henan.graphqlserver.admission;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestPrioritiesTest {
+    private final RequestPriorities priorities =
+            new RequestPriorities(new AdmissionProperties(), new ObjectMapper(), null);
+
+    @Test
+    @DisplayName("Should give mutations and lookups by id high priority and scans low priority")
+    void shouldClassifyByRootFields() {
+        assertEquals(Priority.HIGH, of("{\"query\":\"mutation { deleteMovie(id: \\\"1\\\") { success } }\"}"));
+        assertEquals(Priority.HIGH, of("{\"query\":\"{ movie(id: 1) { title } actor(id: 2) { name } }\"}"));
+        assertEquals(Priority.LOW, of("{\"query\":\"{ movie(id: \\\"1\\\") { title } searchMovies { title } }\"}"));
+        assertEquals(Priority.LOW, of("{\"query\":\"{ movieStats { count } }\"}"));
+        assertEquals(Priority.NORMAL, of("{\"query\":\"{ moviesByGenre(genre: \\\"Drama\\\") { title } }\"}"));
+    }
+
+    @Test
+    @DisplayName("Should classify the operation a request names")
+    void shouldClassifyNamedOperation() {
+        String document = "query Scan { searchMovies { title } } mutation Delete { deleteMovie(id: 1) { success } }";
+
+        assertEquals(Priority.LOW, of("{\"query\":\"" + document + "\",\"operationName\":\"Scan\"}"));
+        assertEquals(Priority.HIGH, of("{\"query\":\"" + document + "\",\"operationName\":\"Delete\"}"));
+        assertEquals(Priority.NORMAL, of("{\"query\":\"" + document + "\"}"));
+    }
+
+    @Test
+    @DisplayName("Should give a batch the lowest priority of its operations, and unreadable requests normal")
+    void shouldClassifyBatchesAndUnreadableRequests() {
+        assertEquals(Priority.LOW,
+                of("[{\"query\":\"{ movie(id: 1) { title } }\"},{\"query\":\"{ searchMovies { id } }\"}]"));
+        assertEquals(Priority.NORMAL, of("not json"));
+        assertEquals(Priority.NORMAL, of("{\"query\":\"{ movie(\"}"));
+        assertEquals(Priority.NORMAL, of("{\"extensions\":{\"persistedQuery\":{\"sha256Hash\":\"abc\"}}}"));
+    }
+
+    private Priority of(String body) {
+        return priorities.of(body.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,130 @@
+package com.henan.graphqlserver.batching;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.repository.ActorRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+// One operation at a time, so the operations of a batch run in order
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = {"graphql-server.batching.max-operations=5", "graphql-server.batching.parallelism=1"})
+class BatchRequestFilterTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @MockitoSpyBean
+    private ActorRepository actorRepository;
+
+    @Test
+    @DisplayName("Should answer a batch with the responses of its operations in order")
+    void shouldAnswerBatchInOrder() throws Exception {
+        JsonNode responses = post(List.of(
+                Map.of("query", "query Movie($id: ID!) { movie(id: $id) { title actors { name } } }",
+                        "variables", Map.of("id", "1")),
+                Map.of("query", "{ actor(id: \"2\") { name } }"),
+                Map.of("query", "{ searchMovies(filter: { genre: \"Crime\" }, limit: 1) { title } }"),
+                Map.of("query", "{ movie(id: \"1\") { actors { name birthYear } } }")));
+
+        assertEquals(4, responses.size());
+        assertEquals("The Shawshank Redemption", responses.get(0).at("/data/movie/title").asText());
+        assertEquals("Tim Robbins", responses.get(0).at("/data/movie/actors/0/name").asText());
+        assertEquals("Morgan Freeman", responses.get(1).at("/data/actor/name").asText());
+        assertEquals(1, responses.get(2).at("/data/searchMovies").size());
+        assertEquals(2, responses.get(3).at("/data/movie/actors").size());
+        // Both operations asked for the same actors, which were loaded once for the batch
+        verify(actorRepository, times(1)).findAllById(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should read each operation's filmographies from its own snapshot")
+    void shouldNotShareFilmographiesAcrossOperations() throws Exception {
+        String filmography = "{ actor(id: \"2\") { movies { title } } }";
+        JsonNode responses = post(List.of(
+                Map.of("query", filmography),
+                Map.of("query", "mutation { createMovie(input: { title: \"Se7en\", actorIds: [\"2\"] }) { success } }"),
+                Map.of("query", filmography)));
+
+        List<String> before = titles(responses.get(0).at("/data/actor/movies"));
+        List<String> after = titles(responses.get(2).at("/data/actor/movies"));
+        assertTrue(responses.get(1).at("/data/createMovie/success").asBoolean());
+        assertFalse(before.contains("Se7en"));
+        assertEquals(before.size() + 1, after.size());
+        assertTrue(after.contains("Se7en"));
+    }
+
+    @Test
+    @DisplayName("Should answer an operation that cannot be executed with an error in its place")
+    void shouldReportInvalidOperationsInPlace() throws Exception {
+        JsonNode responses = post(List.of(
+                "not an operation",
+                Map.of("query", "{ movie(id: \"2\") { doesNotExist } }"),
+                Map.of("query", "{ movie(id: \"2\") { title } }")));
+
+        assertEquals(3, responses.size());
+        assertFalse(responses.get(0).path("errors").isEmpty());
+        assertFalse(responses.get(1).path("errors").isEmpty());
+        assertEquals("The Godfather", responses.get(2).at("/data/movie/title").asText());
+    }
+
+    @Test
+    @DisplayName("Should reject batches with more operations than allowed")
+    void shouldRejectOversizedBatches() {
+        List<Map<String, String>> operations = Collections.nCopies(6, Map.of("query", "{ movies { title } }"));
+
+        HttpClientErrorException.BadRequest rejected =
+                assertThrows(HttpClientErrorException.BadRequest.class, () -> post(operations));
+
+        assertTrue(rejected.getResponseBodyAsString().contains("1 to 5 operations"));
+    }
+
+    @Test
+    @DisplayName("Should pass single requests on unchanged")
+    void shouldPassSingleRequestsOn() throws Exception {
+        JsonNode response = objectMapper.readTree(RestClient.create("http://localhost:" + port).post()
+                .uri("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(Map.of("query", "{ movie(id: \"1\") { title } }"))
+                .retrieve()
+                .body(String.class));
+
+        assertEquals("The Shawshank Redemption", response.at("/data/movie/title").asText());
+    }
+
+    private static List<String> titles(JsonNode movies) {
+        List<String> titles = new ArrayList<>();
+        movies.forEach(movie -> titles.add(movie.path("title").asText()));
+        return titles;
+    }
+
+    private JsonNode post(List<?> operations) throws Exception {
+        String body = RestClient.create("http://localhost:" + port).post()
+                .uri("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(operations)
+                .retrieve()
+                .body(String.class);
+        return objectMapper.readTree(body);
+    }
+}
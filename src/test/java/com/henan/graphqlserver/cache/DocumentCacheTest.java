@@ -0,0 +1,84 @@
+package com.henan.graphqlserver.cache;
+
+import graphql.ExecutionInput;
+import graphql.execution.preparsed.PreparsedDocumentEntry;
+import graphql.parser.Parser;
+import graphql.validation.ValidationError;
+import graphql.validation.ValidationErrorType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DocumentCacheTest {
+    private static final String QUERY = "{ movies { title } }";
+
+    private final AtomicInteger parses = new AtomicInteger();
+    private final Function<ExecutionInput, PreparsedDocumentEntry> parseAndValidate = input -> {
+        parses.incrementAndGet();
+        return input.getQuery().contains("doesNotExist")
+                ? new PreparsedDocumentEntry(ValidationError.newValidationError()
+                        .validationErrorType(ValidationErrorType.FieldUndefined).description("doesNotExist").build())
+                : new PreparsedDocumentEntry(Parser.parse(input.getQuery()));
+    };
+
+    @Test
+    @DisplayName("Should parse and validate each document once")
+    void shouldParseAndValidateEachDocumentOnce() {
+        DocumentCache cache = documentCache(new PersistedQueryManifest(Map.of()), false);
+
+        PreparsedDocumentEntry first = cache.getDocumentAsync(input(QUERY), parseAndValidate).join();
+        PreparsedDocumentEntry second = cache.getDocumentAsync(input(QUERY), parseAndValidate).join();
+
+        assertSame(first, second);
+        assertEquals(1, parses.get());
+        assertEquals(1, cache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Should not cache documents with errors")
+    void shouldNotCacheDocumentsWithErrors() {
+        DocumentCache cache = documentCache(new PersistedQueryManifest(Map.of()), false);
+        String invalid = "{ movies { doesNotExist } }";
+
+        assertTrue(cache.getDocumentAsync(input(invalid), parseAndValidate).join().hasErrors());
+        assertTrue(cache.getDocumentAsync(input(invalid), parseAndValidate).join().hasErrors());
+
+        assertEquals(2, parses.get());
+    }
+
+    @Test
+    @DisplayName("Should only accept registered operations in allow-list mode")
+    void shouldOnlyAcceptRegisteredOperationsInAllowListMode() {
+        PersistedQueryManifest manifest = new PersistedQueryManifest(Map.of(PersistedQueryManifest.sha256(QUERY), QUERY));
+        DocumentCache cache = documentCache(manifest, true);
+
+        PreparsedDocumentEntry allowed = cache.getDocumentAsync(input(QUERY), parseAndValidate).join();
+        PreparsedDocumentEntry rejected = cache.getDocumentAsync(input("{ actors { name } }"), parseAndValidate).join();
+
+        assertFalse(allowed.hasErrors());
+        assertTrue(rejected.hasErrors());
+        assertEquals("Operation is not in the persisted query allow-list", rejected.getErrors().get(0).getMessage());
+        assertEquals(1, parses.get());
+    }
+
+    @Test
+    @DisplayName("Should reject a manifest whose ids do not match their operations")
+    void shouldRejectManifestWithMismatchedIds() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PersistedQueryManifest(Map.of(PersistedQueryManifest.sha256(QUERY), "{ actors { name } }")));
+    }
+
+    private static DocumentCache documentCache(PersistedQueryManifest manifest, boolean allowListOnly) {
+        return new DocumentCache(new DocumentCacheProperties(), manifest, allowListOnly, new SimpleMeterRegistry());
+    }
+
+    private static ExecutionInput input(String query) {
+        return ExecutionInput.newExecutionInput(query).build();
+    }
+}
@@ -0,0 +1,67 @@
+package com.henan.graphqlserver.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class PersistedDocumentCacheTest {
+    private static final String QUERY = "query Titles { movies { title } }";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private PersistedDocumentCache persistedDocumentCache;
+
+    @Test
+    @DisplayName("Should register a persisted query on miss and serve it by hash afterwards")
+    void shouldRegisterPersistedQueryOnMissAndServeByHash() {
+        String hash = PersistedQueryManifest.sha256(QUERY);
+
+        String notFound = post(null, hash);
+        String registered = post(QUERY, hash);
+        long hits = persistedDocumentCache.stats().hitCount();
+        String byHash = post(null, hash);
+
+        assertTrue(notFound.contains("PersistedQueryNotFound"), notFound);
+        assertTrue(registered.contains("The Shawshank Redemption"), registered);
+        assertEquals(registered, byHash);
+        assertEquals(hits + 1, persistedDocumentCache.stats().hitCount());
+        assertNotNull(persistedDocumentCache.find(hash));
+    }
+
+    @Test
+    @DisplayName("Should reject a query whose text does not match its hash")
+    void shouldRejectQueryWhoseTextDoesNotMatchHash() {
+        String hash = PersistedQueryManifest.sha256("{ actors { name } }");
+
+        String response = post(QUERY, hash);
+
+        assertTrue(response.contains("PersistedQueryIdInvalid"), response);
+        assertNull(persistedDocumentCache.find(hash));
+    }
+
+    private String post(String query, String hash) {
+        Map<String, Object> body = new HashMap<>();
+        if (query != null) {
+            body.put("query", query);
+        }
+        body.put("extensions", Map.of("persistedQuery", Map.of("version", 1, "sha256Hash", hash)));
+        return RestClient.create("http://localhost:" + port).post()
+                .uri("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(String.class);
+    }
+}
@@ -0,0 +1,85 @@
+package com.henan.graphqlserver.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.web.client.RestClient;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "graphql-server.response-cache.enabled=true")
+class ResponseCacheFilterTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Test
+    @DisplayName("Should serve repeated reads from the cache until a mutation changes the catalog")
+    void shouldServeRepeatedReadsFromCacheUntilMutation() {
+        String query = "query Movie($id: ID!) { movie(id: $id) { title rating } }";
+        long hits = responseCache.stats().hitCount();
+
+        String first = post(query, Map.of("id", "3"));
+        String second = post("query Movie($id: ID!) {\n  # same query, reformatted\n  movie(id: $id) {\n    title\n    rating\n  }\n}", Map.of("id", "3"));
+
+        assertEquals(first, second);
+        assertEquals(hits + 1, responseCache.stats().hitCount());
+
+        post("mutation { updateMovie(id: \"3\", input: { title: \"The Dark Knight\", rating: 8.9 }) { success } }", Map.of());
+        String afterMutation = post(query, Map.of("id", "3"));
+
+        assertTrue(afterMutation.contains("8.9"));
+        assertEquals(hits + 1, responseCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Should not cache mutations or responses with errors")
+    void shouldNotCacheMutationsOrErrors() {
+        long hits = responseCache.stats().hitCount();
+        String invalid = "{ movie(id: \"1\") { doesNotExist } }";
+
+        post(invalid, Map.of());
+        post(invalid, Map.of());
+
+        assertEquals(hits, responseCache.stats().hitCount());
+    }
+
+    @Test
+    @DisplayName("Should key persisted queries that only carry a hash by that hash")
+    void shouldKeyPersistedQueriesByHash() {
+        String query = "{ actors { name } }";
+        Map<String, Object> extensions = Map.of("persistedQuery",
+                Map.of("version", 1, "sha256Hash", PersistedQueryManifest.sha256(query)));
+        post(Map.of("query", query, "extensions", extensions));
+        long hits = responseCache.stats().hitCount();
+
+        String first = post(Map.of("extensions", extensions));
+        String second = post(Map.of("extensions", extensions));
+
+        assertEquals(first, second);
+        assertTrue(first.contains("Tim Robbins"), first);
+        assertEquals(hits + 1, responseCache.stats().hitCount());
+    }
+
+    private String post(String query, Map<String, Object> variables) {
+        return post(Map.of("query", query, "variables", variables));
+    }
+
+    private String post(Map<String, Object> body) {
+        return RestClient.create("http://localhost:" + port).post()
+                .uri("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(String.class);
+    }
+}
@@ -0,0 +1,119 @@
+package com.henan.graphqlserver.cache;
+
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+import org.springframework.web.client.RestClient;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "graphql-server.single-flight.enabled=true")
+class SingleFlightFilterTest {
+    private static final String QUERY = "query Genre($genre: String!) { moviesByGenre(genre: $genre) { title } }";
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @Test
+    @DisplayName("Should execute concurrent identical queries once and send every request the same response")
+    void shouldCoalesceConcurrentIdenticalQueries() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            assertTrue(release.await(10, TimeUnit.SECONDS));
+            return invocation.callRealMethod();
+        }).when(movieRepository).findByGenre(eq("Crime"), any(), any());
+        double coalesced = coalesced();
+
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> responses = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                responses.add(clients.submit(() -> post(Map.of("query", QUERY, "variables", Map.of("genre", "Crime")))));
+            }
+            awaitCoalesced(coalesced + 3);
+            release.countDown();
+
+            String first = responses.get(0).get(10, TimeUnit.SECONDS);
+            assertTrue(first.contains("The Godfather"), first);
+            for (Future<String> response : responses) {
+                assertEquals(first, response.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            release.countDown();
+            clients.shutdownNow();
+        }
+        verify(movieRepository, times(1)).findByGenre(eq("Crime"), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should execute identical queries again once the previous execution completed")
+    void shouldNotKeepResponsesAfterExecution() {
+        Map<String, Object> request = Map.of("query", QUERY, "variables", Map.of("genre", "Drama"));
+        double coalesced = coalesced();
+
+        String first = post(request);
+        String second = post(request);
+
+        assertEquals(first, second);
+        assertEquals(coalesced, coalesced());
+        verify(movieRepository, times(2)).findByGenre(eq("Drama"), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should not share mutations")
+    void shouldNotShareMutations() {
+        post(Map.of("query", "mutation { updateMovie(id: \"missing\", input: { title: \"Title\" }) { success } }"));
+
+        verify(movieRepository, times(0)).findByGenre(anyString(), any(), any());
+        assertEquals(0.0, meterRegistry.get("graphql.single-flight.in-flight").gauge().value());
+    }
+
+    private double coalesced() {
+        return meterRegistry.get("graphql.single-flight.requests").tag("outcome", "coalesced").counter().count();
+    }
+
+    private void awaitCoalesced(double count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (coalesced() < count) {
+            assertTrue(System.nanoTime() < deadline, "requests were not coalesced in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private String post(Map<String, Object> body) {
+        return RestClient.create("http://localhost:" + port).post()
+                .uri("/graphql")
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(body)
+                .retrieve()
+                .body(String.class);
+    }
+}
@@ -1,6 +1,8 @@
 package com.henan.graphqlserver.datafetchers;
 
 import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Connection;
+import com.henan.graphqlserver.repository.ActorRepository;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
@@ -15,7 +17,7 @@ class ActorDatafetcherTest {
 
     @BeforeEach
     void setUp() {
-        actorDatafetcher = new ActorDatafetcher();
+        actorDatafetcher = new ActorDatafetcher(new ActorRepository());
     }
 
     @Test
@@ -142,4 +144,16 @@ class ActorDatafetcherTest {
             assertEquals(actors1.get(i).getId(), actors2.get(i).getId());
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should page through actors with cursors")
+    void shouldPageThroughActorsWithCursors() {
+        Connection<Actor> firstPage = actorDatafetcher.actorsConnection(2, null);
+        Connection<Actor> secondPage = actorDatafetcher.actorsConnection(2, firstPage.getPageInfo().getEndCursor());
+
+        assertEquals(List.of("1", "2"), firstPage.getEdges().stream().map(edge -> edge.getNode().getId()).toList());
+        assertEquals(List.of("3"), secondPage.getEdges().stream().map(edge -> edge.getNode().getId()).toList());
+        assertFalse(secondPage.getPageInfo().isHasNextPage());
+        assertEquals(3, secondPage.getTotalCount());
+    }
+}
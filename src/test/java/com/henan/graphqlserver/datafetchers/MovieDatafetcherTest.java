@@ -1,10 +1,14 @@
 package com.henan.graphqlserver.datafetchers;
 
 import com.henan.graphqlserver.model.*;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.exceptions.DgsBadRequestException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.DisplayName;
 
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -15,13 +19,13 @@ class MovieDatafetcherTest {
 
     @BeforeEach
     void setUp() {
-        movieDatafetcher = new MovieDatafetcher();
+        movieDatafetcher = new MovieDatafetcher(new MovieRepository(), new ActorRepository());
     }
 
     @Test
     @DisplayName("Should return all movies")
     void shouldReturnAllMovies() {
-        List<Movie> movies = movieDatafetcher.movies();
+        List<Movie> movies = movieDatafetcher.movies(null);
         
         assertNotNull(movies);
         assertEquals(3, movies.size());
@@ -33,7 +37,7 @@ class MovieDatafetcherTest {
     @Test
     @DisplayName("Should return movie by valid ID")
     void shouldReturnMovieByValidId() {
-        Movie movie = movieDatafetcher.movie("1");
+        Movie movie = movieDatafetcher.movie("1", null);
         
         assertNotNull(movie);
         assertEquals("1", movie.getId());
@@ -47,7 +51,7 @@ class MovieDatafetcherTest {
     @Test
     @DisplayName("Should return null for invalid movie ID")
     void shouldReturnNullForInvalidId() {
-        Movie movie = movieDatafetcher.movie("999");
+        Movie movie = movieDatafetcher.movie("999", null);
         
         assertNull(movie);
     }
@@ -55,7 +59,7 @@ class MovieDatafetcherTest {
     @Test
     @DisplayName("Should return movies by genre")
     void shouldReturnMoviesByGenre() {
-        List<Movie> dramaMovies = movieDatafetcher.moviesByGenre("Drama");
+        List<Movie> dramaMovies = movieDatafetcher.moviesByGenre("Drama", null);
         
         assertNotNull(dramaMovies);
         assertEquals(1, dramaMovies.size());
@@ -65,7 +69,7 @@ class MovieDatafetcherTest {
     @Test
     @DisplayName("Should return empty list for non-existent genre")
     void shouldReturnEmptyListForNonExistentGenre() {
-        List<Movie> movies = movieDatafetcher.moviesByGenre("Horror");
+        List<Movie> movies = movieDatafetcher.moviesByGenre("Horror", null);
         
         assertNotNull(movies);
         assertTrue(movies.isEmpty());
@@ -93,7 +97,7 @@ class MovieDatafetcherTest {
         assertEquals(8.8f, response.getMovie().getRating());
         assertNotNull(response.getMovie().getId());
 
-        List<Movie> movies = movieDatafetcher.movies();
+        List<Movie> movies = movieDatafetcher.movies(null);
         assertEquals(4, movies.size());
     }
 
@@ -137,7 +141,7 @@ class MovieDatafetcherTest {
         assertEquals("Movie deleted successfully", response.getMessage());
         assertNull(response.getMovie());
 
-        List<Movie> movies = movieDatafetcher.movies();
+        List<Movie> movies = movieDatafetcher.movies(null);
         assertEquals(2, movies.size());
         assertFalse(movies.stream().anyMatch(m -> "1".equals(m.getId())));
     }
@@ -152,13 +156,97 @@ class MovieDatafetcherTest {
         assertNull(response.getMovie());
     }
 
+    @Test
+    @DisplayName("Should create movies in a batch")
+    void shouldCreateMoviesInBatch() {
+        List<MovieResponse> responses = movieDatafetcher.createMovies(List.of(movieInput("Inception"), movieInput("Memento")));
+
+        assertEquals(2, responses.size());
+        assertTrue(responses.stream().allMatch(MovieResponse::isSuccess));
+        assertEquals(List.of("Inception", "Memento"), responses.stream().map(r -> r.getMovie().getTitle()).toList());
+        assertEquals(5, movieDatafetcher.movies(null).size());
+    }
+
+    @Test
+    @DisplayName("Should upsert movies and report duplicate ids per item")
+    void shouldUpsertMoviesAndReportDuplicates() {
+        MovieInput rating = new MovieInput();
+        rating.setRating(9.9f);
+
+        List<MovieResponse> responses = movieDatafetcher.upsertMovies(List.of(
+                upsertInput("1", rating), upsertInput("new", movieInput("Inception")), upsertInput("1", movieInput("Ignored"))), false);
+
+        assertEquals(List.of(true, true, false), responses.stream().map(MovieResponse::isSuccess).toList());
+        assertEquals("Duplicate id in batch", responses.get(2).getMessage());
+        assertEquals("The Shawshank Redemption", movieDatafetcher.movie("1", null).getTitle());
+        assertEquals(9.9f, movieDatafetcher.movie("1", null).getRating());
+        assertEquals("Inception", movieDatafetcher.movie("new", null).getTitle());
+    }
+
+    @Test
+    @DisplayName("Should skip a failing item and write the rest of a non-atomic batch")
+    void shouldSkipFailingItemOfBatch() {
+        MovieInput failing = new MovieInput() {
+            @Override
+            public Float getRating() {
+                throw new IllegalArgumentException("Invalid rating");
+            }
+        };
+        failing.setTitle("Broken");
+
+        List<MovieResponse> responses = movieDatafetcher.upsertMovies(List.of(
+                upsertInput("new", movieInput("Inception")), upsertInput("1", failing),
+                upsertInput("other", movieInput("Memento"))), false);
+
+        assertEquals(List.of(true, false, true), responses.stream().map(MovieResponse::isSuccess).toList());
+        assertEquals("Failed to upsert movie: Invalid rating", responses.get(1).getMessage());
+        assertNull(responses.get(1).getMovie());
+        assertEquals("Memento", responses.get(2).getMovie().getTitle());
+        assertEquals("The Shawshank Redemption", movieDatafetcher.movie("1", null).getTitle());
+        assertEquals("Inception", movieDatafetcher.movie("new", null).getTitle());
+        assertEquals("Memento", movieDatafetcher.movie("other", null).getTitle());
+    }
+
+    @Test
+    @DisplayName("Should apply nothing from an atomic batch with an invalid item")
+    void shouldApplyNothingFromInvalidAtomicBatch() {
+        List<MovieResponse> upserts = movieDatafetcher.upsertMovies(List.of(
+                upsertInput("new", movieInput("Inception")), upsertInput("new", movieInput("Memento"))), true);
+        List<MovieResponse> deletes = movieDatafetcher.deleteMovies(List.of("1", "999"), true);
+
+        assertTrue(upserts.stream().noneMatch(MovieResponse::isSuccess));
+        assertEquals("Duplicate id in batch", upserts.get(1).getMessage());
+        assertNull(movieDatafetcher.movie("new", null));
+        assertTrue(deletes.stream().noneMatch(MovieResponse::isSuccess));
+        assertEquals("Movie not found", deletes.get(1).getMessage());
+        assertNotNull(movieDatafetcher.movie("1", null));
+    }
+
+    @Test
+    @DisplayName("Should delete movies in a batch")
+    void shouldDeleteMoviesInBatch() {
+        List<MovieResponse> responses = movieDatafetcher.deleteMovies(List.of("1", "999", "1", "2"), false);
+
+        assertEquals(List.of(true, false, false, true), responses.stream().map(MovieResponse::isSuccess).toList());
+        assertEquals(List.of("3"), movieDatafetcher.movies(null).stream().map(Movie::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should reject batches over the maximum size")
+    void shouldRejectOversizedBatches() {
+        List<String> ids = Collections.nCopies(MovieDatafetcher.MAX_BATCH_SIZE + 1, "1");
+
+        assertThrows(DgsBadRequestException.class, () -> movieDatafetcher.deleteMovies(ids, false));
+        assertEquals(3, movieDatafetcher.movies(null).size());
+    }
+
     @Test
     @DisplayName("Should search movies with title filter")
     void shouldSearchMoviesWithTitleFilter() {
         MovieFilter filter = new MovieFilter();
         filter.setTitle("shawshank");
 
-        List<Movie> movies = movieDatafetcher.searchMovies(filter);
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, null, null, null);
 
         assertNotNull(movies);
         assertEquals(1, movies.size());
@@ -171,7 +259,7 @@ class MovieDatafetcherTest {
         MovieFilter filter = new MovieFilter();
         filter.setGenre("Drama");
 
-        List<Movie> movies = movieDatafetcher.searchMovies(filter);
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, null, null, null);
 
         assertNotNull(movies);
         assertEquals(1, movies.size());
@@ -185,7 +273,7 @@ class MovieDatafetcherTest {
         filter.setMinRating(9.0f);
         filter.setMaxRating(9.5f);
 
-        List<Movie> movies = movieDatafetcher.searchMovies(filter);
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, null, null, null);
 
         assertNotNull(movies);
         assertEquals(3, movies.size());
@@ -198,7 +286,7 @@ class MovieDatafetcherTest {
         filter.setReleaseYearFrom(1990);
         filter.setReleaseYearTo(2000);
 
-        List<Movie> movies = movieDatafetcher.searchMovies(filter);
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, null, null, null);
 
         assertNotNull(movies);
         assertEquals(1, movies.size());
@@ -213,7 +301,7 @@ class MovieDatafetcherTest {
         filter.setMinRating(9.0f);
         filter.setReleaseYearFrom(1990);
 
-        List<Movie> movies = movieDatafetcher.searchMovies(filter);
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, null, null, null);
 
         assertNotNull(movies);
         assertEquals(1, movies.size());
@@ -223,7 +311,7 @@ class MovieDatafetcherTest {
     @Test
     @DisplayName("Should return all movies when filter is null")
     void shouldReturnAllMoviesWhenFilterIsNull() {
-        List<Movie> movies = movieDatafetcher.searchMovies(null);
+        List<Movie> movies = movieDatafetcher.searchMovies(null, null, null, null);
 
         assertNotNull(movies);
         assertEquals(3, movies.size());
@@ -236,9 +324,134 @@ class MovieDatafetcherTest {
         filter.setGenre("Horror");
         filter.setMinRating(10.0f);
 
-        List<Movie> movies = movieDatafetcher.searchMovies(filter);
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, null, null, null);
 
         assertNotNull(movies);
         assertTrue(movies.isEmpty());
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Should page through movies with cursors")
+    void shouldPageThroughMoviesWithCursors() {
+        Connection<Movie> firstPage = movieDatafetcher.moviesConnection(2, null, null);
+
+        assertEquals(2, firstPage.getEdges().size());
+        assertEquals("1", firstPage.getEdges().get(0).getNode().getId());
+        assertTrue(firstPage.getPageInfo().isHasNextPage());
+        assertFalse(firstPage.getPageInfo().isHasPreviousPage());
+        assertEquals(3, firstPage.getTotalCount());
+
+        Connection<Movie> secondPage = movieDatafetcher.moviesConnection(2, firstPage.getPageInfo().getEndCursor(), null);
+
+        assertEquals(1, secondPage.getEdges().size());
+        assertEquals("3", secondPage.getEdges().get(0).getNode().getId());
+        assertFalse(secondPage.getPageInfo().isHasNextPage());
+        assertTrue(secondPage.getPageInfo().isHasPreviousPage());
+    }
+
+    @Test
+    @DisplayName("Should keep cursors stable when earlier movies are deleted")
+    void shouldKeepCursorsStableWhenEarlierMoviesAreDeleted() {
+        String cursor = movieDatafetcher.moviesConnection(1, null, null).getPageInfo().getEndCursor();
+
+        movieDatafetcher.deleteMovie("1");
+        Connection<Movie> page = movieDatafetcher.moviesConnection(1, cursor, null);
+
+        assertEquals("2", page.getEdges().get(0).getNode().getId());
+    }
+
+    @Test
+    @DisplayName("Should page through search results")
+    void shouldPageThroughSearchResults() {
+        MovieFilter filter = new MovieFilter();
+        filter.setMinRating(9.1f);
+
+        Connection<Movie> firstPage = movieDatafetcher.searchMoviesConnection(filter, 1, null, null);
+        Connection<Movie> secondPage = movieDatafetcher.searchMoviesConnection(filter, 1, firstPage.getPageInfo().getEndCursor(), null);
+
+        assertEquals("1", firstPage.getEdges().get(0).getNode().getId());
+        assertEquals("2", secondPage.getEdges().get(0).getNode().getId());
+        assertFalse(secondPage.getPageInfo().isHasNextPage());
+        assertEquals(2, secondPage.getTotalCount());
+    }
+
+    @Test
+    @DisplayName("Should reject malformed cursors and page sizes")
+    void shouldRejectMalformedCursorsAndPageSizes() {
+        assertThrows(DgsBadRequestException.class, () -> movieDatafetcher.moviesConnection(2, "not-a-cursor", null));
+        assertThrows(DgsBadRequestException.class, () -> movieDatafetcher.moviesConnection(-1, null, null));
+    }
+
+    @Test
+    @DisplayName("Should return top movies by rating")
+    void shouldReturnTopMoviesByRating() {
+        List<Movie> movies = movieDatafetcher.searchMovies(null, new MovieOrder(MovieOrderField.RATING, SortDirection.DESC), 2, null);
+
+        assertEquals(List.of("1", "2"), movies.stream().map(Movie::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should order search results by title ascending")
+    void shouldOrderSearchResultsByTitleAscending() {
+        MovieFilter filter = new MovieFilter();
+        filter.setTitle("the");
+
+        List<Movie> movies = movieDatafetcher.searchMovies(filter, new MovieOrder(MovieOrderField.TITLE, SortDirection.ASC), null, null);
+
+        assertEquals(List.of("The Dark Knight", "The Godfather", "The Shawshank Redemption"),
+                movies.stream().map(Movie::getTitle).toList());
+    }
+
+    @Test
+    @DisplayName("Should reject a negative limit")
+    void shouldRejectNegativeLimit() {
+        assertThrows(DgsBadRequestException.class, () -> movieDatafetcher.searchMovies(null, null, -1, null));
+    }
+
+    @Test
+    @DisplayName("Should return catalog stats and keep them current through mutations")
+    void shouldReturnCatalogStatsAndKeepThemCurrent() {
+        MovieStats stats = movieDatafetcher.movieStats(null, null);
+
+        assertEquals(3, stats.getCount());
+        assertEquals(List.of(new FacetCount("1970s", 1), new FacetCount("1990s", 1), new FacetCount("2000s", 1)), stats.getDecades());
+        assertEquals(3, stats.getRatingHistogram().get(9).getCount());
+        assertEquals(9.1667f, stats.getAverageRating(), 0.001f);
+
+        MovieInput input = new MovieInput();
+        input.setGenre("Crime");
+        movieDatafetcher.updateMovie("1", input);
+        movieDatafetcher.deleteMovie("3");
+        stats = movieDatafetcher.movieStats(null, null);
+
+        assertEquals(2, stats.getCount());
+        assertEquals(List.of(new FacetCount("Crime", 2)), stats.getGenres());
+        assertEquals(9.25f, stats.getAverageRating(), 0.001f);
+    }
+
+    @Test
+    @DisplayName("Should return stats for a filter")
+    void shouldReturnStatsForFilter() {
+        MovieFilter filter = new MovieFilter();
+        filter.setReleaseYearFrom(1990);
+
+        MovieStats stats = movieDatafetcher.movieStats(filter, null);
+
+        assertEquals(2, stats.getCount());
+        assertEquals(List.of(new FacetCount("Action", 1), new FacetCount("Drama", 1)), stats.getGenres());
+        assertEquals(List.of(new FacetCount("Christopher Nolan", 1), new FacetCount("Frank Darabont", 1)), stats.getDirectors());
+    }
+
+    private static MovieInput movieInput(String title) {
+        MovieInput input = new MovieInput();
+        input.setTitle(title);
+        return input;
+    }
+
+    private static MovieUpsertInput upsertInput(String id, MovieInput movie) {
+        MovieUpsertInput input = new MovieUpsertInput();
+        input.setId(id);
+        input.setMovie(movie);
+        return input;
+    }
+}
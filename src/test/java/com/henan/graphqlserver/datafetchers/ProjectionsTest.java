@@ -0,0 +1,68 @@
+package com.henan.graphqlserver.datafetchers;
+
+import com.henan.graphqlserver.repository.MovieProjection;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class ProjectionsTest {
+
+    @Autowired
+    private DgsQueryExecutor queryExecutor;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @Test
+    @DisplayName("Should read only the fields a query selects on movies")
+    void shouldProjectSelectedFields() {
+        List<String> titles = queryExecutor.executeAndExtractJsonPath(
+                "{ searchMovies(filter: { genre: \"Crime\" }) { title actors { name } } }",
+                "data.searchMovies[*].title");
+
+        assertEquals(List.of("The Godfather"), titles);
+        ArgumentCaptor<MovieProjection> projection = ArgumentCaptor.forClass(MovieProjection.class);
+        verify(movieRepository).search(any(), any(), projection.capture());
+        assertTrue(projection.getValue().includes(MovieProjection.Field.TITLE));
+        assertTrue(projection.getValue().includes(MovieProjection.Field.ACTOR_IDS));
+        assertFalse(projection.getValue().includes(MovieProjection.Field.RATING));
+        assertFalse(projection.getValue().includes(MovieProjection.Field.DIRECTOR));
+    }
+
+    @Test
+    @DisplayName("Should project the nodes of a connection")
+    void shouldProjectConnectionNodes() {
+        queryExecutor.execute("{ moviesConnection(first: 2) { edges { node { rating } } } }");
+
+        ArgumentCaptor<MovieProjection> projection = ArgumentCaptor.forClass(MovieProjection.class);
+        verify(movieRepository).findPage(anyInt(), any(), any(), projection.capture());
+        assertTrue(projection.getValue().includes(MovieProjection.Field.RATING));
+        assertFalse(projection.getValue().includes(MovieProjection.Field.TITLE));
+    }
+
+    @Test
+    @DisplayName("Should count a connection without reading a page when only its total count is selected")
+    void shouldCountWithoutReadingPage() {
+        Integer totalCount = queryExecutor.executeAndExtractJsonPath(
+                "{ searchMoviesConnection(filter: { minRating: 9.1 }, first: 1) { totalCount } }",
+                "data.searchMoviesConnection.totalCount");
+
+        assertEquals(2, totalCount);
+        verify(movieRepository, never()).search(any(), anyInt(), any(), any(), any());
+        verify(movieRepository).count(any(), any());
+    }
+}
@@ -0,0 +1,49 @@
+package com.henan.graphqlserver.dataloaders;
+
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class ActorDataLoaderTest {
+
+    @Autowired
+    private DgsQueryExecutor dgsQueryExecutor;
+
+    @MockitoSpyBean
+    private ActorRepository actorRepository;
+
+    @Test
+    @DisplayName("Should resolve actors of all movies with one batched lookup")
+    void shouldResolveActorsOfAllMoviesWithOneBatchedLookup() {
+        List<String> names = dgsQueryExecutor.executeAndExtractJsonPath(
+                "{ movies { title actors { name } } }", "data.movies[*].actors[*].name");
+
+        assertEquals(List.of("Tim Robbins", "Morgan Freeman", "Marlon Brando"), names);
+        verify(actorRepository, times(1)).findAllById(anyCollection());
+    }
+
+    @Test
+    @DisplayName("Should show actor edits in every movie without copying")
+    void shouldShowActorEditsInEveryMovie() {
+        actorRepository.save(new Actor("3", "Marlon Brando Jr.", 1924));
+
+        String name = dgsQueryExecutor.executeAndExtractJsonPath(
+                "{ movie(id: \"2\") { actors { name } } }", "data.movie.actors[0].name");
+
+        assertEquals("Marlon Brando Jr.", name);
+        actorRepository.save(new Actor("3", "Marlon Brando", 1924));
+    }
+}
@@ -0,0 +1,37 @@
+package com.henan.graphqlserver.dataloaders;
+
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class MoviesByActorDataLoaderTest {
+
+    @Autowired
+    private DgsQueryExecutor dgsQueryExecutor;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @Test
+    @DisplayName("Should resolve filmographies of all actors with one batched lookup")
+    void shouldResolveFilmographiesWithOneBatchedLookup() {
+        List<String> titles = dgsQueryExecutor.executeAndExtractJsonPath(
+                "{ actors { name movies { title } } }", "data.actors[*].movies[*].title");
+
+        assertEquals(List.of("The Shawshank Redemption", "The Shawshank Redemption", "The Godfather"), titles);
+        verify(movieRepository, times(1)).findByActorIds(anyCollection(), any());
+    }
+}
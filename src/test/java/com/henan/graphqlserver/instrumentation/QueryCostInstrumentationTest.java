@@ -0,0 +1,122 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import graphql.ExecutionResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest(properties = {
+        "graphql-server.query-cost.maximum-cost=500",
+        "graphql-server.query-cost.maximum-depth=5",
+        "graphql-server.query-cost.maximum-aliases=3",
+        "graphql-server.query-cost.field-costs.Query.searchMovies=5"
+})
+class QueryCostInstrumentationTest {
+
+    @Autowired
+    private DgsQueryExecutor queryExecutor;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @Test
+    @DisplayName("Should report the cost of accepted operations in extensions")
+    void shouldReportCostInExtensions() {
+        // 3 movies, each costing 1 plus 10 expected actors
+        ExecutionResult result = queryExecutor.execute("{ movies { title actors { name } } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        Map<?, ?> cost = (Map<?, ?>) result.getExtensions().get("cost");
+        assertEquals(33L, cost.get("requested"));
+        assertEquals(500L, cost.get("maximum"));
+        assertEquals(3, cost.get("depth"));
+    }
+
+    @Test
+    @DisplayName("Should take list sizes from pagination arguments and configured field costs")
+    void shouldTakeListSizesFromPaginationArguments() {
+        ExecutionResult connection = queryExecutor.execute(
+                "query Page($first: Int) { moviesConnection(first: $first) { totalCount edges { node { title } } } }",
+                Map.of("first", 7));
+        ExecutionResult search = queryExecutor.execute("{ searchMovies(limit: 2) { title } }");
+
+        // Connection 1, plus 7 edges of 1 with a node of 1
+        assertEquals(15L, ((Map<?, ?>) connection.getExtensions().get("cost")).get("requested"));
+        // Configured cost of 5 per item, limited to 2 items
+        assertEquals(10L, ((Map<?, ?>) search.getExtensions().get("cost")).get("requested"));
+    }
+
+    @Test
+    @DisplayName("Should reject operations over the maximum cost before any datafetcher runs")
+    void shouldRejectExpensiveOperationsBeforeExecution() {
+        ExecutionResult result = queryExecutor.execute(
+                "{ moviesConnection(first: 100) { edges { node { title actors { name } } } } }");
+
+        assertNull(result.getData());
+        assertEquals(1, result.getErrors().size());
+        assertTrue(result.getErrors().get(0).getMessage().startsWith("Query has a cost of 1201"));
+        verify(movieRepository, never()).findPage(any(Integer.class), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Should size filtered root lists by their estimated matches rather than the catalog")
+    void shouldSizeFilteredRootListsByEstimatedMatches() {
+        List<Movie> bulk = IntStream.range(0, 600)
+                .mapToObj(i -> new Movie("bulk-" + i, "Bulk " + i, 2000, "Nobody", "Bulk", 5.0f, null))
+                .toList();
+        movieRepository.saveAll(bulk);
+        try {
+            ExecutionResult unfiltered = queryExecutor.execute("{ movies { title } }");
+            ExecutionResult byGenre = queryExecutor.execute("{ moviesByGenre(genre: \"Crime\") { title } }");
+            ExecutionResult search = queryExecutor.execute(
+                    "{ searchMovies(filter: { genre: \"Crime\", minRating: 9.0 }) { title } }");
+
+            assertTrue(unfiltered.getErrors().get(0).getMessage().startsWith("Query has a cost of 603"));
+            assertTrue(byGenre.getErrors().isEmpty());
+            assertEquals(1L, ((Map<?, ?>) byGenre.getExtensions().get("cost")).get("requested"));
+            // Configured cost of 5 per item, for the one Crime movie
+            assertTrue(search.getErrors().isEmpty());
+            assertEquals(5L, ((Map<?, ?>) search.getExtensions().get("cost")).get("requested"));
+        } finally {
+            movieRepository.deleteAllById(bulk.stream().map(Movie::getId).toList());
+        }
+    }
+
+    @Test
+    @DisplayName("Should reject operations over the maximum depth or alias count")
+    void shouldRejectDeepOrAliasedOperations() {
+        ExecutionResult deep = queryExecutor.execute(
+                "{ actor(id: \"1\") { movies { actors { movies { actors { name } } } } } }");
+        String aliases = IntStream.range(0, 4).mapToObj(i -> "m" + i + ": movie(id: \"1\") { title }")
+                .collect(Collectors.joining(" ", "{ ", " }"));
+        ExecutionResult aliased = queryExecutor.execute(aliases);
+
+        assertTrue(deep.getErrors().get(0).getMessage().startsWith("Query has a depth of 6"));
+        assertTrue(aliased.getErrors().get(0).getMessage().startsWith("Query uses 4 aliases"));
+    }
+
+    @Test
+    @DisplayName("Should not count introspection")
+    void shouldNotCountIntrospection() {
+        ExecutionResult result = queryExecutor.execute(
+                "{ __schema { types { name fields { name type { name ofType { name ofType { name ofType { name } } } } } } } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(0L, ((Map<?, ?>) result.getExtensions().get("cost")).get("requested"));
+    }
+}
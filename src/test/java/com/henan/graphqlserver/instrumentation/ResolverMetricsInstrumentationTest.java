@@ -0,0 +1,78 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import graphql.ExecutionResult;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "graphql-server.resolver-metrics.sample-rate=1.0",
+        "graphql-server.resolver-metrics.allocation-tracking=true",
+        "graphql-server.resolver-metrics.tracing=true"
+})
+class ResolverMetricsInstrumentationTest {
+
+    @Autowired
+    private DgsQueryExecutor queryExecutor;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Test
+    @DisplayName("Should time operations and non-trivial resolvers")
+    void shouldTimeOperationsAndResolvers() {
+        long movies = resolverCount("Query.movie");
+        long actors = resolverCount("Movie.actors");
+
+        ExecutionResult result = queryExecutor.execute(
+                "query MovieWithActors { movie(id: \"1\") { title actors { name } } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(movies + 1, resolverCount("Query.movie"));
+        assertEquals(actors + 1, resolverCount("Movie.actors"));
+        assertNull(meterRegistry.find("graphql.resolver").tag("field", "Movie.title").timer());
+        Timer operation = meterRegistry.find("graphql.operation")
+                .tags("operation", "MovieWithActors", "type", "query", "outcome", "success")
+                .timer();
+        assertNotNull(operation);
+        assertTrue(operation.count() >= 1);
+        assertNotNull(meterRegistry.find("graphql.operation.allocated").tag("operation", "MovieWithActors").summary());
+    }
+
+    @Test
+    @DisplayName("Should record the number of items resolvers return")
+    void shouldRecordResultSizes() {
+        queryExecutor.execute("{ movie(id: \"1\") { actors { name } } }");
+
+        DistributionSummary actors = meterRegistry.find("graphql.resolver.result.size")
+                .tag("field", "Movie.actors")
+                .summary();
+        assertNotNull(actors);
+        assertEquals(2.0, actors.max());
+    }
+
+    @Test
+    @DisplayName("Should add Apollo tracing extensions when tracing is enabled")
+    void shouldAddTracingExtensions() {
+        ExecutionResult result = queryExecutor.execute("{ movies { title } }");
+
+        assertNotNull(result.getExtensions());
+        Map<?, ?> tracing = (Map<?, ?>) result.getExtensions().get("tracing");
+        assertNotNull(tracing);
+        assertTrue(tracing.containsKey("execution"));
+    }
+
+    private long resolverCount(String field) {
+        Timer timer = meterRegistry.find("graphql.resolver").tags("field", field, "outcome", "success").timer();
+        return timer != null ? timer.count() : 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.henan.graphqlserver.instrumentation;
+
+import com.henan.graphqlserver.repository.MovieRepository;
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import graphql.ExecutionResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.bean.override.mockito.MockitoSpyBean;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class SnapshotReadsInstrumentationTest {
+
+    @Autowired
+    private DgsQueryExecutor queryExecutor;
+
+    @MockitoSpyBean
+    private MovieRepository movieRepository;
+
+    @Test
+    @DisplayName("Should read every field of a query from one snapshot and close it afterwards")
+    void shouldReadQueryFromOneSnapshot() {
+        List<MovieRepository.Snapshot> snapshots = new ArrayList<>();
+        doAnswer(invocation -> {
+            MovieRepository.Snapshot snapshot = (MovieRepository.Snapshot) invocation.callRealMethod();
+            snapshots.add(snapshot);
+            return snapshot;
+        }).when(movieRepository).snapshot();
+
+        ExecutionResult result = queryExecutor.execute(
+                "{ movies { title } movieStats { count } actor(id: \"1\") { movies { title } } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        assertEquals(1, snapshots.size());
+        MovieRepository.Snapshot snapshot = snapshots.get(0);
+        verify(movieRepository).findAll(eq(snapshot), any());
+        verify(movieRepository).stats(null, snapshot);
+        verify(movieRepository).findByActorIds(anyCollection(), eq(snapshot));
+        assertThrows(IllegalStateException.class, () -> movieRepository.findById("1", snapshot));
+    }
+
+    @Test
+    @DisplayName("Should let mutations read the latest catalog")
+    void shouldNotPinSnapshotsForMutations() {
+        ExecutionResult result = queryExecutor.execute(
+                "mutation { updateMovie(id: \"missing\", input: { title: \"Title\" }) { success } }");
+
+        assertTrue(result.getErrors().isEmpty());
+        verify(movieRepository, never()).snapshot();
+    }
+}
@@ -0,0 +1,186 @@
+package com.henan.graphqlserver.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.henan.graphqlserver.datafetchers.ActorDatafetcher;
+import com.henan.graphqlserver.datafetchers.MovieDatafetcher;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.persistence.CatalogPersistence;
+import com.henan.graphqlserver.persistence.PersistenceProperties;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogLoaderTest {
+
+    @TempDir
+    Path directory;
+
+    private MovieRepository movieRepository;
+    private ActorRepository actorRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private CatalogLoaderProperties properties;
+
+    @BeforeEach
+    void setUp() {
+        movieRepository = new MovieRepository();
+        actorRepository = new ActorRepository();
+        new ActorDatafetcher(actorRepository);
+        new MovieDatafetcher(movieRepository, actorRepository);
+        meterRegistry = new SimpleMeterRegistry();
+        properties = new CatalogLoaderProperties();
+        properties.setChunkSize(7);
+        properties.setParallelism(4);
+    }
+
+    @Test
+    @DisplayName("Should replace the sample movies with a JSON Lines file in file order")
+    void shouldLoadJsonLinesInFileOrder() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            lines.add("{\"id\":\"m" + i + "\",\"title\":\"Movie " + i + "\",\"releaseYear\":" + (1950 + i)
+                    + ",\"director\":\"Director\",\"genre\":\"" + (i % 2 == 0 ? "Drama" : "Comedy")
+                    + "\",\"rating\":" + (i % 10) + ".5,\"actorIds\":[\"1\"]}");
+            if (i == 50) {
+                lines.add("");
+            }
+        }
+        properties.setMovies(file("movies.jsonl", lines));
+
+        CatalogLoader loader = loader(null);
+        loader.run(null);
+
+        assertFalse(loader.isLoading());
+        assertEquals(IntStream.range(0, 100).mapToObj(i -> "m" + i).toList(),
+                movieRepository.findAll().stream().map(Movie::getId).toList());
+        assertEquals(50, movieRepository.findByGenre("Comedy").size());
+        assertEquals(100, movieRepository.findByActorIds(List.of("1")).get("1").size());
+        assertEquals(9.5f, movieRepository.findById("m99").getRating());
+        assertEquals(100, meterRegistry.counter("catalog.load.items", "type", "movies").count());
+        assertEquals(1, meterRegistry.timer("catalog.load", "type", "movies").count());
+    }
+
+    @Test
+    @DisplayName("Should load actors and movies from CSV files with quoted and empty fields")
+    void shouldLoadCsvFiles() throws IOException {
+        properties.setActors(file("actors.csv", List.of(
+                "id,name,birthYear",
+                "4,\"Pacino, Al\",1940",
+                "5,Robert De Niro,")));
+        properties.setMovies(file("movies.csv", List.of(
+                "title,id,releaseYear,director,genre,rating,actorIds",
+                "\"Heat, the \"\"remake\"\"\",h,1995,Michael Mann,Crime,8.3,4|5",
+                "Untitled,u,,,,,")));
+
+        loader(null).run(null);
+
+        assertEquals("Pacino, Al", actorRepository.findById("4").getName());
+        assertNull(actorRepository.findById("5").getBirthYear());
+        assertNotNull(actorRepository.findById("1"));
+        assertEquals(List.of("h", "u"), movieRepository.findAll().stream().map(Movie::getId).toList());
+        Movie heat = movieRepository.findById("h");
+        assertEquals("Heat, the \"remake\"", heat.getTitle());
+        assertEquals(List.of("4", "5"), heat.getActorIds());
+        Movie untitled = movieRepository.findById("u");
+        assertNull(untitled.getReleaseYear());
+        assertNull(untitled.getRating());
+        assertEquals(List.of("h"),
+                movieRepository.findByActorIds(List.of("5")).get("5").stream().map(Movie::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should report the line number of an invalid line")
+    void shouldReportInvalidLine() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            lines.add(i == 12 ? "{\"id\":" : "{\"id\":\"m" + i + "\",\"title\":\"Movie\"}");
+        }
+        properties.setMovies(file("movies.jsonl", lines));
+        CatalogLoader loader = loader(null);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> loader.run(null));
+
+        assertTrue(e.getMessage().startsWith("Line 13 of movies.jsonl is invalid"), e.getMessage());
+        assertFalse(loader.isLoading());
+    }
+
+    @Test
+    @DisplayName("Should keep the catalog restored by persistence instead of loading the files again")
+    void shouldNotReloadRestoredCatalog() throws IOException {
+        properties.setMovies(file("movies.jsonl", List.of("{\"id\":\"m1\",\"title\":\"Loaded\"}")));
+        CatalogPersistence persistence = persistence();
+        loader(persistence).run(null);
+        movieRepository.save(new Movie("m2", "Saved", 2000, "Director", "Drama", 5.0f, null));
+        persistence.destroy();
+
+        setUp();
+        properties.setMovies(file("movies.jsonl", List.of("{\"id\":\"m3\",\"title\":\"Not loaded\"}")));
+        CatalogPersistence restarted = persistence();
+        try {
+            loader(restarted).run(null);
+
+            assertEquals(List.of("m1", "m2"), movieRepository.findAll().stream().map(Movie::getId).toList());
+        } finally {
+            restarted.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Should answer GraphQL requests with 503 until the catalog is loaded")
+    void shouldRejectRequestsWhileLoading() throws Exception {
+        properties.setMovies(file("movies.jsonl", List.of("{\"id\":\"m1\",\"title\":\"Loaded\"}")));
+        CatalogLoader loader = loader(null);
+        CatalogLoadingFilter filter = new CatalogLoadingFilter(loader);
+
+        MockHttpServletResponse loading = new MockHttpServletResponse();
+        MockFilterChain rejected = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("POST", "/graphql"), loading, rejected);
+        loader.run(null);
+        MockHttpServletResponse loaded = new MockHttpServletResponse();
+        MockFilterChain accepted = new MockFilterChain();
+        filter.doFilter(new MockHttpServletRequest("POST", "/graphql"), loaded, accepted);
+
+        assertEquals(503, loading.getStatus());
+        assertEquals("1", loading.getHeader("Retry-After"));
+        assertTrue(loading.getContentAsString().contains("The catalog is still loading"));
+        assertNull(rejected.getRequest());
+        assertEquals(200, loaded.getStatus());
+        assertNotNull(accepted.getRequest());
+    }
+
+    private CatalogLoader loader(CatalogPersistence persistence) {
+        return new CatalogLoader(properties, movieRepository, actorRepository, new ObjectMapper(), persistence,
+                meterRegistry);
+    }
+
+    private CatalogPersistence persistence() {
+        PersistenceProperties persistenceProperties = new PersistenceProperties();
+        persistenceProperties.setDirectory(directory.resolve("data"));
+        persistenceProperties.setSnapshotInterval(Duration.ofHours(1));
+        CatalogPersistence persistence = new CatalogPersistence(persistenceProperties, movieRepository,
+                actorRepository);
+        persistence.afterSingletonsInstantiated();
+        return persistence;
+    }
+
+    private FileSystemResource file(String name, List<String> lines) throws IOException {
+        return new FileSystemResource(Files.write(directory.resolve(name), lines));
+    }
+}
@@ -0,0 +1,267 @@
+package com.henan.graphqlserver.persistence;
+
+import com.henan.graphqlserver.datafetchers.ActorDatafetcher;
+import com.henan.graphqlserver.datafetchers.MovieDatafetcher;
+import com.henan.graphqlserver.model.Actor;
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.repository.ActorRepository;
+import com.henan.graphqlserver.repository.MovieRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogPersistenceTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<CatalogPersistence> started = new ArrayList<>();
+    private MovieRepository movieRepository;
+    private ActorRepository actorRepository;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (CatalogPersistence persistence : started) {
+            persistence.destroy();
+        }
+    }
+
+    @Test
+    @DisplayName("Should recover writes and deletions of sample movies after a restart")
+    void shouldRecoverWritesAfterRestart() throws IOException {
+        CatalogPersistence persistence = start();
+        movieRepository.save(new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, List.of("1")));
+        movieRepository.update("2", movie -> movie.setRating(8.0f));
+        movieRepository.deleteById("1");
+        actorRepository.save(new Actor("4", "Al Pacino", 1940));
+        persistence.destroy();
+
+        start();
+
+        assertEquals(List.of("2", "3", "4"), movieRepository.findAll().stream().map(Movie::getId).toList());
+        assertEquals(8.0f, movieRepository.findById("2").getRating());
+        assertEquals(List.of("2", "4"), movieRepository.findByGenre("Crime").stream().map(Movie::getId).toList());
+        assertEquals("Al Pacino", actorRepository.findById("4").getName());
+    }
+
+    @Test
+    @DisplayName("Should replay only the log written after the latest snapshot")
+    void shouldReplayLogAfterLatestSnapshot() throws IOException {
+        CatalogPersistence persistence = start();
+        movieRepository.save(new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, null));
+        persistence.snapshot();
+        movieRepository.deleteById("4");
+        movieRepository.save(new Movie("5", "Alien", 1979, "Ridley Scott", "Horror", null, List.of()));
+        persistence.destroy();
+
+        assertEquals(List.of(1L), CatalogFiles.snapshots(directory));
+        assertEquals(List.of(2L), CatalogFiles.logSegments(directory));
+
+        start();
+
+        assertNull(movieRepository.findById("4"));
+        Movie alien = movieRepository.findById("5");
+        assertEquals("Alien", alien.getTitle());
+        assertNull(alien.getRating());
+        assertEquals(List.of(), alien.getActorIds());
+    }
+
+    @Test
+    @DisplayName("Should drop an incompletely written record at the end of the log")
+    void shouldDropTornRecordAtEndOfLog() throws IOException {
+        CatalogPersistence persistence = start();
+        movieRepository.save(new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, null));
+        movieRepository.save(new Movie("5", "Alien", 1979, "Ridley Scott", "Horror", 8.5f, null));
+        persistence.destroy();
+        Path segment = CatalogFiles.logSegment(directory, 1);
+        long size = Files.size(segment);
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        start();
+        movieRepository.save(new Movie("6", "Ran", 1985, "Akira Kurosawa", "Drama", 8.2f, null));
+        started.getLast().destroy();
+        start();
+
+        assertNotNull(movieRepository.findById("4"));
+        assertNull(movieRepository.findById("5"));
+        assertNotNull(movieRepository.findById("6"));
+    }
+
+    @Test
+    @DisplayName("Should recover an atomic batch whole or not at all")
+    void shouldRecoverAtomicBatchWholeOrNotAtAll() throws IOException {
+        CatalogPersistence persistence = start();
+        Map<String, UnaryOperator<Movie>> changes = new LinkedHashMap<>();
+        changes.put("2", movie -> {
+            movie.setRating(8.0f);
+            return movie;
+        });
+        changes.put("4", movie -> new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, null));
+        movieRepository.upsertAllOrNone(changes);
+        movieRepository.deleteAllByIdOrNone(List.of("1", "3"));
+        persistence.destroy();
+
+        start();
+
+        assertEquals(List.of("2", "4"), movieRepository.findAll().stream().map(Movie::getId).toList());
+        assertEquals(8.0f, movieRepository.findById("2").getRating());
+
+        movieRepository.upsertAllOrNone(Map.of(
+                "5", movie -> new Movie("5", "Alien", 1979, "Ridley Scott", "Horror", 8.5f, null),
+                "6", movie -> new Movie("6", "Ran", 1985, "Akira Kurosawa", "Drama", 8.2f, null)));
+        started.getLast().destroy();
+        Path segment = CatalogFiles.logSegment(directory, 2);
+        long size = Files.size(segment);
+        try (var channel = Files.newByteChannel(segment, StandardOpenOption.WRITE)) {
+            channel.truncate(size - 3);
+        }
+
+        start();
+
+        assertEquals(List.of("2", "4"), movieRepository.findAll().stream().map(Movie::getId).toList());
+    }
+
+    @Test
+    @DisplayName("Should make concurrent writes durable through group commit")
+    void shouldMakeConcurrentWritesDurable() throws Exception {
+        CatalogPersistence persistence = start();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        movieRepository.save(new Movie(thread + "-" + i, "Movie", 2000, "Director", "Drama", 5.0f, null));
+                    }
+                }));
+                if (t == 4) {
+                    persistence.snapshot();
+                }
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        persistence.destroy();
+
+        start();
+
+        assertEquals(3 + 8 * 200, movieRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should keep the writes of a batch that the snapshot rotated the log in the middle of")
+    void shouldKeepBatchSplitByRotation() throws Exception {
+        CatalogPersistence persistence = start();
+        CountDownLatch firstApplied = new CountDownLatch(1);
+        Semaphore release = new Semaphore(0);
+        Map<String, UnaryOperator<Movie>> changes = new LinkedHashMap<>();
+        changes.put("4", stored -> new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, null));
+        changes.put("5", stored -> {
+            // Movie 4 is in the log but the batch is not published yet
+            firstApplied.countDown();
+            release.acquireUninterruptibly();
+            return new Movie("5", "Alien", 1979, "Ridley Scott", "Horror", 8.5f, null);
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> writer = executor.submit(() -> movieRepository.upsertAll(changes));
+            firstApplied.await();
+            Future<?> snapshot = executor.submit(() -> {
+                persistence.snapshot();
+                return null;
+            });
+
+            assertThrows(TimeoutException.class, () -> snapshot.get(200, TimeUnit.MILLISECONDS));
+            release.release();
+            writer.get();
+            snapshot.get();
+        } finally {
+            executor.shutdown();
+        }
+        persistence.destroy();
+
+        start();
+
+        assertEquals("Heat", movieRepository.findById("4").getTitle());
+        assertEquals("Alien", movieRepository.findById("5").getTitle());
+    }
+
+    @Test
+    @DisplayName("Should reject writes without applying them once the log failed")
+    void shouldRejectWritesAfterLogFailure() throws IOException {
+        CatalogPersistence persistence = start();
+        // Without its directory, the log cannot create the segment a rotation continues in
+        try (var files = Files.list(directory)) {
+            for (Path file : files.toList()) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+        assertThrows(Exception.class, persistence::snapshot);
+        long version = movieRepository.version();
+
+        assertThrows(UncheckedIOException.class, () ->
+                movieRepository.save(new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, null)));
+        assertThrows(UncheckedIOException.class, () -> movieRepository.deleteById("1"));
+        assertThrows(UncheckedIOException.class, () -> actorRepository.save(new Actor("4", "Al Pacino", 1940)));
+
+        assertNull(movieRepository.findById("4"));
+        assertNotNull(movieRepository.findById("1"));
+        assertEquals(3, movieRepository.count());
+        assertEquals(version, movieRepository.version());
+        assertNull(actorRepository.findById("4"));
+    }
+
+    @Test
+    @DisplayName("Should refuse to start from a corrupt snapshot")
+    void shouldRefuseCorruptSnapshot() throws IOException {
+        start().destroy();
+        Files.write(CatalogFiles.snapshot(directory, 0), new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+
+        assertThrows(RuntimeException.class, this::start);
+    }
+
+    private CatalogPersistence start() {
+        movieRepository = new MovieRepository();
+        actorRepository = new ActorRepository();
+        // The datafetchers save the sample data, as they do when the application starts
+        new ActorDatafetcher(actorRepository);
+        new MovieDatafetcher(movieRepository, actorRepository);
+
+        PersistenceProperties properties = new PersistenceProperties();
+        properties.setDirectory(directory);
+        properties.setSnapshotInterval(Duration.ofHours(1));
+        CatalogPersistence persistence = new CatalogPersistence(properties, movieRepository, actorRepository);
+        persistence.afterSingletonsInstantiated();
+        started.add(persistence);
+        return persistence;
+    }
+}
@@ -0,0 +1,142 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.model.MovieOrder;
+import com.henan.graphqlserver.model.MovieOrderField;
+import com.henan.graphqlserver.model.SortDirection;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs every test of {@link MovieRepositoryTest} against the columnar mode, plus the cases specific to it.
+ */
+class ColumnarMovieRepositoryTest extends MovieRepositoryTest {
+
+    @Override
+    MovieRepository createRepository(MovieStoreProperties properties) {
+        properties.setColumnar(true);
+        return new MovieRepository(properties);
+    }
+
+    @Test
+    @DisplayName("Should give the same results from a column scan as from objects")
+    void shouldMatchObjectStorage() {
+        MovieRepository objects = new MovieRepository();
+        objects.saveAll(movieRepository.findAll());
+        for (int i = 0; i < 2000; i++) {
+            Movie movie = new Movie("m" + i, i % 7 == 0 ? null : "Movie " + i, i % 11 == 0 ? null : 1950 + i % 70,
+                    "Director " + i % 40, i % 13 == 0 ? null : new String[]{"Drama", "drama", "Comedy", "Horror"}[i % 4],
+                    i % 9 == 0 ? null : (i % 100) / 10.0f, i % 5 == 0 ? null : List.of("a" + i % 30, "a" + i % 17));
+            movieRepository.save(movie);
+            objects.save(movie);
+        }
+        for (int i = 0; i < 2000; i += 3) {
+            movieRepository.deleteById("m" + i);
+            objects.deleteById("m" + i);
+        }
+        for (int i = 2000; i < 2300; i++) {
+            Movie movie = new Movie("m" + i, "Reused " + i, 2001, "Director", "Comedy", 4.5f, List.of());
+            movieRepository.save(movie);
+            objects.save(movie);
+        }
+
+        List<MovieFilter> filters = new ArrayList<>();
+        filters.add(new MovieFilter());
+        filters.add(filter(null, "DRAMA", null, null, null, null));
+        filters.add(filter("1", null, null, null, null, null));
+        filters.add(filter("movie 1", "comedy", 2.0f, 8.0f, null, null));
+        filters.add(filter(null, null, 5.0f, null, 1960, null));
+        filters.add(filter(null, null, null, 3.0f, null, 1990));
+        filters.add(filter(null, "Western", null, null, null, null));
+        for (MovieFilter filter : filters) {
+            assertEquals(objects.search(filter), movieRepository.search(filter), filter.toString());
+            assertEquals(objects.count(filter), movieRepository.count(filter), filter.toString());
+            assertEquals(objects.stats(filter), movieRepository.stats(filter), filter.toString());
+        }
+        assertEquals(objects.findAll(), movieRepository.findAll());
+    }
+
+    @Test
+    @DisplayName("Should only decode the columns of a projection, and still filter and order by the others")
+    void shouldDecodeOnlyProjectedColumns() {
+        MovieProjection titles = MovieProjection.of(EnumSet.of(MovieProjection.Field.TITLE));
+        MovieFilter filter = filter(null, null, 9.1f, null, null, null);
+        MovieOrder byYear = new MovieOrder(MovieOrderField.RELEASE_YEAR, SortDirection.ASC);
+
+        try (MovieRepository.Snapshot snapshot = movieRepository.snapshot()) {
+            List<Movie> movies = movieRepository.search(filter, byYear, 10, snapshot, titles);
+
+            assertEquals(List.of("2", "1"), movies.stream().map(Movie::getId).toList());
+            assertEquals("The Godfather", movies.get(0).getTitle());
+            assertNull(movies.get(0).getRating());
+            assertNull(movies.get(0).getDirector());
+            assertNull(movies.get(0).getActorIds());
+
+            List<Movie> crime = movieRepository.findByGenre("crime", snapshot, MovieProjection.ID);
+            assertEquals(1, crime.size());
+            assertEquals("2", crime.get(0).getId());
+            assertNull(crime.get(0).getTitle());
+        }
+    }
+
+    @Test
+    @DisplayName("Should return copies that do not change the stored movie")
+    void shouldReturnCopies() {
+        Movie movie = movieRepository.findById("1");
+        movie.setTitle("Changed");
+
+        assertEquals("The Shawshank Redemption", movieRepository.findById("1").getTitle());
+        assertEquals(List.of("1", "2"), movie.getActorIds());
+        assertEquals(List.of(), movieRepository.findById("3").getActorIds());
+    }
+
+    @Test
+    @DisplayName("Should never expose half of an update to concurrent readers")
+    void shouldNeverExposeHalfOfAnUpdate() throws Exception {
+        movieRepository.save(new Movie("x", "Even", 2000, "Even", "Even", 0.0f, List.of()));
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 1; i <= 20_000; i++) {
+                    String parity = i % 2 == 0 ? "Even" : "Odd";
+                    movieRepository.save(new Movie("x", parity, 2000 + i, parity, parity, (float) i, List.of()));
+                }
+            });
+            MovieFilter odd = filter(null, "Odd", null, null, null, null);
+            while (!writer.isDone()) {
+                Movie movie = movieRepository.findById("x");
+                assertEquals(movie.getGenre(), movie.getTitle());
+                assertEquals(movie.getGenre(), movie.getDirector());
+                assertEquals(movie.getReleaseYear() - 2000, movie.getRating().intValue());
+                for (Movie match : movieRepository.search(odd)) {
+                    assertEquals("Odd", match.getTitle());
+                }
+            }
+            writer.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static MovieFilter filter(String title, String genre, Float minRating, Float maxRating,
+                                      Integer releaseYearFrom, Integer releaseYearTo) {
+        MovieFilter filter = new MovieFilter();
+        filter.setTitle(title);
+        filter.setGenre(genre);
+        filter.setMinRating(minRating);
+        filter.setMaxRating(maxRating);
+        filter.setReleaseYearFrom(releaseYearFrom);
+        filter.setReleaseYearTo(releaseYearTo);
+        return filter;
+    }
+}
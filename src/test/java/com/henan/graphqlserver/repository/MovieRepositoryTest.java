@@ -0,0 +1,571 @@
+package com.henan.graphqlserver.repository;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.model.MovieOrder;
+import com.henan.graphqlserver.model.MovieOrderField;
+import com.henan.graphqlserver.model.SortDirection;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieRepositoryTest {
+
+    MovieRepository movieRepository;
+
+    @BeforeEach
+    void setUp() {
+        movieRepository = createRepository(new MovieStoreProperties());
+        movieRepository.save(new Movie("1", "The Shawshank Redemption", 1994, "Frank Darabont", "Drama", 9.3f, List.of("1", "2")));
+        movieRepository.save(new Movie("2", "The Godfather", 1972, "Francis Ford Coppola", "Crime", 9.2f, List.of("3")));
+        movieRepository.save(new Movie("3", "The Dark Knight", 2008, "Christopher Nolan", "Action", 9.0f, new ArrayList<>()));
+    }
+
+    MovieRepository createRepository(MovieStoreProperties properties) {
+        return new MovieRepository(properties);
+    }
+
+    @Test
+    @DisplayName("Should find movie by id")
+    void shouldFindMovieById() {
+        Movie movie = movieRepository.findById("2");
+
+        assertNotNull(movie);
+        assertEquals("The Godfather", movie.getTitle());
+        assertNull(movieRepository.findById("999"));
+        assertNull(movieRepository.findById(null));
+    }
+
+    @Test
+    @DisplayName("Should keep insertion order when a movie is replaced")
+    void shouldKeepInsertionOrderWhenMovieIsReplaced() {
+        movieRepository.save(new Movie("1", "Replaced", 1994, "Frank Darabont", "Drama", 9.3f, new ArrayList<>()));
+
+        List<Movie> movies = movieRepository.findAll();
+
+        assertEquals(3, movies.size());
+        assertEquals(List.of("1", "2", "3"), movies.stream().map(Movie::getId).toList());
+        assertEquals("Replaced", movies.get(0).getTitle());
+    }
+
+    @Test
+    @DisplayName("Should update only existing movies")
+    void shouldUpdateOnlyExistingMovies() {
+        Movie updated = movieRepository.update("3", movie -> movie.setRating(9.1f));
+
+        assertNotNull(updated);
+        assertEquals(9.1f, movieRepository.findById("3").getRating());
+        assertNull(movieRepository.update("999", movie -> movie.setRating(1.0f)));
+    }
+
+    @Test
+    @DisplayName("Should delete movie by id")
+    void shouldDeleteMovieById() {
+        assertTrue(movieRepository.deleteById("1"));
+        assertFalse(movieRepository.deleteById("1"));
+        assertNull(movieRepository.findById("1"));
+        assertEquals(2, movieRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should write batches in one pass with a single version bump")
+    void shouldWriteBatchesWithSingleVersionBump() {
+        long version = movieRepository.version();
+
+        movieRepository.saveAll(List.of(
+                new Movie("4", "Heat", 1995, "Michael Mann", "Crime", 8.3f, List.of()),
+                new Movie("5", "Alien", 1979, "Ridley Scott", "Horror", 8.5f, List.of())));
+
+        assertEquals(version + 1, movieRepository.version());
+        assertEquals(List.of("2", "4"), movieRepository.findByGenre("Crime").stream().map(Movie::getId).toList());
+
+        Map<String, UnaryOperator<Movie>> changes = new LinkedHashMap<>();
+        changes.put("4", movie -> {
+            movie.setGenre("Drama");
+            return movie;
+        });
+        changes.put("6", movie -> new Movie("6", "Ran", 1985, "Akira Kurosawa", "Drama", 8.2f, List.of()));
+        Map<String, Movie> upserted = movieRepository.upsertAll(changes);
+
+        assertEquals(version + 2, movieRepository.version());
+        assertEquals("Heat", upserted.get("4").getTitle());
+        assertEquals(List.of("1", "4", "6"), movieRepository.findByGenre("Drama").stream().map(Movie::getId).toList());
+
+        assertEquals(Set.of("4", "6"), movieRepository.deleteAllById(List.of("4", "6", "999")));
+        assertEquals(version + 3, movieRepository.version());
+        assertTrue(movieRepository.deleteAllById(List.of("4")).isEmpty());
+        assertEquals(version + 3, movieRepository.version());
+        assertEquals(List.of("1"), movieRepository.findByGenre("Drama").stream().map(Movie::getId).toList());
+        assertEquals(4, movieRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should write all-or-none batches only if every item succeeds")
+    void shouldWriteAllOrNoneBatchesWhole() {
+        long version = movieRepository.version();
+        Map<String, UnaryOperator<Movie>> changes = new LinkedHashMap<>();
+        changes.put("1", movie -> {
+            movie.setRating(1.0f);
+            return movie;
+        });
+        changes.put("4", movie -> {
+            throw new IllegalArgumentException("Invalid movie");
+        });
+
+        assertThrows(IllegalArgumentException.class, () -> movieRepository.upsertAllOrNone(changes));
+        assertEquals(9.3f, movieRepository.findById("1").getRating());
+        assertNull(movieRepository.findById("4"));
+        assertEquals(version, movieRepository.version());
+
+        assertEquals(Set.of("999"), movieRepository.deleteAllByIdOrNone(List.of("1", "999")));
+        assertNotNull(movieRepository.findById("1"));
+        assertEquals(Set.of(), movieRepository.deleteAllByIdOrNone(List.of("1", "2")));
+        assertEquals(List.of("3"), movieRepository.findAll().stream().map(Movie::getId).toList());
+        assertEquals(version + 1, movieRepository.version());
+    }
+
+    @Test
+    @DisplayName("Should never apply part of an all-or-none delete while the same ids are deleted concurrently")
+    void shouldNotApplyPartOfAllOrNoneDelete() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            for (int round = 0; round < 200; round++) {
+                String first = "first-" + round;
+                String second = "second-" + round;
+                movieRepository.saveAll(List.of(
+                        new Movie(first, "First", 2000, "Director", "Drama", 5.0f, List.of()),
+                        new Movie(second, "Second", 2000, "Director", "Drama", 5.0f, List.of())));
+
+                Future<Set<String>> batch = executor.submit(() -> movieRepository.deleteAllByIdOrNone(List.of(first, second)));
+                Future<Boolean> single = executor.submit(() -> movieRepository.deleteById(second));
+
+                boolean applied = batch.get().isEmpty();
+                // Exactly one of them deleted the second movie, and the first one went with the batch
+                assertNotEquals(applied, single.get());
+                assertEquals(applied, movieRepository.findById(first) == null);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should find movies by genre ignoring case")
+    void shouldFindMoviesByGenreIgnoringCase() {
+        List<Movie> movies = movieRepository.findByGenre("dRaMa");
+
+        assertEquals(1, movies.size());
+        assertEquals("1", movies.get(0).getId());
+        assertTrue(movieRepository.findByGenre("Horror").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep indexes consistent through update and delete")
+    void shouldKeepIndexesConsistentThroughUpdateAndDelete() {
+        movieRepository.update("2", movie -> {
+            movie.setGenre("Drama");
+            movie.setReleaseYear(1995);
+            movie.setRating(7.5f);
+        });
+
+        assertTrue(movieRepository.findByGenre("Crime").isEmpty());
+        assertEquals(List.of("1", "2"), movieRepository.findByGenre("Drama").stream().map(Movie::getId).toList());
+
+        MovieFilter filter = new MovieFilter();
+        filter.setReleaseYearFrom(1990);
+        filter.setReleaseYearTo(2000);
+        filter.setMaxRating(8.0f);
+        assertEquals(List.of("2"), movieRepository.search(filter).stream().map(Movie::getId).toList());
+
+        movieRepository.deleteById("2");
+
+        assertEquals(List.of("1"), movieRepository.findByGenre("Drama").stream().map(Movie::getId).toList());
+        assertTrue(movieRepository.search(filter).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should plan the most selective index and post-filter the rest")
+    void shouldPlanMostSelectiveIndex() {
+        GenreIndex genreIndex = new GenreIndex();
+        RangeIndex<Integer> releaseYearIndex = new RangeIndex<>(Movie::getReleaseYear);
+        RangeIndex<Float> ratingIndex = new RangeIndex<>(Movie::getRating);
+        MovieQueryPlanner planner = new MovieQueryPlanner(new TitleIndex(), genreIndex, releaseYearIndex, ratingIndex);
+        for (int i = 0; i < 40; i++) {
+            Movie movie = new Movie("d" + i, "Drama " + i, 2000 + i % 20, "Director", "Drama", 6.0f + (i % 4), new ArrayList<>());
+            movieRepository.save(movie);
+            genreIndex.add(i, movie);
+            releaseYearIndex.add(i, movie);
+            ratingIndex.add(i, movie);
+        }
+        MovieFilter filter = new MovieFilter();
+        filter.setGenre("Drama");
+        filter.setReleaseYearFrom(2000);
+        filter.setReleaseYearTo(2010);
+        filter.setMinRating(9.0f);
+
+        MovieQueryPlanner.IndexScan scan = planner.plan(filter);
+        List<Movie> movies = movieRepository.search(filter);
+
+        assertEquals("rating", scan.index());
+        assertEquals(10, scan.estimate());
+        assertEquals(List.of("d3", "d7", "d23", "d27"), movies.stream().map(Movie::getId).toList());
+        assertNull(planner.plan(new MovieFilter()));
+    }
+
+    @Test
+    @DisplayName("Should search titles through the trigram index")
+    void shouldSearchTitlesThroughTrigramIndex() {
+        MovieFilter filter = new MovieFilter();
+        filter.setTitle("DARK kn");
+
+        assertEquals(List.of("3"), movieRepository.search(filter).stream().map(Movie::getId).toList());
+
+        filter.setTitle("the");
+        assertEquals(3, movieRepository.search(filter).size());
+
+        filter.setTitle("go");
+        assertEquals(List.of("2"), movieRepository.search(filter).stream().map(Movie::getId).toList());
+
+        filter.setTitle("godzilla");
+        assertTrue(movieRepository.search(filter).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep the trigram index consistent through title updates")
+    void shouldKeepTrigramIndexConsistentThroughTitleUpdates() {
+        movieRepository.update("2", movie -> movie.setTitle("Apocalypse Now"));
+        MovieFilter filter = new MovieFilter();
+
+        filter.setTitle("godfather");
+        assertTrue(movieRepository.search(filter).isEmpty());
+
+        filter.setTitle("lypse");
+        assertEquals(List.of("2"), movieRepository.search(filter).stream().map(Movie::getId).toList());
+
+        movieRepository.deleteById("2");
+        assertTrue(movieRepository.search(filter).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should page through index entries in insertion order across posting blocks")
+    void shouldPageThroughIndexAcrossPostingBlocks() {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < SequenceSet.BLOCK_SIZE + 500; i++) {
+            boolean serial = i % 2 == 0;
+            movies.add(new Movie("s" + i, "Serial " + i, serial ? 1800 + i % 3 : 1900, "Director",
+                    serial ? "Serial" : "Other", null, List.of()));
+        }
+        movieRepository.saveAll(movies);
+        for (int i = 0; i < SequenceSet.BLOCK_SIZE; i += 7) {
+            movieRepository.deleteById("s" + i);
+        }
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < SequenceSet.BLOCK_SIZE + 500; i++) {
+            if (i % 2 == 0 && (i % 7 != 0 || i >= SequenceSet.BLOCK_SIZE)) {
+                expected.add("s" + i);
+            }
+        }
+        // Moves movies into the middle of the genre's blocks
+        List<String> moved = new ArrayList<>();
+        for (int i = 1; i < SequenceSet.BLOCK_SIZE + 500; i += 1000) {
+            if (movieRepository.update("s" + i, movie -> movie.setGenre("Serial")) != null) {
+                moved.add("s" + i);
+            }
+        }
+        List<String> expectedGenre = new ArrayList<>(expected);
+        expectedGenre.addAll(moved);
+        expectedGenre.sort(Comparator.comparingInt(id -> Integer.parseInt(id.substring(1))));
+
+        MovieFilter genre = new MovieFilter();
+        genre.setGenre("serial");
+        assertEquals(expectedGenre, pageThrough(genre));
+
+        MovieFilter years = new MovieFilter();
+        years.setReleaseYearFrom(1800);
+        years.setReleaseYearTo(1802);
+        assertEquals(expected, movieRepository.search(years).stream().map(Movie::getId).toList());
+    }
+
+    private List<String> pageThrough(MovieFilter filter) {
+        List<String> ids = new ArrayList<>();
+        String after = null;
+        Page<Movie> page;
+        do {
+            page = movieRepository.search(filter, 1000, after);
+            page.items().forEach(movie -> ids.add(movie.getId()));
+            after = page.cursors().isEmpty() ? null : page.cursors().get(page.cursors().size() - 1);
+        } while (page.hasNextPage());
+        return ids;
+    }
+
+    @Test
+    @DisplayName("Should index bulk-loaded chunks in reserved order whatever order they are inserted in")
+    void shouldIndexBulkLoadedChunksInReservedOrder() throws Exception {
+        int chunks = 40;
+        int chunkSize = 250;
+        long[] firsts = new long[chunks];
+        List<List<Movie>> movies = new ArrayList<>();
+        MovieRepository.BulkLoad bulk = movieRepository.bulkLoad();
+        for (int c = 0; c < chunks; c++) {
+            List<Movie> chunk = new ArrayList<>();
+            for (int i = c * chunkSize; i < (c + 1) * chunkSize; i++) {
+                // Movie 2 is already stored, and keeps its position
+                String id = i == 1234 ? "2" : "b" + i;
+                chunk.add(new Movie(id, "Bulk " + (i % 3 == 0 ? "Fizz " : "") + i, 1900 + i % 50, "Director",
+                        i % 2 == 0 ? "Even" : "Odd", (i % 100) / 10.0f, List.of("a" + i % 7)));
+            }
+            firsts[c] = bulk.reserve(chunk.size());
+            movies.add(chunk);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> inserts = new ArrayList<>();
+            for (int c = chunks - 1; c >= 0; c--) {
+                int chunk = c;
+                inserts.add(executor.submit(() -> bulk.insert(firsts[chunk], movies.get(chunk))));
+            }
+            for (Future<?> insert : inserts) {
+                insert.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        bulk.close();
+
+        List<String> even = new ArrayList<>();
+        List<String> fizzFrom1940 = new ArrayList<>();
+        List<String> actor = new ArrayList<>();
+        for (int i = 0; i < chunks * chunkSize; i++) {
+            String id = i == 1234 ? "2" : "b" + i;
+            if (i == 1234) {
+                // Replaced in place, so it comes first
+                even.add(0, id);
+                continue;
+            }
+            if (i % 2 == 0) {
+                even.add(id);
+            }
+            if (i % 3 == 0 && 1900 + i % 50 >= 1940) {
+                fizzFrom1940.add(id);
+            }
+            if (i % 7 == 3) {
+                actor.add(id);
+            }
+        }
+        MovieFilter genre = new MovieFilter();
+        genre.setGenre("even");
+        assertEquals(even, pageThrough(genre));
+        MovieFilter titleAndYears = new MovieFilter();
+        titleAndYears.setTitle("fizz");
+        titleAndYears.setReleaseYearFrom(1940);
+        assertEquals(fizzFrom1940, movieRepository.search(titleAndYears).stream().map(Movie::getId).toList());
+        assertEquals(actor, movieRepository.findByActorIds(List.of("a3")).get("a3").stream().map(Movie::getId).toList());
+        assertEquals("Bulk 1234", movieRepository.findById("2").getTitle());
+        assertEquals(3 + chunks * chunkSize - 1, movieRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should find movies by actor ids through the reverse index")
+    void shouldFindMoviesByActorIds() {
+        movieRepository.update("3", movie -> movie.setActorIds(List.of("2")));
+
+        Map<String, List<Movie>> movies = movieRepository.findByActorIds(List.of("1", "2", "999"));
+
+        assertEquals(List.of("1"), movies.get("1").stream().map(Movie::getId).toList());
+        assertEquals(List.of("1", "3"), movies.get("2").stream().map(Movie::getId).toList());
+        assertTrue(movies.get("999").isEmpty());
+
+        movieRepository.update("1", movie -> movie.setActorIds(List.of("1")));
+        movieRepository.deleteById("3");
+
+        assertTrue(movieRepository.findByActorIds(List.of("2")).get("2").isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should return the same top-k through the index walk and the heap")
+    void shouldReturnSameTopKThroughIndexWalkAndHeap() {
+        for (int i = 0; i < 200; i++) {
+            String genre = i % 10 == 0 ? "Western" : "Drama";
+            Float rating = i % 50 == 0 ? null : (i % 17) / 2.0f;
+            movieRepository.save(new Movie("m" + i, "Movie " + i, 1950 + i % 60, "Director", genre, rating, List.of()));
+        }
+        MovieOrder byRating = new MovieOrder(MovieOrderField.RATING, SortDirection.DESC);
+        Comparator<Movie> expectedOrder = Comparator.comparing(Movie::getRating, Comparator.nullsLast(Comparator.<Float>reverseOrder()));
+
+        for (String genre : new String[]{null, "Drama", "Western"}) {
+            for (int limit : new int[]{1, 5, 20, 500}) {
+                MovieFilter filter = new MovieFilter();
+                filter.setGenre(genre);
+
+                // Stable sort keeps insertion order for ties, the expected tie-break
+                List<Movie> expected = movieRepository.search(filter).stream()
+                        .sorted(expectedOrder)
+                        .limit(limit)
+                        .toList();
+
+                assertEquals(expected, movieRepository.search(filter, byRating, limit), genre + " limit " + limit);
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("Should give the same results in the same order when full scans run in parallel")
+    void shouldScanInParallelInSequentialOrder() {
+        MovieStoreProperties properties = new MovieStoreProperties();
+        properties.setParallelScanThreshold(1);
+        properties.setScanParallelism(4);
+        MovieRepository parallel = createRepository(properties);
+        parallel.saveAll(movieRepository.findAll());
+        for (int i = 0; i < 3000; i++) {
+            Movie movie = new Movie("m" + i, "Movie " + (i * 7919) % 3000, 1950 + i % 70, "Director " + i % 30,
+                    i % 3 == 0 ? "Drama" : "Comedy", i % 11 == 0 ? null : (i % 97) / 10.0f, List.of());
+            movieRepository.save(movie);
+            parallel.save(movie);
+        }
+        for (int i = 0; i < 3000; i += 7) {
+            movieRepository.deleteById("m" + i);
+            parallel.deleteById("m" + i);
+        }
+        MovieFilter unindexed = new MovieFilter();
+        unindexed.setTitle("1");
+        MovieOrder byTitle = new MovieOrder(MovieOrderField.TITLE, SortDirection.ASC);
+
+        for (MovieFilter filter : List.of(unindexed, new MovieFilter())) {
+            assertEquals(movieRepository.search(filter), parallel.search(filter));
+            assertEquals(movieRepository.count(filter), parallel.count(filter));
+            assertEquals(movieRepository.search(filter, byTitle, 25), parallel.search(filter, byTitle, 25));
+        }
+        assertEquals(movieRepository.stats(unindexed), parallel.stats(unindexed));
+        assertTrue(Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().startsWith("movie-scan-")));
+    }
+
+    @Test
+    @DisplayName("Should return an empty result for an inverted range")
+    void shouldReturnEmptyResultForInvertedRange() {
+        MovieFilter filter = new MovieFilter();
+        filter.setReleaseYearFrom(2010);
+        filter.setReleaseYearTo(1990);
+
+        assertTrue(movieRepository.search(filter).isEmpty());
+    }
+
+    @Test
+    @DisplayName("Should keep reading a pinned snapshot while later writes are applied")
+    void shouldKeepReadingPinnedSnapshot() {
+        MovieFilter drama = new MovieFilter();
+        drama.setGenre("Drama");
+        MovieOrder byRating = new MovieOrder(MovieOrderField.RATING, SortDirection.DESC);
+        List<Movie> movies = movieRepository.findAll();
+        var stats = movieRepository.stats(null);
+        var dramaStats = movieRepository.stats(drama);
+
+        MovieRepository.Snapshot snapshot = movieRepository.snapshot();
+        movieRepository.update("1", movie -> movie.setGenre("Comedy"));
+        movieRepository.deleteById("2");
+        movieRepository.saveAll(List.of(
+                new Movie("2", "The Godfather Part II", 1974, "Francis Ford Coppola", "Drama", 9.9f, List.of("3")),
+                new Movie("4", "Heat", 1995, "Michael Mann", "Drama", 8.3f, List.of())));
+
+        assertEquals(movies, movieRepository.findAll(snapshot));
+        assertEquals("Drama", movieRepository.findById("1", snapshot).getGenre());
+        assertEquals("The Godfather", movieRepository.findById("2", snapshot).getTitle());
+        assertNull(movieRepository.findById("4", snapshot));
+        assertEquals(List.of("1"), movieRepository.search(drama, snapshot).stream().map(Movie::getId).toList());
+        assertEquals(List.of("1"), movieRepository.findByGenre("drama", snapshot).stream().map(Movie::getId).toList());
+        assertEquals(List.of("1", "2"), movieRepository.search(null, byRating, 2, snapshot).stream()
+                .map(Movie::getId).toList());
+        assertEquals(List.of("The Godfather"), movieRepository.findByActorIds(List.of("3"), snapshot).get("3").stream()
+                .map(Movie::getTitle).toList());
+        assertEquals(3, movieRepository.count(null, snapshot));
+        assertEquals(1, movieRepository.count(drama, snapshot));
+        assertEquals(stats, movieRepository.stats(null, snapshot));
+        assertEquals(dramaStats, movieRepository.stats(drama, snapshot));
+        assertEquals(List.of("2", "4"), movieRepository.search(drama).stream().map(Movie::getId).toList());
+
+        snapshot.close();
+        assertThrows(IllegalStateException.class, () -> movieRepository.findById("1", snapshot));
+        assertEquals(List.of("1", "3", "2", "4"), movieRepository.findAll().stream().map(Movie::getId).toList());
+        MovieRepository rebuilt = new MovieRepository();
+        rebuilt.saveAll(movieRepository.findAll());
+        assertEquals(rebuilt.stats(null), movieRepository.stats(null));
+        assertEquals(4, movieRepository.count());
+    }
+
+    @Test
+    @DisplayName("Should never show part of a batch to concurrent readers")
+    void shouldNeverShowPartOfBatch() throws Exception {
+        movieRepository.saveAll(List.of(new Movie("a", "A", 2000, "Director", "Drama", 0.0f, List.of()),
+                new Movie("b", "B", 2000, "Director", "Drama", 0.0f, List.of())));
+        MovieFilter rated = new MovieFilter();
+        rated.setMinRating(1.0f);
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                for (int i = 1; i <= 5000; i++) {
+                    float rating = i % 10;
+                    movieRepository.saveAll(List.of(new Movie("a", "A", 2000, "Director", "Drama", rating, List.of()),
+                            new Movie("b", "B", 2000, "Director", "Drama", rating, List.of())));
+                }
+            });
+            while (!writer.isDone()) {
+                try (MovieRepository.Snapshot snapshot = movieRepository.snapshot()) {
+                    float rating = movieRepository.findById("a", snapshot).getRating();
+                    assertEquals(rating, movieRepository.findById("b", snapshot).getRating());
+                    assertEquals(rating >= 1.0f ? 2 : 0, movieRepository.search(rated, snapshot).stream()
+                            .filter(movie -> movie.getTitle().length() == 1)
+                            .count());
+                    assertEquals(movieRepository.count(null, snapshot), movieRepository.findAll(snapshot).size());
+                }
+            }
+            writer.get();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("Should allow iteration while other threads write")
+    void shouldAllowIterationWhileOtherThreadsWrite() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int thread = t;
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++) {
+                        String id = thread + "-" + i;
+                        movieRepository.save(new Movie(id, "Movie " + id, 2000, "Director", "Drama", 5.0f, new ArrayList<>()));
+                        if (i % 2 == 0) {
+                            movieRepository.deleteById(id);
+                        }
+                    }
+                }));
+            }
+            while (writers.stream().anyMatch(writer -> !writer.isDone())) {
+                assertDoesNotThrow(() -> movieRepository.stream().filter(m -> m.getRating() > 4.0f).count());
+            }
+            for (Future<?> writer : writers) {
+                writer.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertEquals(3 + 4 * 500, movieRepository.count());
+        assertEquals(movieRepository.count(), movieRepository.findAll().size());
+    }
+}
@@ -0,0 +1,188 @@
+package com.henan.graphqlserver.subscriptions;
+
+import com.henan.graphqlserver.model.Movie;
+import com.henan.graphqlserver.model.MovieChange;
+import com.henan.graphqlserver.model.MovieChangeType;
+import com.henan.graphqlserver.model.MovieFilter;
+import com.henan.graphqlserver.repository.MovieRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Subscription;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MovieChangeBusTest {
+
+    private MovieRepository movieRepository;
+    private SimpleMeterRegistry meterRegistry;
+    private MovieChangeBus movieChangeBus;
+
+    @BeforeEach
+    void setUp() {
+        movieRepository = new MovieRepository();
+        movieRepository.save(new Movie("1", "The Shawshank Redemption", 1994, "Frank Darabont", "Drama", 9.3f, List.of()));
+        movieRepository.save(new Movie("2", "The Godfather", 1972, "Francis Ford Coppola", "Crime", 9.2f, List.of()));
+        SubscriptionProperties properties = new SubscriptionProperties();
+        properties.setBufferSize(2);
+        meterRegistry = new SimpleMeterRegistry();
+        movieChangeBus = new MovieChangeBus(properties, movieRepository, meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        movieChangeBus.close();
+    }
+
+    @Test
+    @DisplayName("Should deliver the changes to movies matching the filter before or after the change")
+    void shouldDeliverMatchingChanges() throws Exception {
+        Collector collector = subscribe(genre("Drama"), Long.MAX_VALUE);
+
+        movieRepository.update("2", movie -> movie.setRating(9.0f));
+        movieRepository.update("1", movie -> movie.setGenre("Prison"));
+        movieRepository.saveAll(List.of(new Movie("3", "Heat", 1995, "Michael Mann", "drama", 8.3f, List.of())));
+
+        MovieChange left = collector.next();
+        assertEquals(MovieChangeType.UPDATED, left.getType());
+        assertEquals("Drama", left.getPrevious().getGenre());
+        assertEquals("Prison", left.getMovie().getGenre());
+        assertEquals(MovieChangeType.CREATED, collector.next().getType());
+        // Deleted once the creation was received, otherwise both would be merged away
+        movieRepository.deleteById("3");
+        MovieChange deleted = collector.next();
+        assertEquals(MovieChangeType.DELETED, deleted.getType());
+        assertEquals("3", deleted.getId());
+        assertNull(deleted.getMovie());
+        assertEquals(1.0, meterRegistry.get("graphql.subscriptions.active").gauge().value());
+    }
+
+    @Test
+    @DisplayName("Should merge changes to a movie that a slow subscriber has not received yet")
+    void shouldConflateChangesForSlowSubscriber() throws Exception {
+        Collector collector = subscribe(null, 0);
+
+        for (int i = 1; i <= 5; i++) {
+            float rating = i;
+            movieRepository.update("1", movie -> movie.setRating(rating));
+        }
+        movieRepository.save(new Movie("3", "Heat", 1995, "Michael Mann", "Crime", 8.3f, List.of()));
+        movieRepository.deleteById("3");
+        movieRepository.update("2", movie -> movie.setRating(1.0f));
+        awaitConflated(5);
+        collector.request(10);
+
+        MovieChange first = collector.next();
+        assertEquals("1", first.getId());
+        assertEquals(9.3f, first.getPrevious().getRating());
+        assertEquals(5.0f, first.getMovie().getRating());
+        // The movie created and deleted in between is dropped entirely
+        assertEquals("2", collector.next().getId());
+        assertNull(collector.changes.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    @DisplayName("Should deliver a batch larger than the buffer to a slow subscriber")
+    void shouldDeliverBatchLargerThanBuffer() throws Exception {
+        Collector collector = subscribe(null, 0);
+        Map<String, UnaryOperator<Movie>> changes = new LinkedHashMap<>();
+        // As many movies as a batch mutation accepts
+        for (int i = 0; i < 1000; i++) {
+            String id = "batch-" + i;
+            changes.put(id, movie -> new Movie(id, "Movie " + id, 2000, "Nobody", "Drama", 5.0f, List.of()));
+        }
+
+        movieRepository.upsertAll(changes);
+        // Writes are dispatched in order, so once this one is merged the whole batch is buffered
+        movieRepository.update("batch-0", movie -> movie.setRating(6.0f));
+        awaitConflated(1);
+        collector.request(Long.MAX_VALUE);
+
+        MovieChange first = collector.next();
+        assertEquals("batch-0", first.getId());
+        assertEquals(6.0f, first.getMovie().getRating());
+        for (String id : changes.keySet().stream().skip(1).toList()) {
+            assertEquals(id, collector.next().getId());
+        }
+        assertNull(collector.error.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(0.0, meterRegistry.get("graphql.subscriptions.overflows").counter().count());
+    }
+
+    @Test
+    @DisplayName("Should end a subscription whose buffer is still full when the next write arrives")
+    void shouldEndSubscriptionOnOverflow() throws Exception {
+        Collector collector = subscribe(null, 0);
+
+        movieRepository.saveAll(List.of(new Movie("3", "Heat", 1995, "Michael Mann", "Crime", 8.3f, List.of()),
+                new Movie("4", "Alien", 1979, "Ridley Scott", "Horror", 8.5f, List.of())));
+        movieRepository.save(new Movie("5", "Up", 2009, "Pete Docter", "Animation", 8.3f, List.of()));
+
+        assertInstanceOf(IllegalStateException.class, collector.error.poll(5, TimeUnit.SECONDS));
+        assertEquals(1.0, meterRegistry.get("graphql.subscriptions.overflows").counter().count());
+    }
+
+    private Collector subscribe(MovieFilter filter, long initialDemand) {
+        Collector collector = new Collector(initialDemand);
+        movieChangeBus.subscribe(filter).subscribe(collector);
+        return collector;
+    }
+
+    private void awaitConflated(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("graphql.subscriptions.changes").tag("outcome", "conflated").counter().count()
+                < count) {
+            assertTrue(System.nanoTime() < deadline, "changes were not conflated in time");
+            Thread.sleep(10);
+        }
+    }
+
+    private static MovieFilter genre(String genre) {
+        MovieFilter filter = new MovieFilter();
+        filter.setGenre(genre);
+        return filter;
+    }
+
+    private static final class Collector extends BaseSubscriber<MovieChange> {
+        private final long initialDemand;
+        private final BlockingQueue<MovieChange> changes = new LinkedBlockingQueue<>();
+        private final BlockingQueue<Throwable> error = new LinkedBlockingQueue<>();
+
+        private Collector(long initialDemand) {
+            this.initialDemand = initialDemand;
+        }
+
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            if (initialDemand > 0) {
+                request(initialDemand);
+            }
+        }
+
+        @Override
+        protected void hookOnNext(MovieChange change) {
+            changes.add(change);
+        }
+
+        @Override
+        protected void hookOnError(Throwable throwable) {
+            error.add(throwable);
+        }
+
+        private MovieChange next() throws InterruptedException {
+            MovieChange change = changes.poll(5, TimeUnit.SECONDS);
+            assertNotNull(change, "no change was delivered");
+            return change;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.henan.graphqlserver.subscriptions;
+
+import com.netflix.graphql.dgs.DgsQueryExecutor;
+import graphql.ExecutionResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import reactor.core.publisher.Flux;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class MovieChangeDatafetcherTest {
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private DgsQueryExecutor queryExecutor;
+
+    @Test
+    @DisplayName("Should stream the changes made by mutations to subscribers")
+    void shouldStreamChangesMadeByMutations() {
+        ExecutionResult subscription = queryExecutor.execute(
+                "subscription { movieChanged(filter: { genre: \"Action\" }) { type id movie { title } } }");
+        Publisher<ExecutionResult> changes = subscription.getData();
+
+        Flux<ExecutionResult> first = Flux.from(changes).take(1).cache();
+        first.subscribe();
+        queryExecutor.execute("mutation { updateMovie(id: \"3\", input: { title: \"The Dark Knight\", rating: 9.1 }) "
+                + "{ success } }");
+
+        ExecutionResult change = first.blockFirst(Duration.ofSeconds(5));
+        assertNotNull(change);
+        assertTrue(change.getErrors().isEmpty());
+        assertEquals(Map.of("movieChanged", Map.of("type", "UPDATED", "id", "3",
+                "movie", Map.of("title", "The Dark Knight"))), change.getData());
+    }
+
+    @Test
+    @DisplayName("Should serve subscriptions over WebSocket with the graphql-transport-ws protocol")
+    void shouldServeSubscriptionsOverWebSocket() throws Exception {
+        BlockingQueue<String> messages = new LinkedBlockingQueue<>();
+        WebSocket webSocket = HttpClient.newHttpClient().newWebSocketBuilder()
+                .subprotocols("graphql-transport-ws")
+                .buildAsync(URI.create("ws://localhost:" + port + "/subscriptions"), new WebSocket.Listener() {
+                    @Override
+                    public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+                        messages.add(data.toString());
+                        return WebSocket.Listener.super.onText(webSocket, data, last);
+                    }
+                })
+                .get(5, TimeUnit.SECONDS);
+        try {
+            webSocket.sendText("{\"type\":\"connection_init\"}", true).get(5, TimeUnit.SECONDS);
+            assertTrue(messages.poll(5, TimeUnit.SECONDS).contains("connection_ack"));
+            webSocket.sendText("{\"id\":\"1\",\"type\":\"subscribe\",\"payload\":{\"query\":"
+                    + "\"subscription { movieChanged(filter: { genre: \\\"Crime\\\" }) { type id } }\"}}", true)
+                    .get(5, TimeUnit.SECONDS);
+            // The subscription is registered asynchronously, so keep changing the movie until it is seen
+            String message = null;
+            for (int i = 0; i < 50 && message == null; i++) {
+                queryExecutor.execute("mutation { updateMovie(id: \"2\", input: { title: \"The Godfather\" }) "
+                        + "{ success } }");
+                message = messages.poll(100, TimeUnit.MILLISECONDS);
+            }
+
+            assertNotNull(message);
+            assertTrue(message.contains("\"type\":\"next\""), message);
+            assertTrue(message.contains("\"movieChanged\":{\"type\":\"UPDATED\",\"id\":\"2\"}"), message);
+        } finally {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "").get(5, TimeUnit.SECONDS);
+        }
+    }
+}